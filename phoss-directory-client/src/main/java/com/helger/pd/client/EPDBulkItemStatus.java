@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.client;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.id.IHasID;
+import com.helger.commons.lang.EnumHelper;
+
+/**
+ * The status of a single participant ID in a bulk request to the Peppol
+ * Directory indexer.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public enum EPDBulkItemStatus implements IHasID <String>
+{
+  /** The participant was queued for indexing */
+  QUEUED ("queued"),
+  /** A pending request for the participant already covers it */
+  UNCHANGED ("unchanged"),
+  /** The participant ID was not accepted by the server */
+  INVALID ("invalid"),
+  /** The server is overloaded - try again later */
+  REJECTED ("rejected");
+
+  private final String m_sID;
+
+  private EPDBulkItemStatus (@Nonnull @Nonempty final String sID)
+  {
+    m_sID = sID;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  /**
+   * @return <code>true</code> if the server accepted the participant ID,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isAccepted ()
+  {
+    return this == QUEUED || this == UNCHANGED;
+  }
+
+  @Nullable
+  public static EPDBulkItemStatus getFromIDOrNull (@Nullable final String sID)
+  {
+    return EnumHelper.getFromIDOrNull (EPDBulkItemStatus.class, sID);
+  }
+}
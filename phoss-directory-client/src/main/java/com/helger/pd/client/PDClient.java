@@ -18,23 +18,32 @@ package com.helger.pd.client;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.entity.StringEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.OverrideOnDemand;
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
 import com.helger.commons.io.stream.StreamHelper;
 import com.helger.commons.state.ESuccess;
 import com.helger.commons.url.URLHelper;
@@ -53,6 +62,12 @@ public class PDClient implements Closeable
 {
   /** The fixed part of the URL to the PD server */
   public static final String PATH_INDEXER_10 = "indexer/1.0/";
+  /**
+   * The sub path of the indexer URL for bulk requests
+   *
+   * @since 0.9.5
+   */
+  public static final String PATH_BULK = "bulk";
 
   private static final Logger LOGGER = LoggerFactory.getLogger (PDClient.class);
 
@@ -281,4 +296,116 @@ public class PDClient implements Closeable
     }
     return ESuccess.FAILURE;
   }
+
+  /**
+   * A DELETE request that can contain a body.
+   */
+  private static final class HttpDeleteWithBody extends HttpEntityEnclosingRequestBase
+  {
+    HttpDeleteWithBody (@Nonnull final String sURI)
+    {
+      setURI (URI.create (sURI));
+    }
+
+    @Override
+    public String getMethod ()
+    {
+      return HttpDelete.METHOD_NAME;
+    }
+  }
+
+  @Nullable
+  private ICommonsOrderedMap <IParticipantIdentifier, EPDBulkItemStatus> _executeBulk (@Nonnull final HttpEntityEnclosingRequestBase aRequest,
+                                                                                      @Nonnull final Iterable <? extends IParticipantIdentifier> aParticipantIDs,
+                                                                                      @Nonnull final String sContext)
+  {
+    // Map from the string representation back to the identifier objects
+    final ICommonsOrderedMap <String, IParticipantIdentifier> aIDMap = new CommonsLinkedHashMap <> ();
+    for (final IParticipantIdentifier aParticipantID : aParticipantIDs)
+    {
+      ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+      aIDMap.put (aParticipantID.getURIEncoded (), aParticipantID);
+    }
+    if (aIDMap.isEmpty ())
+      return new CommonsLinkedHashMap <> ();
+
+    // Write the IDs line by line
+    final EntityTemplate aEntity = new EntityTemplate (aOS -> {
+      final Writer aWriter = new OutputStreamWriter (aOS, StandardCharsets.UTF_8);
+      for (final String sParticipantID : aIDMap.keySet ())
+        aWriter.write (sParticipantID + '\n');
+      aWriter.flush ();
+    });
+    aEntity.setContentType (ContentType.TEXT_PLAIN.withCharset (StandardCharsets.UTF_8).toString ());
+    aRequest.setEntity (aEntity);
+
+    try
+    {
+      final ICommonsOrderedMap <String, EPDBulkItemStatus> aStatusMap = executeRequest (aRequest, new PDClientBulkResponseHandler ());
+      if (aStatusMap != null)
+      {
+        final ICommonsOrderedMap <IParticipantIdentifier, EPDBulkItemStatus> ret = new CommonsLinkedHashMap <> ();
+        for (final Map.Entry <String, EPDBulkItemStatus> aEntry : aStatusMap.entrySet ())
+        {
+          final IParticipantIdentifier aParticipantID = aIDMap.get (aEntry.getKey ());
+          if (aParticipantID != null)
+            ret.put (aParticipantID, aEntry.getValue ());
+        }
+        LOGGER.info (sContext +
+                     ": " +
+                     ret.getCount (x -> x.getValue ().isAccepted ()) +
+                     " of " +
+                     aIDMap.size () +
+                     " service groups were accepted by the Peppol Directory. May take some time until the index is updated.");
+        return ret;
+      }
+    }
+    catch (final Throwable t)
+    {
+      m_aExceptionHdl.onException (aIDMap.getFirstValue (), sContext, t);
+    }
+    return null;
+  }
+
+  /**
+   * Add multiple service groups to the index with a single request.
+   *
+   * @param aParticipantIDs
+   *        The participant IDs to be added. May not be <code>null</code>. The
+   *        server accepts at most the number of participant IDs configured in
+   *        its property <code>indexer.bulk.maxitems</code> (default 1000) per
+   *        request and rejects larger requests as a whole with HTTP 413, so
+   *        bigger sets must be split into multiple calls.
+   * @return The status per participant ID in the order of the request or
+   *         <code>null</code> if the request failed. Participant IDs rejected
+   *         with {@link EPDBulkItemStatus#REJECTED} should be resent later.
+   * @since 0.9.5
+   */
+  @Nullable
+  public ICommonsOrderedMap <IParticipantIdentifier, EPDBulkItemStatus> addServiceGroupsToIndex (@Nonnull final Iterable <? extends IParticipantIdentifier> aParticipantIDs)
+  {
+    ValueEnforcer.notNull (aParticipantIDs, "ParticipantIDs");
+    return _executeBulk (new HttpPut (m_sPDIndexerURI + PATH_BULK), aParticipantIDs, "addServiceGroupsToIndex");
+  }
+
+  /**
+   * Delete multiple service groups from the index with a single request.
+   *
+   * @param aParticipantIDs
+   *        The participant IDs to be deleted. May not be <code>null</code>. The
+   *        server accepts at most the number of participant IDs configured in
+   *        its property <code>indexer.bulk.maxitems</code> (default 1000) per
+   *        request and rejects larger requests as a whole with HTTP 413, so
+   *        bigger sets must be split into multiple calls.
+   * @return The status per participant ID in the order of the request or
+   *         <code>null</code> if the request failed. Participant IDs rejected
+   *         with {@link EPDBulkItemStatus#REJECTED} should be resent later.
+   * @since 0.9.5
+   */
+  @Nullable
+  public ICommonsOrderedMap <IParticipantIdentifier, EPDBulkItemStatus> deleteServiceGroupsFromIndex (@Nonnull final Iterable <? extends IParticipantIdentifier> aParticipantIDs)
+  {
+    ValueEnforcer.notNull (aParticipantIDs, "ParticipantIDs");
+    return _executeBulk (new HttpDeleteWithBody (m_sPDIndexerURI + PATH_BULK), aParticipantIDs, "deleteServiceGroupsFromIndex");
+  }
 }
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.util.EntityUtils;
+
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.string.StringHelper;
+
+/**
+ * Special response handler for bulk requests of the PD client. The response
+ * contains one line per participant ID in the format
+ * <code>status&lt;TAB&gt;participantID</code>.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public class PDClientBulkResponseHandler implements ResponseHandler <ICommonsOrderedMap <String, EPDBulkItemStatus>>
+{
+  public PDClientBulkResponseHandler ()
+  {}
+
+  @Nullable
+  public ICommonsOrderedMap <String, EPDBulkItemStatus> handleResponse (@Nonnull final HttpResponse aHttpResponse) throws ClientProtocolException,
+                                                                                                                    IOException
+  {
+    final StatusLine aStatusLine = aHttpResponse.getStatusLine ();
+    if (aStatusLine.getStatusCode () < 200 || aStatusLine.getStatusCode () >= 300)
+    {
+      // Throws an exception for all unexpected status codes
+      new PDClientResponseHandler ().handleResponse (aHttpResponse);
+      return null;
+    }
+
+    final ICommonsOrderedMap <String, EPDBulkItemStatus> ret = new CommonsLinkedHashMap <> ();
+    final HttpEntity aEntity = aHttpResponse.getEntity ();
+    if (aEntity != null)
+      for (final String sLine : StringHelper.getExploded ('\n', EntityUtils.toString (aEntity, StandardCharsets.UTF_8)))
+      {
+        final String [] aParts = StringHelper.getExplodedArray ('\t', sLine.trim (), 2);
+        if (aParts.length == 2)
+        {
+          final EPDBulkItemStatus eStatus = EPDBulkItemStatus.getFromIDOrNull (aParts[0]);
+          if (eStatus == null)
+            throw new ClientProtocolException ("Unsupported bulk item status in line '" + sLine + "'");
+          ret.put (aParts[1], eStatus);
+        }
+      }
+    return ret;
+  }
+}
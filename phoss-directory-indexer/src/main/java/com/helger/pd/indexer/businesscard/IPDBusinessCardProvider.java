@@ -16,9 +16,12 @@
  */
 package com.helger.pd.indexer.businesscard;
 
+import java.util.function.Consumer;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.helger.pd.indexer.index.EIndexerFailureType;
 import com.helger.peppolid.IParticipantIdentifier;
 
 /**
@@ -42,4 +45,25 @@ public interface IPDBusinessCardProvider
    */
   @Nullable
   PDExtendedBusinessCard getBusinessCard (@Nonnull IParticipantIdentifier aParticipantID);
+
+  /**
+   * Get the {@link PDExtendedBusinessCard} for the given participant ID and
+   * report the reason, if no business card could be retrieved. This default
+   * implementation cannot tell the reason and reports nothing.
+   *
+   * @param aParticipantID
+   *        Peppol participant ID. May not be <code>null</code>.
+   * @param aFailureTypeHandler
+   *        The handler that is invoked with the type of the error, if
+   *        <code>null</code> is returned. May not be <code>null</code>.
+   * @return <code>null</code> if no business card exists for the provided
+   *         participant ID.
+   * @since 0.9.5
+   */
+  @Nullable
+  default PDExtendedBusinessCard getBusinessCard (@Nonnull final IParticipantIdentifier aParticipantID,
+                                                  @Nonnull final Consumer <? super EIndexerFailureType> aFailureTypeHandler)
+  {
+    return getBusinessCard (aParticipantID);
+  }
 }
@@ -17,6 +17,7 @@
 package com.helger.pd.indexer.businesscard;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
@@ -24,6 +25,7 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.annotation.ReturnsMutableCopy;
 import com.helger.commons.annotation.ReturnsMutableObject;
 import com.helger.commons.collection.impl.CommonsArrayList;
@@ -32,6 +34,8 @@ import com.helger.commons.string.ToStringGenerator;
 import com.helger.pd.businesscard.generic.PDBusinessCard;
 import com.helger.peppolid.IDocumentTypeIdentifier;
 import com.helger.peppolid.simple.doctype.SimpleDocumentTypeIdentifier;
+import com.helger.security.messagedigest.EMessageDigestAlgorithm;
+import com.helger.security.messagedigest.MessageDigestValue;
 
 /**
  * This class encapsulates all the data to be added to the Lucene index. It
@@ -99,6 +103,27 @@ public class PDExtendedBusinessCard implements Serializable
     return m_aDocumentTypeIDs.size ();
   }
 
+  /**
+   * Get a hash value over the content of this object, that can be used to
+   * determine if the data to be indexed changed. The hash is calculated from
+   * the JSON representation of the business card and all document type IDs.
+   *
+   * @return The hex encoded SHA-256 hash of the content. Never
+   *         <code>null</code> nor empty.
+   * @since 0.9.5
+   */
+  @Nonnull
+  @Nonempty
+  public String getContentHash ()
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    aSB.append (m_aBusinessCard.getAsJson ().getAsJsonString ()).append ('\n');
+    for (final IDocumentTypeIdentifier aDocTypeID : m_aDocumentTypeIDs)
+      aSB.append (aDocTypeID.getURIEncoded ()).append ('\n');
+    return MessageDigestValue.create (aSB.toString ().getBytes (StandardCharsets.UTF_8), EMessageDigestAlgorithm.SHA_256)
+                             .getHexEncodedDigestString ();
+  }
+
   @Override
   public String toString ()
   {
@@ -17,6 +17,7 @@
 package com.helger.pd.indexer.businesscard;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.function.Consumer;
@@ -29,6 +30,7 @@ import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +42,7 @@ import com.helger.commons.http.CHttp;
 import com.helger.httpclient.HttpClientManager;
 import com.helger.httpclient.HttpClientSettings;
 import com.helger.pd.businesscard.generic.PDBusinessCard;
+import com.helger.pd.indexer.index.EIndexerFailureType;
 import com.helger.pd.indexer.mgr.PDMetaManager;
 import com.helger.pd.indexer.settings.PDServerConfiguration;
 import com.helger.peppol.sml.ESMPAPIType;
@@ -160,7 +163,8 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
   @VisibleForTesting
   PDExtendedBusinessCard getBusinessCardPeppolSMP (@Nonnull final IParticipantIdentifier aParticipantID,
                                                    @Nonnull final SMPClientReadOnly aSMPClient,
-                                                   @Nonnull final HttpClientSettings aHCS)
+                                                   @Nonnull final HttpClientSettings aHCS,
+                                                   @Nonnull final Consumer <? super EIndexerFailureType> aFailureTypeHandler)
   {
     LOGGER.info ("Querying BusinessCard for '" +
                  aParticipantID.getURIEncoded () +
@@ -177,6 +181,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     catch (final SMPClientException ex)
     {
       LOGGER.error ("Error querying SMP for ServiceGroup of '" + aParticipantID.getURIEncoded () + "'", ex);
+      aFailureTypeHandler.accept (getFailureType (ex));
       return null;
     }
 
@@ -190,8 +195,8 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     }
     catch (final IOException ex)
     {
-      if ((ex instanceof HttpResponseException && ((HttpResponseException) ex).getStatusCode () == CHttp.HTTP_NOT_FOUND) ||
-          ex instanceof UnknownHostException)
+      final EIndexerFailureType eFailureType = getFailureType (ex);
+      if (eFailureType == EIndexerFailureType.NOT_FOUND || eFailureType == EIndexerFailureType.DNS)
       {
         LOGGER.warn ("No BusinessCard available for '" +
                      aParticipantID.getURIEncoded () +
@@ -200,6 +205,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
       }
       else
         LOGGER.error ("Error querying SMP for BusinessCard of '" + aParticipantID.getURIEncoded () + "'", ex);
+      aFailureTypeHandler.accept (eFailureType);
       return null;
     }
 
@@ -207,6 +213,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     {
       // No extension present - no need to try again
       LOGGER.warn ("Failed to get SMP BusinessCard of " + aParticipantID.getURIEncoded ());
+      aFailureTypeHandler.accept (EIndexerFailureType.INVALID);
       return null;
     }
 
@@ -224,7 +231,8 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
   @VisibleForTesting
   PDExtendedBusinessCard getBusinessCardBDXR1 (@Nonnull final IParticipantIdentifier aParticipantID,
                                                @Nonnull final BDXRClientReadOnly aSMPClient,
-                                               @Nonnull final HttpClientSettings aHCS)
+                                               @Nonnull final HttpClientSettings aHCS,
+                                               @Nonnull final Consumer <? super EIndexerFailureType> aFailureTypeHandler)
   {
     LOGGER.info ("Querying BusinessCard for '" +
                  aParticipantID.getURIEncoded () +
@@ -241,6 +249,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     catch (final SMPClientException ex)
     {
       LOGGER.error ("Error querying SMP for ServiceGroup of '" + aParticipantID.getURIEncoded () + "'", ex);
+      aFailureTypeHandler.accept (getFailureType (ex));
       return null;
     }
 
@@ -254,8 +263,8 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     }
     catch (final IOException ex)
     {
-      if ((ex instanceof HttpResponseException && ((HttpResponseException) ex).getStatusCode () == CHttp.HTTP_NOT_FOUND) ||
-          ex instanceof UnknownHostException)
+      final EIndexerFailureType eFailureType = getFailureType (ex);
+      if (eFailureType == EIndexerFailureType.NOT_FOUND || eFailureType == EIndexerFailureType.DNS)
       {
         LOGGER.warn ("No BusinessCard available for '" +
                      aParticipantID.getURIEncoded () +
@@ -264,6 +273,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
       }
       else
         LOGGER.error ("Error querying SMP for BusinessCard of '" + aParticipantID.getURIEncoded () + "'", ex);
+      aFailureTypeHandler.accept (eFailureType);
       return null;
     }
 
@@ -271,6 +281,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     {
       // No extension present - no need to try again
       LOGGER.warn ("Failed to get SMP BusinessCard of " + aParticipantID.getURIEncoded ());
+      aFailureTypeHandler.accept (EIndexerFailureType.INVALID);
       return null;
     }
 
@@ -287,7 +298,8 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
   @VisibleForTesting
   PDExtendedBusinessCard getBusinessCardBDXR2 (@Nonnull final IParticipantIdentifier aParticipantID,
                                                @Nonnull final BDXR2ClientReadOnly aSMPClient,
-                                               @Nonnull final HttpClientSettings aHCS)
+                                               @Nonnull final HttpClientSettings aHCS,
+                                               @Nonnull final Consumer <? super EIndexerFailureType> aFailureTypeHandler)
   {
     LOGGER.info ("Querying BusinessCard for '" +
                  aParticipantID.getURIEncoded () +
@@ -304,6 +316,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     catch (final SMPClientException ex)
     {
       LOGGER.error ("Error querying SMP for ServiceGroup of '" + aParticipantID.getURIEncoded () + "'", ex);
+      aFailureTypeHandler.accept (getFailureType (ex));
       return null;
     }
 
@@ -319,8 +332,8 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     }
     catch (final IOException ex)
     {
-      if ((ex instanceof HttpResponseException && ((HttpResponseException) ex).getStatusCode () == CHttp.HTTP_NOT_FOUND) ||
-          ex instanceof UnknownHostException)
+      final EIndexerFailureType eFailureType = getFailureType (ex);
+      if (eFailureType == EIndexerFailureType.NOT_FOUND || eFailureType == EIndexerFailureType.DNS)
       {
         LOGGER.warn ("No BusinessCard available for '" +
                      aParticipantID.getURIEncoded () +
@@ -329,6 +342,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
       }
       else
         LOGGER.error ("Error querying SMP for BusinessCard of '" + aParticipantID.getURIEncoded () + "'", ex);
+      aFailureTypeHandler.accept (eFailureType);
       return null;
     }
 
@@ -336,6 +350,7 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     {
       // No extension present - no need to try again
       LOGGER.warn ("Failed to get SMP BusinessCard of " + aParticipantID.getURIEncoded ());
+      aFailureTypeHandler.accept (EIndexerFailureType.INVALID);
       return null;
     }
 
@@ -354,8 +369,40 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
     aSMPClient.setXMLSchemaValidation (false);
   }
 
+  /**
+   * Determine the failure type of an error that occurred when querying an SMP.
+   *
+   * @param ex
+   *        The exception that occurred. May not be <code>null</code>.
+   * @return The failure type. Never <code>null</code>.
+   */
+  @Nonnull
+  static EIndexerFailureType getFailureType (@Nonnull final Exception ex)
+  {
+    Throwable aCur = ex;
+    while (aCur != null)
+    {
+      if (aCur instanceof HttpResponseException && ((HttpResponseException) aCur).getStatusCode () == CHttp.HTTP_NOT_FOUND)
+        return EIndexerFailureType.NOT_FOUND;
+      if (aCur instanceof UnknownHostException || aCur instanceof SMPDNSResolutionException)
+        return EIndexerFailureType.DNS;
+      if (aCur instanceof SocketTimeoutException || aCur instanceof ConnectTimeoutException)
+        return EIndexerFailureType.TIMEOUT;
+      aCur = aCur.getCause ();
+    }
+    return EIndexerFailureType.NETWORK;
+  }
+
   @Nullable
   public PDExtendedBusinessCard getBusinessCard (@Nonnull final IParticipantIdentifier aParticipantID)
+  {
+    return getBusinessCard (aParticipantID, x -> {});
+  }
+
+  @Override
+  @Nullable
+  public PDExtendedBusinessCard getBusinessCard (@Nonnull final IParticipantIdentifier aParticipantID,
+                                                 @Nonnull final Consumer <? super EIndexerFailureType> aFailureTypeHandler)
   {
     final HttpClientSettings aHCS = new HttpClientSettings ().setProxyHost (_getHttpProxy ())
                                                              .setProxyCredentials (_getHttpProxyCredentials ());
@@ -370,21 +417,21 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
         {
           final SMPClientReadOnly aSMPClient = new SMPClientReadOnly (m_aSMPURI);
           _configureSMPClient (aSMPClient);
-          aBC = getBusinessCardPeppolSMP (aParticipantID, aSMPClient, aHCS);
+          aBC = getBusinessCardPeppolSMP (aParticipantID, aSMPClient, aHCS, aFailureTypeHandler);
           break;
         }
         case OASIS_BDXR_V1:
         {
           final BDXRClientReadOnly aSMPClient = new BDXRClientReadOnly (m_aSMPURI);
           _configureSMPClient (aSMPClient);
-          aBC = getBusinessCardBDXR1 (aParticipantID, aSMPClient, aHCS);
+          aBC = getBusinessCardBDXR1 (aParticipantID, aSMPClient, aHCS, aFailureTypeHandler);
           break;
         }
         case OASIS_BDXR_V2:
         {
           final BDXR2ClientReadOnly aSMPClient = new BDXR2ClientReadOnly (m_aSMPURI);
           _configureSMPClient (aSMPClient);
-          aBC = getBusinessCardBDXR2 (aParticipantID, aSMPClient, aHCS);
+          aBC = getBusinessCardBDXR2 (aParticipantID, aSMPClient, aHCS, aFailureTypeHandler);
           break;
         }
         default:
@@ -406,11 +453,12 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
             {
               final SMPClientReadOnly aSMPClient = new SMPClientReadOnly (m_aURLProvider, aParticipantID, aSML);
               _configureSMPClient (aSMPClient);
-              aBC = getBusinessCardPeppolSMP (aParticipantID, aSMPClient, aHCS);
+              aBC = getBusinessCardPeppolSMP (aParticipantID, aSMPClient, aHCS, aFailureTypeHandler);
             }
             catch (final SMPDNSResolutionException ex)
             {
               // Happens if a non-existing URL is queried
+              aFailureTypeHandler.accept (EIndexerFailureType.DNS);
             }
             break;
           }
@@ -420,11 +468,12 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
             {
               final BDXRClientReadOnly aSMPClient = new BDXRClientReadOnly (m_aURLProvider, aParticipantID, aSML);
               _configureSMPClient (aSMPClient);
-              aBC = getBusinessCardBDXR1 (aParticipantID, aSMPClient, aHCS);
+              aBC = getBusinessCardBDXR1 (aParticipantID, aSMPClient, aHCS, aFailureTypeHandler);
             }
             catch (final SMPDNSResolutionException ex)
             {
               // Happens if a non-existing URL is queried
+              aFailureTypeHandler.accept (EIndexerFailureType.DNS);
             }
             break;
           }
@@ -434,11 +483,12 @@ public class SMPBusinessCardProvider implements IPDBusinessCardProvider
             {
               final BDXR2ClientReadOnly aSMPClient = new BDXR2ClientReadOnly (m_aURLProvider, aParticipantID, aSML);
               _configureSMPClient (aSMPClient);
-              aBC = getBusinessCardBDXR2 (aParticipantID, aSMPClient, aHCS);
+              aBC = getBusinessCardBDXR2 (aParticipantID, aSMPClient, aHCS, aFailureTypeHandler);
             }
             catch (final SMPDNSResolutionException ex)
             {
               // Happens if a non-existing URL is queried
+              aFailureTypeHandler.accept (EIndexerFailureType.DNS);
             }
             break;
           }
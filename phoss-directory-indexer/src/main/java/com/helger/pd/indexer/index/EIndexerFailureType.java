@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.index;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.id.IHasID;
+import com.helger.commons.lang.EnumHelper;
+import com.helger.commons.name.IHasDisplayName;
+
+/**
+ * The classes of errors that may occur when executing a work item. They are
+ * used to determine the retry policy of a failed work item.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public enum EIndexerFailureType implements IHasID <String>, IHasDisplayName
+{
+  /** The SMP does not know the participant or has no business card */
+  NOT_FOUND ("notfound", "Not found", true),
+  /** The SMP returned a business card that cannot be read */
+  INVALID ("invalid", "Invalid business card", true),
+  /** The SMP host name could not be resolved */
+  DNS ("dns", "DNS resolution", false),
+  /** Connecting to or reading from the SMP timed out */
+  TIMEOUT ("timeout", "Timeout", false),
+  /** Any other error communicating with the SMP */
+  NETWORK ("network", "Network", false),
+  /** The local index could not be updated */
+  STORAGE ("storage", "Storage", false),
+  /** An error without further information */
+  UNKNOWN ("unknown", "Unknown", false);
+
+  private final String m_sID;
+  private final String m_sDisplayName;
+  private final boolean m_bPermanent;
+
+  private EIndexerFailureType (@Nonnull @Nonempty final String sID,
+                               @Nonnull @Nonempty final String sDisplayName,
+                               final boolean bPermanent)
+  {
+    m_sID = sID;
+    m_sDisplayName = sDisplayName;
+    m_bPermanent = bPermanent;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getDisplayName ()
+  {
+    return m_sDisplayName;
+  }
+
+  /**
+   * @return <code>true</code> if a retry is not expected to succeed, so that
+   *         failed work items are moved to the dead list by default,
+   *         <code>false</code> if the error is expected to be transient.
+   */
+  public boolean isPermanent ()
+  {
+    return m_bPermanent;
+  }
+
+  @Nullable
+  public static EIndexerFailureType getFromIDOrNull (@Nullable final String sID)
+  {
+    return EnumHelper.getFromIDOrNull (EIndexerFailureType.class, sID);
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.index;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.id.IHasID;
+import com.helger.commons.lang.EnumHelper;
+import com.helger.commons.name.IHasDisplayName;
+
+/**
+ * The priority lanes of the indexer queue. Each lane has a weight that
+ * determines the share of items taken from it, if multiple lanes contain
+ * items.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public enum EIndexerWorkItemLane implements IHasID <String>, IHasDisplayName
+{
+  /** Interactive requests, e.g. from SMPs via REST or manually triggered */
+  REST ("rest", "REST", 16),
+  /** Bulk imports and other administrative mass actions */
+  IMPORT ("import", "Import", 4),
+  /** The regular synchronization of all business cards */
+  SYNC ("sync", "Synchronize", 1),
+  /** Retries of previously failed items */
+  REINDEX ("reindex", "Re-index", 2);
+
+  private final String m_sID;
+  private final String m_sDisplayName;
+  private final int m_nDefaultWeight;
+
+  private EIndexerWorkItemLane (@Nonnull @Nonempty final String sID,
+                                @Nonnull @Nonempty final String sDisplayName,
+                                @Nonnegative final int nDefaultWeight)
+  {
+    m_sID = sID;
+    m_sDisplayName = sDisplayName;
+    m_nDefaultWeight = nDefaultWeight;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getDisplayName ()
+  {
+    return m_sDisplayName;
+  }
+
+  /**
+   * @return The default weight of this lane. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getDefaultWeight ()
+  {
+    return m_nDefaultWeight;
+  }
+
+  @Nullable
+  public static EIndexerWorkItemLane getFromIDOrNull (@Nullable final String sID)
+  {
+    return EnumHelper.getFromIDOrNull (EIndexerWorkItemLane.class, sID);
+  }
+
+  /**
+   * Get the lane to be used for a work item, if no lane is explicitly
+   * provided.
+   *
+   * @param eType
+   *        The work item type. May not be <code>null</code>.
+   * @return {@link #SYNC} for synchronization items and {@link #REST}
+   *         otherwise.
+   */
+  @Nonnull
+  public static EIndexerWorkItemLane getDefaultLane (@Nonnull final EIndexerWorkItemType eType)
+  {
+    return eType == EIndexerWorkItemType.SYNC ? SYNC : REST;
+  }
+}
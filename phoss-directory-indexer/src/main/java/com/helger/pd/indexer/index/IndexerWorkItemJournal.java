@@ -0,0 +1,484 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.index;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.CommonsTreeMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.collection.impl.ICommonsSortedMap;
+import com.helger.commons.concurrent.BasicThreadFactory;
+import com.helger.commons.concurrent.ExecutorServiceHelper;
+import com.helger.commons.concurrent.SimpleReadWriteLock;
+import com.helger.commons.io.file.FileOperationManager;
+import com.helger.commons.io.file.FileSystemIterator;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.StringParser;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.xml.microdom.IMicroDocument;
+import com.helger.xml.microdom.convert.MicroTypeConverter;
+import com.helger.xml.microdom.serialize.MicroReader;
+import com.helger.xml.microdom.serialize.MicroWriter;
+import com.helger.xml.serialize.write.EXMLSerializeIndent;
+import com.helger.xml.serialize.write.IXMLWriterSettings;
+import com.helger.xml.serialize.write.XMLWriterSettings;
+
+/**
+ * An append-only on-disk journal for the indexer work items that are queued
+ * but not yet handled. Every work item that is queued, completed or handed
+ * over to the re-index list is recorded as a single line. The journal is split
+ * into numbered segment files. Once a segment exceeds the configured size, a
+ * new segment is started and all previous segments are compacted in the
+ * background into a single segment that only contains the still pending
+ * items.<br>
+ * Upon startup all segments are replayed, so that the pending items survive a
+ * crash of the application.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@ThreadSafe
+public final class IndexerWorkItemJournal implements Closeable
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (IndexerWorkItemJournal.class);
+
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final char SEPARATOR = '\t';
+  /** All previous records are obsolete */
+  private static final String RECORD_COMPACTED = "C";
+  /** A work item was queued */
+  private static final String RECORD_ENQUEUE = "E";
+  /** A work item was handled successfully */
+  private static final String RECORD_COMPLETE = "S";
+  /** A work item failed and was moved to the re-index list */
+  private static final String RECORD_FAIL = "F";
+  private static final String ELEMENT_ITEM = "item";
+  private static final IXMLWriterSettings XWS = new XMLWriterSettings ().setIndent (EXMLSerializeIndent.NONE);
+
+  private final SimpleReadWriteLock m_aRWLock = new SimpleReadWriteLock ();
+  private final File m_aDirectory;
+  private final long m_nMaxSegmentBytes;
+  private final ICommonsList <IIndexerWorkItem> m_aRecoveredItems;
+  private final ExecutorService m_aCompactionExecutor;
+  private final AtomicLong m_aCompactionCount = new AtomicLong (0);
+
+  @GuardedBy ("m_aRWLock")
+  private final ICommonsOrderedMap <String, IIndexerWorkItem> m_aPendingItems = new CommonsLinkedHashMap <> ();
+  @GuardedBy ("m_aRWLock")
+  private long m_nSegmentNumber;
+  @GuardedBy ("m_aRWLock")
+  private FileOutputStream m_aSegmentFOS;
+  @GuardedBy ("m_aRWLock")
+  private Writer m_aSegmentWriter;
+  @GuardedBy ("m_aRWLock")
+  private long m_nSegmentBytes;
+
+  /**
+   * Constructor. Replays all existing segments in the provided directory and
+   * starts a new compacted segment.
+   *
+   * @param aDirectory
+   *        The directory to store the segments in. Is created if not existing.
+   *        May not be <code>null</code>.
+   * @param nMaxSegmentBytes
+   *        The size in bytes after which a new segment is started. Must be
+   *        &gt; 0.
+   * @throws IOException
+   *         If the new segment cannot be written
+   */
+  public IndexerWorkItemJournal (@Nonnull final File aDirectory, @Nonnegative final long nMaxSegmentBytes) throws IOException
+  {
+    ValueEnforcer.notNull (aDirectory, "Directory");
+    ValueEnforcer.isGT0 (nMaxSegmentBytes, "MaxSegmentBytes");
+    m_aDirectory = aDirectory;
+    m_nMaxSegmentBytes = nMaxSegmentBytes;
+    FileOperationManager.INSTANCE.createDirRecursiveIfNotExisting (aDirectory);
+
+    // Replay all existing segments in order
+    final ICommonsSortedMap <Long, File> aSegments = _getAllSegments ();
+    for (final File aSegment : aSegments.values ())
+      _replay (aSegment, m_aPendingItems);
+    m_aRecoveredItems = new CommonsArrayList <> (m_aPendingItems.values ());
+    if (m_aRecoveredItems.isNotEmpty ())
+      LOGGER.info ("Recovered " + m_aRecoveredItems.size () + " pending indexer work items from " + aSegments.size () + " journal segment(s)");
+
+    // Start a new compacted segment and remove the old ones
+    m_nSegmentNumber = aSegments.isEmpty () ? 1 : aSegments.getLastKey ().longValue () + 1;
+    _openSegment ();
+    _append (RECORD_COMPACTED, null);
+    for (final IIndexerWorkItem aItem : m_aRecoveredItems)
+      _append (RECORD_ENQUEUE, _getAsString (aItem));
+    m_aSegmentFOS.getChannel ().force (false);
+    for (final File aSegment : aSegments.values ())
+      FileOperationManager.INSTANCE.deleteFileIfExisting (aSegment);
+
+    m_aCompactionExecutor = Executors.newSingleThreadExecutor (new BasicThreadFactory.Builder ().setNamingPattern ("pd-indexer-journal-%d")
+                                                                                                 .setDaemon (true)
+                                                                                                 .build ());
+  }
+
+  @Nonnull
+  private File _getSegmentFile (final long nSegmentNumber)
+  {
+    return new File (m_aDirectory, SEGMENT_PREFIX + String.format (Locale.US, "%019d", Long.valueOf (nSegmentNumber)) + SEGMENT_SUFFIX);
+  }
+
+  @Nonnull
+  private ICommonsSortedMap <Long, File> _getAllSegments ()
+  {
+    final ICommonsSortedMap <Long, File> ret = new CommonsTreeMap <> ();
+    for (final File aFile : new FileSystemIterator (m_aDirectory))
+    {
+      final String sName = aFile.getName ();
+      if (aFile.isFile () && sName.startsWith (SEGMENT_PREFIX) && sName.endsWith (SEGMENT_SUFFIX))
+      {
+        final long nNumber = StringParser.parseLong (sName.substring (SEGMENT_PREFIX.length (), sName.length () - SEGMENT_SUFFIX.length ()),
+                                                     -1);
+        if (nNumber > 0)
+          ret.put (Long.valueOf (nNumber), aFile);
+      }
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static String _getAsString (@Nonnull final IIndexerWorkItem aItem)
+  {
+    return MicroWriter.getNodeAsString (MicroTypeConverter.convertToMicroElement (aItem, ELEMENT_ITEM), XWS);
+  }
+
+  @Nullable
+  private static IIndexerWorkItem _readItem (@Nonnull final String sPayload)
+  {
+    final IMicroDocument aDoc = MicroReader.readMicroXML (sPayload);
+    if (aDoc == null || aDoc.getDocumentElement () == null)
+      return null;
+    try
+    {
+      return MicroTypeConverter.convertToNative (aDoc.getDocumentElement (), IndexerWorkItem.class);
+    }
+    catch (final RuntimeException ex)
+    {
+      LOGGER.warn ("Failed to read journaled work item: " + ex.getMessage ());
+      return null;
+    }
+  }
+
+  private static void _replay (@Nonnull final File aSegment, @Nonnull final Map <String, IIndexerWorkItem> aPendingItems)
+  {
+    final ICommonsList <String> aLines = SimpleFileIO.getAllFileLines (aSegment, StandardCharsets.UTF_8);
+    if (aLines == null)
+    {
+      LOGGER.warn ("Failed to read journal segment " + aSegment.getAbsolutePath ());
+      return;
+    }
+
+    for (final String sLine : aLines)
+    {
+      final int nSep = sLine.indexOf (SEPARATOR);
+      final String sRecordType = nSep < 0 ? sLine : sLine.substring (0, nSep);
+      final String sPayload = nSep < 0 ? "" : sLine.substring (nSep + 1);
+      switch (sRecordType)
+      {
+        case RECORD_COMPACTED:
+          aPendingItems.clear ();
+          break;
+        case RECORD_ENQUEUE:
+        {
+          final IIndexerWorkItem aItem = _readItem (sPayload);
+          if (aItem != null)
+            aPendingItems.put (aItem.getID (), aItem);
+          else
+            LOGGER.warn ("Ignoring unreadable work item in journal segment " + aSegment.getName () + ": " + sPayload);
+          break;
+        }
+        case RECORD_COMPLETE:
+        case RECORD_FAIL:
+          aPendingItems.remove (sPayload);
+          break;
+        default:
+          // E.g. a partially written last line
+          if (StringHelper.hasText (sLine))
+            LOGGER.warn ("Ignoring unknown line in journal segment " + aSegment.getName () + ": " + sLine);
+          break;
+      }
+    }
+  }
+
+  private void _openSegment () throws IOException
+  {
+    m_aSegmentFOS = new FileOutputStream (_getSegmentFile (m_nSegmentNumber), true);
+    m_aSegmentWriter = new BufferedWriter (new OutputStreamWriter (m_aSegmentFOS, StandardCharsets.UTF_8));
+    m_nSegmentBytes = 0;
+  }
+
+  private void _closeSegment () throws IOException
+  {
+    if (m_aSegmentWriter != null)
+    {
+      try
+      {
+        m_aSegmentWriter.flush ();
+        m_aSegmentFOS.getChannel ().force (false);
+      }
+      finally
+      {
+        StreamHelper.close (m_aSegmentWriter);
+        m_aSegmentWriter = null;
+        m_aSegmentFOS = null;
+      }
+    }
+  }
+
+  private void _append (@Nonnull final String sRecordType, @Nullable final String sPayload) throws IOException
+  {
+    final String sLine = sPayload == null ? sRecordType : sRecordType + SEPARATOR + sPayload;
+    m_aSegmentWriter.write (sLine);
+    m_aSegmentWriter.write ('\n');
+    // Hand over to the OS, so that it survives a crash of the JVM
+    m_aSegmentWriter.flush ();
+    m_nSegmentBytes += sLine.getBytes (StandardCharsets.UTF_8).length + 1;
+  }
+
+  private void _record (@Nonnull final String sRecordType, @Nonnull final String sPayload)
+  {
+    if (m_aSegmentWriter == null)
+    {
+      LOGGER.warn ("Journal is already closed - ignoring record " + sRecordType);
+      return;
+    }
+
+    try
+    {
+      _append (sRecordType, sPayload);
+      if (m_nSegmentBytes >= m_nMaxSegmentBytes)
+      {
+        // Start a new segment and compact everything before in the background
+        _closeSegment ();
+        final long nCompactSegmentNumber = m_nSegmentNumber;
+        final ICommonsList <IIndexerWorkItem> aSnapshot = new CommonsArrayList <> (m_aPendingItems.values ());
+        m_nSegmentNumber++;
+        _openSegment ();
+        try
+        {
+          m_aCompactionExecutor.submit ( () -> _compact (nCompactSegmentNumber, aSnapshot));
+        }
+        catch (final RejectedExecutionException ex)
+        {
+          // Shutting down - compaction happens upon next startup
+          if (LOGGER.isDebugEnabled ())
+            LOGGER.debug ("Failed to schedule journal compaction, because the executor is stopped");
+        }
+      }
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("Failed to write record " + sRecordType + " to the indexer work item journal", ex);
+    }
+  }
+
+  /**
+   * Replace the provided segment with a compacted one, that contains the
+   * provided pending items only, and delete all previous segments.
+   *
+   * @param nSegmentNumber
+   *        The last segment number covered by the snapshot.
+   * @param aSnapshot
+   *        The pending items at the end of the provided segment.
+   */
+  private void _compact (final long nSegmentNumber, @Nonnull final ICommonsList <IIndexerWorkItem> aSnapshot)
+  {
+    final File aSegment = _getSegmentFile (nSegmentNumber);
+    final File aTempFile = new File (m_aDirectory, aSegment.getName () + TEMP_SUFFIX);
+    try
+    {
+      try (final FileOutputStream aFOS = new FileOutputStream (aTempFile, false);
+           final Writer aWriter = new BufferedWriter (new OutputStreamWriter (aFOS, StandardCharsets.UTF_8)))
+      {
+        aWriter.write (RECORD_COMPACTED);
+        aWriter.write ('\n');
+        for (final IIndexerWorkItem aItem : aSnapshot)
+        {
+          aWriter.write (RECORD_ENQUEUE + SEPARATOR + _getAsString (aItem));
+          aWriter.write ('\n');
+        }
+        aWriter.flush ();
+        aFOS.getChannel ().force (false);
+      }
+      Files.move (aTempFile.toPath (), aSegment.toPath (), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+      // Previous segments are obsolete now
+      for (final Map.Entry <Long, File> aEntry : _getAllSegments ().entrySet ())
+        if (aEntry.getKey ().longValue () < nSegmentNumber)
+          FileOperationManager.INSTANCE.deleteFileIfExisting (aEntry.getValue ());
+
+      m_aCompactionCount.incrementAndGet ();
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Compacted indexer work item journal up to segment " + nSegmentNumber + " with " + aSnapshot.size () + " pending items");
+    }
+    catch (final IOException | RuntimeException ex)
+    {
+      // The uncompacted segments are still valid
+      FileOperationManager.INSTANCE.deleteFileIfExisting (aTempFile);
+      LOGGER.error ("Failed to compact the indexer work item journal up to segment " + nSegmentNumber, ex);
+    }
+  }
+
+  /**
+   * @return A copy of all pending work items that were recovered from disk in
+   *         the order they were originally queued. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IIndexerWorkItem> getAllRecoveredItems ()
+  {
+    return m_aRecoveredItems.getClone ();
+  }
+
+  /**
+   * Record that a work item was queued.
+   *
+   * @param aItem
+   *        The queued item. May not be <code>null</code>.
+   */
+  public void onEnqueue (@Nonnull final IIndexerWorkItem aItem)
+  {
+    ValueEnforcer.notNull (aItem, "Item");
+    m_aRWLock.writeLocked ( () -> {
+      if (m_aPendingItems.put (aItem.getID (), aItem) == null)
+        _record (RECORD_ENQUEUE, _getAsString (aItem));
+    });
+  }
+
+  /**
+   * Record that a work item was handled successfully. Items not contained in
+   * the journal are ignored.
+   *
+   * @param aItem
+   *        The handled item. May not be <code>null</code>.
+   */
+  public void onComplete (@Nonnull final IIndexerWorkItem aItem)
+  {
+    ValueEnforcer.notNull (aItem, "Item");
+    m_aRWLock.writeLocked ( () -> {
+      if (m_aPendingItems.remove (aItem.getID ()) != null)
+        _record (RECORD_COMPLETE, aItem.getID ());
+    });
+  }
+
+  /**
+   * Record that a work item failed and was handed over to the persistent
+   * re-index list. Items not contained in the journal are ignored.
+   *
+   * @param aItem
+   *        The failed item. May not be <code>null</code>.
+   */
+  public void onFail (@Nonnull final IIndexerWorkItem aItem)
+  {
+    ValueEnforcer.notNull (aItem, "Item");
+    m_aRWLock.writeLocked ( () -> {
+      if (m_aPendingItems.remove (aItem.getID ()) != null)
+        _record (RECORD_FAIL, aItem.getID ());
+    });
+  }
+
+  /**
+   * @return The number of pending work items in the journal. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getPendingItemCount ()
+  {
+    return m_aRWLock.readLockedInt (m_aPendingItems::size);
+  }
+
+  /**
+   * @return The number of the segment currently written. Always &gt; 0.
+   */
+  @Nonnegative
+  public long getSegmentNumber ()
+  {
+    return m_aRWLock.readLockedLong ( () -> m_nSegmentNumber);
+  }
+
+  /**
+   * @return The number of background compactions performed since startup.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public long getCompactionCount ()
+  {
+    return m_aCompactionCount.get ();
+  }
+
+  public void close () throws IOException
+  {
+    // Finish running compactions first
+    ExecutorServiceHelper.shutdownAndWaitUntilAllTasksAreFinished (m_aCompactionExecutor);
+
+    m_aRWLock.writeLock ().lock ();
+    try
+    {
+      _closeSegment ();
+    }
+    finally
+    {
+      m_aRWLock.writeLock ().unlock ();
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Directory", m_aDirectory)
+                                       .append ("MaxSegmentBytes", m_nMaxSegmentBytes)
+                                       .append ("CompactionCount", m_aCompactionCount.get ())
+                                       .getToString ();
+  }
+}
@@ -17,64 +17,93 @@
 package com.helger.pd.indexer.index;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.ReturnsMutableCopy;
-import com.helger.commons.annotation.ReturnsMutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.concurrent.BasicThreadFactory;
 import com.helger.commons.concurrent.ExecutorServiceHelper;
-import com.helger.commons.concurrent.collector.ConcurrentCollectorSingle;
 import com.helger.commons.concurrent.collector.IConcurrentPerformer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppolid.IParticipantIdentifier;
 
 /**
  * The indexer queue that holds all items to be indexed initially. If indexing
  * fails, items are shifted to the re-index list (see
  * {@link com.helger.pd.indexer.reindex.ReIndexWorkItemList}) where graceful
- * retries will happen.
+ * retries will happen.<br>
+ * The items are distributed onto a fixed number of {@link IndexerWorker}s by
+ * the hash of the participant ID. That way all items of the same participant
+ * are handled in the order they were queued, while items of different
+ * participants are handled in parallel.<br>
+ * Within each worker the items are separated into priority lanes (see
+ * {@link EIndexerWorkItemLane}) that are served by weighted fair scheduling.
  *
  * @author Philip Helger
  */
 public final class IndexerWorkItemQueue
 {
-  private final LinkedBlockingQueue <Object> m_aQueue;
-  private final ConcurrentCollectorSingle <IIndexerWorkItem> m_aImmediateCollector;
+  private final ICommonsList <IndexerWorker> m_aWorkers;
   private final ThreadFactory m_aThreadFactory = new BasicThreadFactory.Builder ().setNamingPattern ("pd-indexer-%d")
                                                                                   .setDaemon (false)
                                                                                   .setPriority (Thread.NORM_PRIORITY)
                                                                                   .build ();
+  private final ExecutorService m_aSenderThreadPool;
 
-  private final ExecutorService m_aSenderThreadPool = new ThreadPoolExecutor (1,
-                                                                              2,
-                                                                              60L,
-                                                                              TimeUnit.SECONDS,
-                                                                              new SynchronousQueue <Runnable> (),
-                                                                              m_aThreadFactory);
+  /**
+   * Constructor.
+   *
+   * @param nWorkerCount
+   *        The number of parallel workers. Must be &gt; 0.
+   * @param aPerformer
+   *        The executor that will effective handle work items (e.g. retrieve
+   *        from SMP).
+   * @since 0.9.5
+   */
+  public IndexerWorkItemQueue (@Nonnegative final int nWorkerCount,
+                               @Nonnull final IConcurrentPerformer <IIndexerWorkItem> aPerformer)
+  {
+    this (nWorkerCount, EIndexerWorkItemLane::getDefaultWeight, aPerformer);
+  }
 
   /**
    * Constructor.
    *
+   * @param nWorkerCount
+   *        The number of parallel workers. Must be &gt; 0.
+   * @param aLaneWeights
+   *        The function to determine the weight of each lane. Each weight must
+   *        be &gt; 0. May not be <code>null</code>.
    * @param aPerformer
    *        The executor that will effective handle work items (e.g. retrieve
    *        from SMP).
+   * @since 0.9.5
    */
-  public IndexerWorkItemQueue (@Nonnull final IConcurrentPerformer <IIndexerWorkItem> aPerformer)
+  public IndexerWorkItemQueue (@Nonnegative final int nWorkerCount,
+                               @Nonnull final ToIntFunction <EIndexerWorkItemLane> aLaneWeights,
+                               @Nonnull final IConcurrentPerformer <IIndexerWorkItem> aPerformer)
   {
+    ValueEnforcer.isGT0 (nWorkerCount, "WorkerCount");
+    ValueEnforcer.notNull (aLaneWeights, "LaneWeights");
     ValueEnforcer.notNull (aPerformer, "Performer");
-    // Use an indefinite queue for holding tasks
-    m_aQueue = new LinkedBlockingQueue <> ();
-    m_aImmediateCollector = new ConcurrentCollectorSingle <> (m_aQueue);
-    m_aImmediateCollector.setPerformer (aPerformer);
 
-    // Start the collector
-    m_aSenderThreadPool.submit (m_aImmediateCollector::collect);
+    m_aWorkers = new CommonsArrayList <> (nWorkerCount);
+    m_aSenderThreadPool = Executors.newFixedThreadPool (nWorkerCount, m_aThreadFactory);
+    for (int i = 0; i < nWorkerCount; ++i)
+    {
+      final IndexerWorker aWorker = new IndexerWorker (i, aLaneWeights, aPerformer);
+      m_aWorkers.add (aWorker);
+
+      // Start the collector
+      m_aSenderThreadPool.submit (aWorker::collect);
+    }
   }
 
   /**
@@ -87,11 +116,11 @@ public final class IndexerWorkItemQueue
   @ReturnsMutableCopy
   public ICommonsList <IIndexerWorkItem> stop ()
   {
-    // don't take any more actions
-    m_aImmediateCollector.stopQueuingNewObjects ();
-
-    // Get all remaining objects and save them for late reuse
-    final ICommonsList <IIndexerWorkItem> aRemainingItems = m_aImmediateCollector.drainQueue ();
+    // don't take any more actions and get all remaining objects and save them
+    // for late reuse
+    final ICommonsList <IIndexerWorkItem> aRemainingItems = new CommonsArrayList <> ();
+    for (final IndexerWorker aWorker : m_aWorkers)
+      aRemainingItems.addAll (aWorker.stop ());
 
     // Shutdown the thread pool afterwards
     ExecutorServiceHelper.shutdownAndWaitUntilAllTasksAreFinished (m_aSenderThreadPool);
@@ -100,25 +129,211 @@ public final class IndexerWorkItemQueue
   }
 
   /**
-   * @return The internal queue. Handle with care - usually you don't need that
-   *         one. Never <code>null</code>,
+   * @return A copy of all workers. Never <code>null</code> nor empty.
+   * @since 0.9.5
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IndexerWorker> getAllWorkers ()
+  {
+    return m_aWorkers.getClone ();
+  }
+
+  /**
+   * @return A copy of all items currently waiting in any worker queue. Never
+   *         <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IIndexerWorkItem> getAllQueuedItems ()
+  {
+    final ICommonsList <IIndexerWorkItem> ret = new CommonsArrayList <> ();
+    for (final IndexerWorker aWorker : m_aWorkers)
+      ret.addAll (aWorker.getAllQueuedItems ());
+    return ret;
+  }
+
+  /**
+   * @return The total number of items waiting in all worker queues. Always
+   *         &ge; 0.
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public int getQueueSize ()
+  {
+    int ret = 0;
+    for (final IndexerWorker aWorker : m_aWorkers)
+      ret += aWorker.getQueueSize ();
+    return ret;
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The number of items waiting in the provided lane of all workers.
+   *         Always &ge; 0.
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public int getQueueSize (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    int ret = 0;
+    for (final IndexerWorker aWorker : m_aWorkers)
+      ret += aWorker.getQueueSize (eLane);
+    return ret;
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The weight of the provided lane. Always &gt; 0.
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public int getLaneWeight (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    // All workers use the same weights
+    return m_aWorkers.getFirst ().getLaneWeight (eLane);
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The average milliseconds an item of the provided lane waited
+   *         before it was handled or -1 if no item was taken from this lane so
+   *         far.
+   * @since 0.9.5
+   */
+  public long getAverageWaitMillis (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    long nCount = 0;
+    long nMillis = 0;
+    for (final IndexerWorker aWorker : m_aWorkers)
+    {
+      nCount += aWorker.getTakenCount (eLane);
+      nMillis += aWorker.getTotalWaitMillis (eLane);
+    }
+    return nCount == 0 ? -1 : nMillis / nCount;
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The milliseconds the oldest item of the provided lane is already
+   *         waiting or -1 if the lane is empty in all workers.
+   * @since 0.9.5
+   */
+  public long getOldestWaitMillis (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    long ret = -1;
+    for (final IndexerWorker aWorker : m_aWorkers)
+      ret = Math.max (ret, aWorker.getOldestWaitMillis (eLane));
+    return ret;
+  }
+
+  /**
+   * Get the worker responsible for the provided participant ID.
+   *
+   * @param aParticipantID
+   *        The participant ID to check. May not be <code>null</code>.
+   * @return The worker to use. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public IndexerWorker getWorkerOfParticipant (@Nonnull final IParticipantIdentifier aParticipantID)
+  {
+    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+    // Always the same worker for the same participant to keep the order
+    return m_aWorkers.get (Math.floorMod (aParticipantID.getURIEncoded ().hashCode (), m_aWorkers.size ()));
+  }
+
+  /**
+   * Queue a work item in the default lane of its type and handle it
+   * asynchronously.
+   *
+   * @param aItem
+   *        The item to be added. May not be <code>null</code>.
+   * @return All items that are dropped because of coalescing. Never
+   *         <code>null</code> but maybe empty.
+   * @see EIndexerWorkItemLane#getDefaultLane(EIndexerWorkItemType)
+   * @see #queueObject(IIndexerWorkItem, EIndexerWorkItemLane)
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IIndexerWorkItem> queueObject (@Nonnull final IIndexerWorkItem aItem)
+  {
+    ValueEnforcer.notNull (aItem, "Item");
+    return queueObject (aItem, EIndexerWorkItemLane.getDefaultLane (aItem.getType ()));
+  }
+
+  /**
+   * Queue a work item and handle it asynchronously. The item is coalesced with
+   * the pending items of the same participant: a create/update or delete item
+   * supersedes all pending items of the participant, whereas a synchronization
+   * item is dropped if another item of the participant is pending.
+   *
+   * @param aItem
+   *        The item to be added. May not be <code>null</code>.
+   * @param eLane
+   *        The lane to add the item to. May not be <code>null</code>.
+   * @return All items that are dropped because of coalescing. This contains
+   *         the superseded pending items or the new item itself, if it was
+   *         merged into a pending item. Never <code>null</code> but maybe
+   *         empty.
+   * @since 0.9.5
    */
   @Nonnull
-  @ReturnsMutableObject
-  public LinkedBlockingQueue <Object> getQueue ()
+  @ReturnsMutableCopy
+  public ICommonsList <IIndexerWorkItem> queueObject (@Nonnull final IIndexerWorkItem aItem,
+                                                      @Nonnull final EIndexerWorkItemLane eLane)
   {
-    return m_aQueue;
+    ValueEnforcer.notNull (aItem, "Item");
+    ValueEnforcer.notNull (eLane, "Lane");
+    return getWorkerOfParticipant (aItem.getParticipantID ()).queueObject (aItem, eLane);
   }
 
   /**
-   * Queue a work item and handle it asynchronously.
+   * Queue a work item and handle it asynchronously. The item is dropped if
+   * another item of the participant is pending, independent of its type. This
+   * is used for retries, which must never supersede a newer pending item.
    *
    * @param aItem
    *        The item to be added. May not be <code>null</code>.
+   * @param eLane
+   *        The lane to add the item to. May not be <code>null</code>.
+   * @return All items that are dropped because of coalescing. This is either
+   *         empty or contains only the new item itself, if it was merged into
+   *         a pending item. Never <code>null</code>.
+   * @since 0.9.5
    */
-  public void queueObject (@Nonnull final IIndexerWorkItem aItem)
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IIndexerWorkItem> queueObjectIfNonePending (@Nonnull final IIndexerWorkItem aItem,
+                                                                   @Nonnull final EIndexerWorkItemLane eLane)
   {
     ValueEnforcer.notNull (aItem, "Item");
-    m_aImmediateCollector.queueObject (aItem);
+    ValueEnforcer.notNull (eLane, "Lane");
+    return getWorkerOfParticipant (aItem.getParticipantID ()).queueObject (aItem, eLane, true);
+  }
+
+  /**
+   * @return The total number of items dropped by all workers because of
+   *         coalescing. Always &ge; 0.
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public long getCoalescedCount ()
+  {
+    long ret = 0;
+    for (final IndexerWorker aWorker : m_aWorkers)
+      ret += aWorker.getCoalescedCount ();
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Workers", m_aWorkers).getToString ();
   }
 }
@@ -0,0 +1,606 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.index;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.function.ToIntFunction;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.CGlobal;
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.concurrent.SimpleLock;
+import com.helger.commons.concurrent.collector.IConcurrentPerformer;
+import com.helger.commons.statistics.IMutableStatisticsHandlerKeyedTimer;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.commons.timing.StopWatch;
+
+/**
+ * A single worker of the {@link IndexerWorkItemQueue}. Each worker has its own
+ * queue and handles the items sequentially in a single thread.<br>
+ * The queue is split into one lane per {@link EIndexerWorkItemLane}. If
+ * multiple lanes contain items, they are served by smooth weighted round robin
+ * so that a lane with weight 4 gets 4 times as many turns as a lane with weight
+ * 1, without ever starving a lane completely.<br>
+ * Pending items of the same participant are coalesced: a new create/update or
+ * delete item supersedes all pending items of the participant, whereas a new
+ * synchronization item is merged into a pending item of the participant.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@ThreadSafe
+public final class IndexerWorker
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (IndexerWorker.class);
+  private static final IMutableStatisticsHandlerKeyedTimer s_aStatsTimer = StatisticsManager.getKeyedTimerHandler (IndexerWorker.class.getName () +
+                                                                                                                   "$handle");
+  private static final IMutableStatisticsHandlerKeyedTimer s_aStatsWaitTimer = StatisticsManager.getKeyedTimerHandler (IndexerWorker.class.getName () +
+                                                                                                                       "$wait");
+
+  /**
+   * A single queued item with the time it was queued. Superseded items are
+   * only marked as cancelled and skipped when polled.
+   */
+  private static final class QueuedItem
+  {
+    private final IIndexerWorkItem m_aItem;
+    private final int m_nLaneIndex;
+    private final long m_nQueuedMillis;
+    private boolean m_bCancelled = false;
+
+    QueuedItem (@Nonnull final IIndexerWorkItem aItem, final int nLaneIndex, final long nQueuedMillis)
+    {
+      m_aItem = aItem;
+      m_nLaneIndex = nLaneIndex;
+      m_nQueuedMillis = nQueuedMillis;
+    }
+  }
+
+  private static final EIndexerWorkItemLane [] LANES = EIndexerWorkItemLane.values ();
+
+  private final int m_nIndex;
+  private final IConcurrentPerformer <IIndexerWorkItem> m_aPerformer;
+  private final int [] m_aLaneWeights = new int [LANES.length];
+  private final SimpleLock m_aLock = new SimpleLock ();
+  private final Condition m_aNotEmpty = m_aLock.newCondition ();
+  @GuardedBy ("m_aLock")
+  private final ArrayDeque <QueuedItem> [] m_aLanes;
+  @GuardedBy ("m_aLock")
+  private final int [] m_aLaneSizes = new int [LANES.length];
+  @GuardedBy ("m_aLock")
+  private final ICommonsMap <String, ICommonsList <QueuedItem>> m_aPendingPerParticipant = new CommonsHashMap <> ();
+  @GuardedBy ("m_aLock")
+  private final int [] m_aLaneCurrentWeights = new int [LANES.length];
+  @GuardedBy ("m_aLock")
+  private final long [] m_aLaneTakenCount = new long [LANES.length];
+  @GuardedBy ("m_aLock")
+  private final long [] m_aLaneWaitMillis = new long [LANES.length];
+  @GuardedBy ("m_aLock")
+  private int m_nQueueSize = 0;
+  @GuardedBy ("m_aLock")
+  private boolean m_bStopped = false;
+  private final long m_nStartMillis = System.currentTimeMillis ();
+  private final AtomicLong m_aHandledCount = new AtomicLong (0);
+  private final AtomicLong m_aHandledMillis = new AtomicLong (0);
+  private final AtomicLong m_aCoalescedCount = new AtomicLong (0);
+
+  /**
+   * Constructor
+   *
+   * @param nIndex
+   *        The 0-based index of this worker. Must be &ge; 0.
+   * @param aLaneWeights
+   *        The function to determine the weight of each lane. Each weight must
+   *        be &gt; 0. May not be <code>null</code>.
+   * @param aPerformer
+   *        The executor that will effective handle work items (e.g. retrieve
+   *        from SMP). May not be <code>null</code>.
+   */
+  @SuppressWarnings ("unchecked")
+  public IndexerWorker (@Nonnegative final int nIndex,
+                        @Nonnull final ToIntFunction <EIndexerWorkItemLane> aLaneWeights,
+                        @Nonnull final IConcurrentPerformer <IIndexerWorkItem> aPerformer)
+  {
+    ValueEnforcer.isGE0 (nIndex, "Index");
+    ValueEnforcer.notNull (aLaneWeights, "LaneWeights");
+    ValueEnforcer.notNull (aPerformer, "Performer");
+    m_nIndex = nIndex;
+    m_aPerformer = aPerformer;
+    m_aLanes = new ArrayDeque [LANES.length];
+    for (final EIndexerWorkItemLane eLane : LANES)
+    {
+      m_aLaneWeights[eLane.ordinal ()] = ValueEnforcer.isGT0 (aLaneWeights.applyAsInt (eLane), "Weight of lane " + eLane);
+      m_aLanes[eLane.ordinal ()] = new ArrayDeque <> ();
+    }
+  }
+
+  /**
+   * @return The 0-based index of this worker. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getIndex ()
+  {
+    return m_nIndex;
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The weight of the provided lane. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getLaneWeight (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    ValueEnforcer.notNull (eLane, "Lane");
+    return m_aLaneWeights[eLane.ordinal ()];
+  }
+
+  @Nonnull
+  private static String _getKey (@Nonnull final IIndexerWorkItem aItem)
+  {
+    return aItem.getParticipantID ().getURIEncoded ();
+  }
+
+  /**
+   * Remove all cancelled items from the head of the provided lane.
+   *
+   * @return The first non-cancelled item of the lane or <code>null</code> if
+   *         the lane is empty.
+   */
+  @GuardedBy ("m_aLock")
+  private QueuedItem _peekFirst (final int nLaneIndex)
+  {
+    final ArrayDeque <QueuedItem> aLane = m_aLanes[nLaneIndex];
+    QueuedItem ret;
+    while ((ret = aLane.peekFirst ()) != null && ret.m_bCancelled)
+      aLane.pollFirst ();
+    return ret;
+  }
+
+  @GuardedBy ("m_aLock")
+  private void _removePending (@Nonnull final QueuedItem aQueuedItem)
+  {
+    final String sKey = _getKey (aQueuedItem.m_aItem);
+    final ICommonsList <QueuedItem> aPending = m_aPendingPerParticipant.get (sKey);
+    if (aPending != null)
+    {
+      aPending.remove (aQueuedItem);
+      if (aPending.isEmpty ())
+        m_aPendingPerParticipant.remove (sKey);
+    }
+    m_aLaneSizes[aQueuedItem.m_nLaneIndex]--;
+    m_nQueueSize--;
+  }
+
+  /**
+   * Pick the next item by smooth weighted round robin over all non-empty
+   * lanes.
+   *
+   * @return <code>null</code> if all lanes are empty.
+   */
+  @GuardedBy ("m_aLock")
+  private QueuedItem _pollNext ()
+  {
+    int nTotalWeight = 0;
+    int nBestIndex = -1;
+    for (int i = 0; i < LANES.length; ++i)
+      if (m_aLaneSizes[i] > 0)
+      {
+        m_aLaneCurrentWeights[i] += m_aLaneWeights[i];
+        nTotalWeight += m_aLaneWeights[i];
+        if (nBestIndex < 0 || m_aLaneCurrentWeights[i] > m_aLaneCurrentWeights[nBestIndex])
+          nBestIndex = i;
+      }
+    if (nBestIndex < 0)
+      return null;
+
+    m_aLaneCurrentWeights[nBestIndex] -= nTotalWeight;
+    final QueuedItem ret = _peekFirst (nBestIndex);
+    m_aLanes[nBestIndex].pollFirst ();
+    _removePending (ret);
+
+    final long nWaitMillis = System.currentTimeMillis () - ret.m_nQueuedMillis;
+    m_aLaneTakenCount[nBestIndex]++;
+    m_aLaneWaitMillis[nBestIndex] += nWaitMillis;
+    s_aStatsWaitTimer.addTime (LANES[nBestIndex].getID (), nWaitMillis);
+    return ret;
+  }
+
+  private void _handle (@Nonnull final IIndexerWorkItem aItem)
+  {
+    final StopWatch aSW = StopWatch.createdStarted ();
+    try
+    {
+      m_aPerformer.runAsync (aItem);
+    }
+    catch (final Exception ex)
+    {
+      LOGGER.error ("Error handling indexer work item " + aItem.getLogText (), ex);
+    }
+    finally
+    {
+      final long nMillis = aSW.stopAndGetMillis ();
+      m_aHandledCount.incrementAndGet ();
+      m_aHandledMillis.addAndGet (nMillis);
+      s_aStatsTimer.addTime (Integer.toString (m_nIndex), nMillis);
+    }
+  }
+
+  /**
+   * Run the collector loop. This method blocks until {@link #stop()} is
+   * called.
+   */
+  void collect ()
+  {
+    while (true)
+    {
+      QueuedItem aNext;
+      m_aLock.lock ();
+      try
+      {
+        while ((aNext = _pollNext ()) == null)
+        {
+          if (m_bStopped)
+            return;
+          m_aNotEmpty.await ();
+        }
+      }
+      catch (final InterruptedException ex)
+      {
+        LOGGER.error ("Indexer worker " + m_nIndex + " was interrupted", ex);
+        Thread.currentThread ().interrupt ();
+        return;
+      }
+      finally
+      {
+        m_aLock.unlock ();
+      }
+
+      _handle (aNext.m_aItem);
+    }
+  }
+
+  /**
+   * Queue a work item for this worker and coalesce it with the pending items of
+   * the same participant. Items that are currently handled are not considered
+   * pending. A synchronization item is merged into a pending item, all other
+   * items supersede the pending items.
+   *
+   * @param aItem
+   *        The item to be added. May not be <code>null</code>.
+   * @param eLane
+   *        The lane to add the item to. May not be <code>null</code>.
+   * @return All items that are dropped because of coalescing. This contains
+   *         the superseded pending items or the new item itself, if it was
+   *         merged into a pending item. Never <code>null</code> but maybe
+   *         empty.
+   * @throws IllegalStateException
+   *         If this worker was already stopped
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <IIndexerWorkItem> queueObject (@Nonnull final IIndexerWorkItem aItem, @Nonnull final EIndexerWorkItemLane eLane)
+  {
+    ValueEnforcer.notNull (aItem, "Item");
+    return queueObject (aItem, eLane, aItem.getType () == EIndexerWorkItemType.SYNC);
+  }
+
+  /**
+   * Queue a work item for this worker and coalesce it with the pending items of
+   * the same participant. Items that are currently handled are not considered
+   * pending.
+   *
+   * @param aItem
+   *        The item to be added. May not be <code>null</code>.
+   * @param eLane
+   *        The lane to add the item to. May not be <code>null</code>.
+   * @param bMergeIntoPending
+   *        <code>true</code> if the new item should be dropped if another item
+   *        of the participant is pending, <code>false</code> if the new item
+   *        should supersede all pending items of the participant (last writer
+   *        wins).
+   * @return All items that are dropped because of coalescing. This contains
+   *         the superseded pending items or the new item itself, if it was
+   *         merged into a pending item. Never <code>null</code> but maybe
+   *         empty.
+   * @throws IllegalStateException
+   *         If this worker was already stopped
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <IIndexerWorkItem> queueObject (@Nonnull final IIndexerWorkItem aItem,
+                                               @Nonnull final EIndexerWorkItemLane eLane,
+                                               final boolean bMergeIntoPending)
+  {
+    ValueEnforcer.notNull (aItem, "Item");
+    ValueEnforcer.notNull (eLane, "Lane");
+
+    final ICommonsList <IIndexerWorkItem> ret = new CommonsArrayList <> ();
+    m_aLock.lock ();
+    try
+    {
+      if (m_bStopped)
+        throw new IllegalStateException ("Indexer worker " + m_nIndex + " is already stopped");
+
+      final String sKey = _getKey (aItem);
+      final ICommonsList <QueuedItem> aPending = m_aPendingPerParticipant.computeIfAbsent (sKey, k -> new CommonsArrayList <> ());
+      if (aPending.isNotEmpty ())
+      {
+        if (bMergeIntoPending)
+        {
+          // A pending item updates or deletes anyway
+          ret.add (aItem);
+          m_aCoalescedCount.incrementAndGet ();
+          return ret;
+        }
+
+        // Last writer wins - this also means that a delete cancels a pending
+        // create/update
+        for (final QueuedItem aQueuedItem : aPending)
+        {
+          aQueuedItem.m_bCancelled = true;
+          m_aLaneSizes[aQueuedItem.m_nLaneIndex]--;
+          m_nQueueSize--;
+          ret.add (aQueuedItem.m_aItem);
+        }
+        aPending.clear ();
+        m_aCoalescedCount.addAndGet (ret.size ());
+      }
+
+      final int nLaneIndex = eLane.ordinal ();
+      final QueuedItem aQueuedItem = new QueuedItem (aItem, nLaneIndex, System.currentTimeMillis ());
+      m_aLanes[nLaneIndex].addLast (aQueuedItem);
+      aPending.add (aQueuedItem);
+      m_aLaneSizes[nLaneIndex]++;
+      m_nQueueSize++;
+      m_aNotEmpty.signal ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+    return ret;
+  }
+
+  /**
+   * Stop taking new items.
+   *
+   * @return The list of all items that were not yet handled. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <IIndexerWorkItem> stop ()
+  {
+    final ICommonsList <IIndexerWorkItem> ret = new CommonsArrayList <> ();
+    m_aLock.lock ();
+    try
+    {
+      m_bStopped = true;
+      for (final ArrayDeque <QueuedItem> aLane : m_aLanes)
+      {
+        for (final QueuedItem aQueuedItem : aLane)
+          if (!aQueuedItem.m_bCancelled)
+            ret.add (aQueuedItem.m_aItem);
+        aLane.clear ();
+      }
+      Arrays.fill (m_aLaneSizes, 0);
+      m_aPendingPerParticipant.clear ();
+      m_nQueueSize = 0;
+      m_aNotEmpty.signalAll ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+    return ret;
+  }
+
+  /**
+   * @return A copy of all items currently waiting in the queue of this worker.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IIndexerWorkItem> getAllQueuedItems ()
+  {
+    final ICommonsList <IIndexerWorkItem> ret = new CommonsArrayList <> ();
+    m_aLock.lock ();
+    try
+    {
+      for (final ArrayDeque <QueuedItem> aLane : m_aLanes)
+        for (final QueuedItem aQueuedItem : aLane)
+          if (!aQueuedItem.m_bCancelled)
+            ret.add (aQueuedItem.m_aItem);
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+    return ret;
+  }
+
+  /**
+   * @return The number of items waiting in the queue of this worker. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public int getQueueSize ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return m_nQueueSize;
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The number of items waiting in the provided lane of this worker.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public int getQueueSize (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    ValueEnforcer.notNull (eLane, "Lane");
+    m_aLock.lock ();
+    try
+    {
+      return m_aLaneSizes[eLane.ordinal ()];
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The number of items taken from the provided lane since startup.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public long getTakenCount (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    ValueEnforcer.notNull (eLane, "Lane");
+    m_aLock.lock ();
+    try
+    {
+      return m_aLaneTakenCount[eLane.ordinal ()];
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The sum of the milliseconds all items taken from the provided lane
+   *         waited in the queue. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getTotalWaitMillis (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    ValueEnforcer.notNull (eLane, "Lane");
+    m_aLock.lock ();
+    try
+    {
+      return m_aLaneWaitMillis[eLane.ordinal ()];
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @param eLane
+   *        The lane to query. May not be <code>null</code>.
+   * @return The milliseconds the oldest item in the provided lane is already
+   *         waiting or -1 if the lane is empty.
+   */
+  public long getOldestWaitMillis (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    ValueEnforcer.notNull (eLane, "Lane");
+    m_aLock.lock ();
+    try
+    {
+      final QueuedItem aOldest = _peekFirst (eLane.ordinal ());
+      return aOldest == null ? -1 : System.currentTimeMillis () - aOldest.m_nQueuedMillis;
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @return The number of items handled by this worker since startup,
+   *         including failed ones. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getHandledCount ()
+  {
+    return m_aHandledCount.get ();
+  }
+
+  /**
+   * @return The number of items that were dropped by this worker since
+   *         startup, because they were superseded by or merged into another
+   *         item of the same participant. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getCoalescedCount ()
+  {
+    return m_aCoalescedCount.get ();
+  }
+
+  /**
+   * @return The average duration in milliseconds to handle a single item or
+   *         -1 if no item was handled so far.
+   */
+  public long getAverageHandleMillis ()
+  {
+    final long nCount = m_aHandledCount.get ();
+    return nCount == 0 ? -1 : m_aHandledMillis.get () / nCount;
+  }
+
+  /**
+   * @return The average number of handled items per minute since startup.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public double getThroughputPerMinute ()
+  {
+    final long nMillis = Math.max (System.currentTimeMillis () - m_nStartMillis, 1);
+    return m_aHandledCount.get () * (double) CGlobal.MILLISECONDS_PER_MINUTE / nMillis;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Index", m_nIndex)
+                                       .append ("QueueSize", getQueueSize ())
+                                       .append ("HandledCount", m_aHandledCount.get ())
+                                       .append ("HandledMillis", m_aHandledMillis.get ())
+                                       .getToString ();
+  }
+}
@@ -41,7 +41,8 @@ import com.helger.web.scope.util.AbstractScopeAwareJob;
 
 /**
  * A Quartz job that is scheduled to re-index existing entries that failed to
- * re-index previously.
+ * re-index previously. It only hands over the due entries to the indexer
+ * workers, so it is cheap to run even with many pending entries.
  *
  * @author Philip Helger
  */
@@ -17,43 +17,65 @@
 package com.helger.pd.indexer.lucene;
 
 import java.io.IOException;
+import java.util.Set;
 import java.util.function.ObjIntConsumer;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.SimpleCollector;
 
 import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.CommonsHashSet;
 import com.helger.commons.string.ToStringGenerator;
 
 /**
  * A Lucene {@link Collector} that always collects all {@link Document} objects.
+ * The documents are read from the segment that is currently searched, so the
+ * document IDs are always consistent with the searcher in use. Optionally
+ * only a subset of the stored fields is loaded.
  *
  * @author Philip Helger
  */
 public class AllDocumentsCollector extends SimpleCollector
 {
-  private final ILuceneDocumentProvider m_aDocumentProvider;
   private final ObjIntConsumer <Document> m_aConsumer;
+  private final Set <String> m_aFieldsToLoad;
+  private LeafReader m_aLeafReader;
   private int m_nDocBase = 0;
 
   /**
    * Constructor
    *
-   * @param aDocumentProvider
-   *        The overall Document provider. May not be <code>null</code>.
    * @param aConsumer
-   *        The consumer that will take the Lucene {@link Document} objects. May
-   *        not be <code>null</code>.
+   *        The consumer that will take the Lucene {@link Document} objects and
+   *        the absolute document ID. May not be <code>null</code>.
    */
-  public AllDocumentsCollector (@Nonnull final ILuceneDocumentProvider aDocumentProvider,
-                                @Nonnull final ObjIntConsumer <Document> aConsumer)
+  public AllDocumentsCollector (@Nonnull final ObjIntConsumer <Document> aConsumer)
+  {
+    this (null, aConsumer);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aFieldsToLoad
+   *        The names of the stored fields to load. May be <code>null</code> to
+   *        load all stored fields. Fields not contained are not part of the
+   *        provided {@link Document}.
+   * @param aConsumer
+   *        The consumer that will take the Lucene {@link Document} objects and
+   *        the absolute document ID. May not be <code>null</code>.
+   * @since 0.9.5
+   */
+  public AllDocumentsCollector (@Nullable final Set <String> aFieldsToLoad, @Nonnull final ObjIntConsumer <Document> aConsumer)
   {
-    m_aDocumentProvider = ValueEnforcer.notNull (aDocumentProvider, "DocumentProvider");
     m_aConsumer = ValueEnforcer.notNull (aConsumer, "Consumer");
+    m_aFieldsToLoad = aFieldsToLoad == null ? null : new CommonsHashSet <> (aFieldsToLoad);
   }
 
   public boolean needsScores ()
@@ -65,6 +87,7 @@ public class AllDocumentsCollector extends SimpleCollector
   protected void doSetNextReader (@Nonnull final LeafReaderContext aCtx)
   {
     // Important to remember the current document base
+    m_aLeafReader = aCtx.reader ();
     m_nDocBase = aCtx.docBase;
   }
 
@@ -72,8 +95,8 @@ public class AllDocumentsCollector extends SimpleCollector
   public void collect (final int nDocID) throws IOException
   {
     final int nAbsoluteDocID = m_nDocBase + nDocID;
-    // Resolve document
-    final Document aDoc = m_aDocumentProvider.getDocument (nAbsoluteDocID);
+    // Resolve document from the current segment
+    final Document aDoc = m_aFieldsToLoad == null ? m_aLeafReader.document (nDocID) : m_aLeafReader.document (nDocID, m_aFieldsToLoad);
     if (aDoc == null)
       throw new IllegalStateException ("Failed to resolve Lucene Document with ID " + nAbsoluteDocID);
     // Pass to Consumer
@@ -90,6 +113,6 @@ public class AllDocumentsCollector extends SimpleCollector
   @Override
   public String toString ()
   {
-    return new ToStringGenerator (this).append ("Consumer", m_aConsumer).getToString ();
+    return new ToStringGenerator (this).append ("Consumer", m_aConsumer).append ("FieldsToLoad", m_aFieldsToLoad).getToString ();
   }
 }
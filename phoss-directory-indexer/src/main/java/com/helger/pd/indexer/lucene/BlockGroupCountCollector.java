@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Weight;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A Lucene {@link Collector} that counts the number of document blocks
+ * containing at least one hit. The last document of each block is identified
+ * by the provided {@link Weight}, the same way as for the
+ * <code>BlockGroupingCollector</code>. All documents of a block must be
+ * indexed together and must be adjacent.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public class BlockGroupCountCollector extends SimpleCollector
+{
+  private final Weight m_aLastDocPerGroup;
+  private DocIdSetIterator m_aLastDocPerGroupIt;
+  private int m_nCurrentGroupEnd = -1;
+  private int m_nGroupCount = 0;
+
+  /**
+   * Constructor
+   *
+   * @param aLastDocPerGroup
+   *        The weight matching the last document of each block. May not be
+   *        <code>null</code>.
+   */
+  public BlockGroupCountCollector (@Nonnull final Weight aLastDocPerGroup)
+  {
+    m_aLastDocPerGroup = ValueEnforcer.notNull (aLastDocPerGroup, "LastDocPerGroup");
+  }
+
+  public boolean needsScores ()
+  {
+    return false;
+  }
+
+  @Override
+  protected void doSetNextReader (@Nonnull final LeafReaderContext aCtx) throws IOException
+  {
+    // Blocks never span segments
+    final Scorer aScorer = m_aLastDocPerGroup.scorer (aCtx);
+    m_aLastDocPerGroupIt = aScorer == null ? null : aScorer.iterator ();
+    m_nCurrentGroupEnd = -1;
+  }
+
+  @Override
+  public void collect (final int nDocID) throws IOException
+  {
+    if (m_aLastDocPerGroupIt == null)
+    {
+      // No block in this segment
+      return;
+    }
+
+    if (nDocID > m_nCurrentGroupEnd)
+    {
+      // First hit in a new block
+      m_nCurrentGroupEnd = m_aLastDocPerGroupIt.docID () < nDocID ? m_aLastDocPerGroupIt.advance (nDocID)
+                                                                  : m_aLastDocPerGroupIt.docID ();
+      m_nGroupCount++;
+    }
+  }
+
+  /**
+   * @return The number of blocks containing at least one hit.
+   */
+  @Nonnegative
+  public int getGroupCount ()
+  {
+    return m_nGroupCount;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("LastDocPerGroup", m_aLastDocPerGroup)
+                                       .append ("GroupCount", m_nGroupCount)
+                                       .getToString ();
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.id.IHasID;
+import com.helger.commons.lang.EnumHelper;
+import com.helger.commons.name.IHasDisplayName;
+
+/**
+ * The Lucene {@link Directory} implementations that can be used for the index.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public enum EPDLuceneDirectoryType implements IHasID <String>, IHasDisplayName
+{
+  /** Let Lucene choose the best implementation for the platform */
+  FS ("fs", "Platform default")
+  {
+    @Override
+    @Nonnull
+    public Directory openDirectory (@Nonnull final Path aPath) throws IOException
+    {
+      return FSDirectory.open (aPath);
+    }
+  },
+  /** Memory mapped files - requires enough virtual address space */
+  MMAP ("mmap", "Memory mapped")
+  {
+    @Override
+    @Nonnull
+    public Directory openDirectory (@Nonnull final Path aPath) throws IOException
+    {
+      return new MMapDirectory (aPath);
+    }
+  },
+  /** Positional reads via FileChannel */
+  NIOFS ("niofs", "NIO file channel")
+  {
+    @Override
+    @Nonnull
+    public Directory openDirectory (@Nonnull final Path aPath) throws IOException
+    {
+      return new NIOFSDirectory (aPath);
+    }
+  };
+
+  public static final EPDLuceneDirectoryType DEFAULT = FS;
+
+  private final String m_sID;
+  private final String m_sDisplayName;
+
+  private EPDLuceneDirectoryType (@Nonnull @Nonempty final String sID, @Nonnull @Nonempty final String sDisplayName)
+  {
+    m_sID = sID;
+    m_sDisplayName = sDisplayName;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getDisplayName ()
+  {
+    return m_sDisplayName;
+  }
+
+  /**
+   * Open the Lucene directory of this type.
+   *
+   * @param aPath
+   *        The file system path of the index. May not be <code>null</code>.
+   * @return The opened directory. Never <code>null</code>.
+   * @throws IOException
+   *         On IO error
+   */
+  @Nonnull
+  public abstract Directory openDirectory (@Nonnull Path aPath) throws IOException;
+
+  @Nullable
+  public static EPDLuceneDirectoryType getFromIDOrNull (@Nullable final String sID)
+  {
+    return EnumHelper.getFromIDOrNull (EPDLuceneDirectoryType.class, sID);
+  }
+
+  @Nullable
+  public static EPDLuceneDirectoryType getFromIDCaseInsensitiveOrDefault (@Nullable final String sID,
+                                                                         @Nullable final EPDLuceneDirectoryType eDefault)
+  {
+    return EnumHelper.getFromIDCaseInsensitiveOrDefault (EPDLuceneDirectoryType.class, sID, eDefault);
+  }
+}
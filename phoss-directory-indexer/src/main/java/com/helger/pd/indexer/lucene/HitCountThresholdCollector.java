@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.LeafCollector;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A Lucene {@link Collector} that wraps another collector and terminates the
+ * collection after a certain number of hits. The wrapped collector only sees
+ * the documents visited so far, so the number of hits is only a lower bound
+ * if the collection was terminated. The searcher must visit the segments
+ * sequentially.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public class HitCountThresholdCollector extends FilterCollector
+{
+  private final int m_nThreshold;
+  private int m_nHitCount = 0;
+  private boolean m_bTerminated = false;
+
+  /**
+   * Constructor
+   *
+   * @param aDelegate
+   *        The collector to delegate to. May not be <code>null</code>.
+   * @param nThreshold
+   *        The number of hits after which the collection is terminated. Must
+   *        be &gt; 0.
+   */
+  public HitCountThresholdCollector (@Nonnull final Collector aDelegate, @Nonnegative final int nThreshold)
+  {
+    super (ValueEnforcer.notNull (aDelegate, "Delegate"));
+    m_nThreshold = ValueEnforcer.isGT0 (nThreshold, "Threshold");
+  }
+
+  @Override
+  public LeafCollector getLeafCollector (@Nonnull final LeafReaderContext aCtx) throws IOException
+  {
+    if (m_bTerminated)
+    {
+      // Skip all remaining segments
+      throw new CollectionTerminatedException ();
+    }
+
+    return new FilterLeafCollector (super.getLeafCollector (aCtx))
+    {
+      @Override
+      public void collect (final int nDocID) throws IOException
+      {
+        if (m_nHitCount >= m_nThreshold)
+        {
+          m_bTerminated = true;
+          throw new CollectionTerminatedException ();
+        }
+        in.collect (nDocID);
+        m_nHitCount++;
+      }
+    };
+  }
+
+  /**
+   * @return The number of hits collected so far.
+   */
+  @Nonnegative
+  public int getHitCount ()
+  {
+    return m_nHitCount;
+  }
+
+  /**
+   * @return <code>true</code> if the collection was terminated and the hit
+   *         count is only a lower bound.
+   */
+  public boolean isTerminated ()
+  {
+    return m_bTerminated;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Delegate", in)
+                                       .append ("Threshold", m_nThreshold)
+                                       .append ("HitCount", m_nHitCount)
+                                       .append ("Terminated", m_bTerminated)
+                                       .getToString ();
+  }
+}
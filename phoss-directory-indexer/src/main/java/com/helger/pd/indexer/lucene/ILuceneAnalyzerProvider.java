@@ -40,4 +40,16 @@ public interface ILuceneAnalyzerProvider
    */
   @Nullable
   Analyzer getAnalyzer () throws IOException;
+
+  /**
+   * @return <code>true</code> if "contains" queries should be expressed using
+   *         the n-gram shadow fields, <code>false</code> if wildcard queries
+   *         should be used. This is only possible if all documents in the
+   *         index contain the n-gram shadow fields.
+   * @since 0.9.5
+   */
+  default boolean isNGramQueryEnabled ()
+  {
+    return false;
+  }
 }
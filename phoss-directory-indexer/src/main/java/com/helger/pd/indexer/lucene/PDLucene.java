@@ -20,44 +20,63 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexNotFoundException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LiveIndexWriterConfig;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.helger.commons.CGlobal;
 import com.helger.commons.ValueEnforcer;
-import com.helger.commons.annotation.ELockType;
-import com.helger.commons.annotation.MustBeLocked;
 import com.helger.commons.callback.IThrowingRunnable;
-import com.helger.commons.concurrent.SimpleReadWriteLock;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.functional.IThrowingFunction;
 import com.helger.commons.functional.IThrowingSupplier;
 import com.helger.commons.io.stream.StreamHelper;
 import com.helger.commons.state.ESuccess;
+import com.helger.pd.indexer.settings.PDServerConfiguration;
+import com.helger.pd.indexer.storage.CPDStorage;
+import com.helger.pd.indexer.storage.field.PDField;
 import com.helger.photon.app.io.WebFileIO;
 
 /**
  * The singleton wrapper around the Lucene index to be used in Peppol Directory.
+ * Searchers are near-real-time searchers obtained from the writer. They are
+ * refreshed in the background, and durable commits are performed on a
+ * separate schedule. So reading never triggers a commit.
  *
  * @author Philip Helger
  */
@@ -65,15 +84,19 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
 {
   private static final Logger LOGGER = LoggerFactory.getLogger (PDLucene.class);
 
-  private final SimpleReadWriteLock m_aRWLock = new SimpleReadWriteLock ();
+  private final EPDLuceneDirectoryType m_eDirectoryType;
   private final Directory m_aDir;
   private final Analyzer m_aAnalyzer;
   private final IndexWriter m_aIndexWriter;
-  private DirectoryReader m_aIndexReader;
-  private IndexReader m_aSearchReader;
-  private IndexSearcher m_aSearcher;
+  private final PDLuceneSearchExecutor m_aSearchExecutor;
+  private final LRUQueryCache m_aQueryCache;
+  private final PDQueryCachingPolicy m_aQueryCachingPolicy;
+  private final SearcherManager m_aSearcherMgr;
+  private final ControlledRealTimeReopenThread <IndexSearcher> m_aReopenThread;
+  private final PDLuceneCommitScheduler m_aCommitScheduler;
   private final AtomicBoolean m_aClosing = new AtomicBoolean (false);
-  private final AtomicInteger m_aWriterChanges = new AtomicInteger (0);
+  private final AtomicLong m_aLastWriteSeqNum = new AtomicLong (-1);
+  private final AtomicBoolean m_aNGramQueryEnabled = new AtomicBoolean (false);
 
   @Nonnull
   public static File getLuceneIndexDir ()
@@ -89,11 +112,57 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
       // Only lowercasing, no stop words
       return new SimpleAnalyzer ();
     }
-    return new StandardAnalyzer ();
+    // The n-gram shadow fields use a separate analyzer
+    final PDNGramAnalyzer aNGramAnalyzer = new PDNGramAnalyzer (CPDStorage.NGRAM_SIZE);
+    final ICommonsMap <String, Analyzer> aFieldAnalyzers = new CommonsHashMap <> ();
+    aFieldAnalyzers.put (CPDStorage.FIELD_ALL_FIELDS_NGRAM, aNGramAnalyzer);
+    aFieldAnalyzers.put (CPDStorage.FIELD_NAME_NGRAM, aNGramAnalyzer);
+    aFieldAnalyzers.put (CPDStorage.FIELD_WEBSITE_NGRAM, aNGramAnalyzer);
+    aFieldAnalyzers.put (CPDStorage.FIELD_CONTACT_NGRAM, aNGramAnalyzer);
+    return new PerFieldAnalyzerWrapper (new StandardAnalyzer (), aFieldAnalyzers);
   }
 
   /**
-   * Default constructor using a {@link StandardAnalyzer}.
+   * @return The index sort used for new indices. Sorts by participant ID, so
+   *         that all documents of a participant are adjacent. Never
+   *         <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public static Sort createIndexSort ()
+  {
+    return new Sort (new SortField (PDField.PARTICIPANT_ID.getFieldName (), SortField.Type.STRING));
+  }
+
+  /**
+   * Check if the passed index sort can be used on the passed directory. This
+   * is the case if there is no index yet, or if all existing segments already
+   * use the same sort. The IndexWriter refuses to open an unsorted index with
+   * an index sort.
+   *
+   * @param aDir
+   *        The directory to check. May not be <code>null</code>.
+   * @param aIndexSort
+   *        The index sort to check. May not be <code>null</code>.
+   * @return <code>true</code> if the index sort can be applied.
+   * @throws IOException
+   *         On IO error
+   */
+  private static boolean _canUseIndexSort (@Nonnull final Directory aDir, @Nonnull final Sort aIndexSort) throws IOException
+  {
+    if (!DirectoryReader.indexExists (aDir))
+      return true;
+
+    final SegmentInfos aSegmentInfos = SegmentInfos.readLatestCommit (aDir);
+    for (final SegmentCommitInfo aSCI : aSegmentInfos)
+      if (!aIndexSort.equals (aSCI.info.getIndexSort ()))
+        return false;
+    return true;
+  }
+
+  /**
+   * Default constructor using a {@link StandardAnalyzer} and a
+   * {@link PDNGramAnalyzer} for the n-gram shadow fields.
    *
    * @throws IOException
    *         On IO error
@@ -117,7 +186,8 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
 
     // Where to store the index files
     final Path aPath = getLuceneIndexDir ().toPath ();
-    m_aDir = FSDirectory.open (aPath);
+    m_eDirectoryType = PDServerConfiguration.getLuceneDirectoryType ();
+    m_aDir = m_eDirectoryType.openDirectory (aPath);
 
     // Analyzer to use
     m_aAnalyzer = aAnalyzerProvider.get ();
@@ -125,11 +195,113 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
     // Create the index writer
     final IndexWriterConfig aWriterConfig = new IndexWriterConfig (m_aAnalyzer);
     aWriterConfig.setOpenMode (OpenMode.CREATE_OR_APPEND);
+    aWriterConfig.setRAMBufferSizeMB (PDServerConfiguration.getLuceneWriterRAMBufferMB ());
+
+    final boolean bUseCompoundFile = PDServerConfiguration.isLuceneUseCompoundFile ();
+    aWriterConfig.setUseCompoundFile (bUseCompoundFile);
+
+    final TieredMergePolicy aMergePolicy = new TieredMergePolicy ();
+    aMergePolicy.setMaxMergedSegmentMB (PDServerConfiguration.getLuceneMergePolicyMaxMergedSegmentMB ());
+    aMergePolicy.setFloorSegmentMB (PDServerConfiguration.getLuceneMergePolicyFloorSegmentMB ());
+    aMergePolicy.setSegmentsPerTier (PDServerConfiguration.getLuceneMergePolicySegmentsPerTier ());
+    if (!bUseCompoundFile)
+    {
+      // Merged segments should not be compound files either
+      aMergePolicy.setNoCFSRatio (0.0);
+    }
+    aWriterConfig.setMergePolicy (aMergePolicy);
+
+    final ConcurrentMergeScheduler aMergeScheduler = new ConcurrentMergeScheduler ();
+    final int nMergeThreads = PDServerConfiguration.getLuceneMergeSchedulerMaxThreads ();
+    if (nMergeThreads > 0)
+    {
+      // Same ratio of merges to threads as Lucene's auto detection
+      aMergeScheduler.setMaxMergesAndThreads (nMergeThreads + 5, nMergeThreads);
+    }
+    aWriterConfig.setMergeScheduler (aMergeScheduler);
+
+    if (PDServerConfiguration.isLuceneIndexSortEnabled ())
+    {
+      // All documents of an entity block share the participant ID and the
+      // sort is stable, so blocks stay contiguous
+      final Sort aIndexSort = createIndexSort ();
+      if (_canUseIndexSort (m_aDir, aIndexSort))
+        aWriterConfig.setIndexSort (aIndexSort);
+      else
+        LOGGER.warn ("The existing Lucene index is not sorted by participant ID. Rebuild the index to enable the index sort.");
+    }
+
     m_aIndexWriter = new IndexWriter (m_aDir, aWriterConfig);
 
-    // Reader and searcher are opened on demand
+    // Near-real-time searchers directly from the writer
+    final int nSearchThreads = PDServerConfiguration.getLuceneSearcherThreads ();
+    m_aSearchExecutor = nSearchThreads > 0 ? new PDLuceneSearchExecutor (nSearchThreads) : null;
+    final ExecutorService aSearchExecutor = m_aSearchExecutor == null ? null : m_aSearchExecutor.getExecutor ();
+
+    // Shared by all searchers - the cached filters are per segment and are
+    // only built for new segments. All segments are cached, independent of
+    // their size.
+    final LRUQueryCache aQueryCache = new LRUQueryCache (PDServerConfiguration.getLuceneQueryCacheMaxEntries (),
+                                                         PDServerConfiguration.getLuceneQueryCacheMaxMB () * (long) CGlobal.BYTES_PER_MEGABYTE,
+                                                         aCtx -> true);
+    final PDQueryCachingPolicy aQueryCachingPolicy = new PDQueryCachingPolicy ();
+    m_aQueryCache = aQueryCache;
+    m_aQueryCachingPolicy = aQueryCachingPolicy;
+    m_aSearcherMgr = new SearcherManager (m_aIndexWriter, new SearcherFactory ()
+    {
+      @Override
+      public IndexSearcher newSearcher (final IndexReader aReader, final IndexReader aPreviousReader)
+      {
+        // Search the segments in parallel if configured
+        final IndexSearcher aSearcher = new IndexSearcher (aReader, aSearchExecutor);
+        aSearcher.setQueryCache (aQueryCache);
+        aSearcher.setQueryCachingPolicy (aQueryCachingPolicy);
+        return aSearcher;
+      }
+    });
+
+    // Refresh the searchers in the background
+    final long nRefreshMillis = PDServerConfiguration.getLuceneSearcherRefreshMillis ();
+    final double dMaxStaleSecs = nRefreshMillis / (double) CGlobal.MILLISECONDS_PER_SECOND;
+    m_aReopenThread = new ControlledRealTimeReopenThread <> (m_aIndexWriter,
+                                                             m_aSearcherMgr,
+                                                             dMaxStaleSecs,
+                                                             Math.min (dMaxStaleSecs, 0.025));
+    m_aReopenThread.setName ("pd-lucene-refresh");
+    m_aReopenThread.setDaemon (true);
+    m_aReopenThread.start ();
+
+    // Commit durably on a separate schedule
+    m_aCommitScheduler = new PDLuceneCommitScheduler (this::_commit,
+                                                      PDServerConfiguration.getLuceneCommitMaxChanges (),
+                                                      PDServerConfiguration.getLuceneCommitIntervalMillis ());
+
+    LOGGER.info ("Lucene index operating on " +
+                 aPath +
+                 " (directory type " +
+                 m_eDirectoryType.getID () +
+                 "; RAM buffer " +
+                 aWriterConfig.getRAMBufferSizeMB () +
+                 "MB; compound files " +
+                 bUseCompoundFile +
+                 "; index sort " +
+                 (aWriterConfig.getIndexSort () != null ? aWriterConfig.getIndexSort ().toString () : "none") +
+                 "; " +
+                 (nSearchThreads > 0 ? nSearchThreads + " search threads" : "no search threads") +
+                 "; searcher refresh every " +
+                 nRefreshMillis +
+                 "ms; commit after " +
+                 m_aCommitScheduler.getMaxPendingChanges () +
+                 " changes or " +
+                 m_aCommitScheduler.getMaxPendingMillis () +
+                 "ms)");
+  }
 
-    LOGGER.info ("Lucene index operating on " + aPath);
+  private void _commit () throws IOException
+  {
+    final long nSeqNum = m_aIndexWriter.commit ();
+    if (LOGGER.isDebugEnabled ())
+      LOGGER.debug ("Committed up to seq# " + nSeqNum);
   }
 
   public void close () throws IOException
@@ -137,34 +309,102 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
     // Avoid double closing
     if (!m_aClosing.getAndSet (true))
     {
-      if (false)
-        m_aRWLock.writeLock ().lock ();
-      try
-      {
-        // Start closing
-        StreamHelper.close (m_aIndexReader);
-
-        // Ensure to commit the writer in case of pending changes
-        if (m_aIndexWriter != null && m_aIndexWriter.isOpen ())
-        {
-          final long nSeqNum = m_aIndexWriter.commit ();
-          if (nSeqNum >= 0)
-            if (LOGGER.isDebugEnabled ())
-              LOGGER.debug ("Committed up to seq# " + nSeqNum);
-        }
-        StreamHelper.close (m_aIndexWriter);
-        StreamHelper.close (m_aDir);
-        StreamHelper.close (m_aAnalyzer);
-        LOGGER.info ("Closed Lucene reader/writer/directory");
-      }
-      finally
+      // Start closing
+      m_aCommitScheduler.close ();
+      StreamHelper.close (m_aReopenThread);
+      // Searchers still in use are closed when they are released
+      StreamHelper.close (m_aSearcherMgr);
+      StreamHelper.close (m_aSearchExecutor);
+
+      // Ensure to commit the writer in case of pending changes
+      if (m_aIndexWriter != null && m_aIndexWriter.isOpen ())
       {
-        if (false)
-          m_aRWLock.writeLock ().unlock ();
+        final long nSeqNum = m_aIndexWriter.commit ();
+        if (nSeqNum >= 0)
+          if (LOGGER.isDebugEnabled ())
+            LOGGER.debug ("Committed up to seq# " + nSeqNum);
       }
+      StreamHelper.close (m_aIndexWriter);
+      StreamHelper.close (m_aDir);
+      StreamHelper.close (m_aAnalyzer);
+      LOGGER.info ("Closed Lucene reader/writer/directory");
     }
   }
 
+  /**
+   * @return The type of the Lucene directory in use. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public EPDLuceneDirectoryType getDirectoryType ()
+  {
+    return m_eDirectoryType;
+  }
+
+  /**
+   * @return The effective configuration of the index writer, including merge
+   *         policy and merge scheduler. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public LiveIndexWriterConfig getWriterConfig ()
+  {
+    return m_aIndexWriter.getConfig ();
+  }
+
+  /**
+   * @return The query cache shared by all searchers. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public LRUQueryCache getQueryCache ()
+  {
+    return m_aQueryCache;
+  }
+
+  /**
+   * @return The query caching policy used by all searchers. Never
+   *         <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public PDQueryCachingPolicy getQueryCachingPolicy ()
+  {
+    return m_aQueryCachingPolicy;
+  }
+
+  /**
+   * @return The executor used to search the segments in parallel or
+   *         <code>null</code> if parallel segment search is disabled.
+   * @since 0.9.5
+   */
+  @Nullable
+  public PDLuceneSearchExecutor getSearchExecutor ()
+  {
+    return m_aSearchExecutor;
+  }
+
+  @Override
+  public boolean isNGramQueryEnabled ()
+  {
+    return m_aNGramQueryEnabled.get ();
+  }
+
+  /**
+   * Enable or disable the usage of the n-gram shadow fields for "contains"
+   * queries. This should only be enabled if all documents in the index contain
+   * the n-gram shadow fields.
+   *
+   * @param bEnabled
+   *        <code>true</code> to enable, <code>false</code> to disable.
+   * @since 0.9.5
+   */
+  public void setNGramQueryEnabled (final boolean bEnabled)
+  {
+    if (m_aNGramQueryEnabled.getAndSet (bEnabled) != bEnabled)
+      LOGGER.info ("N-gram queries are now " + (bEnabled ? "enabled" : "disabled"));
+  }
+
   public boolean isClosing ()
   {
     return m_aClosing.get ();
@@ -186,6 +426,16 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
     return m_aAnalyzer;
   }
 
+  /**
+   * @return The scheduler that takes care of durable commits. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public PDLuceneCommitScheduler getCommitScheduler ()
+  {
+    return m_aCommitScheduler;
+  }
+
   @Nonnull
   private IndexWriter _getWriter ()
   {
@@ -193,101 +443,163 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
     return m_aIndexWriter;
   }
 
-  @Nullable
-  public DirectoryReader getReader () throws IOException
+  /**
+   * Acquire the current near-real-time searcher. Each searcher acquired must
+   * be released via {@link #releaseSearcher(IndexSearcher)} afterwards,
+   * otherwise the underlying reader is never closed. Acquiring is cheap and
+   * does not block, so concurrent searches share the same searcher.
+   *
+   * @return The acquired searcher. Never <code>null</code>.
+   * @throws IOException
+   *         On IO error
+   * @throws IllegalStateException
+   *         If the index is already closing
+   * @see #releaseSearcher(IndexSearcher)
+   * @see #callWithSearcher(IThrowingFunction)
+   */
+  @Nonnull
+  public IndexSearcher acquireSearcher () throws IOException
   {
     _checkClosing ();
+    // The searcher is refreshed in the background
+    return m_aSearcherMgr.acquire ();
+  }
+
+  /**
+   * Release a searcher previously acquired via {@link #acquireSearcher()}. The
+   * searcher may not be used after this call.
+   *
+   * @param aSearcher
+   *        The searcher to release. May be <code>null</code>.
+   * @throws IOException
+   *         On IO error
+   */
+  public void releaseSearcher (@Nullable final IndexSearcher aSearcher) throws IOException
+  {
+    if (aSearcher != null)
+      m_aSearcherMgr.release (aSearcher);
+  }
+
+  /**
+   * Acquire a searcher, invoke the provided callback with it and release it
+   * again afterwards.
+   *
+   * @param aCallback
+   *        The callback to be invoked with the acquired searcher. May not be
+   *        <code>null</code>.
+   * @return The return value of the callback.
+   * @throws IOException
+   *         On IO error or if thrown by the callback
+   * @param <T>
+   *        Result type
+   */
+  @Nullable
+  public <T> T callWithSearcher (@Nonnull final IThrowingFunction <? super IndexSearcher, T, IOException> aCallback) throws IOException
+  {
+    ValueEnforcer.notNull (aCallback, "Callback");
+
+    final IndexSearcher aSearcher = acquireSearcher ();
     try
     {
-      // Commit the writer changes only if a reader is requested
-      if (m_aWriterChanges.intValue () > 0)
-      {
-        LOGGER.info ("Lazily committing " + m_aWriterChanges.intValue () + " changes to the Lucene index");
-        final long nSeqNum = _getWriter ().commit ();
-        if (LOGGER.isDebugEnabled ())
-          LOGGER.debug ("Committed up to seq# " + nSeqNum);
-        m_aWriterChanges.set (0);
-      }
-
-      // Is a new reader required because the index changed?
-      final DirectoryReader aNewReader = m_aIndexReader != null ? DirectoryReader.openIfChanged (m_aIndexReader)
-                                                                : DirectoryReader.open (m_aDir);
-      if (aNewReader != null)
-      {
-        // Something changed in the index
-        m_aIndexReader = aNewReader;
-        m_aSearcher = null;
-
-        if (LOGGER.isDebugEnabled ())
-        {
-          LOGGER.debug ("Contents of index changed. Creating new index reader");
-          LOGGER.debug ("Using DirectoryReader " + aNewReader.toString ());
-        }
-      }
-      return m_aIndexReader;
+      return aCallback.apply (aSearcher);
     }
-    catch (final IndexNotFoundException ex)
+    finally
     {
-      // No such index
-      return null;
+      releaseSearcher (aSearcher);
     }
   }
 
   /**
-   * Get the Lucene {@link Document} matching the specified ID
+   * Get the Lucene {@link Document} matching the specified ID from the current
+   * searcher. Note: the document ID must stem from the current searcher as well
+   * - use the reader of an acquired searcher when resolving search results.
    *
    * @param nDocID
    *        Document ID
-   * @return <code>null</code> if no reader could be obtained or no such
-   *         document exists.
+   * @return <code>null</code> if no such document exists.
    * @throws IOException
    *         On IO error
    */
   @Nullable
   public Document getDocument (final int nDocID) throws IOException
   {
-    _checkClosing ();
-
     if (LOGGER.isDebugEnabled ())
       LOGGER.debug ("getDocument(" + nDocID + ")");
 
-    final IndexReader aReader = getReader ();
-    if (aReader == null)
-      return null;
-    return aReader.document (nDocID);
+    return callWithSearcher (aSearcher -> aSearcher.doc (nDocID));
   }
 
   /**
-   * Get a searcher on this index.
+   * Check if the current searcher reflects all changes performed so far via
+   * this object. If this method returns <code>false</code>, a searcher
+   * acquired afterwards may miss changes that were already written.
    *
-   * @return <code>null</code> if no reader or no searcher could be obtained
+   * @return <code>true</code> if the current searcher is up to date.
    * @throws IOException
    *         On IO error
+   * @throws IllegalStateException
+   *         If the index is already closing
+   * @since 0.9.5
    */
-  @Nullable
-  public IndexSearcher getSearcher () throws IOException
+  public boolean isSearcherCurrent () throws IOException
   {
     _checkClosing ();
-    final IndexReader aReader = getReader ();
-    if (aReader == null)
-    {
-      // Index not readable
-      LOGGER.warn ("Index not readable");
-      return null;
-    }
+    return m_aSearcherMgr.isSearcherCurrent ();
+  }
 
-    if (m_aSearchReader == aReader)
-    {
-      // Reader did not change - use cached searcher
-      assert m_aSearcher != null;
-    }
-    else
-    {
-      // Create new searcher only if necessary
-      m_aSearchReader = aReader;
-      m_aSearcher = new IndexSearcher (aReader);
-    }
-    return m_aSearcher;
+  /**
+   * Wait until all changes performed so far via this object are visible to
+   * searchers. This is mainly meant for testing, because searchers are
+   * refreshed automatically in the background.
+   *
+   * @throws InterruptedException
+   *         If the waiting thread is interrupted
+   */
+  public void waitUntilChangesAreSearchable () throws InterruptedException
+  {
+    _checkClosing ();
+    final long nSeqNum = m_aLastWriteSeqNum.get ();
+    if (nSeqNum >= 0)
+      m_aReopenThread.waitForGeneration (nSeqNum);
+  }
+
+  /**
+   * Wait until the changes up to the provided sequence number are visible to
+   * searchers. If a thread is waiting, the searcher is refreshed earlier than
+   * configured.
+   *
+   * @param nSeqNum
+   *        The sequence number as returned by the write methods.
+   * @param nMaxMillis
+   *        The maximum number of milliseconds to wait.
+   * @return <code>true</code> if the changes are visible, <code>false</code>
+   *         if the timeout elapsed.
+   * @throws InterruptedException
+   *         If the waiting thread is interrupted
+   * @throws IllegalStateException
+   *         If the index is already closing
+   * @since 0.9.5
+   */
+  public boolean waitForGeneration (final long nSeqNum, @Nonnegative final int nMaxMillis) throws InterruptedException
+  {
+    _checkClosing ();
+    return m_aReopenThread.waitForGeneration (nSeqNum, nMaxMillis);
+  }
+
+  /**
+   * @return The sequence number up to which all changes are visible to the
+   *         current searcher.
+   * @since 0.9.5
+   */
+  public long getSearchingGeneration ()
+  {
+    return m_aReopenThread.getSearchingGen ();
+  }
+
+  private void _onWritten (final long nSeqNum)
+  {
+    m_aLastWriteSeqNum.accumulateAndGet (nSeqNum, Math::max);
+    m_aCommitScheduler.onChange ();
   }
 
   /**
@@ -306,13 +618,12 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
    * @throws IOException
    *         if there is a low-level IO error
    */
-  @MustBeLocked (ELockType.WRITE)
   public void updateDocument (@Nullable final Term aDelTerm, @Nonnull final Iterable <? extends IndexableField> aDoc) throws IOException
   {
     final long nSeqNum = _getWriter ().updateDocument (aDelTerm, aDoc);
     if (LOGGER.isDebugEnabled ())
       LOGGER.debug ("Last seq# after updateDocument is " + nSeqNum);
-    m_aWriterChanges.incrementAndGet ();
+    _onWritten (nSeqNum);
   }
 
   /**
@@ -325,13 +636,14 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
    *        <code>null</code>.
    * @param aDocs
    *        the documents to be added. May not be <code>null</code>.
+   * @return The sequence number of the update operation as assigned by the
+   *         index writer.
    * @throws CorruptIndexException
    *         if the index is corrupt
    * @throws IOException
    *         if there is a low-level IO error
    */
-  @MustBeLocked (ELockType.WRITE)
-  public void updateDocuments (@Nullable final Term aDelTerm,
+  public long updateDocuments (@Nullable final Term aDelTerm,
                                @Nonnull final Iterable <? extends Iterable <? extends IndexableField>> aDocs) throws IOException
   {
     long nSeqNum;
@@ -348,7 +660,8 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
     }
     if (LOGGER.isDebugEnabled ())
       LOGGER.debug ("Last seq# after updateDocuments is " + nSeqNum);
-    m_aWriterChanges.incrementAndGet ();
+    _onWritten (nSeqNum);
+    return nSeqNum;
   }
 
   /**
@@ -357,22 +670,27 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
    *
    * @param aTerms
    *        array of terms to identify the documents to be deleted
+   * @return The sequence number of the delete operation as assigned by the
+   *         index writer.
    * @throws CorruptIndexException
    *         if the index is corrupt
    * @throws IOException
    *         if there is a low-level IO error
    */
-  @MustBeLocked (ELockType.WRITE)
-  public void deleteDocuments (final Term... aTerms) throws IOException
+  public long deleteDocuments (final Term... aTerms) throws IOException
   {
     final long nSeqNum = _getWriter ().deleteDocuments (aTerms);
     if (LOGGER.isDebugEnabled ())
       LOGGER.debug ("Last seq# after deleteDocuments is " + nSeqNum);
-    m_aWriterChanges.incrementAndGet ();
+    _onWritten (nSeqNum);
+    return nSeqNum;
   }
 
   /**
-   * Run the provided action within a locked section.
+   * Run the provided action unless the index is closing. Despite the name, no
+   * lock is held - the name is kept for API compatibility. This method only
+   * guards against using an index that is closing. No lock is needed, because
+   * the {@link IndexWriter} is thread-safe.
    *
    * @param aRunnable
    *        Callback to be executed
@@ -383,27 +701,21 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
   @Nonnull
   public ESuccess writeLockedAtomic (@Nonnull final IThrowingRunnable <IOException> aRunnable) throws IOException
   {
-    if (false)
-      m_aRWLock.writeLock ().lock ();
-    try
-    {
-      if (isClosing ())
-      {
-        LOGGER.info ("Cannot executed something write locked, because Lucene is shutting down");
-        return ESuccess.FAILURE;
-      }
-      aRunnable.run ();
-    }
-    finally
+    if (isClosing ())
     {
-      if (false)
-        m_aRWLock.writeLock ().unlock ();
+      LOGGER.info ("Cannot executed something write locked, because Lucene is shutting down");
+      return ESuccess.FAILURE;
     }
+    aRunnable.run ();
     return ESuccess.SUCCESS;
   }
 
   /**
-   * Run the provided action within a locked section.<br>
+   * Run the provided action unless the index is closing. Despite the name, no
+   * lock is held - the name is kept for API compatibility. This method only
+   * guards against using an index that is closing. No lock is needed, because
+   * searchers are reference counted (see {@link #acquireSearcher()}).
+   * <br>
    * Note: because of a problem with JDK 1.8.60 (+) command line compiler, this
    * method uses type "Exception" instead of "IOException" in the parameter
    * signature
@@ -419,20 +731,11 @@ public final class PDLucene implements Closeable, ILuceneDocumentProvider, ILuce
   @Nullable
   public <T> T readLockedAtomic (@Nonnull final IThrowingSupplier <T, IOException> aRunnable) throws IOException
   {
-    if (false)
-      m_aRWLock.readLock ().lock ();
-    try
-    {
-      if (isClosing ())
-        LOGGER.info ("Cannot executed something read locked, because Lucene is shutting down");
-      else
-        return aRunnable.get ();
-    }
-    finally
+    if (isClosing ())
     {
-      if (false)
-        m_aRWLock.readLock ().unlock ();
+      LOGGER.info ("Cannot executed something read locked, because Lucene is shutting down");
+      return null;
     }
-    return null;
+    return aRunnable.get ();
   }
 }
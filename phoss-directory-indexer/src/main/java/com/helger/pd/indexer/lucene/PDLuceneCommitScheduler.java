@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForSigned;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.callback.IThrowingRunnable;
+import com.helger.commons.concurrent.BasicThreadFactory;
+import com.helger.commons.concurrent.ExecutorServiceHelper;
+import com.helger.commons.statistics.IMutableStatisticsHandlerTimer;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.commons.timing.StopWatch;
+
+/**
+ * Group commit scheduler for the Lucene index. Every change to the index must
+ * be reported via {@link #onChange()}. Pending changes are committed durably in
+ * the background after a configurable number of changes or after a
+ * configurable time since the first pending change - whatever comes first.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class PDLuceneCommitScheduler implements Closeable
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (PDLuceneCommitScheduler.class);
+  private static final IMutableStatisticsHandlerTimer s_aStatsCommitTimer = StatisticsManager.getTimerHandler (PDLuceneCommitScheduler.class.getName () +
+                                                                                                                "$commit");
+
+  private final IThrowingRunnable <IOException> m_aCommitAction;
+  private final int m_nMaxPendingChanges;
+  private final long m_nMaxPendingMillis;
+  private final ScheduledThreadPoolExecutor m_aExecutor;
+  private final AtomicInteger m_aPendingChanges = new AtomicInteger (0);
+  private final AtomicLong m_aCommitCount = new AtomicLong (0);
+  private final AtomicLong m_aLastCommitMillis = new AtomicLong (-1);
+
+  /**
+   * Constructor
+   *
+   * @param aCommitAction
+   *        The action that performs the real commit. May not be
+   *        <code>null</code>.
+   * @param nMaxPendingChanges
+   *        The number of changes after which a commit is triggered. Must be
+   *        &gt; 0.
+   * @param nMaxPendingMillis
+   *        The maximum number of milliseconds a change stays uncommitted. Must
+   *        be &gt; 0.
+   */
+  public PDLuceneCommitScheduler (@Nonnull final IThrowingRunnable <IOException> aCommitAction,
+                                  @Nonnegative final int nMaxPendingChanges,
+                                  @Nonnegative final long nMaxPendingMillis)
+  {
+    ValueEnforcer.notNull (aCommitAction, "CommitAction");
+    ValueEnforcer.isGT0 (nMaxPendingChanges, "MaxPendingChanges");
+    ValueEnforcer.isGT0 (nMaxPendingMillis, "MaxPendingMillis");
+    m_aCommitAction = aCommitAction;
+    m_nMaxPendingChanges = nMaxPendingChanges;
+    m_nMaxPendingMillis = nMaxPendingMillis;
+    m_aExecutor = new ScheduledThreadPoolExecutor (1,
+                                                   new BasicThreadFactory.Builder ().setNamingPattern ("pd-lucene-commit-%d")
+                                                                                    .setDaemon (true)
+                                                                                    .build ());
+    // Don't wait for delayed commits upon shutdown
+    m_aExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy (false);
+  }
+
+  /**
+   * Stop the scheduler. Delayed commits are discarded and a running commit is
+   * awaited. Pending changes are NOT committed - that is the responsibility of
+   * the caller.
+   */
+  public void close ()
+  {
+    ExecutorServiceHelper.shutdownAndWaitUntilAllTasksAreFinished (m_aExecutor);
+  }
+
+  private void _scheduleCommit (final long nDelayMillis)
+  {
+    try
+    {
+      m_aExecutor.schedule (this::commitPendingChanges, nDelayMillis, TimeUnit.MILLISECONDS);
+    }
+    catch (final RejectedExecutionException ex)
+    {
+      // Already shut down
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Failed to schedule Lucene commit, because the scheduler is stopped");
+    }
+  }
+
+  /**
+   * Notify the scheduler about a single new change in the index.
+   */
+  public void onChange ()
+  {
+    final int nPending = m_aPendingChanges.incrementAndGet ();
+    if (nPending == m_nMaxPendingChanges)
+    {
+      // Enough changes - commit now
+      _scheduleCommit (0);
+    }
+    else
+      if (nPending == 1)
+      {
+        // First change since the last commit - commit at the latest after the
+        // configured time
+        _scheduleCommit (m_nMaxPendingMillis);
+      }
+  }
+
+  /**
+   * Commit all pending changes now, if there are any. This is called from the
+   * scheduler thread but may also be called manually.
+   */
+  public void commitPendingChanges ()
+  {
+    final int nChanges = m_aPendingChanges.getAndSet (0);
+    if (nChanges > 0)
+    {
+      final StopWatch aSW = StopWatch.createdStarted ();
+      try
+      {
+        if (LOGGER.isDebugEnabled ())
+          LOGGER.debug ("Committing " + nChanges + " changes to the Lucene index");
+        m_aCommitAction.run ();
+
+        final long nMillis = aSW.stopAndGetMillis ();
+        s_aStatsCommitTimer.addTime (nMillis);
+        m_aCommitCount.incrementAndGet ();
+        m_aLastCommitMillis.set (nMillis);
+        if (LOGGER.isDebugEnabled ())
+          LOGGER.debug ("Committed " + nChanges + " changes to the Lucene index in " + nMillis + "ms");
+      }
+      catch (final IOException | RuntimeException ex)
+      {
+        // Try again later
+        m_aPendingChanges.addAndGet (nChanges);
+        _scheduleCommit (m_nMaxPendingMillis);
+        LOGGER.error ("Failed to commit " + nChanges + " changes to the Lucene index", ex);
+      }
+    }
+  }
+
+  /**
+   * @return The number of changes after which a commit is triggered. Always
+   *         &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxPendingChanges ()
+  {
+    return m_nMaxPendingChanges;
+  }
+
+  /**
+   * @return The maximum number of milliseconds a change stays uncommitted.
+   *         Always &gt; 0.
+   */
+  @Nonnegative
+  public long getMaxPendingMillis ()
+  {
+    return m_nMaxPendingMillis;
+  }
+
+  /**
+   * @return The number of changes not yet committed. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getPendingChangeCount ()
+  {
+    return m_aPendingChanges.get ();
+  }
+
+  /**
+   * @return The number of successful commits performed so far. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getCommitCount ()
+  {
+    return m_aCommitCount.get ();
+  }
+
+  /**
+   * @return The duration of the last successful commit in milliseconds or -1
+   *         if no commit happened so far. The overall commit statistics are
+   *         available via the {@link StatisticsManager}.
+   */
+  @CheckForSigned
+  public long getLastCommitMillis ()
+  {
+    return m_aLastCommitMillis.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("MaxPendingChanges", m_nMaxPendingChanges)
+                                       .append ("MaxPendingMillis", m_nMaxPendingMillis)
+                                       .append ("PendingChanges", m_aPendingChanges.get ())
+                                       .append ("CommitCount", m_aCommitCount.get ())
+                                       .append ("LastCommitMillis", m_aLastCommitMillis.get ())
+                                       .getToString ();
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.lucene.search.IndexSearcher;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.concurrent.BasicThreadFactory;
+import com.helger.commons.concurrent.ExecutorServiceHelper;
+import com.helger.commons.statistics.IMutableStatisticsHandlerCounter;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Bounded executor used by the {@link IndexSearcher} to search the segments
+ * of the index in parallel. If all threads are busy and the queue is full, the
+ * segment is searched in the calling thread, so a search is never rejected.
+ * This also applies after the executor was shut down, because the searcher
+ * waits for every submitted segment search.<br>
+ * Note: with Lucene 7.7 the executor is only used by
+ * {@link IndexSearcher#search(org.apache.lucene.search.Query, int)},
+ * {@link IndexSearcher#count(org.apache.lucene.search.Query)} and the
+ * <code>CollectorManager</code> based searches. Searches with a plain
+ * <code>Collector</code> are always performed serially.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@ThreadSafe
+public final class PDLuceneSearchExecutor implements Closeable
+{
+  /** The number of queued segment searches per thread */
+  public static final int QUEUE_SIZE_PER_THREAD = 16;
+
+  private static final IMutableStatisticsHandlerCounter s_aStatsCallerRuns = StatisticsManager.getCounterHandler (PDLuceneSearchExecutor.class.getName () +
+                                                                                                                  "$callerruns");
+
+  private final int m_nThreadCount;
+  private final ThreadPoolExecutor m_aExecutor;
+  private final AtomicLong m_aCallerRunsCount = new AtomicLong (0);
+
+  /**
+   * Constructor
+   *
+   * @param nThreadCount
+   *        The number of search threads. Must be &gt; 0.
+   */
+  public PDLuceneSearchExecutor (@Nonnegative final int nThreadCount)
+  {
+    ValueEnforcer.isGT0 (nThreadCount, "ThreadCount");
+    m_nThreadCount = nThreadCount;
+    m_aExecutor = new ThreadPoolExecutor (nThreadCount,
+                                          nThreadCount,
+                                          60,
+                                          TimeUnit.SECONDS,
+                                          new ArrayBlockingQueue <> (nThreadCount * QUEUE_SIZE_PER_THREAD),
+                                          new BasicThreadFactory.Builder ().setNamingPattern ("pd-lucene-search-%d")
+                                                                           .setDaemon (true)
+                                                                           .build (),
+                                          (aRunnable, aExecutor) -> {
+                                            // Saturated or shut down - search in
+                                            // the calling thread, because the
+                                            // searcher waits for the result
+                                            m_aCallerRunsCount.incrementAndGet ();
+                                            s_aStatsCallerRuns.increment ();
+                                            aRunnable.run ();
+                                          });
+    m_aExecutor.allowCoreThreadTimeOut (true);
+  }
+
+  /**
+   * @return The executor to be passed to the {@link IndexSearcher}. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public ExecutorService getExecutor ()
+  {
+    return m_aExecutor;
+  }
+
+  public void close ()
+  {
+    ExecutorServiceHelper.shutdownAndWaitUntilAllTasksAreFinished (m_aExecutor);
+  }
+
+  /**
+   * @return The configured number of search threads. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getThreadCount ()
+  {
+    return m_nThreadCount;
+  }
+
+  /**
+   * @return The approximate number of threads currently searching. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public int getActiveCount ()
+  {
+    return m_aExecutor.getActiveCount ();
+  }
+
+  /**
+   * @return The number of segment searches waiting for a thread. Always &ge;
+   *         0.
+   */
+  @Nonnegative
+  public int getQueueSize ()
+  {
+    return m_aExecutor.getQueue ().size ();
+  }
+
+  /**
+   * @return The approximate number of segment searches performed by the search
+   *         threads so far. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getCompletedTaskCount ()
+  {
+    return m_aExecutor.getCompletedTaskCount ();
+  }
+
+  /**
+   * @return The number of segment searches that were performed in the calling
+   *         thread, because the executor was saturated or shut down. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public long getCallerRunsCount ()
+  {
+    return m_aCallerRunsCount.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("ThreadCount", m_nThreadCount)
+                                       .append ("ActiveCount", getActiveCount ())
+                                       .append ("QueueSize", getQueueSize ())
+                                       .append ("CompletedTaskCount", getCompletedTaskCount ())
+                                       .append ("CallerRunsCount", m_aCallerRunsCount.get ())
+                                       .getToString ();
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import javax.annotation.Nonnegative;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.ngram.NGramTokenFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+
+import com.helger.commons.ValueEnforcer;
+
+/**
+ * Analyzer for the n-gram shadow fields. The text is tokenized like with the
+ * standard analyzer, lower cased and every token is split into n-grams of a
+ * fixed size. All n-grams of a token share the position of the token, so that
+ * a "contains" query can be expressed as a phrase query with all n-grams at
+ * the same position.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public final class PDNGramAnalyzer extends Analyzer
+{
+  private final int m_nGramSize;
+
+  public PDNGramAnalyzer (@Nonnegative final int nGramSize)
+  {
+    ValueEnforcer.isGT0 (nGramSize, "GramSize");
+    m_nGramSize = nGramSize;
+  }
+
+  @Nonnegative
+  public int getGramSize ()
+  {
+    return m_nGramSize;
+  }
+
+  @Override
+  protected TokenStreamComponents createComponents (final String sFieldName)
+  {
+    final StandardTokenizer aSource = new StandardTokenizer ();
+    TokenStream aResult = new LowerCaseFilter (aSource);
+    aResult = new NGramTokenFilter (aResult, m_nGramSize, m_nGramSize, false);
+    return new TokenStreamComponents (aSource, aResult);
+  }
+}
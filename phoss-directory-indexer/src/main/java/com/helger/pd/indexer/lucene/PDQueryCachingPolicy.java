@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
+
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.pd.indexer.storage.PDQueryManager;
+import com.helger.pd.indexer.storage.field.PDField;
+
+/**
+ * The query caching policy of the Peppol Directory. The "deleted" filter as
+ * well as country code and document type filters are cached on first use,
+ * because they are part of many queries. All other queries are cached
+ * depending on their usage frequency.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@ThreadSafe
+public class PDQueryCachingPolicy implements QueryCachingPolicy
+{
+  private final UsageTrackingQueryCachingPolicy m_aDelegate = new UsageTrackingQueryCachingPolicy ();
+
+  /**
+   * Check if the passed query should always be cached.
+   *
+   * @param aQuery
+   *        The query to check. May not be <code>null</code>.
+   * @return <code>true</code> if it is a filter that is always cached.
+   */
+  public static boolean isAlwaysCached (@Nonnull final Query aQuery)
+  {
+    if (aQuery.equals (PDQueryManager.getDeletedQuery ()))
+      return true;
+    if (aQuery instanceof TermQuery)
+    {
+      final String sFieldName = ((TermQuery) aQuery).getTerm ().field ();
+      return sFieldName.equals (PDField.COUNTRY_CODE.getFieldName ()) || sFieldName.equals (PDField.DOCTYPE_ID.getFieldName ());
+    }
+    return false;
+  }
+
+  public void onUse (@Nonnull final Query aQuery)
+  {
+    m_aDelegate.onUse (aQuery);
+  }
+
+  public boolean shouldCache (@Nonnull final Query aQuery) throws IOException
+  {
+    return isAlwaysCached (aQuery) || m_aDelegate.shouldCache (aQuery);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Delegate", m_aDelegate).getToString ();
+  }
+}
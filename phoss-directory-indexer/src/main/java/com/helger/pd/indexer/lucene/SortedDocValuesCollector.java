@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.SimpleCollector;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A Lucene {@link Collector} that reads the value of a single sorted doc
+ * values field of all matching documents, without loading the stored fields.
+ * As the value is identified by its ordinal inside a segment, the converted
+ * value is reused for consecutive documents with the same ordinal. This is
+ * especially efficient if the index is sorted by that field.
+ *
+ * @author Philip Helger
+ * @param <T>
+ *        The converted value type
+ * @since 0.9.5
+ */
+public class SortedDocValuesCollector <T> extends SimpleCollector
+{
+  private final String m_sFieldName;
+  private final Function <String, ? extends T> m_aConverter;
+  private final Consumer <? super T> m_aConsumer;
+  private SortedDocValues m_aDocValues;
+  private int m_nLastOrd = -1;
+  private T m_aLastValue;
+
+  /**
+   * Constructor
+   *
+   * @param sFieldName
+   *        The name of the sorted doc values field to read. May neither be
+   *        <code>null</code> nor empty.
+   * @param aConverter
+   *        The converter from the string value to the target type. May not be
+   *        <code>null</code>.
+   * @param aConsumer
+   *        The consumer that will take the converted value of each document.
+   *        May not be <code>null</code>.
+   */
+  public SortedDocValuesCollector (@Nonnull @Nonempty final String sFieldName,
+                                   @Nonnull final Function <String, ? extends T> aConverter,
+                                   @Nonnull final Consumer <? super T> aConsumer)
+  {
+    m_sFieldName = ValueEnforcer.notEmpty (sFieldName, "FieldName");
+    m_aConverter = ValueEnforcer.notNull (aConverter, "Converter");
+    m_aConsumer = ValueEnforcer.notNull (aConsumer, "Consumer");
+  }
+
+  public boolean needsScores ()
+  {
+    return false;
+  }
+
+  @Override
+  protected void doSetNextReader (@Nonnull final LeafReaderContext aCtx) throws IOException
+  {
+    // Ordinals are only valid per segment
+    m_aDocValues = DocValues.getSorted (aCtx.reader (), m_sFieldName);
+    m_nLastOrd = -1;
+    m_aLastValue = null;
+  }
+
+  @Override
+  public void collect (final int nDocID) throws IOException
+  {
+    if (!m_aDocValues.advanceExact (nDocID))
+    {
+      // Document without a value
+      return;
+    }
+
+    final int nOrd = m_aDocValues.ordValue ();
+    if (nOrd != m_nLastOrd)
+    {
+      m_aLastValue = m_aConverter.apply (m_aDocValues.binaryValue ().utf8ToString ());
+      m_nLastOrd = nOrd;
+    }
+    m_aConsumer.accept (m_aLastValue);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("FieldName", m_sFieldName)
+                                       .append ("Converter", m_aConverter)
+                                       .append ("Consumer", m_aConsumer)
+                                       .getToString ();
+  }
+}
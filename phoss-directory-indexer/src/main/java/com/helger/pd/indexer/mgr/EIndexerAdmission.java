@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.mgr;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.id.IHasID;
+import com.helger.commons.lang.EnumHelper;
+import com.helger.commons.name.IHasDisplayName;
+
+/**
+ * The result of the admission control of new work items from the REST
+ * interface.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public enum EIndexerAdmission implements IHasID <String>, IHasDisplayName
+{
+  /** The work item may be queued */
+  ADMITTED ("admitted", "Admitted"),
+  /** The indexer queue is above the high watermark */
+  SATURATED ("saturated", "Queue saturated"),
+  /** The client has too many pending work items */
+  QUOTA_EXCEEDED ("quota", "Client quota exceeded");
+
+  private final String m_sID;
+  private final String m_sDisplayName;
+
+  private EIndexerAdmission (@Nonnull @Nonempty final String sID, @Nonnull @Nonempty final String sDisplayName)
+  {
+    m_sID = sID;
+    m_sDisplayName = sDisplayName;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getDisplayName ()
+  {
+    return m_sDisplayName;
+  }
+
+  /**
+   * @return <code>true</code> if the work item may be queued,
+   *         <code>false</code> if it must be rejected.
+   */
+  public boolean isAdmitted ()
+  {
+    return this == ADMITTED;
+  }
+
+  @Nullable
+  public static EIndexerAdmission getFromIDOrNull (@Nullable final String sID)
+  {
+    return EnumHelper.getFromIDOrNull (EIndexerAdmission.class, sID);
+  }
+}
@@ -22,8 +22,11 @@ import java.io.IOException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.state.ESuccess;
 import com.helger.pd.indexer.businesscard.PDExtendedBusinessCard;
+import com.helger.pd.indexer.storage.PDStorageBulkItem;
 import com.helger.pd.indexer.storage.PDStoredMetaData;
 import com.helger.peppolid.IParticipantIdentifier;
 
@@ -69,4 +72,43 @@ public interface IPDStorageManager extends Closeable
    */
   @Nonnull
   ESuccess deleteEntry (@Nonnull IParticipantIdentifier aParticipantID, @Nullable PDStoredMetaData aMetaData) throws IOException;
+
+  /**
+   * Create new entries or update existing entries in a single pass. Compared
+   * to calling
+   * {@link #createOrUpdateEntry(IParticipantIdentifier, PDExtendedBusinessCard, PDStoredMetaData)}
+   * for each item, there is only a single summary log entry and audit item.
+   *
+   * @param aItems
+   *        The items to be created or updated. May not be <code>null</code>.
+   * @return The success of each item, in the same order as the provided
+   *         items. Items without an extended business card fail, without
+   *         affecting the other items. Never <code>null</code>.
+   * @throws IOException
+   *         in case of IO error
+   * @since 0.9.5
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <ESuccess> createOrUpdateEntries (@Nonnull Iterable <? extends PDStorageBulkItem> aItems) throws IOException;
+
+  /**
+   * Delete existing entries (not recoverable) in a single pass. The extended
+   * business cards of the items are ignored. All deletes are applied
+   * atomically, so either all items succeed or all fail. Like
+   * {@link #deleteEntry(IParticipantIdentifier, PDStoredMetaData)} deleting a
+   * participant ID that is not contained in the index is no error.
+   *
+   * @param aItems
+   *        The items to be deleted. May not be <code>null</code>.
+   * @return The success of each item, in the same order as the provided
+   *         items. As the deletes are applied atomically, all items have the
+   *         same status. Never <code>null</code>.
+   * @throws IOException
+   *         in case of IO error
+   * @since 0.9.5
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <ESuccess> deleteEntries (@Nonnull Iterable <? extends PDStorageBulkItem> aItems) throws IOException;
 }
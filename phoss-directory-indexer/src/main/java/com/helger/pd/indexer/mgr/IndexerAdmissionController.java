@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.mgr;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.concurrent.SimpleReadWriteLock;
+import com.helger.commons.mutable.MutableInt;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.pd.indexer.index.IIndexerWorkItem;
+
+/**
+ * Admission control for work items from the REST interface. The queue is
+ * considered saturated once its size reaches the high watermark and stays
+ * saturated until its size dropped to the low watermark again. Additionally
+ * each client (identified by the owner ID of the work items) may only have a
+ * limited number of pending work items, so that a single SMP cannot starve the
+ * others.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@ThreadSafe
+public final class IndexerAdmissionController
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (IndexerAdmissionController.class);
+
+  private final int m_nHighWatermark;
+  private final int m_nLowWatermark;
+  private final int m_nMaxPendingPerClient;
+  private final AtomicBoolean m_aSaturated = new AtomicBoolean (false);
+  private final AtomicLong m_aRejectedSaturatedCount = new AtomicLong (0);
+  private final AtomicLong m_aRejectedQuotaCount = new AtomicLong (0);
+  private final SimpleReadWriteLock m_aRWLock = new SimpleReadWriteLock ();
+  @GuardedBy ("m_aRWLock")
+  private final ICommonsMap <String, MutableInt> m_aPendingPerClient = new CommonsHashMap <> ();
+
+  /**
+   * Constructor
+   *
+   * @param nHighWatermark
+   *        The queue size from which on new items are rejected. Must be &gt; 0.
+   * @param nLowWatermark
+   *        The queue size to which a saturated queue must drop, before new
+   *        items are accepted again. Must be &ge; 0 and &lt; the high
+   *        watermark.
+   * @param nMaxPendingPerClient
+   *        The maximum number of pending items per client. Must be &gt; 0.
+   */
+  public IndexerAdmissionController (@Nonnegative final int nHighWatermark,
+                                     @Nonnegative final int nLowWatermark,
+                                     @Nonnegative final int nMaxPendingPerClient)
+  {
+    ValueEnforcer.isGT0 (nHighWatermark, "HighWatermark");
+    ValueEnforcer.isBetweenInclusive (nLowWatermark, "LowWatermark", 0, nHighWatermark - 1);
+    ValueEnforcer.isGT0 (nMaxPendingPerClient, "MaxPendingPerClient");
+    m_nHighWatermark = nHighWatermark;
+    m_nLowWatermark = nLowWatermark;
+    m_nMaxPendingPerClient = nMaxPendingPerClient;
+  }
+
+  /**
+   * @return The queue size from which on new items are rejected. Always &gt;
+   *         0.
+   */
+  @Nonnegative
+  public int getHighWatermark ()
+  {
+    return m_nHighWatermark;
+  }
+
+  /**
+   * @return The queue size to which a saturated queue must drop, before new
+   *         items are accepted again. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getLowWatermark ()
+  {
+    return m_nLowWatermark;
+  }
+
+  /**
+   * @return The maximum number of pending items per client. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxPendingPerClient ()
+  {
+    return m_nMaxPendingPerClient;
+  }
+
+  /**
+   * @return <code>true</code> if the queue was saturated upon the last check.
+   */
+  public boolean isSaturated ()
+  {
+    return m_aSaturated.get ();
+  }
+
+  /**
+   * @return The number of requests rejected because the queue was saturated.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public long getRejectedSaturatedCount ()
+  {
+    return m_aRejectedSaturatedCount.get ();
+  }
+
+  /**
+   * @return The number of requests rejected because the client quota was
+   *         exceeded. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getRejectedQuotaCount ()
+  {
+    return m_aRejectedQuotaCount.get ();
+  }
+
+  /**
+   * @param sClientID
+   *        The client ID to check. May be <code>null</code>.
+   * @return The number of pending work items of the provided client. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public int getPendingCount (@Nullable final String sClientID)
+  {
+    return m_aRWLock.readLockedInt ( () -> {
+      final MutableInt aCount = m_aPendingPerClient.get (sClientID);
+      return aCount == null ? 0 : aCount.intValue ();
+    });
+  }
+
+  /**
+   * Check if a new work item of the provided client may be queued.
+   *
+   * @param sClientID
+   *        The ID of the requesting client. May not be <code>null</code>.
+   * @param nQueueSize
+   *        The current size of the indexer queue. Must be &ge; 0.
+   * @return The admission result. Never <code>null</code>.
+   */
+  @Nonnull
+  public EIndexerAdmission getAdmission (@Nonnull final String sClientID, @Nonnegative final int nQueueSize)
+  {
+    ValueEnforcer.notNull (sClientID, "ClientID");
+
+    if (nQueueSize >= m_nHighWatermark)
+    {
+      if (m_aSaturated.compareAndSet (false, true))
+        LOGGER.warn ("The indexer queue reached the high watermark of " + m_nHighWatermark + " items - rejecting new requests");
+    }
+    else
+      if (nQueueSize <= m_nLowWatermark)
+      {
+        if (m_aSaturated.compareAndSet (true, false))
+          LOGGER.info ("The indexer queue dropped to the low watermark of " + m_nLowWatermark + " items - accepting new requests");
+      }
+
+    if (m_aSaturated.get ())
+    {
+      m_aRejectedSaturatedCount.incrementAndGet ();
+      return EIndexerAdmission.SATURATED;
+    }
+
+    if (getPendingCount (sClientID) >= m_nMaxPendingPerClient)
+    {
+      m_aRejectedQuotaCount.incrementAndGet ();
+      return EIndexerAdmission.QUOTA_EXCEEDED;
+    }
+
+    return EIndexerAdmission.ADMITTED;
+  }
+
+  /**
+   * Remember that a work item was queued.
+   *
+   * @param aWorkItem
+   *        The queued work item. May not be <code>null</code>.
+   */
+  public void onQueued (@Nonnull final IIndexerWorkItem aWorkItem)
+  {
+    m_aRWLock.writeLocked ( () -> {
+      m_aPendingPerClient.computeIfAbsent (aWorkItem.getOwnerID (), k -> new MutableInt (0)).inc ();
+    });
+  }
+
+  /**
+   * Remember that a queued work item was handled or dropped.
+   *
+   * @param aWorkItem
+   *        The work item that is no longer pending. May not be
+   *        <code>null</code>.
+   */
+  public void onDone (@Nonnull final IIndexerWorkItem aWorkItem)
+  {
+    m_aRWLock.writeLocked ( () -> {
+      final MutableInt aCount = m_aPendingPerClient.get (aWorkItem.getOwnerID ());
+      if (aCount != null)
+      {
+        aCount.dec ();
+        if (aCount.intValue () <= 0)
+          m_aPendingPerClient.remove (aWorkItem.getOwnerID ());
+      }
+    });
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("HighWatermark", m_nHighWatermark)
+                                       .append ("LowWatermark", m_nLowWatermark)
+                                       .append ("MaxPendingPerClient", m_nMaxPendingPerClient)
+                                       .append ("Saturated", m_aSaturated.get ())
+                                       .getToString ();
+  }
+}
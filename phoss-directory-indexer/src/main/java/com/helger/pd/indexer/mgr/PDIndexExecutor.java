@@ -16,6 +16,7 @@
  */
 package com.helger.pd.indexer.mgr;
 
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import javax.annotation.Nonnegative;
@@ -25,8 +26,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.helger.commons.state.ESuccess;
+import com.helger.commons.wrapper.Wrapper;
 import com.helger.pd.indexer.businesscard.IPDBusinessCardProvider;
 import com.helger.pd.indexer.businesscard.PDExtendedBusinessCard;
+import com.helger.pd.indexer.index.EIndexerFailureType;
 import com.helger.pd.indexer.index.IIndexerWorkItem;
 import com.helger.peppolid.IParticipantIdentifier;
 
@@ -57,7 +60,8 @@ final class PDIndexExecutor
    * @param aSuccessHandler
    *        A callback that is invoked upon success only.
    * @param aFailureHandler
-   *        A callback that is invoked upon failure only.
+   *        A callback that is invoked upon failure only. It receives the type
+   *        of the failure as well.
    * @return {@link ESuccess}
    */
   @Nonnull
@@ -65,7 +69,7 @@ final class PDIndexExecutor
                                           @Nonnull final IIndexerWorkItem aWorkItem,
                                           @Nonnegative final int nRetryCount,
                                           @Nonnull final Consumer <? super IIndexerWorkItem> aSuccessHandler,
-                                          @Nonnull final Consumer <? super IIndexerWorkItem> aFailureHandler)
+                                          @Nonnull final BiConsumer <? super IIndexerWorkItem, ? super EIndexerFailureType> aFailureHandler)
   {
     LOGGER.info ("Execute work item " + aWorkItem.getLogText () + " - " + (nRetryCount > 0 ? "retry #" + nRetryCount : "initial try"));
 
@@ -76,6 +80,8 @@ final class PDIndexExecutor
       return ESuccess.FAILURE;
     }
 
+    // The type of the last failure that occurred
+    final Wrapper <EIndexerFailureType> aFailureType = new Wrapper <> (EIndexerFailureType.UNKNOWN);
     try
     {
       final IParticipantIdentifier aParticipantID = aWorkItem.getParticipantID ();
@@ -86,7 +92,7 @@ final class PDIndexExecutor
         case CREATE_UPDATE:
         {
           // Get BI from participant (e.g. from SMP)
-          final PDExtendedBusinessCard aBI = aBCProvider.getBusinessCard (aParticipantID);
+          final PDExtendedBusinessCard aBI = aBCProvider.getBusinessCard (aParticipantID, aFailureType::set);
           if (aBI == null)
           {
             // No/invalid extension present - no need to try again
@@ -95,6 +101,7 @@ final class PDIndexExecutor
           else
           {
             // Got data - put in storage
+            aFailureType.set (EIndexerFailureType.STORAGE);
             eSuccess = aStorageMgr.createOrUpdateEntry (aParticipantID, aBI, aWorkItem.getAsMetaData ());
           }
           break;
@@ -102,21 +109,24 @@ final class PDIndexExecutor
         case DELETE:
         {
           // Really delete it
+          aFailureType.set (EIndexerFailureType.STORAGE);
           eSuccess = aStorageMgr.deleteEntry (aParticipantID, aWorkItem.getAsMetaData ());
           break;
         }
         case SYNC:
         {
           // Get BI from participant (e.g. from SMP)
-          final PDExtendedBusinessCard aBI = aBCProvider.getBusinessCard (aParticipantID);
+          final PDExtendedBusinessCard aBI = aBCProvider.getBusinessCard (aParticipantID, aFailureType::set);
           if (aBI == null)
           {
             // No/invalid extension present - delete from index
+            aFailureType.set (EIndexerFailureType.STORAGE);
             eSuccess = aStorageMgr.deleteEntry (aParticipantID, aWorkItem.getAsMetaData ());
           }
           else
           {
             // Got data - put in storage
+            aFailureType.set (EIndexerFailureType.STORAGE);
             eSuccess = aStorageMgr.createOrUpdateEntry (aParticipantID, aBI, aWorkItem.getAsMetaData ());
           }
           break;
@@ -134,16 +144,17 @@ final class PDIndexExecutor
         return ESuccess.SUCCESS;
       }
 
-      // else error storing data
+      // else error retrieving or storing data
     }
     catch (final Exception ex)
     {
       LOGGER.error ("Error in executing work item " + aWorkItem.getLogText (), ex);
+      aFailureType.set (EIndexerFailureType.UNKNOWN);
       // Fall through
     }
 
     // Invoke failure handler
-    aFailureHandler.accept (aWorkItem);
+    aFailureHandler.accept (aWorkItem, aFailureType.get ());
 
     return ESuccess.FAILURE;
   }
@@ -20,7 +20,6 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.List;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.GuardedBy;
@@ -28,11 +27,14 @@ import javax.annotation.concurrent.GuardedBy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.helger.commons.CGlobal;
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.Nonempty;
-import com.helger.commons.collection.impl.CommonsHashSet;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsEnumMap;
+import com.helger.commons.collection.impl.CommonsHashMap;
 import com.helger.commons.collection.impl.ICommonsList;
-import com.helger.commons.collection.impl.ICommonsSet;
+import com.helger.commons.collection.impl.ICommonsMap;
 import com.helger.commons.concurrent.SimpleReadWriteLock;
 import com.helger.commons.datetime.PDTFactory;
 import com.helger.commons.io.file.FileOperationManager;
@@ -40,15 +42,20 @@ import com.helger.commons.state.EChange;
 import com.helger.commons.string.ToStringGenerator;
 import com.helger.dao.DAOException;
 import com.helger.pd.indexer.businesscard.IPDBusinessCardProvider;
+import com.helger.pd.indexer.index.EIndexerFailureType;
+import com.helger.pd.indexer.index.EIndexerWorkItemLane;
 import com.helger.pd.indexer.index.EIndexerWorkItemType;
 import com.helger.pd.indexer.index.IIndexerWorkItem;
 import com.helger.pd.indexer.index.IndexerWorkItem;
+import com.helger.pd.indexer.index.IndexerWorkItemJournal;
 import com.helger.pd.indexer.index.IndexerWorkItemQueue;
 import com.helger.pd.indexer.job.ReIndexJob;
+import com.helger.pd.indexer.reindex.IReIndexRetryPolicy;
 import com.helger.pd.indexer.reindex.IReIndexWorkItem;
 import com.helger.pd.indexer.reindex.IReIndexWorkItemList;
 import com.helger.pd.indexer.reindex.ReIndexWorkItem;
 import com.helger.pd.indexer.reindex.ReIndexWorkItemList;
+import com.helger.pd.indexer.settings.PDServerConfiguration;
 import com.helger.peppolid.IParticipantIdentifier;
 import com.helger.photon.app.io.WebFileIO;
 import com.helger.quartz.SimpleScheduleBuilder;
@@ -56,14 +63,12 @@ import com.helger.quartz.TriggerKey;
 import com.helger.schedule.quartz.GlobalQuartzScheduler;
 import com.helger.xml.microdom.IMicroDocument;
 import com.helger.xml.microdom.IMicroElement;
-import com.helger.xml.microdom.MicroDocument;
 import com.helger.xml.microdom.convert.MicroTypeConverter;
 import com.helger.xml.microdom.serialize.MicroReader;
-import com.helger.xml.microdom.serialize.MicroWriter;
 
 /**
- * The global indexer manager that takes an item for queuing and maintains the
- * uniqueness of the items to queue.
+ * The global indexer manager that takes an item for queuing and coalesces the
+ * pending items of the same participant.
  *
  * @author Philip Helger
  */
@@ -72,7 +77,6 @@ public final class PDIndexerManager implements Closeable
   public static final String HOST_LOCALHOST = "localhost";
 
   private static final Logger LOGGER = LoggerFactory.getLogger (PDIndexerManager.class);
-  private static final String ELEMENT_ROOT = "root";
   private static final String ELEMENT_ITEM = "item";
 
   private final SimpleReadWriteLock m_aRWLock = new SimpleReadWriteLock ();
@@ -80,30 +84,123 @@ public final class PDIndexerManager implements Closeable
   private final File m_aIndexerWorkItemFile;
   private final ReIndexWorkItemList m_aReIndexList;
   private final ReIndexWorkItemList m_aDeadList;
+  private final IndexerWorkItemJournal m_aJournal;
+  private final IndexerAdmissionController m_aAdmission;
   private final IndexerWorkItemQueue m_aIndexerWorkQueue;
   private final TriggerKey m_aTriggerKey;
 
   /**
-   * This set contains all work items that are not yet finished. It contains all
+   * This map contains the ID of the latest work item per participant that is
+   * not yet finished. The key is the URI encoded participant ID. It covers the
    * items in the indexer work queue as well as the ones in the re-index work
    * item list. Once the items are moved to the dead list, they are removed from
-   * here.
+   * here. An item that is not the latest of its participant was superseded and
+   * is not re-indexed upon failure. Upon startup it is filled from the
+   * persistent re-index list.
    */
   @GuardedBy ("m_aRWLock")
-  private final ICommonsSet <IIndexerWorkItem> m_aUniqueItems = new CommonsHashSet <> ();
+  private final ICommonsMap <String, String> m_aLatestItemIDs = new CommonsHashMap <> ();
+
+  /**
+   * The re-index items that are currently queued in the indexer work queue for
+   * their next retry. The key is the ID of the work item.
+   */
+  @GuardedBy ("m_aRWLock")
+  private final ICommonsMap <String, IReIndexWorkItem> m_aQueuedReIndexItems = new CommonsHashMap <> ();
+
+  /**
+   * The retry policy to use for failed work items, per failure type.
+   */
+  @GuardedBy ("m_aRWLock")
+  private final ICommonsMap <EIndexerFailureType, IReIndexRetryPolicy> m_aRetryPolicies = new CommonsEnumMap <> (EIndexerFailureType.class);
 
   // Status vars
   private final GlobalQuartzScheduler m_aScheduler;
 
+  @Nonnull
+  private static String _getKey (@Nonnull final IIndexerWorkItem aWorkItem)
+  {
+    return aWorkItem.getParticipantID ().getURIEncoded ();
+  }
+
+  @GuardedBy ("m_aRWLock")
+  private boolean _isLatest (@Nonnull final IIndexerWorkItem aWorkItem)
+  {
+    return aWorkItem.getID ().equals (m_aLatestItemIDs.get (_getKey (aWorkItem)));
+  }
+
   private void _onIndexSuccess (@Nonnull final IIndexerWorkItem aWorkItem)
   {
-    m_aRWLock.writeLockedBoolean ( () -> m_aUniqueItems.remove (aWorkItem));
+    m_aRWLock.writeLockedBoolean ( () -> m_aLatestItemIDs.remove (_getKey (aWorkItem), aWorkItem.getID ()));
+    m_aJournal.onComplete (aWorkItem);
+  }
+
+  @GuardedBy ("m_aRWLock")
+  private void _addToDeadList (@Nonnull final ReIndexWorkItem aItem)
+  {
+    // No longer pending
+    m_aLatestItemIDs.remove (_getKey (aItem.getWorkItem ()), aItem.getID ());
+
+    m_aDeadList.addItem (aItem);
+    LOGGER.info ("Added " + aItem.getLogText () + " to the dead list");
   }
 
-  private void _onIndexFailure (@Nonnull final IIndexerWorkItem aWorkItem)
+  private void _onIndexFailure (@Nonnull final IIndexerWorkItem aWorkItem, @Nonnull final EIndexerFailureType eFailureType)
   {
-    m_aReIndexList.addItem (new ReIndexWorkItem (aWorkItem));
-    // Keep it in the "Unique items" list until re-indexing worked
+    m_aRWLock.writeLock ().lock ();
+    try
+    {
+      // Keep it in the "latest items" map until re-indexing worked
+      if (_isLatest (aWorkItem))
+      {
+        final LocalDateTime aNow = PDTFactory.getCurrentLocalDateTime ();
+        final LocalDateTime aNextRetryDT = m_aRetryPolicies.get (eFailureType).getNextRetryDT (0, aNow);
+        if (aNextRetryDT != null)
+          m_aReIndexList.addItem (new ReIndexWorkItem (aWorkItem, aNextRetryDT));
+        else
+        {
+          LOGGER.info ("Not re-indexing work item " + aWorkItem.getLogText () + " because of the failure type " + eFailureType.getID ());
+          _addToDeadList (new ReIndexWorkItem (aWorkItem, aNow));
+        }
+      }
+      else
+        LOGGER.info ("Not re-indexing work item " + aWorkItem.getLogText () + " because it was superseded");
+    }
+    finally
+    {
+      m_aRWLock.writeLock ().unlock ();
+    }
+    // The re-index list is persistent itself
+    m_aJournal.onFail (aWorkItem);
+  }
+
+  private void _executeQueuedWorkItem (@Nonnull final IIndexerWorkItem aWorkItem)
+  {
+    try
+    {
+      final IReIndexWorkItem aReIndexItem = m_aRWLock.writeLockedGet ( () -> m_aQueuedReIndexItems.remove (aWorkItem.getID ()));
+      if (aReIndexItem != null)
+      {
+        LOGGER.info ("Try to re-index " + aReIndexItem.getLogText ());
+
+        PDIndexExecutor.executeWorkItem (m_aStorageMgr,
+                                         aWorkItem,
+                                         1 + aReIndexItem.getRetryCount (),
+                                         aSuccessItem -> _onReIndexSuccess (aSuccessItem),
+                                         (aFailureItem, eFailureType) -> _onReIndexFailure (aReIndexItem, eFailureType));
+      }
+      else
+        PDIndexExecutor.executeWorkItem (m_aStorageMgr,
+                                         aWorkItem,
+                                         0,
+                                         aSuccessItem -> _onIndexSuccess (aSuccessItem),
+                                         (aFailureItem, eFailureType) -> _onIndexFailure (aFailureItem, eFailureType));
+    }
+    finally
+    {
+      // No longer in the queue
+      m_aAdmission.onDone (aWorkItem);
+    }
   }
 
   private void _onReIndexSuccess (@Nonnull final IIndexerWorkItem aWorkItem)
@@ -111,9 +208,42 @@ public final class PDIndexerManager implements Closeable
     _onIndexSuccess (aWorkItem);
   }
 
-  private void _onReIndexFailure (@Nonnull final IReIndexWorkItem aReIndexItem)
+  private void _onReIndexFailure (@Nonnull final IReIndexWorkItem aReIndexItem, @Nonnull final EIndexerFailureType eFailureType)
   {
-    m_aReIndexList.incRetryCountAndAddItem (aReIndexItem);
+    m_aRWLock.writeLock ().lock ();
+    try
+    {
+      if (_isLatest (aReIndexItem.getWorkItem ()))
+      {
+        final LocalDateTime aNextRetryDT = m_aRetryPolicies.get (eFailureType)
+                                                           .getNextRetryDT (aReIndexItem.getRetryCount () + 1,
+                                                                            PDTFactory.getCurrentLocalDateTime ());
+        if (aNextRetryDT != null)
+          m_aReIndexList.incRetryCountAndAddItem (aReIndexItem, aNextRetryDT);
+        else
+        {
+          LOGGER.info ("Not re-indexing " + aReIndexItem.getLogText () + " again because of the failure type " + eFailureType.getID ());
+          _addToDeadList ((ReIndexWorkItem) aReIndexItem);
+        }
+      }
+      else
+        LOGGER.info ("Not re-indexing " + aReIndexItem.getLogText () + " again because it was superseded");
+    }
+    finally
+    {
+      m_aRWLock.writeLock ().unlock ();
+    }
+    // The re-index list is persistent itself
+    m_aJournal.onFail (aReIndexItem.getWorkItem ());
+  }
+
+  private void _onDroppedWorkItem (@Nonnull final IIndexerWorkItem aDroppedItem)
+  {
+    m_aRWLock.writeLocked ( () -> {
+      m_aQueuedReIndexItems.remove (aDroppedItem.getID ());
+    });
+    m_aAdmission.onDone (aDroppedItem);
+    m_aJournal.onComplete (aDroppedItem);
   }
 
   /**
@@ -121,7 +251,7 @@ public final class PDIndexerManager implements Closeable
    * Initialized the work item queue, the re-index queue and the dead-queue.<br>
    * Schedules the re-index job.<br>
    * Read all work items persisted to disk. This happens when the application is
-   * shutdown while elements are still in the queue.<br>
+   * shutdown or crashes while elements are still in the queue.<br>
    * Please note that the queuing of the items might directly trigger the usage
    * of the {@link PDMetaManager#getBusinessCardProvider()} so make sure to call
    * {@link PDMetaManager#setBusinessCardProvider(IPDBusinessCardProvider)}
@@ -136,21 +266,45 @@ public final class PDIndexerManager implements Closeable
   {
     m_aStorageMgr = ValueEnforcer.notNull (aStorageMgr, "StorageMgr");
 
-    // Remember the file because upon shutdown WebFileIO may already be
-    // discarded
+    // Only read for migration - all pending items are journaled since v0.9.5
     m_aIndexerWorkItemFile = WebFileIO.getDataIO ().getFile ("indexer-work-items.xml");
 
+    // Journal of pending work items
+    try
+    {
+      m_aJournal = new IndexerWorkItemJournal (WebFileIO.getDataIO ().getFile ("indexer-journal"),
+                                               PDServerConfiguration.getIndexerJournalSegmentMaxMB () * (long) CGlobal.BYTES_PER_MEGABYTE);
+    }
+    catch (final IOException ex)
+    {
+      throw new DAOException ("Failed to open the indexer work item journal", ex);
+    }
+
     // Re-index list
     m_aReIndexList = new ReIndexWorkItemList ("reindex-work-items.xml");
     // Dead list
     m_aDeadList = new ReIndexWorkItemList ("dead-work-items.xml");
 
+    // The persisted re-index items are still pending, so that they are not
+    // considered superseded when they are retried or fail again
+    m_aRWLock.writeLocked ( () -> {
+      for (final IReIndexWorkItem aItem : m_aReIndexList.getAllItems ())
+        m_aLatestItemIDs.put (_getKey (aItem.getWorkItem ()), aItem.getID ());
+    });
+
+    // Retry policies per failure type
+    for (final EIndexerFailureType eFailureType : EIndexerFailureType.values ())
+      m_aRetryPolicies.put (eFailureType, PDServerConfiguration.getReIndexRetryPolicy (eFailureType));
+
+    // Admission control for the REST interface
+    m_aAdmission = new IndexerAdmissionController (PDServerConfiguration.getIndexerQueueHighWatermark (),
+                                                   PDServerConfiguration.getIndexerQueueLowWatermark (),
+                                                   PDServerConfiguration.getIndexerQueueMaxPerClient ());
+
     // Main worker to perform the jobs
-    m_aIndexerWorkQueue = new IndexerWorkItemQueue (aQueueItem -> PDIndexExecutor.executeWorkItem (m_aStorageMgr,
-                                                                                                   aQueueItem,
-                                                                                                   0,
-                                                                                                   aSuccessItem -> _onIndexSuccess (aSuccessItem),
-                                                                                                   aFailureItem -> _onIndexFailure (aFailureItem)));
+    m_aIndexerWorkQueue = new IndexerWorkItemQueue (PDServerConfiguration.getIndexerWorkerCount (),
+                                                     PDServerConfiguration::getIndexerLaneWeight,
+                                                     this::_executeQueuedWorkItem);
 
     // Schedule re-index job
     m_aTriggerKey = ReIndexJob.schedule (SimpleScheduleBuilder.repeatMinutelyForever (1));
@@ -158,7 +312,12 @@ public final class PDIndexerManager implements Closeable
     // remember here
     m_aScheduler = GlobalQuartzScheduler.getInstance ();
 
-    // Read the file - may not be existing
+    // Queue all items recovered from the journal - they are already journaled
+    // The lane is not persisted, so the default lane is used
+    for (final IIndexerWorkItem aWorkItem : m_aJournal.getAllRecoveredItems ())
+      _queueUniqueWorkItem (aWorkItem, EIndexerWorkItemLane.getDefaultLane (aWorkItem.getType ()), false);
+
+    // Read the legacy file - may not be existing
     final IMicroDocument aDoc = MicroReader.readMicroXML (m_aIndexerWorkItemFile);
     if (aDoc != null)
     {
@@ -168,7 +327,7 @@ public final class PDIndexerManager implements Closeable
       for (final IMicroElement eItem : aDoc.getDocumentElement ().getAllChildElements (ELEMENT_ITEM))
       {
         final IIndexerWorkItem aWorkItem = MicroTypeConverter.convertToNative (eItem, IndexerWorkItem.class);
-        _queueUniqueWorkItem (aWorkItem);
+        _queueUniqueWorkItem (aWorkItem, EIndexerWorkItemLane.getDefaultLane (aWorkItem.getType ()), true);
       }
 
       // Delete the files to ensure it is not read again next startup time
@@ -178,49 +337,81 @@ public final class PDIndexerManager implements Closeable
 
   public void close () throws IOException
   {
-    // Get all remaining objects and save them for late reuse
+    // Unschedule the job first, so that it does not queue re-index items into
+    // the stopped queue. Use the saved instance because
+    // GlobalQuartzScheduler.getInstance() would fail because the global scope
+    // is already in destruction.
+    m_aScheduler.unscheduleJob (m_aTriggerKey);
+
+    // Get all remaining objects - they are still in the journal for later reuse
     final ICommonsList <IIndexerWorkItem> aRemainingWorkItems = m_aIndexerWorkQueue.stop ();
     if (aRemainingWorkItems.isNotEmpty ())
-    {
-      LOGGER.info ("Persisting " + aRemainingWorkItems.size () + " indexer work items");
-      final IMicroDocument aDoc = new MicroDocument ();
-      final IMicroElement eRoot = aDoc.appendElement (ELEMENT_ROOT);
-      for (final IIndexerWorkItem aItem : aRemainingWorkItems)
-        eRoot.appendChild (MicroTypeConverter.convertToMicroElement (aItem, ELEMENT_ITEM));
-      if (MicroWriter.writeToFile (aDoc, m_aIndexerWorkItemFile).isFailure ())
-        throw new IllegalStateException ("Failed to write IndexerWorkItems to " + m_aIndexerWorkItemFile);
-    }
-
-    // Unschedule the job to avoid problems on shutdown. Use the saved instance
-    // because GlobalQuartzScheduler.getInstance() would fail because the global
-    // scope is already in destruction.
-    m_aScheduler.unscheduleJob (m_aTriggerKey);
+      LOGGER.info ("Keeping " + aRemainingWorkItems.size () + " indexer work items in the journal");
+    m_aJournal.close ();
 
     // Close Lucene index etc.
     m_aStorageMgr.close ();
   }
 
   /**
-   * Queue a single work item of any type. If the item is already in the queue,
-   * it is ignored.
+   * Queue a single work item of any type. The item is coalesced with the
+   * pending items of the same participant: a create/update or delete item
+   * supersedes all pending items of the participant (last writer wins), whereas
+   * a synchronization item is ignored if another item of the participant is
+   * pending.
    *
    * @param aWorkItem
    *        Work item to be queued. May not be <code>null</code>.
-   * @return {@link EChange#CHANGED} if it was queued
+   * @param eLane
+   *        The queue lane to use. May not be <code>null</code>.
+   * @param bJournal
+   *        <code>true</code> to record the item in the journal,
+   *        <code>false</code> if it was recovered from the journal.
+   * @return {@link EChange#CHANGED} if it was queued, {@link EChange#UNCHANGED}
+   *         if it was merged into a pending item.
    */
   @Nonnull
-  private EChange _queueUniqueWorkItem (@Nonnull final IIndexerWorkItem aWorkItem)
+  private EChange _queueUniqueWorkItem (@Nonnull final IIndexerWorkItem aWorkItem,
+                                        @Nonnull final EIndexerWorkItemLane eLane,
+                                        final boolean bJournal)
   {
     ValueEnforcer.notNull (aWorkItem, "WorkItem");
+    ValueEnforcer.notNull (eLane, "Lane");
 
-    // Check for duplicate
+    // Persist before queuing, so that it is not lost
+    if (bJournal)
+      m_aJournal.onEnqueue (aWorkItem);
+
+    final String sKey = _getKey (aWorkItem);
+    ICommonsList <IIndexerWorkItem> aDroppedItems = new CommonsArrayList <> ();
+    boolean bMerged;
     m_aRWLock.writeLock ().lock ();
     try
     {
-      if (!m_aUniqueItems.add (aWorkItem))
+      if (aWorkItem.getType () == EIndexerWorkItemType.SYNC)
+      {
+        // A pending re-index item updates or deletes anyway
+        bMerged = m_aReIndexList.containsAnyItemOfParticipant (aWorkItem.getParticipantID ());
+      }
+      else
+      {
+        // Pending re-index items are superseded by the new item
+        for (final IReIndexWorkItem aReIndexItem : m_aReIndexList.getAndRemoveAllItemsOfParticipant (aWorkItem.getParticipantID ()))
+          LOGGER.info ("Removed " + aReIndexItem.getLogText () + " from the re-index list because it is superseded");
+        bMerged = false;
+      }
+
+      if (!bMerged)
       {
-        LOGGER.info ("Ignoring work item " + aWorkItem.getLogText () + " because it is already in the queue/re-index list!");
-        return EChange.UNCHANGED;
+        // Queue it and drop all superseded items
+        // Count it upfront, as it may be handled before queueObject returns
+        m_aAdmission.onQueued (aWorkItem);
+        aDroppedItems = m_aIndexerWorkQueue.queueObject (aWorkItem, eLane);
+        bMerged = aDroppedItems.containsAny (x -> x == aWorkItem);
+        if (bMerged)
+          m_aAdmission.onDone (aWorkItem);
+        else
+          m_aLatestItemIDs.put (sKey, aWorkItem.getID ());
       }
     }
     finally
@@ -228,19 +419,32 @@ public final class PDIndexerManager implements Closeable
       m_aRWLock.writeLock ().unlock ();
     }
 
-    // Queue it
-    m_aIndexerWorkQueue.queueObject (aWorkItem);
-    LOGGER.info ("Queued work item " + aWorkItem.getLogText ());
+    // Superseded items are done
+    for (final IIndexerWorkItem aDroppedItem : aDroppedItems)
+      if (aDroppedItem != aWorkItem)
+      {
+        LOGGER.info ("Dropped work item " + aDroppedItem.getLogText () + " because it is superseded");
+        _onDroppedWorkItem (aDroppedItem);
+      }
+
+    if (bMerged)
+    {
+      LOGGER.info ("Ignoring work item " + aWorkItem.getLogText () + " because another item of the participant is pending");
+      m_aJournal.onComplete (aWorkItem);
+      return EChange.UNCHANGED;
+    }
+
+    LOGGER.info ("Queued work item " + aWorkItem.getLogText () + " in lane " + eLane.getID ());
 
     // Remove the entry from the dead list to avoid spamming the dead list
-    if (m_aDeadList.getAndRemoveEntry (x -> x.getWorkItem ().equals (aWorkItem)) != null)
+    if (m_aDeadList.getAndRemoveItemOfParticipant (aWorkItem.getParticipantID (), aWorkItem.getType ()) != null)
       LOGGER.info ("Removed the new work item " + aWorkItem.getLogText () + " from the dead list");
 
     return EChange.CHANGED;
   }
 
   /**
-   * Queue a new work item
+   * Queue a new work item in the default lane of the type.
    *
    * @param aParticipantID
    *        Participant ID to use.
@@ -251,69 +455,235 @@ public final class PDIndexerManager implements Closeable
    * @param sRequestingHost
    *        Requesting host (IP address)
    * @return {@link EChange#UNCHANGED} if the item was queued,
-   *         {@link EChange#UNCHANGED} if this item is already in the queue!
+   *         {@link EChange#UNCHANGED} if this item was merged into a pending
+   *         item of the same participant!
+   * @see EIndexerWorkItemLane#getDefaultLane(EIndexerWorkItemType)
    */
   @Nonnull
   public EChange queueWorkItem (@Nonnull final IParticipantIdentifier aParticipantID,
                                 @Nonnull final EIndexerWorkItemType eType,
                                 @Nonnull @Nonempty final String sOwnerID,
                                 @Nonnull @Nonempty final String sRequestingHost)
+  {
+    return queueWorkItem (aParticipantID, eType, sOwnerID, sRequestingHost, EIndexerWorkItemLane.getDefaultLane (eType));
+  }
+
+  /**
+   * Queue a new work item
+   *
+   * @param aParticipantID
+   *        Participant ID to use.
+   * @param eType
+   *        Action type.
+   * @param sOwnerID
+   *        Owner of this action
+   * @param sRequestingHost
+   *        Requesting host (IP address)
+   * @param eLane
+   *        The queue lane to use. May not be <code>null</code>.
+   * @return {@link EChange#UNCHANGED} if the item was queued,
+   *         {@link EChange#UNCHANGED} if this item was merged into a pending
+   *         item of the same participant!
+   * @since 0.9.5
+   */
+  @Nonnull
+  public EChange queueWorkItem (@Nonnull final IParticipantIdentifier aParticipantID,
+                                @Nonnull final EIndexerWorkItemType eType,
+                                @Nonnull @Nonempty final String sOwnerID,
+                                @Nonnull @Nonempty final String sRequestingHost,
+                                @Nonnull final EIndexerWorkItemLane eLane)
   {
     // Build item
     final IIndexerWorkItem aWorkItem = new IndexerWorkItem (aParticipantID, eType, sOwnerID, sRequestingHost);
     // And queue it
-    return _queueUniqueWorkItem (aWorkItem);
+    return _queueUniqueWorkItem (aWorkItem, eLane, true);
+  }
+
+  /**
+   * Queue a re-index item for its next retry in the indexer work queue, so that
+   * it is handled by the indexer workers. A retry never supersedes another
+   * item: if the item is no longer the latest item of its participant it was
+   * superseded while it was taken from the re-index list and it is dropped. If
+   * another item of the participant is pending, the retry is merged into it
+   * like a synchronization item.
+   *
+   * @param aReIndexItem
+   *        The item that was removed from the re-index list. May not be
+   *        <code>null</code>.
+   */
+  private void _queueReIndexWorkItem (@Nonnull final IReIndexWorkItem aReIndexItem)
+  {
+    final IIndexerWorkItem aWorkItem = aReIndexItem.getWorkItem ();
+
+    // It is no longer in the persistent re-index list
+    m_aJournal.onEnqueue (aWorkItem);
+
+    final boolean bLatest;
+    boolean bQueued = false;
+    boolean bStopped = false;
+    m_aRWLock.writeLock ().lock ();
+    try
+    {
+      bLatest = _isLatest (aWorkItem);
+      if (bLatest)
+      {
+        // Count it upfront, as it may be handled before queueObject returns
+        m_aQueuedReIndexItems.put (aWorkItem.getID (), aReIndexItem);
+        m_aAdmission.onQueued (aWorkItem);
+        try
+        {
+          bQueued = m_aIndexerWorkQueue.queueObjectIfNonePending (aWorkItem, EIndexerWorkItemLane.REINDEX).isEmpty ();
+          if (!bQueued)
+          {
+            // Merged into a pending item of the participant
+            LOGGER.info ("Not re-indexing " + aReIndexItem.getLogText () + " because another item of the participant is pending");
+            m_aLatestItemIDs.remove (_getKey (aWorkItem), aWorkItem.getID ());
+          }
+        }
+        catch (final IllegalStateException ex)
+        {
+          // The queue is already stopped - keep it for the next start
+          LOGGER.info ("Keeping " + aReIndexItem.getLogText () + " in the re-index list because the indexer is stopping");
+          m_aQueuedReIndexItems.remove (aWorkItem.getID ());
+          m_aReIndexList.addItem ((ReIndexWorkItem) aReIndexItem);
+          bStopped = true;
+        }
+      }
+    }
+    finally
+    {
+      m_aRWLock.writeLock ().unlock ();
+    }
+
+    if (!bLatest)
+    {
+      LOGGER.info ("Not re-indexing " + aReIndexItem.getLogText () + " because it was superseded");
+      m_aJournal.onComplete (aWorkItem);
+    }
+    else
+      if (bStopped)
+      {
+        m_aAdmission.onDone (aWorkItem);
+        // The re-index list is persistent itself
+        m_aJournal.onFail (aWorkItem);
+      }
+      else
+        if (!bQueued)
+          _onDroppedWorkItem (aWorkItem);
   }
 
   /**
    * Expire all re-index entries that are in the list for a too long time. This
    * is called from a scheduled job only. All respective items are move from the
-   * re-index list to the dead list.
+   * re-index list to the dead list. Only the expired items are touched.
    */
   public void expireOldEntries ()
   {
     // Expire old entries
-    final ICommonsList <IReIndexWorkItem> aExpiredItems = m_aReIndexList.getAndRemoveAllEntries (IReIndexWorkItem::isExpired);
+    final ICommonsList <IReIndexWorkItem> aExpiredItems = m_aReIndexList.getAndRemoveAllExpiredEntries (PDTFactory.getCurrentLocalDateTime ());
     if (aExpiredItems.isNotEmpty ())
     {
       LOGGER.info ("Expiring " + aExpiredItems.size () + " re-index work items and move them to the dead list");
 
-      for (final IReIndexWorkItem aItem : aExpiredItems)
-      {
-        // remove them from the overall list but move to dead item list
-        m_aRWLock.writeLockedBoolean ( () -> m_aUniqueItems.remove (aItem.getWorkItem ()));
-
-        // move all to the dead item list
-        m_aDeadList.addItem ((ReIndexWorkItem) aItem);
-        LOGGER.info ("Added " + aItem.getLogText () + " to the dead list");
-      }
+      // move all to the dead item list
+      m_aRWLock.writeLocked ( () -> {
+        for (final IReIndexWorkItem aItem : aExpiredItems)
+          _addToDeadList ((ReIndexWorkItem) aItem);
+      });
     }
   }
 
   /**
    * Re-index all entries that are ready to be re-indexed now. This is called
-   * from a scheduled job only.
+   * from a scheduled job only. Only the due items are touched and they are
+   * handed over to the indexer workers in the re-index lane.
    */
   public void reIndexParticipantData ()
   {
     final LocalDateTime aNow = PDTFactory.getCurrentLocalDateTime ();
 
     // Get and remove all items to re-index "now"
-    final List <IReIndexWorkItem> aReIndexNowItems = m_aReIndexList.getAndRemoveAllEntries (aWorkItem -> aWorkItem.isRetryPossible (aNow));
+    final ICommonsList <IReIndexWorkItem> aReIndexNowItems = m_aReIndexList.getAndRemoveAllDueEntries (aNow);
 
     if (LOGGER.isDebugEnabled ())
       LOGGER.debug ("Re-indexing " + aReIndexNowItems.size () + " work items");
 
     for (final IReIndexWorkItem aReIndexItem : aReIndexNowItems)
-    {
-      LOGGER.info ("Try to re-index " + aReIndexItem.getLogText ());
+      _queueReIndexWorkItem (aReIndexItem);
+  }
 
-      PDIndexExecutor.executeWorkItem (m_aStorageMgr,
-                                       aReIndexItem.getWorkItem (),
-                                       1 + aReIndexItem.getRetryCount (),
-                                       aSuccessItem -> _onReIndexSuccess (aSuccessItem),
-                                       aFailureItem -> _onReIndexFailure (aReIndexItem));
-    }
+  /**
+   * Get the retry policy that is used for work items that failed with the
+   * provided failure type.
+   *
+   * @param eFailureType
+   *        The failure type to query. May not be <code>null</code>.
+   * @return The retry policy. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public IReIndexRetryPolicy getRetryPolicy (@Nonnull final EIndexerFailureType eFailureType)
+  {
+    ValueEnforcer.notNull (eFailureType, "FailureType");
+    return m_aRWLock.readLockedGet ( () -> m_aRetryPolicies.get (eFailureType));
+  }
+
+  /**
+   * Set the retry policy to use for work items that fail with the provided
+   * failure type. By default the retry policies are taken from the
+   * configuration.
+   *
+   * @param eFailureType
+   *        The failure type to set the policy for. May not be
+   *        <code>null</code>.
+   * @param aRetryPolicy
+   *        The retry policy to use. May not be <code>null</code>.
+   * @since 0.9.5
+   * @see PDServerConfiguration#getReIndexRetryPolicy(EIndexerFailureType)
+   */
+  public void setRetryPolicy (@Nonnull final EIndexerFailureType eFailureType, @Nonnull final IReIndexRetryPolicy aRetryPolicy)
+  {
+    ValueEnforcer.notNull (eFailureType, "FailureType");
+    ValueEnforcer.notNull (aRetryPolicy, "RetryPolicy");
+    m_aRWLock.writeLocked ( () -> {
+      m_aRetryPolicies.put (eFailureType, aRetryPolicy);
+    });
+    LOGGER.info ("Using retry policy " + aRetryPolicy + " for failure type " + eFailureType.getID ());
+  }
+
+  /**
+   * Check if a new work item from the REST interface may be queued.
+   *
+   * @param sClientID
+   *        The ID of the requesting client. May not be <code>null</code>.
+   * @return The admission result. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public EIndexerAdmission getAdmission (@Nonnull final String sClientID)
+  {
+    return m_aAdmission.getAdmission (sClientID, m_aIndexerWorkQueue.getQueueSize ());
+  }
+
+  /**
+   * @return The admission control for the REST interface. Never
+   *         <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public IndexerAdmissionController getAdmissionController ()
+  {
+    return m_aAdmission;
+  }
+
+  /**
+   * @return The journal of all pending work items. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public IndexerWorkItemJournal getJournal ()
+  {
+    return m_aJournal;
   }
 
   /**
@@ -350,7 +720,8 @@ public final class PDIndexerManager implements Closeable
   public String toString ()
   {
     return ToStringGenerator.getDerived (super.toString ())
-                            .append ("UniqueItems", m_aUniqueItems)
+                            .append ("LatestItemIDs", m_aLatestItemIDs)
+                            .append ("QueuedReIndexItems", m_aQueuedReIndexItems)
                             .append ("ReIndexList", m_aReIndexList)
                             .append ("DeadList", m_aDeadList)
                             .append ("IndexerWorkQueue", m_aIndexerWorkQueue)
@@ -33,6 +33,7 @@ import com.helger.commons.lang.ClassHelper;
 import com.helger.pd.indexer.businesscard.IPDBusinessCardProvider;
 import com.helger.pd.indexer.lucene.PDLucene;
 import com.helger.pd.indexer.settings.PDServerConfiguration;
+import com.helger.pd.indexer.storage.PDIndexWarmUp;
 import com.helger.pd.indexer.storage.PDStorageManager;
 import com.helger.peppolid.factory.IIdentifierFactory;
 import com.helger.photon.core.interror.InternalErrorBuilder;
@@ -57,6 +58,7 @@ public final class PDMetaManager extends AbstractGlobalSingleton
 
   private PDLucene m_aLucene;
   private PDStorageManager m_aStorageMgr;
+  private PDIndexWarmUp m_aWarmUp;
   private PDIndexerManager m_aIndexerMgr;
 
   @Deprecated
@@ -71,6 +73,14 @@ public final class PDMetaManager extends AbstractGlobalSingleton
     {
       m_aLucene = new PDLucene ();
       m_aStorageMgr = new PDStorageManager (m_aLucene);
+      m_aWarmUp = new PDIndexWarmUp (m_aLucene,
+                                     m_aStorageMgr,
+                                     PDServerConfiguration.getLuceneWarmUpQueries (),
+                                     Math.max (0, PDServerConfiguration.getLuceneWarmUpRecordedQueryCount ()));
+      if (PDServerConfiguration.isLuceneWarmUpEnabled ())
+        m_aWarmUp.startWarmUp ();
+      else
+        m_aWarmUp.skipWarmUp ();
       m_aIndexerMgr = new PDIndexerManager (m_aStorageMgr);
 
       LOGGER.info (ClassHelper.getClassLocalName (this) + " was initialized");
@@ -89,6 +99,7 @@ public final class PDMetaManager extends AbstractGlobalSingleton
   @Override
   protected void onDestroy (@Nonnull final IScope aScopeInDestruction)
   {
+    StreamHelper.close (m_aWarmUp);
     StreamHelper.close (m_aLucene);
     StreamHelper.close (m_aStorageMgr);
     StreamHelper.close (m_aIndexerMgr);
@@ -148,6 +159,22 @@ public final class PDMetaManager extends AbstractGlobalSingleton
     return getInstance ().m_aStorageMgr;
   }
 
+  @Nonnull
+  public static PDIndexWarmUp getWarmUp ()
+  {
+    return getInstance ().m_aWarmUp;
+  }
+
+  /**
+   * @return <code>true</code> if the index warm-up is finished and searches
+   *         can be served with the expected performance.
+   * @since 0.9.5
+   */
+  public static boolean isReady ()
+  {
+    return getWarmUp ().isReady ();
+  }
+
   @Nonnull
   public static PDIndexerManager getIndexerMgr ()
   {
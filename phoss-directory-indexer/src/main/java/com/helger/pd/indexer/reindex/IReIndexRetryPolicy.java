@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.reindex;
+
+import java.time.LocalDateTime;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A policy that determines when a failed work item is retried.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@FunctionalInterface
+public interface IReIndexRetryPolicy
+{
+  /**
+   * Get the date time of the next retry.
+   *
+   * @param nRetryCount
+   *        The number of retries performed so far. 0 after the initial try
+   *        failed. Always &ge; 0.
+   * @param aNow
+   *        The current date time. May not be <code>null</code>.
+   * @return The next retry date time or <code>null</code> if no retry should
+   *         happen and the work item should be moved to the dead list.
+   */
+  @Nullable
+  LocalDateTime getNextRetryDT (@Nonnegative int nRetryCount, @Nonnull LocalDateTime aNow);
+}
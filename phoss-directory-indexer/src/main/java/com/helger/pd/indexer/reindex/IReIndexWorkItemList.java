@@ -16,6 +16,7 @@
  */
 package com.helger.pd.indexer.reindex;
 
+import java.time.LocalDateTime;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnegative;
@@ -25,6 +26,8 @@ import javax.annotation.Nullable;
 import com.helger.commons.annotation.ReturnsMutableCopy;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.state.EChange;
+import com.helger.pd.indexer.index.EIndexerWorkItemType;
+import com.helger.peppolid.IParticipantIdentifier;
 
 /**
  * Base interface for {@link ReIndexWorkItem} objects.
@@ -57,6 +60,45 @@ public interface IReIndexWorkItemList
   @Nullable
   IReIndexWorkItem getItemOfID (@Nullable String sID);
 
+  /**
+   * Get the first item of the specified participant and type. This is a
+   * lookup in a secondary index and does not scan the list.
+   *
+   * @param aParticipantID
+   *        The participant ID to search. May be <code>null</code>.
+   * @param eType
+   *        The work item type to search. May be <code>null</code>.
+   * @return <code>null</code> if no such item exists.
+   * @since 0.9.5
+   */
+  @Nullable
+  IReIndexWorkItem getItemOfParticipant (@Nullable IParticipantIdentifier aParticipantID, @Nullable EIndexerWorkItemType eType);
+
+  /**
+   * Get all items of the specified participant, independent of the type.
+   *
+   * @param aParticipantID
+   *        The participant ID to search. May be <code>null</code>.
+   * @return A list of all matching items. Never <code>null</code> but maybe
+   *         empty.
+   * @since 0.9.5
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <IReIndexWorkItem> getAllItemsOfParticipant (@Nullable IParticipantIdentifier aParticipantID);
+
+  /**
+   * Check if there is at least one item of the specified participant,
+   * independent of the type.
+   *
+   * @param aParticipantID
+   *        The participant ID to search. May be <code>null</code>.
+   * @return <code>true</code> if at least one item of the participant is
+   *         contained, <code>false</code> otherwise.
+   * @since 0.9.5
+   */
+  boolean containsAnyItemOfParticipant (@Nullable IParticipantIdentifier aParticipantID);
+
   /**
    * Find and remove the first work item matching the provided predicate.
    *
@@ -67,6 +109,32 @@ public interface IReIndexWorkItemList
   @Nullable
   IReIndexWorkItem getAndRemoveEntry (@Nonnull Predicate <? super IReIndexWorkItem> aFilter);
 
+  /**
+   * Find and remove the first work item of the specified participant and type.
+   *
+   * @param aParticipantID
+   *        The participant ID to search. May be <code>null</code>.
+   * @param eType
+   *        The work item type to search. May be <code>null</code>.
+   * @return <code>null</code> if no such entry exists.
+   * @since 0.9.5
+   */
+  @Nullable
+  IReIndexWorkItem getAndRemoveItemOfParticipant (@Nullable IParticipantIdentifier aParticipantID, @Nullable EIndexerWorkItemType eType);
+
+  /**
+   * Remove all work items of the specified participant, independent of the
+   * type.
+   *
+   * @param aParticipantID
+   *        The participant ID to search. May be <code>null</code>.
+   * @return The removed items. Never <code>null</code> but maybe empty.
+   * @since 0.9.5
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <IReIndexWorkItem> getAndRemoveAllItemsOfParticipant (@Nullable IParticipantIdentifier aParticipantID);
+
   @Nonnull
   default EChange deleteItem (@Nullable final String sID)
   {
@@ -84,6 +152,32 @@ public interface IReIndexWorkItemList
   @ReturnsMutableCopy
   ICommonsList <IReIndexWorkItem> getAndRemoveAllEntries (@Nonnull Predicate <? super IReIndexWorkItem> aFilter);
 
+  /**
+   * Remove all work items that are due for a retry at the provided point in
+   * time. Only the due items are touched.
+   *
+   * @param aDT
+   *        The reference date time. May not be <code>null</code>.
+   * @return The removed items in the order of their due date. Never
+   *         <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <IReIndexWorkItem> getAndRemoveAllDueEntries (@Nonnull LocalDateTime aDT);
+
+  /**
+   * Remove all work items whose maximum retry date time is before the provided
+   * point in time. Only the expired items are touched.
+   *
+   * @param aDT
+   *        The reference date time. May not be <code>null</code>.
+   * @return The removed items in the order of their expiration. Never
+   *         <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <IReIndexWorkItem> getAndRemoveAllExpiredEntries (@Nonnull LocalDateTime aDT);
+
   @Nonnull
   default EChange deleteAllItems ()
   {
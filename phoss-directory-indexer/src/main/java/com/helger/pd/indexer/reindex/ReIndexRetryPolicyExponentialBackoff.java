@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.reindex;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * An {@link IReIndexRetryPolicy} for transient failures that doubles the
+ * interval with every retry up to a maximum. A random jitter is applied, so
+ * that the retries of many work items of the same SMP are spread over time.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@Immutable
+public final class ReIndexRetryPolicyExponentialBackoff implements IReIndexRetryPolicy
+{
+  // 2^30 times the initial interval is more than enough
+  private static final int MAX_SHIFT = 30;
+
+  private final Duration m_aInitialInterval;
+  private final Duration m_aMaxInterval;
+  private final double m_dJitter;
+
+  /**
+   * Constructor
+   *
+   * @param aInitialInterval
+   *        The interval before the first retry. May not be <code>null</code>
+   *        and must be positive.
+   * @param aMaxInterval
+   *        The maximum interval between two retries. May not be
+   *        <code>null</code> and must be &ge; the initial interval.
+   * @param dJitter
+   *        The maximum relative deviation from the interval, between 0 (no
+   *        jitter) and 1 (the interval varies from 0 to the double interval).
+   */
+  public ReIndexRetryPolicyExponentialBackoff (@Nonnull final Duration aInitialInterval,
+                                               @Nonnull final Duration aMaxInterval,
+                                               final double dJitter)
+  {
+    ValueEnforcer.notNull (aInitialInterval, "InitialInterval");
+    ValueEnforcer.isFalse (aInitialInterval.isNegative () || aInitialInterval.isZero (), "InitialInterval must be positive");
+    ValueEnforcer.notNull (aMaxInterval, "MaxInterval");
+    ValueEnforcer.isTrue (aMaxInterval.compareTo (aInitialInterval) >= 0, "MaxInterval must be >= InitialInterval");
+    ValueEnforcer.isBetweenInclusive (dJitter, "Jitter", 0, 1);
+    m_aInitialInterval = aInitialInterval;
+    m_aMaxInterval = aMaxInterval;
+    m_dJitter = dJitter;
+  }
+
+  @Nonnull
+  public Duration getInitialInterval ()
+  {
+    return m_aInitialInterval;
+  }
+
+  @Nonnull
+  public Duration getMaxInterval ()
+  {
+    return m_aMaxInterval;
+  }
+
+  public double getJitter ()
+  {
+    return m_dJitter;
+  }
+
+  /**
+   * Get the interval before the next retry without jitter.
+   *
+   * @param nRetryCount
+   *        The number of retries performed so far. Always &ge; 0.
+   * @return The interval. Never <code>null</code>.
+   */
+  @Nonnull
+  public Duration getInterval (@Nonnegative final int nRetryCount)
+  {
+    final long nInitialMillis = m_aInitialInterval.toMillis ();
+    final long nMaxMillis = m_aMaxInterval.toMillis ();
+    final int nShift = Math.min (nRetryCount, MAX_SHIFT);
+    // Avoid overflows
+    if (nInitialMillis > (nMaxMillis >> nShift))
+      return m_aMaxInterval;
+    return Duration.ofMillis (nInitialMillis << nShift);
+  }
+
+  @Nonnull
+  public LocalDateTime getNextRetryDT (@Nonnegative final int nRetryCount, @Nonnull final LocalDateTime aNow)
+  {
+    final long nMillis = getInterval (nRetryCount).toMillis ();
+    final double dFactor = m_dJitter == 0 ? 1 : 1 + m_dJitter * (2 * ThreadLocalRandom.current ().nextDouble () - 1);
+    return aNow.plus (Duration.ofMillis (Math.round (nMillis * dFactor)));
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("InitialInterval", m_aInitialInterval)
+                                       .append ("MaxInterval", m_aMaxInterval)
+                                       .append ("Jitter", m_dJitter)
+                                       .getToString ();
+  }
+}
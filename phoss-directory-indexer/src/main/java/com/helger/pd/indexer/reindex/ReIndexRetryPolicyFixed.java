@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.reindex;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * An {@link IReIndexRetryPolicy} that retries in a fixed interval.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@Immutable
+public final class ReIndexRetryPolicyFixed implements IReIndexRetryPolicy
+{
+  private final Duration m_aInterval;
+
+  /**
+   * Constructor
+   *
+   * @param aInterval
+   *        The interval between two retries. May not be <code>null</code> and
+   *        must be positive.
+   */
+  public ReIndexRetryPolicyFixed (@Nonnull final Duration aInterval)
+  {
+    ValueEnforcer.notNull (aInterval, "Interval");
+    ValueEnforcer.isFalse (aInterval.isNegative () || aInterval.isZero (), "Interval must be positive");
+    m_aInterval = aInterval;
+  }
+
+  @Nonnull
+  public Duration getInterval ()
+  {
+    return m_aInterval;
+  }
+
+  @Nonnull
+  public LocalDateTime getNextRetryDT (@Nonnegative final int nRetryCount, @Nonnull final LocalDateTime aNow)
+  {
+    return aNow.plus (m_aInterval);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Interval", m_aInterval).getToString ();
+  }
+}
@@ -48,14 +48,22 @@ public class ReIndexWorkItem implements IReIndexWorkItem
   private LocalDateTime m_aPreviousRetryDT;
   private LocalDateTime m_aNextRetryDT;
 
-  public ReIndexWorkItem (@Nonnull final IIndexerWorkItem aWorkItem)
+  /**
+   * Constructor for a work item that failed initially.
+   *
+   * @param aWorkItem
+   *        The original work item to be handled.
+   * @param aNextRetryDT
+   *        The next retry time as determined by the {@link IReIndexRetryPolicy}.
+   *        May not be <code>null</code>.
+   */
+  public ReIndexWorkItem (@Nonnull final IIndexerWorkItem aWorkItem, @Nonnull final LocalDateTime aNextRetryDT)
   {
-    // The next retry happens from now in the configured number of minutes
     this (aWorkItem,
           aWorkItem.getCreationDateTime ().plusHours (PDServerConfiguration.getReIndexMaxRetryHours ()),
           0,
           (LocalDateTime) null,
-          PDTFactory.getCurrentLocalDateTime ().plusMinutes (PDServerConfiguration.getReIndexRetryMinutes ()));
+          aNextRetryDT);
   }
 
   /**
@@ -134,12 +142,17 @@ public class ReIndexWorkItem implements IReIndexWorkItem
   /**
    * Increment the number of retries and update the previous and the next retry
    * datetime.
+   *
+   * @param aNextRetryDT
+   *        The next retry time as determined by the {@link IReIndexRetryPolicy}.
+   *        May not be <code>null</code>.
    */
-  public void incRetryCount ()
+  public void incRetryCount (@Nonnull final LocalDateTime aNextRetryDT)
   {
+    ValueEnforcer.notNull (aNextRetryDT, "NextRetryDT");
     m_nRetries++;
     m_aPreviousRetryDT = PDTFactory.getCurrentLocalDateTime ();
-    m_aNextRetryDT = m_aPreviousRetryDT.plusMinutes (PDServerConfiguration.getReIndexRetryMinutes ());
+    m_aNextRetryDT = aNextRetryDT;
   }
 
   @Nonnull
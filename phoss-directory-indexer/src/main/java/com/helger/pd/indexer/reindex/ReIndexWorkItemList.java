@@ -16,11 +16,17 @@
  */
 package com.helger.pd.indexer.reindex;
 
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.slf4j.Logger;
@@ -29,8 +35,15 @@ import org.slf4j.LoggerFactory;
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.ReturnsMutableCopy;
 import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.CommonsLinkedHashSet;
 import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.collection.impl.ICommonsOrderedSet;
+import com.helger.commons.state.EChange;
 import com.helger.dao.DAOException;
+import com.helger.pd.indexer.index.EIndexerWorkItemType;
+import com.helger.peppolid.IParticipantIdentifier;
 import com.helger.photon.app.dao.AbstractPhotonMapBasedWALDAO;
 
 /**
@@ -45,10 +58,88 @@ public final class ReIndexWorkItemList extends AbstractPhotonMapBasedWALDAO <IRe
                                        IReIndexWorkItemList
 {
   private static final Logger LOGGER = LoggerFactory.getLogger (ReIndexWorkItemList.class);
+  private static final Comparator <IReIndexWorkItem> COMPARATOR_NEXT_RETRY = Comparator.comparing (IReIndexWorkItem::getNextRetryDT)
+                                                                                        .thenComparing (IReIndexWorkItem::getID);
+  private static final Comparator <IReIndexWorkItem> COMPARATOR_MAX_RETRY = Comparator.comparing (IReIndexWorkItem::getMaxRetryDT)
+                                                                                       .thenComparing (IReIndexWorkItem::getID);
+
+  // All items ordered by due date, so that only the due items must be touched
+  @GuardedBy ("m_aRWLock")
+  private final NavigableSet <IReIndexWorkItem> m_aByNextRetryDT = new TreeSet <> (COMPARATOR_NEXT_RETRY);
+  @GuardedBy ("m_aRWLock")
+  private final NavigableSet <IReIndexWorkItem> m_aByMaxRetryDT = new TreeSet <> (COMPARATOR_MAX_RETRY);
+  // All items by participant ID and type, to avoid scanning on enqueue
+  @GuardedBy ("m_aRWLock")
+  private final ICommonsMap <String, ICommonsOrderedSet <IReIndexWorkItem>> m_aByParticipantAndType = new CommonsHashMap <> ();
 
   public ReIndexWorkItemList (@Nullable final String sFilename) throws DAOException
   {
     super (ReIndexWorkItem.class, sFilename);
+    m_aRWLock.writeLocked ( () -> {
+      for (final IReIndexWorkItem aItem : getAll ())
+        _addToIndex (aItem);
+    });
+  }
+
+  @Nonnull
+  private static String _getKey (@Nonnull final IParticipantIdentifier aParticipantID, @Nonnull final EIndexerWorkItemType eType)
+  {
+    return eType.getID () + ' ' + aParticipantID.getURIEncoded ();
+  }
+
+  @Nonnull
+  private static String _getKey (@Nonnull final IReIndexWorkItem aItem)
+  {
+    return _getKey (aItem.getWorkItem ().getParticipantID (), aItem.getWorkItem ().getType ());
+  }
+
+  @GuardedBy ("m_aRWLock")
+  private void _addToIndex (@Nonnull final IReIndexWorkItem aItem)
+  {
+    m_aByNextRetryDT.add (aItem);
+    m_aByMaxRetryDT.add (aItem);
+    m_aByParticipantAndType.computeIfAbsent (_getKey (aItem), k -> new CommonsLinkedHashSet <> ()).add (aItem);
+  }
+
+  @GuardedBy ("m_aRWLock")
+  @Nullable
+  private IReIndexWorkItem _deleteItem (@Nonnull final String sID)
+  {
+    final IReIndexWorkItem ret = internalDeleteItem (sID);
+    if (ret != null)
+    {
+      m_aByNextRetryDT.remove (ret);
+      m_aByMaxRetryDT.remove (ret);
+
+      final String sKey = _getKey (ret);
+      final ICommonsOrderedSet <IReIndexWorkItem> aSet = m_aByParticipantAndType.get (sKey);
+      if (aSet != null)
+      {
+        aSet.remove (ret);
+        if (aSet.isEmpty ())
+          m_aByParticipantAndType.remove (sKey);
+      }
+    }
+    return ret;
+  }
+
+  @GuardedBy ("m_aRWLock")
+  @Nonnull
+  @ReturnsMutableCopy
+  private ICommonsList <IReIndexWorkItem> _getAndRemoveAllBefore (@Nonnull final NavigableSet <IReIndexWorkItem> aSet,
+                                                                 @Nonnull final Function <IReIndexWorkItem, LocalDateTime> aDTGetter,
+                                                                 @Nonnull final LocalDateTime aDT)
+  {
+    final ICommonsList <IReIndexWorkItem> ret = new CommonsArrayList <> ();
+    for (final IReIndexWorkItem aItem : aSet)
+    {
+      if (!aDTGetter.apply (aItem).isBefore (aDT))
+        break;
+      ret.add (aItem);
+    }
+    for (final IReIndexWorkItem aItem : ret)
+      _deleteItem (aItem.getID ());
+    return ret;
   }
 
   /**
@@ -64,17 +155,19 @@ public final class ReIndexWorkItemList extends AbstractPhotonMapBasedWALDAO <IRe
     ValueEnforcer.notNull (aItem, "Item");
     m_aRWLock.writeLocked ( () -> {
       internalCreateItem (aItem);
+      _addToIndex (aItem);
     });
     LOGGER.info ("Added " + aItem.getLogText () + " to re-try list for retry #" + (aItem.getRetryCount () + 1));
   }
 
-  public void incRetryCountAndAddItem (@Nonnull final IReIndexWorkItem aItem)
+  public void incRetryCountAndAddItem (@Nonnull final IReIndexWorkItem aItem, @Nonnull final LocalDateTime aNextRetryDT)
   {
     ValueEnforcer.notNull (aItem, "Item");
+    ValueEnforcer.notNull (aNextRetryDT, "NextRetryDT");
 
     // Item is not in the list anymore, therefore we need to cast it :(
     final ReIndexWorkItem aRealItem = (ReIndexWorkItem) aItem;
-    m_aRWLock.writeLocked ( () -> aRealItem.incRetryCount ());
+    m_aRWLock.writeLocked ( () -> aRealItem.incRetryCount (aNextRetryDT));
     addItem (aRealItem);
   }
 
@@ -85,7 +178,7 @@ public final class ReIndexWorkItemList extends AbstractPhotonMapBasedWALDAO <IRe
     if (aWorkItem == null)
       return null;
 
-    return m_aRWLock.writeLockedGet ( () -> internalDeleteItem (aWorkItem.getID ()));
+    return m_aRWLock.writeLockedGet ( () -> _deleteItem (aWorkItem.getID ()));
   }
 
   @Nonnull
@@ -101,12 +194,68 @@ public final class ReIndexWorkItemList extends AbstractPhotonMapBasedWALDAO <IRe
         if (aFilter.test (aWorkItem))
         {
           ret.add (aWorkItem);
-          internalDeleteItem (aWorkItem.getID ());
+          _deleteItem (aWorkItem.getID ());
         }
     });
     return ret;
   }
 
+  @Nonnull
+  public EChange deleteItem (@Nullable final String sID)
+  {
+    if (sID == null)
+      return EChange.UNCHANGED;
+    return EChange.valueOf (m_aRWLock.writeLockedGet ( () -> _deleteItem (sID)) != null);
+  }
+
+  @Nullable
+  public IReIndexWorkItem getAndRemoveItemOfParticipant (@Nullable final IParticipantIdentifier aParticipantID,
+                                                         @Nullable final EIndexerWorkItemType eType)
+  {
+    if (aParticipantID == null || eType == null)
+      return null;
+
+    return m_aRWLock.writeLockedGet ( () -> {
+      final ICommonsOrderedSet <IReIndexWorkItem> aSet = m_aByParticipantAndType.get (_getKey (aParticipantID, eType));
+      return aSet == null ? null : _deleteItem (aSet.getFirst ().getID ());
+    });
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IReIndexWorkItem> getAndRemoveAllItemsOfParticipant (@Nullable final IParticipantIdentifier aParticipantID)
+  {
+    final ICommonsList <IReIndexWorkItem> ret = new CommonsArrayList <> ();
+    if (aParticipantID != null)
+      m_aRWLock.writeLocked ( () -> {
+        for (final EIndexerWorkItemType eType : EIndexerWorkItemType.values ())
+        {
+          final ICommonsOrderedSet <IReIndexWorkItem> aSet = m_aByParticipantAndType.get (_getKey (aParticipantID, eType));
+          if (aSet != null)
+            ret.addAll (aSet);
+        }
+        for (final IReIndexWorkItem aItem : ret)
+          _deleteItem (aItem.getID ());
+      });
+    return ret;
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IReIndexWorkItem> getAndRemoveAllDueEntries (@Nonnull final LocalDateTime aDT)
+  {
+    ValueEnforcer.notNull (aDT, "DT");
+    return m_aRWLock.writeLockedGet ( () -> _getAndRemoveAllBefore (m_aByNextRetryDT, IReIndexWorkItem::getNextRetryDT, aDT));
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IReIndexWorkItem> getAndRemoveAllExpiredEntries (@Nonnull final LocalDateTime aDT)
+  {
+    ValueEnforcer.notNull (aDT, "DT");
+    return m_aRWLock.writeLockedGet ( () -> _getAndRemoveAllBefore (m_aByMaxRetryDT, IReIndexWorkItem::getMaxRetryDT, aDT));
+  }
+
   @Nonnull
   @ReturnsMutableCopy
   public ICommonsList <IReIndexWorkItem> getAllItems ()
@@ -125,4 +274,47 @@ public final class ReIndexWorkItemList extends AbstractPhotonMapBasedWALDAO <IRe
   {
     return getOfID (sID);
   }
+
+  @Nullable
+  public IReIndexWorkItem getItemOfParticipant (@Nullable final IParticipantIdentifier aParticipantID,
+                                                @Nullable final EIndexerWorkItemType eType)
+  {
+    if (aParticipantID == null || eType == null)
+      return null;
+
+    return m_aRWLock.readLockedGet ( () -> {
+      final ICommonsOrderedSet <IReIndexWorkItem> aSet = m_aByParticipantAndType.get (_getKey (aParticipantID, eType));
+      return aSet == null ? null : aSet.getFirst ();
+    });
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <IReIndexWorkItem> getAllItemsOfParticipant (@Nullable final IParticipantIdentifier aParticipantID)
+  {
+    final ICommonsList <IReIndexWorkItem> ret = new CommonsArrayList <> ();
+    if (aParticipantID != null)
+      m_aRWLock.readLocked ( () -> {
+        for (final EIndexerWorkItemType eType : EIndexerWorkItemType.values ())
+        {
+          final ICommonsOrderedSet <IReIndexWorkItem> aSet = m_aByParticipantAndType.get (_getKey (aParticipantID, eType));
+          if (aSet != null)
+            ret.addAll (aSet);
+        }
+      });
+    return ret;
+  }
+
+  public boolean containsAnyItemOfParticipant (@Nullable final IParticipantIdentifier aParticipantID)
+  {
+    if (aParticipantID == null)
+      return false;
+
+    return m_aRWLock.readLockedBoolean ( () -> {
+      for (final EIndexerWorkItemType eType : EIndexerWorkItemType.values ())
+        if (m_aByParticipantAndType.containsKey (_getKey (aParticipantID, eType)))
+          return true;
+      return false;
+    });
+  }
 }
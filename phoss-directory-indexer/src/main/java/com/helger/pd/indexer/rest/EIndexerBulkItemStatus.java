@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.rest;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.id.IHasID;
+import com.helger.commons.lang.EnumHelper;
+
+/**
+ * The status of a single participant ID in a bulk request of the indexer REST
+ * interface. The IDs are part of the response and must be kept in sync with
+ * <code>EPDBulkItemStatus</code> of the client.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public enum EIndexerBulkItemStatus implements IHasID <String>
+{
+  /** The work item was queued */
+  QUEUED ("queued"),
+  /** The work item was merged into a pending work item */
+  UNCHANGED ("unchanged"),
+  /** The participant ID could not be parsed */
+  INVALID ("invalid"),
+  /** The work item was rejected by the admission control */
+  REJECTED ("rejected");
+
+  private final String m_sID;
+
+  private EIndexerBulkItemStatus (@Nonnull @Nonempty final String sID)
+  {
+    m_sID = sID;
+  }
+
+  @Nonnull
+  @Nonempty
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  @Nullable
+  public static EIndexerBulkItemStatus getFromIDOrNull (@Nullable final String sID)
+  {
+    return EnumHelper.getFromIDOrNull (EIndexerBulkItemStatus.class, sID);
+  }
+}
@@ -16,29 +16,44 @@
  */
 package com.helger.pd.indexer.rest;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.string.StringHelper;
 import com.helger.commons.url.URLHelper;
 import com.helger.pd.indexer.clientcert.ClientCertificateValidationResult;
 import com.helger.pd.indexer.clientcert.ClientCertificateValidator;
 import com.helger.pd.indexer.index.EIndexerWorkItemType;
+import com.helger.pd.indexer.mgr.EIndexerAdmission;
+import com.helger.pd.indexer.mgr.PDIndexerManager;
 import com.helger.pd.indexer.mgr.PDMetaManager;
+import com.helger.pd.indexer.settings.PDServerConfiguration;
 import com.helger.pd.indexer.storage.EQueryMode;
 import com.helger.peppolid.IParticipantIdentifier;
 import com.helger.peppolid.factory.IIdentifierFactory;
@@ -51,6 +66,9 @@ import com.helger.peppolid.factory.IIdentifierFactory;
 @Path ("1.0")
 public class IndexerResource
 {
+  /** The sub path for bulk requests */
+  public static final String PATH_BULK = "bulk";
+
   private static final Logger LOGGER = LoggerFactory.getLogger (IndexerResource.class);
 
   /**
@@ -97,6 +115,36 @@ public class IndexerResource
     return URLHelper.urlDecodeOrDefault (sTrimmed, sTrimmed);
   }
 
+  /**
+   * Check if the indexer queue accepts another work item of the provided
+   * client.
+   *
+   * @param aResult
+   *        The successful client certificate validation result. May not be
+   *        <code>null</code>.
+   * @param sLogPrefix
+   *        The context - for logging only. May not be <code>null</code>.
+   * @return <code>null</code> if the item may be queued, the error response
+   *         otherwise.
+   */
+  @Nullable
+  private static Response _checkAdmission (@Nonnull final ClientCertificateValidationResult aResult,
+                                           @Nonnull final String sLogPrefix)
+  {
+    final EIndexerAdmission eAdmission = PDMetaManager.getIndexerMgr ().getAdmission (aResult.getClientID ());
+    if (eAdmission.isAdmitted ())
+      return null;
+
+    if (LOGGER.isWarnEnabled ())
+      LOGGER.warn (sLogPrefix + "Rejecting request from '" + aResult.getClientID () + "': " + eAdmission.getDisplayName ());
+
+    // Too many requests of this client vs. too many requests in total
+    final Status eStatus = eAdmission == EIndexerAdmission.QUOTA_EXCEEDED ? Status.TOO_MANY_REQUESTS : Status.SERVICE_UNAVAILABLE;
+    return Response.status (eStatus)
+                   .header (HttpHeaders.RETRY_AFTER, Integer.toString (PDServerConfiguration.getIndexerQueueRetryAfterSeconds ()))
+                   .build ();
+  }
+
   @PUT
   public Response createOrUpdateParticipant (@Context @Nonnull final HttpServletRequest aHttpServletRequest,
                                              @Nonnull final String sParticipantID)
@@ -121,6 +169,11 @@ public class IndexerResource
       return Response.status (Status.BAD_REQUEST).build ();
     }
 
+    // Check if the queue can take it
+    final Response aRejection = _checkAdmission (aResult, sLogPrefix);
+    if (aRejection != null)
+      return aRejection;
+
     // Queue for handling
     if (PDMetaManager.getIndexerMgr ()
                      .queueWorkItem (aPI,
@@ -165,6 +218,11 @@ public class IndexerResource
     // Don't check for existence of the PI as it might be in the queue for
     // creation
 
+    // Check if the queue can take it
+    final Response aRejection = _checkAdmission (aResult, sLogPrefix);
+    if (aRejection != null)
+      return aRejection;
+
     // Queue for handling
     if (PDMetaManager.getIndexerMgr ()
                      .queueWorkItem (aPI, EIndexerWorkItemType.DELETE, aResult.getClientID (), _getRequestingHost (aHttpServletRequest))
@@ -178,6 +236,128 @@ public class IndexerResource
     return Response.noContent ().build ();
   }
 
+  /**
+   * Queue work items for all participant IDs of a bulk request. The request
+   * body contains one participant ID per line and is read as a stream. The
+   * response body contains one line per participant ID in the format
+   * <code>status&lt;TAB&gt;participantID</code>, in the order of the request.
+   * Requests with more participant IDs than configured in
+   * {@link PDServerConfiguration#getIndexerBulkMaxItems()} are rejected as a
+   * whole with HTTP 413 and nothing is queued.
+   *
+   * @param aHttpServletRequest
+   *        The current servlet request. May not be <code>null</code>.
+   * @param aIS
+   *        The request body. May not be <code>null</code>.
+   * @param eType
+   *        The work item type to queue. May not be <code>null</code>.
+   * @param sLogPrefix
+   *        The context - for logging only. May not be <code>null</code>.
+   * @return The response. Never <code>null</code>.
+   * @throws IOException
+   *         In case reading the request body fails
+   */
+  @Nonnull
+  private static Response _handleBulk (@Nonnull final HttpServletRequest aHttpServletRequest,
+                                       @Nonnull final InputStream aIS,
+                                       @Nonnull final EIndexerWorkItemType eType,
+                                       @Nonnull final String sLogPrefix) throws IOException
+  {
+    // Validate the certificate only once for all IDs
+    final ClientCertificateValidationResult aResult = _checkClientCertificate (aHttpServletRequest, sLogPrefix);
+    if (aResult.isFailure ())
+      return Response.status (Response.Status.FORBIDDEN).build ();
+
+    // Reject the whole request if the queue can't take anything
+    final Response aRejection = _checkAdmission (aResult, sLogPrefix);
+    if (aRejection != null)
+      return aRejection;
+
+    // Read all IDs upfront, so that nothing is queued if there are too many
+    final int nMaxItems = PDServerConfiguration.getIndexerBulkMaxItems ();
+    final ICommonsList <String> aParticipantIDs = new CommonsArrayList <> ();
+    try (final BufferedReader aReader = new BufferedReader (new InputStreamReader (aIS, StandardCharsets.UTF_8)))
+    {
+      String sLine;
+      while ((sLine = aReader.readLine ()) != null)
+      {
+        final String sRealParticipantID = _unifyPID (sLine);
+        if (StringHelper.hasText (sRealParticipantID))
+        {
+          if (aParticipantIDs.size () >= nMaxItems)
+          {
+            if (LOGGER.isWarnEnabled ())
+              LOGGER.warn (sLogPrefix + "Rejecting request with more than " + nMaxItems + " participant identifiers");
+            return Response.status (Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                           .entity ("At most " + nMaxItems + " participant identifiers are allowed per request")
+                           .type (MediaType.TEXT_PLAIN_TYPE.withCharset (StandardCharsets.UTF_8.name ()))
+                           .build ();
+          }
+          aParticipantIDs.add (sRealParticipantID);
+        }
+      }
+    }
+
+    final IIdentifierFactory aIdentifierFactory = PDMetaManager.getIdentifierFactory ();
+    final PDIndexerManager aIndexerMgr = PDMetaManager.getIndexerMgr ();
+    final String sRequestingHost = _getRequestingHost (aHttpServletRequest);
+    final StringBuilder aSB = new StringBuilder ();
+    boolean bRejected = false;
+    for (final String sRealParticipantID : aParticipantIDs)
+    {
+      EIndexerBulkItemStatus eStatus;
+      final IParticipantIdentifier aPI = aIdentifierFactory.parseParticipantIdentifier (sRealParticipantID);
+      if (aPI == null)
+      {
+        if (LOGGER.isErrorEnabled ())
+          LOGGER.error (sLogPrefix + "Failed to parse participant identifier '" + sRealParticipantID + "'");
+        eStatus = EIndexerBulkItemStatus.INVALID;
+      }
+      else
+        if (!aIndexerMgr.getAdmission (aResult.getClientID ()).isAdmitted ())
+        {
+          // The queue may fill up while handling the request
+          eStatus = EIndexerBulkItemStatus.REJECTED;
+          bRejected = true;
+        }
+        else
+          if (aIndexerMgr.queueWorkItem (aPI, eType, aResult.getClientID (), sRequestingHost).isChanged ())
+            eStatus = EIndexerBulkItemStatus.QUEUED;
+          else
+            eStatus = EIndexerBulkItemStatus.UNCHANGED;
+
+      aSB.append (eStatus.getID ()).append ('\t').append (sRealParticipantID).append ('\n');
+    }
+
+    if (LOGGER.isInfoEnabled ())
+      LOGGER.info (sLogPrefix + "Handled " + aParticipantIDs.size () + " participant identifiers");
+
+    final ResponseBuilder aRB = Response.ok (aSB.toString (), MediaType.TEXT_PLAIN_TYPE.withCharset (StandardCharsets.UTF_8.name ()));
+    if (bRejected)
+      aRB.header (HttpHeaders.RETRY_AFTER, Integer.toString (PDServerConfiguration.getIndexerQueueRetryAfterSeconds ()));
+    return aRB.build ();
+  }
+
+  @PUT
+  @Path (PATH_BULK)
+  @Consumes (MediaType.TEXT_PLAIN)
+  @Produces (MediaType.TEXT_PLAIN)
+  public Response createOrUpdateParticipants (@Context @Nonnull final HttpServletRequest aHttpServletRequest,
+                                              @Nonnull final InputStream aIS) throws IOException
+  {
+    return _handleBulk (aHttpServletRequest, aIS, EIndexerWorkItemType.CREATE_UPDATE, "[createOrUpdateParticipants] ");
+  }
+
+  @DELETE
+  @Path (PATH_BULK)
+  @Consumes (MediaType.TEXT_PLAIN)
+  @Produces (MediaType.TEXT_PLAIN)
+  public Response deleteParticipants (@Context @Nonnull final HttpServletRequest aHttpServletRequest,
+                                      @Nonnull final InputStream aIS) throws IOException
+  {
+    return _handleBulk (aHttpServletRequest, aIS, EIndexerWorkItemType.DELETE, "[deleteParticipants] ");
+  }
+
   @GET
   @Path ("{participantID}")
   public Response checkParticipantExistence (@Context @Nonnull final HttpServletRequest aHttpServletRequest,
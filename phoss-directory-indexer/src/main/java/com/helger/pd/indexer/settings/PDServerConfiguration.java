@@ -17,6 +17,7 @@
 package com.helger.pd.indexer.settings;
 
 import java.net.URI;
+import java.time.Duration;
 import java.nio.charset.StandardCharsets;
 
 import javax.annotation.CheckForSigned;
@@ -44,6 +45,13 @@ import com.helger.config.ConfigFactory;
 import com.helger.config.IConfig;
 import com.helger.config.source.MultiConfigurationValueProvider;
 import com.helger.config.source.res.ConfigurationSourceProperties;
+import com.helger.pd.indexer.index.EIndexerFailureType;
+import com.helger.pd.indexer.index.EIndexerWorkItemLane;
+import com.helger.pd.indexer.lucene.EPDLuceneDirectoryType;
+import com.helger.pd.indexer.reindex.IReIndexRetryPolicy;
+import com.helger.pd.indexer.reindex.ReIndexRetryPolicyDeadList;
+import com.helger.pd.indexer.reindex.ReIndexRetryPolicyExponentialBackoff;
+import com.helger.pd.indexer.reindex.ReIndexRetryPolicyFixed;
 import com.helger.peppol.sml.ESMPAPIType;
 import com.helger.peppol.utils.PeppolKeyStoreHelper;
 import com.helger.peppolid.factory.BDXR1IdentifierFactory;
@@ -464,4 +472,499 @@ public final class PDServerConfiguration extends AbstractGlobalSingleton
   {
     return getConfig ().getAsBoolean ("sync.businesscards", false);
   }
+
+  /**
+   * Read value of <code>lucene.searcher.refresh.millis</code>. Defaults to
+   * <code>1000</code>.
+   *
+   * @return The maximum number of milliseconds until a change in the index is
+   *         visible to searchers. Always &gt; 0.
+   */
+  @Nonnegative
+  public static long getLuceneSearcherRefreshMillis ()
+  {
+    final long ret = getConfig ().getAsLong ("lucene.searcher.refresh.millis", 1_000);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.searcher.refresh.millis property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.commit.interval.millis</code>. Defaults to
+   * <code>10000</code>.
+   *
+   * @return The maximum number of milliseconds a change of the Lucene index
+   *         stays uncommitted. Always &gt; 0.
+   */
+  @Nonnegative
+  public static long getLuceneCommitIntervalMillis ()
+  {
+    final long ret = getConfig ().getAsLong ("lucene.commit.interval.millis", 10_000);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.commit.interval.millis property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.commit.maxchanges</code>. Defaults to
+   * <code>1000</code>.
+   *
+   * @return The number of changes of the Lucene index after which a durable
+   *         commit is triggered. Always &gt; 0.
+   */
+  @Nonnegative
+  public static int getLuceneCommitMaxChanges ()
+  {
+    final int ret = getConfig ().getAsInt ("lucene.commit.maxchanges", 1_000);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.commit.maxchanges property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.directory.type</code>. Supported values are
+   * <code>fs</code>, <code>mmap</code> and <code>niofs</code>. Defaults to
+   * <code>fs</code>.
+   *
+   * @return The Lucene directory implementation to use. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static EPDLuceneDirectoryType getLuceneDirectoryType ()
+  {
+    final String sType = getConfig ().getAsString ("lucene.directory.type");
+    final EPDLuceneDirectoryType ret = EPDLuceneDirectoryType.getFromIDCaseInsensitiveOrDefault (sType, null);
+    if (ret == null)
+    {
+      if (StringHelper.hasText (sType))
+        LOGGER.warn ("Unsupported lucene.directory.type '" + sType + "' - using '" + EPDLuceneDirectoryType.DEFAULT.getID () + "'");
+      return EPDLuceneDirectoryType.DEFAULT;
+    }
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.writer.rambuffer.mb</code>. Defaults to
+   * <code>16</code>.
+   *
+   * @return The RAM buffer size of the index writer in MB before the
+   *         documents are flushed to a new segment. Always &gt; 0.
+   */
+  @Nonnegative
+  public static int getLuceneWriterRAMBufferMB ()
+  {
+    final int ret = getConfig ().getAsInt ("lucene.writer.rambuffer.mb", 16);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.writer.rambuffer.mb property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.mergepolicy.maxmergedsegment.mb</code>.
+   * Defaults to <code>5120</code>.
+   *
+   * @return The maximum size of a merged segment in MB. Always &gt; 0.
+   */
+  @Nonnegative
+  public static int getLuceneMergePolicyMaxMergedSegmentMB ()
+  {
+    final int ret = getConfig ().getAsInt ("lucene.mergepolicy.maxmergedsegment.mb", 5_120);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.mergepolicy.maxmergedsegment.mb property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.mergepolicy.floorsegment.mb</code>. Defaults
+   * to <code>2</code>.
+   *
+   * @return The size in MB below which segments are treated as equal when
+   *         selecting merges. Always &gt; 0.
+   */
+  @Nonnegative
+  public static int getLuceneMergePolicyFloorSegmentMB ()
+  {
+    final int ret = getConfig ().getAsInt ("lucene.mergepolicy.floorsegment.mb", 2);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.mergepolicy.floorsegment.mb property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.mergepolicy.segmentspertier</code>. Defaults
+   * to <code>10</code>.
+   *
+   * @return The number of segments allowed per tier before merging. Always
+   *         &ge; 2.
+   */
+  @Nonnegative
+  public static int getLuceneMergePolicySegmentsPerTier ()
+  {
+    final int ret = getConfig ().getAsInt ("lucene.mergepolicy.segmentspertier", 10);
+    if (ret < 2)
+      throw new IllegalStateException ("The lucene.mergepolicy.segmentspertier property must be >= 2!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.mergescheduler.maxthreads</code>. Defaults to
+   * <code>0</code>.
+   *
+   * @return The maximum number of concurrent merge threads. Values &le; 0
+   *         mean that Lucene detects the value based on the storage.
+   */
+  public static int getLuceneMergeSchedulerMaxThreads ()
+  {
+    return getConfig ().getAsInt ("lucene.mergescheduler.maxthreads", 0);
+  }
+
+  /**
+   * Read value of <code>lucene.compoundfile</code>. Defaults to
+   * <code>true</code>.
+   *
+   * @return <code>true</code> if new segments should be written in the
+   *         compound file format, <code>false</code> to keep all segment
+   *         files separate.
+   */
+  public static boolean isLuceneUseCompoundFile ()
+  {
+    return getConfig ().getAsBoolean ("lucene.compoundfile", true);
+  }
+
+  /**
+   * Read value of <code>lucene.warmup.enabled</code>. Defaults to
+   * <code>true</code>.
+   *
+   * @return <code>true</code> if the Lucene index should be warmed up after
+   *         startup.
+   */
+  public static boolean isLuceneWarmUpEnabled ()
+  {
+    return getConfig ().getAsBoolean ("lucene.warmup.enabled", true);
+  }
+
+  /**
+   * Read value of <code>lucene.warmup.queries</code>. Multiple queries are
+   * separated by a comma.
+   *
+   * @return The generic search queries to always execute on warm-up. Never
+   *         <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  public static ICommonsList <String> getLuceneWarmUpQueries ()
+  {
+    final ICommonsList <String> ret = new CommonsArrayList <> ();
+    final String sQueries = getConfig ().getAsString ("lucene.warmup.queries");
+    if (StringHelper.hasText (sQueries))
+      for (final String sQuery : StringHelper.getExploded (',', sQueries))
+        if (StringHelper.hasText (sQuery))
+          ret.add (sQuery.trim ());
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.warmup.recorded.count</code>. Defaults to
+   * <code>50</code>.
+   *
+   * @return The number of most frequent queries of a run, that are replayed
+   *         during the warm-up of the next run. Values &le; 0 disable the
+   *         recording.
+   */
+  public static int getLuceneWarmUpRecordedQueryCount ()
+  {
+    return getConfig ().getAsInt ("lucene.warmup.recorded.count", 50);
+  }
+
+  /**
+   * Read value of <code>lucene.searcher.threads</code>. Defaults to
+   * <code>0</code>.
+   *
+   * @return The number of threads used to search the segments of the index in
+   *         parallel. Values &le; 0 mean that each search is performed in the
+   *         calling thread only.
+   */
+  public static int getLuceneSearcherThreads ()
+  {
+    return getConfig ().getAsInt ("lucene.searcher.threads", 0);
+  }
+
+  /**
+   * Read value of <code>lucene.indexsort.enabled</code>. Defaults to
+   * <code>true</code>.
+   *
+   * @return <code>true</code> if new Lucene indices should be sorted by
+   *         participant ID. An existing unsorted index is not sorted
+   *         retroactively.
+   */
+  public static boolean isLuceneIndexSortEnabled ()
+  {
+    return getConfig ().getAsBoolean ("lucene.indexsort.enabled", true);
+  }
+
+  /**
+   * Read value of <code>lucene.search.maxentitiesperparticipant</code>.
+   * Defaults to <code>100</code>.
+   *
+   * @return The maximum number of matching entities returned per participant
+   *         by searches that return one hit per participant. Always &gt; 0.
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public static int getLuceneSearchMaxEntitiesPerParticipant ()
+  {
+    final int ret = getConfig ().getAsInt ("lucene.search.maxentitiesperparticipant", 100);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.search.maxentitiesperparticipant property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.resultcache.maxentries</code>. Defaults to
+   * <code>1000</code>.
+   *
+   * @return The maximum number of search results and counts to cache. Values
+   *         &le; 0 disable the cache.
+   */
+  public static int getLuceneResultCacheMaxEntries ()
+  {
+    return getConfig ().getAsInt ("lucene.resultcache.maxentries", 1000);
+  }
+
+  /**
+   * Read value of <code>lucene.resultcache.max.mb</code>. Defaults to
+   * <code>32</code>.
+   *
+   * @return The maximum estimated memory in MB used by the search result
+   *         cache. Values &le; 0 disable the cache.
+   */
+  public static int getLuceneResultCacheMaxMB ()
+  {
+    return getConfig ().getAsInt ("lucene.resultcache.max.mb", 32);
+  }
+
+  /**
+   * Read value of <code>lucene.querycache.maxentries</code>. Defaults to
+   * <code>1000</code>.
+   *
+   * @return The maximum number of filters in the Lucene query cache.
+   */
+  @Nonnegative
+  public static int getLuceneQueryCacheMaxEntries ()
+  {
+    final int ret = getConfig ().getAsInt ("lucene.querycache.maxentries", 1000);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.querycache.maxentries property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>lucene.querycache.max.mb</code>. Defaults to
+   * <code>32</code>.
+   *
+   * @return The maximum memory in MB used by the Lucene query cache.
+   */
+  @Nonnegative
+  public static int getLuceneQueryCacheMaxMB ()
+  {
+    final int ret = getConfig ().getAsInt ("lucene.querycache.max.mb", 32);
+    if (ret <= 0)
+      throw new IllegalStateException ("The lucene.querycache.max.mb property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>indexer.workers</code>. Defaults to <code>4</code>.
+   *
+   * @return The number of parallel indexer workers. Items of the same
+   *         participant are always handled by the same worker.
+   */
+  @Nonnegative
+  public static int getIndexerWorkerCount ()
+  {
+    final int ret = getConfig ().getAsInt ("indexer.workers", 4);
+    if (ret <= 0)
+      throw new IllegalStateException ("The indexer.workers property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>indexer.journal.segment.max.mb</code>. Defaults to
+   * <code>16</code>.
+   *
+   * @return The size in MB after which a new segment of the indexer work item
+   *         journal is started and the previous ones are compacted.
+   */
+  @Nonnegative
+  public static int getIndexerJournalSegmentMaxMB ()
+  {
+    final int ret = getConfig ().getAsInt ("indexer.journal.segment.max.mb", 16);
+    if (ret <= 0)
+      throw new IllegalStateException ("The indexer.journal.segment.max.mb property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>indexer.lane.<i>laneID</i>.weight</code>. Defaults to
+   * the default weight of the lane.
+   *
+   * @param eLane
+   *        The lane to get the weight of. May not be <code>null</code>.
+   * @return The relative weight of the provided indexer queue lane.
+   * @see EIndexerWorkItemLane#getDefaultWeight()
+   */
+  @Nonnegative
+  public static int getIndexerLaneWeight (@Nonnull final EIndexerWorkItemLane eLane)
+  {
+    final String sKey = "indexer.lane." + eLane.getID () + ".weight";
+    final int ret = getConfig ().getAsInt (sKey, eLane.getDefaultWeight ());
+    if (ret <= 0)
+      throw new IllegalStateException ("The " + sKey + " property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>indexer.queue.highwatermark</code>. Defaults to
+   * <code>50000</code>.
+   *
+   * @return The indexer queue size from which on new requests from the REST
+   *         interface are rejected.
+   */
+  @Nonnegative
+  public static int getIndexerQueueHighWatermark ()
+  {
+    final int ret = getConfig ().getAsInt ("indexer.queue.highwatermark", 50_000);
+    if (ret <= 0)
+      throw new IllegalStateException ("The indexer.queue.highwatermark property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>indexer.queue.lowwatermark</code>. Defaults to
+   * <code>40000</code>.
+   *
+   * @return The indexer queue size to which a saturated queue must drop,
+   *         before new requests from the REST interface are accepted again.
+   */
+  @Nonnegative
+  public static int getIndexerQueueLowWatermark ()
+  {
+    final int ret = getConfig ().getAsInt ("indexer.queue.lowwatermark", 40_000);
+    if (ret < 0 || ret >= getIndexerQueueHighWatermark ())
+      throw new IllegalStateException ("The indexer.queue.lowwatermark property must be >= 0 and < indexer.queue.highwatermark!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>indexer.queue.maxperclient</code>. Defaults to
+   * <code>10000</code>.
+   *
+   * @return The maximum number of pending work items per client certificate.
+   */
+  @Nonnegative
+  public static int getIndexerQueueMaxPerClient ()
+  {
+    final int ret = getConfig ().getAsInt ("indexer.queue.maxperclient", 10_000);
+    if (ret <= 0)
+      throw new IllegalStateException ("The indexer.queue.maxperclient property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>indexer.bulk.maxitems</code>. Defaults to
+   * <code>1000</code>.
+   *
+   * @return The maximum number of participant IDs in a single bulk request of
+   *         the REST interface. Always &gt; 0.
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public static int getIndexerBulkMaxItems ()
+  {
+    final int ret = getConfig ().getAsInt ("indexer.bulk.maxitems", 1000);
+    if (ret <= 0)
+      throw new IllegalStateException ("The indexer.bulk.maxitems property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>indexer.queue.retryafter.seconds</code>. Defaults to
+   * <code>60</code>.
+   *
+   * @return The number of seconds a client is asked to wait, if its request
+   *         was rejected by the admission control.
+   */
+  @Nonnegative
+  public static int getIndexerQueueRetryAfterSeconds ()
+  {
+    final int ret = getConfig ().getAsInt ("indexer.queue.retryafter.seconds", 60);
+    if (ret <= 0)
+      throw new IllegalStateException ("The indexer.queue.retryafter.seconds property must be > 0!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>reindex.backoff.maxminutes</code>. Defaults to
+   * <code>240</code>.
+   *
+   * @return The maximum number of minutes between two retries of a transient
+   *         failure. Always &ge; {@link #getReIndexRetryMinutes()}.
+   */
+  @Nonnegative
+  public static int getReIndexBackoffMaxMinutes ()
+  {
+    final int ret = getConfig ().getAsInt ("reindex.backoff.maxminutes", 240);
+    if (ret < getReIndexRetryMinutes ())
+      throw new IllegalStateException ("The reindex.backoff.maxminutes property must be >= reindex.retryminutes!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>reindex.backoff.jitterpercent</code>. Defaults to
+   * <code>20</code>.
+   *
+   * @return The maximum deviation in percent from the interval between two
+   *         retries of a transient failure. Between 0 and 100.
+   */
+  @Nonnegative
+  public static int getReIndexBackoffJitterPercent ()
+  {
+    final int ret = getConfig ().getAsInt ("reindex.backoff.jitterpercent", 20);
+    if (ret < 0 || ret > 100)
+      throw new IllegalStateException ("The reindex.backoff.jitterpercent property must be between 0 and 100!");
+    return ret;
+  }
+
+  /**
+   * Read value of <code>reindex.retrypolicy.<i>failureID</i></code>.
+   * Supported values are
+   * <code>deadlist</code> (no retry), <code>fixed</code> (retry every
+   * {@link #getReIndexRetryMinutes()} minutes) and <code>backoff</code>
+   * (exponential backoff with jitter). Defaults to <code>deadlist</code> for
+   * permanent failures and <code>backoff</code> for all other failures.
+   *
+   * @param eFailureType
+   *        The failure type to get the retry policy for. May not be
+   *        <code>null</code>.
+   * @return The retry policy to use. Never <code>null</code>.
+   * @see EIndexerFailureType#isPermanent()
+   */
+  @Nonnull
+  public static IReIndexRetryPolicy getReIndexRetryPolicy (@Nonnull final EIndexerFailureType eFailureType)
+  {
+    final String sKey = "reindex.retrypolicy." + eFailureType.getID ();
+    final String sPolicy = getConfig ().getAsString (sKey, eFailureType.isPermanent () ? "deadlist" : "backoff");
+    switch (sPolicy)
+    {
+      case "deadlist":
+        return ReIndexRetryPolicyDeadList.INSTANCE;
+      case "fixed":
+        return new ReIndexRetryPolicyFixed (Duration.ofMinutes (getReIndexRetryMinutes ()));
+      case "backoff":
+        return new ReIndexRetryPolicyExponentialBackoff (Duration.ofMinutes (getReIndexRetryMinutes ()),
+                                                         Duration.ofMinutes (getReIndexBackoffMaxMinutes ()),
+                                                         getReIndexBackoffJitterPercent () / 100d);
+      default:
+        throw new IllegalStateException ("The " + sKey + " property has the unsupported value '" + sPolicy + "'!");
+    }
+  }
 }
@@ -29,6 +29,17 @@ public final class CPDStorage
   public static final String FIELD_ALL_FIELDS = "allfields";
   public static final String FIELD_DELETED = "deleted";
 
+  /** The size of the n-grams in the n-gram shadow fields */
+  public static final int NGRAM_SIZE = 3;
+  /** N-gram shadow of {@link #FIELD_ALL_FIELDS} */
+  public static final String FIELD_ALL_FIELDS_NGRAM = "allfields-ngram";
+  /** N-gram shadow of the name field */
+  public static final String FIELD_NAME_NGRAM = "name-ngram";
+  /** N-gram shadow of the website field */
+  public static final String FIELD_WEBSITE_NGRAM = "website-ngram";
+  /** N-gram shadow of all the contact fields */
+  public static final String FIELD_CONTACT_NGRAM = "contact-ngram";
+
   private CPDStorage ()
   {}
 }
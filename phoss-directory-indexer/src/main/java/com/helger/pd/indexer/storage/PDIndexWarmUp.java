@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.storage;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForSigned;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.CommonsLinkedHashSet;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.collection.impl.ICommonsOrderedSet;
+import com.helger.commons.concurrent.BasicThreadFactory;
+import com.helger.commons.concurrent.ExecutorServiceHelper;
+import com.helger.commons.concurrent.SimpleReadWriteLock;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.mutable.MutableLong;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.timing.StopWatch;
+import com.helger.pd.indexer.lucene.ILuceneAnalyzerProvider;
+import com.helger.photon.app.io.WebFileIO;
+
+/**
+ * Warm-up of the Lucene index after startup. A set of configured queries and
+ * the most frequent queries of the last run are executed once in the
+ * background, so that the index files, term dictionaries and norms are loaded
+ * before the first real search comes in. Until the warm-up is finished,
+ * {@link #isReady()} returns <code>false</code>.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@ThreadSafe
+public final class PDIndexWarmUp implements AutoCloseable
+{
+  /** The maximum number of distinct queries to remember in one run */
+  public static final int MAX_DISTINCT_RECORDED_QUERIES = 10_000;
+  /** The number of results to load for each warm-up query */
+  public static final int WARM_UP_RESULT_COUNT = 20;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (PDIndexWarmUp.class);
+
+  private final ILuceneAnalyzerProvider m_aAnalyzerProvider;
+  private final PDStorageManager m_aStorageMgr;
+  private final ICommonsList <String> m_aConfiguredQueries;
+  private final int m_nRecordedQueryCount;
+  private final ExecutorService m_aExecutor;
+  private final AtomicBoolean m_aReady = new AtomicBoolean (false);
+  private final AtomicBoolean m_aStopRequested = new AtomicBoolean (false);
+  private final AtomicLong m_aWarmUpQueryCount = new AtomicLong (0);
+  private final AtomicLong m_aWarmUpMillis = new AtomicLong (-1);
+  private final SimpleReadWriteLock m_aRWLock = new SimpleReadWriteLock ();
+  @GuardedBy ("m_aRWLock")
+  private final ICommonsMap <String, MutableLong> m_aRecordedQueries = new CommonsHashMap <> ();
+
+  /**
+   * Constructor
+   *
+   * @param aAnalyzerProvider
+   *        The analyzer provider to split the queries into terms. May not be
+   *        <code>null</code>.
+   * @param aStorageMgr
+   *        The storage manager to execute the queries. May not be
+   *        <code>null</code>.
+   * @param aConfiguredQueries
+   *        The queries to always execute on warm-up. May not be
+   *        <code>null</code> but may be empty.
+   * @param nRecordedQueryCount
+   *        The number of most frequent queries to be remembered for the warm-up
+   *        of the next run. Must be &ge; 0.
+   */
+  public PDIndexWarmUp (@Nonnull final ILuceneAnalyzerProvider aAnalyzerProvider,
+                        @Nonnull final PDStorageManager aStorageMgr,
+                        @Nonnull final ICommonsList <String> aConfiguredQueries,
+                        @Nonnegative final int nRecordedQueryCount)
+  {
+    ValueEnforcer.notNull (aAnalyzerProvider, "AnalyzerProvider");
+    ValueEnforcer.notNull (aStorageMgr, "StorageMgr");
+    ValueEnforcer.notNull (aConfiguredQueries, "ConfiguredQueries");
+    ValueEnforcer.isGE0 (nRecordedQueryCount, "RecordedQueryCount");
+    m_aAnalyzerProvider = aAnalyzerProvider;
+    m_aStorageMgr = aStorageMgr;
+    m_aConfiguredQueries = aConfiguredQueries.getClone ();
+    m_nRecordedQueryCount = nRecordedQueryCount;
+    m_aExecutor = Executors.newSingleThreadExecutor (new BasicThreadFactory.Builder ().setNamingPattern ("pd-lucene-warmup-%d")
+                                                                                      .setDaemon (true)
+                                                                                      .build ());
+  }
+
+  @Nonnull
+  public static File getRecordedQueriesFile ()
+  {
+    return WebFileIO.getDataIO ().getFile ("lucene-warmup-queries.txt");
+  }
+
+  /**
+   * Start the warm-up in the background. When it is finished, the index is
+   * marked as ready.
+   */
+  public void startWarmUp ()
+  {
+    m_aExecutor.submit (this::_warmUp);
+  }
+
+  /**
+   * Mark the index as ready without performing the warm-up. This is used if
+   * the warm-up is disabled.
+   */
+  public void skipWarmUp ()
+  {
+    m_aReady.set (true);
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  private ICommonsOrderedSet <String> _getAllWarmUpQueries ()
+  {
+    final ICommonsOrderedSet <String> ret = new CommonsLinkedHashSet <> ();
+    for (final String sQuery : m_aConfiguredQueries)
+      if (StringHelper.hasText (sQuery))
+        ret.add (sQuery.trim ());
+
+    if (m_nRecordedQueryCount > 0)
+    {
+      final String sRecorded = SimpleFileIO.getFileAsString (getRecordedQueriesFile (), StandardCharsets.UTF_8);
+      if (sRecorded != null)
+        for (final String sQuery : StringHelper.getExploded ('\n', sRecorded, m_nRecordedQueryCount))
+          if (StringHelper.hasText (sQuery))
+            ret.add (sQuery.trim ());
+    }
+    return ret;
+  }
+
+  private void _warmUp ()
+  {
+    final StopWatch aSW = StopWatch.createdStarted ();
+    try
+    {
+      final ICommonsOrderedSet <String> aQueries = _getAllWarmUpQueries ();
+      LOGGER.info ("Starting Lucene index warm-up with " + aQueries.size () + " queries");
+
+      // Touch the "deleted" field and the norms of all documents
+      m_aStorageMgr.getCount (EQueryMode.NON_DELETED_ONLY.getEffectiveQuery (new MatchAllDocsQuery ()));
+
+      for (final String sQuery : aQueries)
+      {
+        if (m_aStopRequested.get ())
+        {
+          LOGGER.info ("Stopping the Lucene index warm-up because of shutdown");
+          break;
+        }
+        try
+        {
+          Query aQuery = PDQueryManager.convertQueryStringToLuceneQuery (m_aAnalyzerProvider, CPDStorage.FIELD_ALL_FIELDS, sQuery);
+          aQuery = EQueryMode.NON_DELETED_ONLY.getEffectiveQuery (aQuery);
+
+          // Load the stored fields as well as the count - same as the search
+          m_aStorageMgr.searchTopDocuments (aQuery, WARM_UP_RESULT_COUNT);
+          m_aWarmUpQueryCount.incrementAndGet ();
+        }
+        catch (final RuntimeException ex)
+        {
+          LOGGER.warn ("Failed to execute warm-up query '" + sQuery + "'", ex);
+        }
+      }
+    }
+    finally
+    {
+      // Never block the searches forever
+      m_aWarmUpMillis.set (aSW.stopAndGetMillis ());
+      m_aReady.set (true);
+      LOGGER.info ("Finished Lucene index warm-up with " + m_aWarmUpQueryCount.get () + " queries in " + m_aWarmUpMillis.get () + "ms");
+    }
+  }
+
+  /**
+   * Remember a user provided query string, so that the most frequent ones can
+   * be used for the warm-up of the next run.
+   *
+   * @param sQueryString
+   *        The query string as entered by the user. May be <code>null</code>.
+   */
+  public void recordQuery (@Nullable final String sQueryString)
+  {
+    if (m_nRecordedQueryCount > 0 && StringHelper.hasText (sQueryString))
+    {
+      // Avoid that line breaks destroy the file layout
+      final String sKey = StringHelper.replaceAll (sQueryString.trim (), '\n', ' ');
+      m_aRWLock.writeLocked ( () -> {
+        final MutableLong aCount = m_aRecordedQueries.get (sKey);
+        if (aCount != null)
+          aCount.inc ();
+        else
+          if (m_aRecordedQueries.size () < MAX_DISTINCT_RECORDED_QUERIES)
+            m_aRecordedQueries.put (sKey, new MutableLong (1));
+      });
+    }
+  }
+
+  /**
+   * @return The most frequent recorded queries of this run, most frequent
+   *         first. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <String> getTopRecordedQueries ()
+  {
+    final ICommonsList <String> ret = new CommonsArrayList <> ();
+    m_aRWLock.readLocked ( () -> m_aRecordedQueries.getSortedByValue ( (a, b) -> b.compareTo (a))
+                                                   .forEach ( (k, v) -> {
+                                                     if (ret.size () < m_nRecordedQueryCount)
+                                                       ret.add (k);
+                                                   }));
+    return ret;
+  }
+
+  /**
+   * @return <code>true</code> if the warm-up is finished or was skipped and
+   *         the index is ready for searching.
+   */
+  public boolean isReady ()
+  {
+    return m_aReady.get ();
+  }
+
+  /**
+   * @return The number of successfully executed warm-up queries. Always &ge;
+   *         0.
+   */
+  @Nonnegative
+  public long getWarmUpQueryCount ()
+  {
+    return m_aWarmUpQueryCount.get ();
+  }
+
+  /**
+   * @return The duration of the warm-up in milliseconds or -1 if it is not yet
+   *         finished or was skipped.
+   */
+  @CheckForSigned
+  public long getWarmUpMillis ()
+  {
+    return m_aWarmUpMillis.get ();
+  }
+
+  /**
+   * Stop a running warm-up and store the most frequent queries of this run for
+   * the next warm-up. A running warm-up finishes the current query only.
+   */
+  public void close ()
+  {
+    m_aStopRequested.set (true);
+    ExecutorServiceHelper.shutdownAndWaitUntilAllTasksAreFinished (m_aExecutor);
+
+    if (m_nRecordedQueryCount > 0)
+    {
+      final ICommonsList <String> aTopQueries = getTopRecordedQueries ();
+      if (aTopQueries.isNotEmpty ())
+      {
+        SimpleFileIO.writeFile (getRecordedQueriesFile (), StringHelper.getImploded ('\n', aTopQueries), StandardCharsets.UTF_8);
+        if (LOGGER.isDebugEnabled ())
+          LOGGER.debug ("Stored " + aTopQueries.size () + " queries for the next warm-up");
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.storage;
+
+import javax.annotation.CheckForSigned;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.peppolid.IParticipantIdentifier;
+
+/**
+ * The result of a search that returns one hit per participant: the top
+ * participants with their matching entities, together with the total number
+ * of matching participants.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@Immutable
+public final class PDParticipantSearchResult
+{
+  private final ICommonsOrderedMap <IParticipantIdentifier, ICommonsList <PDStoredBusinessEntity>> m_aParticipants;
+  private final int m_nTotalParticipantCount;
+  private final int m_nTotalEntityCount;
+
+  public PDParticipantSearchResult (@Nonnull final ICommonsOrderedMap <IParticipantIdentifier, ICommonsList <PDStoredBusinessEntity>> aParticipants,
+                                    final int nTotalParticipantCount,
+                                    final int nTotalEntityCount)
+  {
+    ValueEnforcer.notNull (aParticipants, "Participants");
+
+    m_aParticipants = aParticipants;
+    m_nTotalParticipantCount = nTotalParticipantCount;
+    m_nTotalEntityCount = nTotalEntityCount;
+  }
+
+  /**
+   * @return A copy of the map from participant ID to the matching entities of
+   *         that participant, ordered by relevance. Never <code>null</code> but
+   *         maybe empty.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsOrderedMap <IParticipantIdentifier, ICommonsList <PDStoredBusinessEntity>> getParticipants ()
+  {
+    return new CommonsLinkedHashMap <> (m_aParticipants);
+  }
+
+  /**
+   * @return The total number of participants with at least one matching
+   *         entity. May be &lt; 0 in case of error.
+   */
+  @CheckForSigned
+  public int getTotalParticipantCount ()
+  {
+    return m_nTotalParticipantCount;
+  }
+
+  /**
+   * @return The total number of matching entities. May be &lt; 0 in case of
+   *         error.
+   */
+  @CheckForSigned
+  public int getTotalEntityCount ()
+  {
+    return m_nTotalEntityCount;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Participants", m_aParticipants)
+                                       .append ("TotalParticipantCount", m_nTotalParticipantCount)
+                                       .append ("TotalEntityCount", m_nTotalEntityCount)
+                                       .getToString ();
+  }
+}
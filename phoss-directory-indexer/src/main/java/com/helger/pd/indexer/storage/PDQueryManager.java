@@ -26,10 +26,13 @@ import javax.annotation.concurrent.Immutable;
 
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.WildcardQuery;
@@ -39,7 +42,11 @@ import org.slf4j.LoggerFactory;
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.CommonsHashSet;
 import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.collection.impl.ICommonsSet;
 import com.helger.commons.datetime.PDTWebDateHelper;
 import com.helger.commons.regex.RegExHelper;
 import com.helger.pd.indexer.lucene.ILuceneAnalyzerProvider;
@@ -58,10 +65,32 @@ import com.helger.peppolid.factory.IIdentifierFactory;
 public final class PDQueryManager
 {
   private static final Logger LOGGER = LoggerFactory.getLogger (PDQueryManager.class);
+  // Map from field name to n-gram shadow field name
+  private static final ICommonsMap <String, String> NGRAM_FIELDS = new CommonsHashMap <> ();
+  static
+  {
+    NGRAM_FIELDS.put (CPDStorage.FIELD_ALL_FIELDS, CPDStorage.FIELD_ALL_FIELDS_NGRAM);
+    NGRAM_FIELDS.put (PDField.NAME.getFieldName (), CPDStorage.FIELD_NAME_NGRAM);
+  }
+
+  // Shared instance so that it is easily recognized by the query cache
+  private static final Query DELETED_QUERY = IntPoint.newExactQuery (CPDStorage.FIELD_DELETED, 1);
 
   private PDQueryManager ()
   {}
 
+  /**
+   * @return The query matching all documents marked as deleted. This is the
+   *         query used by {@link #andNotDeleted(Query)} and
+   *         {@link #andDeleted(Query)}. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public static Query getDeletedQuery ()
+  {
+    return DELETED_QUERY;
+  }
+
   /**
    * Surround the provided {@link Query} with a clause that forbids deleted
    * documents to be returned
@@ -75,7 +104,7 @@ public final class PDQueryManager
   public static Query andNotDeleted (@Nonnull final Query aQuery)
   {
     return new BooleanQuery.Builder ().add (aQuery, Occur.FILTER)
-                                      .add (IntPoint.newExactQuery (CPDStorage.FIELD_DELETED, 1), Occur.MUST_NOT)
+                                      .add (DELETED_QUERY, Occur.MUST_NOT)
                                       .build ();
   }
 
@@ -91,7 +120,7 @@ public final class PDQueryManager
   public static Query andDeleted (@Nonnull final Query aQuery)
   {
     return new BooleanQuery.Builder ().add (aQuery, Occur.FILTER)
-                                      .add (IntPoint.newExactQuery (CPDStorage.FIELD_DELETED, 1), Occur.MUST)
+                                      .add (DELETED_QUERY, Occur.MUST)
                                       .build ();
   }
 
@@ -137,12 +166,94 @@ public final class PDQueryManager
     }
   }
 
+  /**
+   * Create a "contains" query on an n-gram shadow field. The text is split
+   * into n-grams with the same analyzer chain that is used for indexing the
+   * shadow field, so that separators and too short tokens are treated
+   * identically. All n-grams of a token are indexed at the same position, so
+   * the created phrase query contains all n-grams of each token at the
+   * position of that token.<br>
+   * Note: the result is an approximation of a "contains" query. A document
+   * matches if it contains tokens at consecutive positions that contain all
+   * n-grams of the respective query token - regardless of their order inside
+   * the token. Additionally query tokens that are shorter than
+   * {@link CPDStorage#NGRAM_SIZE} are ignored. So the result may contain
+   * documents that would not be matched by the respective wildcard query. The
+   * effort is proportional to the number of matches and not to the number of
+   * distinct terms in the index.
+   *
+   * @param aAnalyzerProvider
+   *        Lucene Analyzer provider. May not be <code>null</code>.
+   * @param sNGramFieldName
+   *        The n-gram shadow field name. May not be <code>null</code>.
+   * @param sText
+   *        The text to search. May not be <code>null</code>.
+   * @return <code>null</code> if the text is too short for an n-gram query or
+   *         if analyzing failed.
+   */
+  @Nullable
+  private static Query _createNGramContainsQuery (@Nonnull final ILuceneAnalyzerProvider aAnalyzerProvider,
+                                                  @Nonnull final String sNGramFieldName,
+                                                  @Nonnull final String sText)
+  {
+    final PhraseQuery.Builder aBuilder = new PhraseQuery.Builder ();
+    // Avoid duplicate n-grams at the same position
+    final ICommonsSet <String> aUsed = new CommonsHashSet <> ();
+    Term aFirstTerm = null;
+    try (final TokenStream aTokenStream = aAnalyzerProvider.getAnalyzer ().tokenStream (sNGramFieldName, sText))
+    {
+      final CharTermAttribute aCharTermAttribute = aTokenStream.addAttribute (CharTermAttribute.class);
+      final PositionIncrementAttribute aPosIncAttribute = aTokenStream.addAttribute (PositionIncrementAttribute.class);
+      aTokenStream.reset ();
+      int nPosition = -1;
+      while (aTokenStream.incrementToken ())
+      {
+        nPosition += aPosIncAttribute.getPositionIncrement ();
+        final String sNGram = aCharTermAttribute.toString ();
+        if (aUsed.add (nPosition + " " + sNGram))
+        {
+          final Term aTerm = new Term (sNGramFieldName, sNGram);
+          if (aFirstTerm == null)
+            aFirstTerm = aTerm;
+          aBuilder.add (aTerm, nPosition);
+        }
+      }
+      aTokenStream.end ();
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.warn ("Failed to split query '" + sText + "' into n-grams. Defaulting to wildcard query", ex);
+      return null;
+    }
+
+    if (aFirstTerm == null)
+      return null;
+
+    if (aUsed.size () == 1)
+      return new TermQuery (aFirstTerm);
+
+    return aBuilder.build ();
+  }
+
   @Nonnull
-  private static Query _createSimpleAllFieldsQuery (@Nonnull final String sFieldName, @Nonnull final String sQueryText)
+  private static Query _createSimpleAllFieldsQuery (@Nonnull final ILuceneAnalyzerProvider aAnalyzerProvider,
+                                                    @Nonnull final String sFieldName,
+                                                    @Nonnull final String sQueryText)
   {
     if (false)
       return new TermQuery (new Term (sFieldName, sQueryText));
 
+    if (aAnalyzerProvider.isNGramQueryEnabled ())
+    {
+      final String sNGramFieldName = NGRAM_FIELDS.get (sFieldName);
+      if (sNGramFieldName != null)
+      {
+        final Query aQuery = _createNGramContainsQuery (aAnalyzerProvider, sNGramFieldName, sQueryText);
+        if (aQuery != null)
+          return aQuery;
+      }
+    }
+
     // This works -> text ==> *text*
     return new WildcardQuery (new Term (sFieldName, "*" + sQueryText + "*"));
   }
@@ -182,14 +293,14 @@ public final class PDQueryManager
     if (aParts.size () == 1)
     {
       // Single term - simple query
-      aQuery = _createSimpleAllFieldsQuery (sFieldName, aParts.get (0));
+      aQuery = _createSimpleAllFieldsQuery (aAnalyzerProvider, sFieldName, aParts.get (0));
     }
     else
     {
       // All parts must be matched
       final BooleanQuery.Builder aBuilder = new BooleanQuery.Builder ();
       for (final String sPart : aParts)
-        aBuilder.add (_createSimpleAllFieldsQuery (sFieldName, sPart), Occur.FILTER);
+        aBuilder.add (_createSimpleAllFieldsQuery (aAnalyzerProvider, sFieldName, sPart), Occur.FILTER);
       aQuery = aBuilder.build ();
     }
 
@@ -255,7 +366,8 @@ public final class PDQueryManager
     ValueEnforcer.notEmpty (sQueryString, "QueryString");
     ValueEnforcer.notEmpty (sQueryString.trim (), "QueryString trimmed");
 
-    final Query aQuery = new TermQuery (PDField.COUNTRY_CODE.getExactMatchTerm (_upperCase (sQueryString)));
+    // Constant score, so that the filter can be cached
+    final Query aQuery = new ConstantScoreQuery (new TermQuery (PDField.COUNTRY_CODE.getExactMatchTerm (_upperCase (sQueryString))));
     return aQuery;
   }
 
@@ -303,7 +415,8 @@ public final class PDQueryManager
   }
 
   @Nullable
-  public static Query getWebsiteLuceneQuery (@Nonnull @Nonempty final String sQueryString)
+  public static Query getWebsiteLuceneQuery (@Nonnull final ILuceneAnalyzerProvider aAnalyzerProvider,
+                                             @Nonnull @Nonempty final String sQueryString)
   {
     ValueEnforcer.notEmpty (sQueryString, "QueryString");
     ValueEnforcer.notEmpty (sQueryString.trim (), "QueryString trimmed");
@@ -314,12 +427,20 @@ public final class PDQueryManager
       return null;
     }
 
+    if (aAnalyzerProvider.isNGramQueryEnabled ())
+    {
+      final Query aQuery = _createNGramContainsQuery (aAnalyzerProvider, CPDStorage.FIELD_WEBSITE_NGRAM, sQueryString);
+      if (aQuery != null)
+        return aQuery;
+    }
+
     final Query aQuery = new WildcardQuery (PDField.WEBSITE_URI.getContainsTerm (_lowerCase (sQueryString)));
     return aQuery;
   }
 
   @Nullable
-  public static Query getContactLuceneQuery (@Nonnull @Nonempty final String sQueryString)
+  public static Query getContactLuceneQuery (@Nonnull final ILuceneAnalyzerProvider aAnalyzerProvider,
+                                             @Nonnull @Nonempty final String sQueryString)
   {
     ValueEnforcer.notEmpty (sQueryString, "QueryString");
     ValueEnforcer.notEmpty (sQueryString.trim (), "QueryString trimmed");
@@ -330,6 +451,14 @@ public final class PDQueryManager
       return null;
     }
 
+    if (aAnalyzerProvider.isNGramQueryEnabled ())
+    {
+      // One shadow field for all contact fields
+      final Query aQuery = _createNGramContainsQuery (aAnalyzerProvider, CPDStorage.FIELD_CONTACT_NGRAM, sQueryString);
+      if (aQuery != null)
+        return aQuery;
+    }
+
     final Query aQuery1 = new WildcardQuery (PDField.CONTACT_TYPE.getContainsTerm (_lowerCase (sQueryString)));
     final Query aQuery2 = new WildcardQuery (PDField.CONTACT_NAME.getContainsTerm (_lowerCase (sQueryString)));
     final Query aQuery3 = new WildcardQuery (PDField.CONTACT_PHONE.getContainsTerm (_lowerCase (sQueryString)));
@@ -397,7 +526,8 @@ public final class PDQueryManager
       return null;
     }
 
-    final Query aQuery = new TermQuery (PDField.DOCTYPE_ID.getExactMatchTerm (aDTI));
+    // Constant score, so that the filter can be cached
+    final Query aQuery = new ConstantScoreQuery (new TermQuery (PDField.DOCTYPE_ID.getExactMatchTerm (aDTI)));
     return aQuery;
   }
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.storage;
+
+import javax.annotation.CheckForSigned;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The result of a single search pass: the top hits together with the total
+ * number of hits.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@Immutable
+public final class PDSearchResult
+{
+  private final ICommonsList <PDStoredBusinessEntity> m_aTopDocuments;
+  private final int m_nTotalHitCount;
+  private final boolean m_bTotalHitCountExact;
+
+  public PDSearchResult (@Nonnull final ICommonsList <PDStoredBusinessEntity> aTopDocuments,
+                         final int nTotalHitCount,
+                         final boolean bTotalHitCountExact)
+  {
+    ValueEnforcer.notNull (aTopDocuments, "TopDocuments");
+
+    m_aTopDocuments = aTopDocuments;
+    m_nTotalHitCount = nTotalHitCount;
+    m_bTotalHitCountExact = bTotalHitCountExact;
+  }
+
+  /**
+   * @return A copy of the matching documents, at most the requested number.
+   *         Never <code>null</code> but maybe empty. A copy is returned, because
+   *         search results may be cached.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <PDStoredBusinessEntity> getTopDocuments ()
+  {
+    return m_aTopDocuments.getClone ();
+  }
+
+  /**
+   * @return The total number of hits. If {@link #isTotalHitCountExact()} is
+   *         <code>false</code> this is only a lower bound. May be &lt; 0 in
+   *         case of error.
+   */
+  @CheckForSigned
+  public int getTotalHitCount ()
+  {
+    return m_nTotalHitCount;
+  }
+
+  /**
+   * @return <code>true</code> if the total hit count is exact,
+   *         <code>false</code> if the search was terminated early and the
+   *         total hit count is only a lower bound.
+   */
+  public boolean isTotalHitCountExact ()
+  {
+    return m_bTotalHitCountExact;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("TopDocuments", m_aTopDocuments)
+                                       .append ("TotalHitCount", m_nTotalHitCount)
+                                       .append ("TotalHitCountExact", m_bTotalHitCountExact)
+                                       .getToString ();
+  }
+}
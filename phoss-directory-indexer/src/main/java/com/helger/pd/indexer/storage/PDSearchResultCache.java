@@ -0,0 +1,490 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.lucene.search.Query;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.concurrent.SimpleReadWriteLock;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.statistics.IMutableStatisticsHandlerCounter;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A memory bounded LRU cache for search results. The key contains the Lucene
+ * query and the version of the index reader the result was created with, so
+ * all entries are implicitly invalidated when the searcher is refreshed. Only
+ * small results (top documents and counts) are cached - streaming searches are
+ * never cached.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@ThreadSafe
+public class PDSearchResultCache
+{
+  /** Rough memory estimation for each entry, excluding the values */
+  public static final long ENTRY_OVERHEAD_BYTES = 256;
+  /** Rough memory estimation for each cached business entity */
+  public static final long ENTITY_OVERHEAD_BYTES = 512;
+
+  private static final IMutableStatisticsHandlerCounter s_aStatsHit = StatisticsManager.getCounterHandler (PDSearchResultCache.class.getName () +
+                                                                                                           "$hit");
+  private static final IMutableStatisticsHandlerCounter s_aStatsMiss = StatisticsManager.getCounterHandler (PDSearchResultCache.class.getName () +
+                                                                                                            "$miss");
+
+  /**
+   * The key of a single cache entry.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  private static final class Key
+  {
+    private final Query m_aQuery;
+    private final long m_nReaderVersion;
+    private final int m_nMaxResultCount;
+    private final int m_nTotalHitCountThreshold;
+    // status vars
+    private int m_nHashCode = 0;
+
+    Key (@Nonnull final Query aQuery, final long nReaderVersion, final int nMaxResultCount, final int nTotalHitCountThreshold)
+    {
+      m_aQuery = aQuery;
+      m_nReaderVersion = nReaderVersion;
+      m_nMaxResultCount = nMaxResultCount;
+      m_nTotalHitCountThreshold = nTotalHitCountThreshold;
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (o == null || !getClass ().equals (o.getClass ()))
+        return false;
+      final Key rhs = (Key) o;
+      return m_nReaderVersion == rhs.m_nReaderVersion &&
+             m_nMaxResultCount == rhs.m_nMaxResultCount &&
+             m_nTotalHitCountThreshold == rhs.m_nTotalHitCountThreshold &&
+             m_aQuery.equals (rhs.m_aQuery);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      int ret = m_nHashCode;
+      if (ret == 0)
+        ret = m_nHashCode = new HashCodeGenerator (this).append (m_aQuery)
+                                                        .append (m_nReaderVersion)
+                                                        .append (m_nMaxResultCount)
+                                                        .append (m_nTotalHitCountThreshold)
+                                                        .getHashCode ();
+      return ret;
+    }
+  }
+
+  /**
+   * A single cache value together with its estimated size.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  private static final class Value
+  {
+    private final Object m_aValue;
+    private final long m_nEstimatedBytes;
+
+    Value (@Nonnull final Object aValue, final long nEstimatedBytes)
+    {
+      m_aValue = aValue;
+      m_nEstimatedBytes = nEstimatedBytes;
+    }
+  }
+
+  /**
+   * Public information about a single cache entry.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  public static final class EntryInfo
+  {
+    private final String m_sQuery;
+    private final long m_nReaderVersion;
+    private final int m_nMaxResultCount;
+    private final long m_nEstimatedBytes;
+
+    EntryInfo (@Nonnull final String sQuery, final long nReaderVersion, final int nMaxResultCount, final long nEstimatedBytes)
+    {
+      m_sQuery = sQuery;
+      m_nReaderVersion = nReaderVersion;
+      m_nMaxResultCount = nMaxResultCount;
+      m_nEstimatedBytes = nEstimatedBytes;
+    }
+
+    /**
+     * @return The string representation of the cached query. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public String getQuery ()
+    {
+      return m_sQuery;
+    }
+
+    /**
+     * @return The version of the index reader the result was created with.
+     */
+    public long getReaderVersion ()
+    {
+      return m_nReaderVersion;
+    }
+
+    /**
+     * @return The maximum number of results requested. 0 for a cached count.
+     */
+    public int getMaxResultCount ()
+    {
+      return m_nMaxResultCount;
+    }
+
+    /**
+     * @return The estimated memory consumption in bytes.
+     */
+    public long getEstimatedBytes ()
+    {
+      return m_nEstimatedBytes;
+    }
+  }
+
+  private final int m_nMaxEntries;
+  private final long m_nMaxBytes;
+  private final SimpleReadWriteLock m_aRWLock = new SimpleReadWriteLock ();
+  // Access order for LRU
+  @GuardedBy ("m_aRWLock")
+  private final LinkedHashMap <Key, Value> m_aMap = new LinkedHashMap <> (16, 0.75f, true);
+  @GuardedBy ("m_aRWLock")
+  private long m_nCurrentBytes = 0;
+  @GuardedBy ("m_aRWLock")
+  private long m_nCurrentReaderVersion = Long.MIN_VALUE;
+  private final AtomicLong m_aHitCount = new AtomicLong (0);
+  private final AtomicLong m_aMissCount = new AtomicLong (0);
+  private final AtomicLong m_aEvictionCount = new AtomicLong (0);
+
+  /**
+   * Constructor
+   *
+   * @param nMaxEntries
+   *        The maximum number of entries. Values &le; 0 disable the cache.
+   * @param nMaxBytes
+   *        The maximum estimated memory consumption in bytes. Values &le; 0
+   *        disable the cache.
+   */
+  public PDSearchResultCache (final int nMaxEntries, final long nMaxBytes)
+  {
+    m_nMaxEntries = nMaxEntries;
+    m_nMaxBytes = nMaxBytes;
+  }
+
+  /**
+   * @return <code>true</code> if the cache is enabled, <code>false</code> if
+   *         nothing is cached.
+   */
+  public boolean isEnabled ()
+  {
+    return m_nMaxEntries > 0 && m_nMaxBytes > 0;
+  }
+
+  /**
+   * @return The maximum number of entries.
+   */
+  public int getMaxEntries ()
+  {
+    return m_nMaxEntries;
+  }
+
+  /**
+   * @return The maximum estimated memory consumption in bytes.
+   */
+  public long getMaxBytes ()
+  {
+    return m_nMaxBytes;
+  }
+
+  @Nullable
+  private Object _get (@Nonnull final Key aKey)
+  {
+    if (!isEnabled ())
+      return null;
+
+    // Write lock needed, because the access order is changed
+    final Value aValue = m_aRWLock.writeLockedGet ( () -> m_aMap.get (aKey));
+    if (aValue == null)
+    {
+      m_aMissCount.incrementAndGet ();
+      s_aStatsMiss.increment ();
+      return null;
+    }
+    m_aHitCount.incrementAndGet ();
+    s_aStatsHit.increment ();
+    return aValue.m_aValue;
+  }
+
+  private void _put (@Nonnull final Key aKey, @Nonnull final Object aValue, final long nEstimatedBytes)
+  {
+    if (!isEnabled () || nEstimatedBytes > m_nMaxBytes)
+      return;
+
+    m_aRWLock.writeLocked ( () -> {
+      if (aKey.m_nReaderVersion > m_nCurrentReaderVersion)
+      {
+        // The searcher was refreshed - older entries can never be hit again
+        m_aEvictionCount.addAndGet (m_aMap.size ());
+        m_aMap.clear ();
+        m_nCurrentBytes = 0;
+        m_nCurrentReaderVersion = aKey.m_nReaderVersion;
+      }
+      else
+        if (aKey.m_nReaderVersion < m_nCurrentReaderVersion)
+        {
+          // Result from an outdated searcher
+          return;
+        }
+
+      final Value aOld = m_aMap.put (aKey, new Value (aValue, nEstimatedBytes));
+      if (aOld != null)
+        m_nCurrentBytes -= aOld.m_nEstimatedBytes;
+      m_nCurrentBytes += nEstimatedBytes;
+
+      // Evict the least recently used entries
+      final Iterator <Map.Entry <Key, Value>> it = m_aMap.entrySet ().iterator ();
+      while ((m_aMap.size () > m_nMaxEntries || m_nCurrentBytes > m_nMaxBytes) && it.hasNext ())
+      {
+        final Value aEvicted = it.next ().getValue ();
+        it.remove ();
+        m_nCurrentBytes -= aEvicted.m_nEstimatedBytes;
+        m_aEvictionCount.incrementAndGet ();
+      }
+    });
+  }
+
+  /**
+   * Get a cached search result.
+   *
+   * @param aQuery
+   *        The executed query. May not be <code>null</code>.
+   * @param nReaderVersion
+   *        The version of the index reader to be searched.
+   * @param nMaxResultCount
+   *        The maximum number of results.
+   * @param nTotalHitCountThreshold
+   *        The total hit count threshold.
+   * @return <code>null</code> if no such result is cached.
+   */
+  @Nullable
+  public PDSearchResult getSearchResult (@Nonnull final Query aQuery,
+                                         final long nReaderVersion,
+                                         final int nMaxResultCount,
+                                         final int nTotalHitCountThreshold)
+  {
+    ValueEnforcer.notNull (aQuery, "Query");
+    return (PDSearchResult) _get (new Key (aQuery, nReaderVersion, nMaxResultCount, nTotalHitCountThreshold));
+  }
+
+  /**
+   * Cache a search result.
+   *
+   * @param aQuery
+   *        The executed query. May not be <code>null</code>.
+   * @param nReaderVersion
+   *        The version of the index reader that was searched.
+   * @param nMaxResultCount
+   *        The maximum number of results.
+   * @param nTotalHitCountThreshold
+   *        The total hit count threshold.
+   * @param aResult
+   *        The result to cache. May not be <code>null</code>.
+   */
+  public void putSearchResult (@Nonnull final Query aQuery,
+                               final long nReaderVersion,
+                               final int nMaxResultCount,
+                               final int nTotalHitCountThreshold,
+                               @Nonnull final PDSearchResult aResult)
+  {
+    ValueEnforcer.notNull (aQuery, "Query");
+    ValueEnforcer.notNull (aResult, "Result");
+
+    // Rough estimation based on the string representation
+    long nEstimatedBytes = ENTRY_OVERHEAD_BYTES;
+    for (final PDStoredBusinessEntity aEntity : aResult.getTopDocuments ())
+      nEstimatedBytes += ENTITY_OVERHEAD_BYTES + 2L * aEntity.toString ().length ();
+    _put (new Key (aQuery, nReaderVersion, nMaxResultCount, nTotalHitCountThreshold), aResult, nEstimatedBytes);
+  }
+
+  /**
+   * Get a cached hit count.
+   *
+   * @param aQuery
+   *        The executed query. May not be <code>null</code>.
+   * @param nReaderVersion
+   *        The version of the index reader to be searched.
+   * @return <code>null</code> if no such count is cached.
+   */
+  @Nullable
+  public Integer getCount (@Nonnull final Query aQuery, final long nReaderVersion)
+  {
+    ValueEnforcer.notNull (aQuery, "Query");
+    return (Integer) _get (new Key (aQuery, nReaderVersion, 0, 0));
+  }
+
+  /**
+   * Cache a hit count.
+   *
+   * @param aQuery
+   *        The executed query. May not be <code>null</code>.
+   * @param nReaderVersion
+   *        The version of the index reader that was searched.
+   * @param nCount
+   *        The hit count to cache.
+   */
+  public void putCount (@Nonnull final Query aQuery, final long nReaderVersion, @Nonnegative final int nCount)
+  {
+    ValueEnforcer.notNull (aQuery, "Query");
+    _put (new Key (aQuery, nReaderVersion, 0, 0), Integer.valueOf (nCount), ENTRY_OVERHEAD_BYTES);
+  }
+
+  /**
+   * Remove all entries from the cache. The statistics are not reset.
+   *
+   * @return The number of removed entries.
+   */
+  @Nonnegative
+  public int clear ()
+  {
+    return m_aRWLock.writeLockedInt ( () -> {
+      final int ret = m_aMap.size ();
+      m_aMap.clear ();
+      m_nCurrentBytes = 0;
+      return ret;
+    });
+  }
+
+  /**
+   * @return The current number of entries.
+   */
+  @Nonnegative
+  public int getEntryCount ()
+  {
+    return m_aRWLock.readLockedInt (m_aMap::size);
+  }
+
+  /**
+   * @return The current estimated memory consumption in bytes.
+   */
+  @Nonnegative
+  public long getEstimatedBytes ()
+  {
+    return m_aRWLock.readLockedLong ( () -> m_nCurrentBytes);
+  }
+
+  /**
+   * @return Information on all entries, from least recently to most recently
+   *         used. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <EntryInfo> getAllEntryInfos ()
+  {
+    return m_aRWLock.readLockedGet ( () -> {
+      final ICommonsList <EntryInfo> ret = new CommonsArrayList <> (m_aMap.size ());
+      for (final Map.Entry <Key, Value> aEntry : m_aMap.entrySet ())
+      {
+        final Key aKey = aEntry.getKey ();
+        ret.add (new EntryInfo (aKey.m_aQuery.toString (),
+                                aKey.m_nReaderVersion,
+                                aKey.m_nMaxResultCount,
+                                aEntry.getValue ().m_nEstimatedBytes));
+      }
+      return ret;
+    });
+  }
+
+  /**
+   * @return The number of cache hits since startup.
+   */
+  @Nonnegative
+  public long getHitCount ()
+  {
+    return m_aHitCount.get ();
+  }
+
+  /**
+   * @return The number of cache misses since startup.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aMissCount.get ();
+  }
+
+  /**
+   * @return The number of evicted entries since startup.
+   */
+  @Nonnegative
+  public long getEvictionCount ()
+  {
+    return m_aEvictionCount.get ();
+  }
+
+  /**
+   * @return The hit rate between 0 and 1. 0 if the cache was never used.
+   */
+  public double getHitRate ()
+  {
+    final long nHits = m_aHitCount.get ();
+    final long nTotal = nHits + m_aMissCount.get ();
+    return nTotal == 0 ? 0 : nHits / (double) nTotal;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("MaxEntries", m_nMaxEntries)
+                                       .append ("MaxBytes", m_nMaxBytes)
+                                       .append ("HitCount", m_aHitCount.get ())
+                                       .append ("MissCount", m_aMissCount.get ())
+                                       .append ("EvictionCount", m_aEvictionCount.get ())
+                                       .getToString ();
+  }
+}
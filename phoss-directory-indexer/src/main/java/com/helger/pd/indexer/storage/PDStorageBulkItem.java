@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.pd.indexer.businesscard.PDExtendedBusinessCard;
+import com.helger.peppolid.IParticipantIdentifier;
+
+/**
+ * A single item of a bulk storage operation. For a create or update operation
+ * the extended business card and the meta data are required. For a delete
+ * operation the business card is <code>null</code> and the meta data is
+ * optional.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+@Immutable
+public final class PDStorageBulkItem
+{
+  private final IParticipantIdentifier m_aParticipantID;
+  private final PDExtendedBusinessCard m_aExtBI;
+  private final PDStoredMetaData m_aMetaData;
+
+  private PDStorageBulkItem (@Nonnull final IParticipantIdentifier aParticipantID,
+                             @Nullable final PDExtendedBusinessCard aExtBI,
+                             @Nullable final PDStoredMetaData aMetaData)
+  {
+    m_aParticipantID = aParticipantID;
+    m_aExtBI = aExtBI;
+    m_aMetaData = aMetaData;
+  }
+
+  /**
+   * @return The participant identifier it is all about. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public IParticipantIdentifier getParticipantID ()
+  {
+    return m_aParticipantID;
+  }
+
+  /**
+   * @return The extended business card with the document type identifiers.
+   *         Never <code>null</code> for create or update items, always
+   *         <code>null</code> for delete items.
+   */
+  @Nullable
+  public PDExtendedBusinessCard getExtendedBusinessCard ()
+  {
+    return m_aExtBI;
+  }
+
+  /**
+   * @return The meta data to be stored. Never <code>null</code> for create or
+   *         update items, but may be <code>null</code> for delete items.
+   */
+  @Nullable
+  public PDStoredMetaData getMetaData ()
+  {
+    return m_aMetaData;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("ParticipantID", m_aParticipantID)
+                                       .appendIfNotNull ("ExtBI", m_aExtBI)
+                                       .appendIfNotNull ("MetaData", m_aMetaData)
+                                       .getToString ();
+  }
+
+  /**
+   * Create a new item for a create or update operation.
+   *
+   * @param aParticipantID
+   *        Participant identifier it is all about. May not be
+   *        <code>null</code>.
+   * @param aExtBI
+   *        The extended business card with the document type identifiers. May
+   *        not be <code>null</code>.
+   * @param aMetaData
+   *        The additional meta data to be stored. May not be
+   *        <code>null</code>.
+   * @return The new item and never <code>null</code>.
+   */
+  @Nonnull
+  public static PDStorageBulkItem createForUpdate (@Nonnull final IParticipantIdentifier aParticipantID,
+                                                   @Nonnull final PDExtendedBusinessCard aExtBI,
+                                                   @Nonnull final PDStoredMetaData aMetaData)
+  {
+    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+    ValueEnforcer.notNull (aExtBI, "ExtBI");
+    ValueEnforcer.notNull (aMetaData, "MetaData");
+    return new PDStorageBulkItem (aParticipantID, aExtBI, aMetaData);
+  }
+
+  /**
+   * Create a new item for a delete operation.
+   *
+   * @param aParticipantID
+   *        Participant ID to be deleted. May not be <code>null</code>.
+   * @param aMetaData
+   *        The entry metadata. Basically only for logging purposes. May be
+   *        <code>null</code>.
+   * @return The new item and never <code>null</code>.
+   */
+  @Nonnull
+  public static PDStorageBulkItem createForDelete (@Nonnull final IParticipantIdentifier aParticipantID,
+                                                   @Nullable final PDStoredMetaData aMetaData)
+  {
+    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+    return new PDStorageBulkItem (aParticipantID, null, aMetaData);
+  }
+}
@@ -17,12 +17,19 @@
 package com.helger.pd.indexer.storage;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.ObjIntConsumer;
 
 import javax.annotation.CheckForSigned;
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -31,36 +38,57 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.DocValuesFieldExistsQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.NormsFieldExistsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
-import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.grouping.BlockGroupingCollector;
+import org.apache.lucene.search.grouping.GroupDocs;
+import org.apache.lucene.search.grouping.TopGroups;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.helger.collection.multimap.MultiLinkedHashMapArrayListBased;
 import com.helger.commons.CGlobal;
 import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.annotation.ReturnsMutableCopy;
 import com.helger.commons.callback.IThrowingRunnable;
 import com.helger.commons.collection.CollectionHelper;
 import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.CommonsLinkedHashSet;
 import com.helger.commons.collection.impl.CommonsTreeMap;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.collection.impl.ICommonsOrderedSet;
 import com.helger.commons.collection.impl.ICommonsSortedMap;
 import com.helger.commons.datetime.PDTWebDateHelper;
+import com.helger.commons.functional.IThrowingConsumer;
 import com.helger.commons.functional.IThrowingSupplier;
 import com.helger.commons.mutable.MutableInt;
+import com.helger.commons.mutable.MutableLong;
 import com.helger.commons.state.ESuccess;
+import com.helger.commons.statistics.IMutableStatisticsHandlerCounter;
 import com.helger.commons.statistics.IMutableStatisticsHandlerKeyedTimer;
 import com.helger.commons.statistics.StatisticsManager;
 import com.helger.commons.string.StringHelper;
@@ -72,12 +100,18 @@ import com.helger.pd.businesscard.generic.PDIdentifier;
 import com.helger.pd.businesscard.generic.PDName;
 import com.helger.pd.indexer.businesscard.PDExtendedBusinessCard;
 import com.helger.pd.indexer.lucene.AllDocumentsCollector;
+import com.helger.pd.indexer.lucene.BlockGroupCountCollector;
+import com.helger.pd.indexer.lucene.HitCountThresholdCollector;
 import com.helger.pd.indexer.lucene.PDLucene;
+import com.helger.pd.indexer.lucene.SortedDocValuesCollector;
 import com.helger.pd.indexer.mgr.IPDStorageManager;
+import com.helger.pd.indexer.settings.PDServerConfiguration;
 import com.helger.pd.indexer.storage.field.PDField;
 import com.helger.peppolid.IDocumentTypeIdentifier;
 import com.helger.peppolid.IParticipantIdentifier;
 import com.helger.photon.audit.AuditHelper;
+import com.helger.security.messagedigest.EMessageDigestAlgorithm;
+import com.helger.security.messagedigest.MessageDigestValue;
 
 /**
  * The global storage manager that wraps the used Lucene index.
@@ -91,8 +125,17 @@ public final class PDStorageManager implements IPDStorageManager
   private static final String FIELD_GROUP_END = "groupend";
   private static final FieldType TYPE_GROUP_END = new FieldType ();
   private static final String VALUE_GROUP_END = "x";
+  private static final String FIELD_CONTENT_HASH = "contenthash";
+  // Writes that are not yet visible are forgotten above this number of
+  // participants
+  private static final int MAX_UNSEEN_WRITES = 10_000;
+  private static final int UNSEEN_WRITE_MAX_WAIT_MILLIS = 5_000;
   private static final IMutableStatisticsHandlerKeyedTimer s_aStatsQueryTimer = StatisticsManager.getKeyedTimerHandler (PDStorageManager.class.getName () +
                                                                                                                         "$query");
+  private static final IMutableStatisticsHandlerCounter s_aStatsChanged = StatisticsManager.getCounterHandler (PDStorageManager.class.getName () +
+                                                                                                               "$changed");
+  private static final IMutableStatisticsHandlerCounter s_aStatsUnchanged = StatisticsManager.getCounterHandler (PDStorageManager.class.getName () +
+                                                                                                                 "$unchanged");
 
   static
   {
@@ -103,10 +146,56 @@ public final class PDStorageManager implements IPDStorageManager
   }
 
   private final PDLucene m_aLucene;
+  private final PDSearchResultCache m_aResultCache;
+  private final AtomicBoolean m_aMigrationRunning = new AtomicBoolean (false);
+  private final AtomicBoolean m_aAllDocumentsMigrated = new AtomicBoolean (false);
+  private final AtomicLong m_aChangedCount = new AtomicLong (0);
+  private final AtomicLong m_aUnchangedCount = new AtomicLong (0);
+  // Sequence number of the last write per participant ID, that may not yet be
+  // visible to the searcher
+  private final ConcurrentHashMap <String, Long> m_aUnseenWriteSeqNums = new ConcurrentHashMap <> ();
 
   public PDStorageManager (@Nonnull final PDLucene aLucene)
   {
     m_aLucene = ValueEnforcer.notNull (aLucene, "Lucene");
+    m_aResultCache = new PDSearchResultCache (PDServerConfiguration.getLuceneResultCacheMaxEntries (),
+                                              PDServerConfiguration.getLuceneResultCacheMaxMB () * (long) CGlobal.BYTES_PER_MEGABYTE);
+
+    // N-gram queries and doc values can only be used if all documents have
+    // them
+    _updateMigrationState ();
+  }
+
+  /**
+   * @return The cache for search results and counts. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public PDSearchResultCache getResultCache ()
+  {
+    return m_aResultCache;
+  }
+
+  /**
+   * @return The number of create or update calls that actually wrote the
+   *         business card to the index since startup. Always &ge; 0.
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public long getChangedEntryCount ()
+  {
+    return m_aChangedCount.get ();
+  }
+
+  /**
+   * @return The number of create or update calls that were skipped since
+   *         startup, because the business card was unchanged. Always &ge; 0.
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public long getUnchangedEntryCount ()
+  {
+    return m_aUnchangedCount.get ();
   }
 
   public void close () throws IOException
@@ -147,169 +236,334 @@ public final class PDStorageManager implements IPDStorageManager
     if (aParticipantID == null)
       return false;
 
-    final IThrowingSupplier <Boolean, IOException> cb = () -> {
-      final IndexSearcher aSearcher = m_aLucene.getSearcher ();
-      if (aSearcher != null)
-      {
-        // Search only documents that do not have the deleted field
-        final Query aQuery = eQueryMode.getEffectiveQuery (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)));
-        final TopDocs aTopDocs = _timedSearch ( () -> aSearcher.search (aQuery, 1), aQuery);
-        // Lucene 8
-        // if (aTopDocs.totalHits.value > 0)
-        if (aTopDocs.totalHits > 0)
-          return Boolean.TRUE;
-      }
-      return Boolean.FALSE;
-    };
-    return m_aLucene.readLockedAtomic (cb).booleanValue ();
+    final IThrowingSupplier <Boolean, IOException> cb = () -> m_aLucene.callWithSearcher (aSearcher -> {
+      // Search only documents that do not have the deleted field
+      final Query aQuery = eQueryMode.getEffectiveQuery (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)));
+      final TopDocs aTopDocs = _timedSearch ( () -> aSearcher.search (aQuery, 1), aQuery);
+      // Lucene 8
+      // return Boolean.valueOf (aTopDocs.totalHits.value > 0);
+      return Boolean.valueOf (aTopDocs.totalHits > 0);
+    });
+    final Boolean aResult = m_aLucene.readLockedAtomic (cb);
+    return aResult != null && aResult.booleanValue ();
   }
 
+  /**
+   * Convert the provided business card into the block of Lucene documents to
+   * be stored. The last document of the block carries the group end marker.
+   *
+   * @param aParticipantID
+   *        Participant identifier it is all about. May not be
+   *        <code>null</code>.
+   * @param aExtBI
+   *        The extended business card with the document type identifiers. May
+   *        not be <code>null</code>.
+   * @param aMetaData
+   *        The additional meta data to be stored. May not be
+   *        <code>null</code>.
+   * @param sContentHash
+   *        The content hash of the business card. May not be
+   *        <code>null</code>.
+   * @return The list of documents, one per business entity. Never
+   *         <code>null</code> but maybe empty.
+   */
   @Nonnull
-  public ESuccess createOrUpdateEntry (@Nonnull final IParticipantIdentifier aParticipantID,
-                                       @Nonnull final PDExtendedBusinessCard aExtBI,
-                                       @Nonnull final PDStoredMetaData aMetaData) throws IOException
+  @ReturnsMutableCopy
+  private static ICommonsList <Document> _createDocuments (@Nonnull final IParticipantIdentifier aParticipantID,
+                                                           @Nonnull final PDExtendedBusinessCard aExtBI,
+                                                           @Nonnull final PDStoredMetaData aMetaData,
+                                                           @Nonnull final String sContentHash)
   {
-    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
-    ValueEnforcer.notNull (aExtBI, "ExtBI");
-    ValueEnforcer.notNull (aMetaData, "MetaData");
+    final ICommonsList <Document> aDocs = new CommonsArrayList <> ();
 
-    LOGGER.info ("Trying to create or update entry with participant ID '" +
-                 aParticipantID.getURIEncoded () +
-                 "' and " +
-                 aExtBI.getBusinessCard ().businessEntities ().size () +
-                 " entities");
+    final PDBusinessCard aBI = aExtBI.getBusinessCard ();
+    for (final PDBusinessEntity aBusinessEntity : aBI.businessEntities ())
+    {
+      // Convert entity to Lucene document
+      final Document aDoc = new Document ();
+      final StringBuilder aSBAllFields = new StringBuilder ();
 
-    return m_aLucene.writeLockedAtomic ( () -> {
-      final ICommonsList <Document> aDocs = new CommonsArrayList <> ();
+      aDoc.add (PDField.PARTICIPANT_ID.getAsField (aParticipantID));
+      // Column copy for enumeration and index sorting
+      aDoc.add (PDField.PARTICIPANT_ID.getAsDocValuesField (aParticipantID));
+      aSBAllFields.append (PDField.PARTICIPANT_ID.getAsStorageValue (aParticipantID)).append (' ');
 
-      final PDBusinessCard aBI = aExtBI.getBusinessCard ();
-      for (final PDBusinessEntity aBusinessEntity : aBI.businessEntities ())
+      if (aBusinessEntity.names ().size () == 1 && aBusinessEntity.names ().getFirst ().hasNoLanguageCode ())
       {
-        // Convert entity to Lucene document
-        final Document aDoc = new Document ();
-        final StringBuilder aSBAllFields = new StringBuilder ();
-
-        aDoc.add (PDField.PARTICIPANT_ID.getAsField (aParticipantID));
-        aSBAllFields.append (PDField.PARTICIPANT_ID.getAsStorageValue (aParticipantID)).append (' ');
-
-        if (aBusinessEntity.names ().size () == 1 && aBusinessEntity.names ().getFirst ().hasNoLanguageCode ())
+        // Single name without a language - legacy case
+        final String sName = aBusinessEntity.names ().getFirst ().getName ();
+        aDoc.add (PDField.NAME.getAsField (sName));
+        aDoc.add (new TextField (CPDStorage.FIELD_NAME_NGRAM, sName, Store.NO));
+        aSBAllFields.append (sName).append (' ');
+      }
+      else
+      {
+        // More than one name or language
+        for (final PDName aName : aBusinessEntity.names ())
         {
-          // Single name without a language - legacy case
-          final String sName = aBusinessEntity.names ().getFirst ().getName ();
-          aDoc.add (PDField.NAME.getAsField (sName));
+          final String sName = aName.getName ();
+          aDoc.add (PDField.ML_NAME.getAsField (sName));
           aSBAllFields.append (sName).append (' ');
-        }
-        else
-        {
-          // More than one name or language
-          for (final PDName aName : aBusinessEntity.names ())
-          {
-            final String sName = aName.getName ();
-            aDoc.add (PDField.ML_NAME.getAsField (sName));
-            aSBAllFields.append (sName).append (' ');
 
-            final String sLanguage = StringHelper.getNotNull (aName.getLanguageCode ());
-            aDoc.add (PDField.ML_LANGUAGE.getAsField (sLanguage));
-            aSBAllFields.append (sLanguage).append (' ');
-          }
+          final String sLanguage = StringHelper.getNotNull (aName.getLanguageCode ());
+          aDoc.add (PDField.ML_LANGUAGE.getAsField (sLanguage));
+          aSBAllFields.append (sLanguage).append (' ');
         }
+      }
 
-        if (aBusinessEntity.hasCountryCode ())
-        {
-          // Index all country codes in upper case (since 2017-09-20)
-          final String sCountryCode = aBusinessEntity.getCountryCode ().toUpperCase (Locale.US);
-          aDoc.add (PDField.COUNTRY_CODE.getAsField (sCountryCode));
-          aSBAllFields.append (sCountryCode).append (' ');
-        }
+      if (aBusinessEntity.hasCountryCode ())
+      {
+        // Index all country codes in upper case (since 2017-09-20)
+        final String sCountryCode = aBusinessEntity.getCountryCode ().toUpperCase (Locale.US);
+        aDoc.add (PDField.COUNTRY_CODE.getAsField (sCountryCode));
+        aSBAllFields.append (sCountryCode).append (' ');
+      }
 
-        // Add all document types to all documents
-        for (final IDocumentTypeIdentifier aDocTypeID : aExtBI.getAllDocumentTypeIDs ())
-        {
-          aDoc.add (PDField.DOCTYPE_ID.getAsField (aDocTypeID));
-          aSBAllFields.append (PDField.DOCTYPE_ID.getAsStorageValue (aDocTypeID)).append (' ');
-        }
+      // Add all document types to all documents
+      for (final IDocumentTypeIdentifier aDocTypeID : aExtBI.getAllDocumentTypeIDs ())
+      {
+        aDoc.add (PDField.DOCTYPE_ID.getAsField (aDocTypeID));
+        aSBAllFields.append (PDField.DOCTYPE_ID.getAsStorageValue (aDocTypeID)).append (' ');
+      }
 
-        if (aBusinessEntity.hasGeoInfo ())
-        {
-          aDoc.add (PDField.GEO_INFO.getAsField (aBusinessEntity.getGeoInfo ()));
-          aSBAllFields.append (aBusinessEntity.getGeoInfo ()).append (' ');
-        }
+      if (aBusinessEntity.hasGeoInfo ())
+      {
+        aDoc.add (PDField.GEO_INFO.getAsField (aBusinessEntity.getGeoInfo ()));
+        aSBAllFields.append (aBusinessEntity.getGeoInfo ()).append (' ');
+      }
 
-        for (final PDIdentifier aIdentifier : aBusinessEntity.identifiers ())
-        {
-          aDoc.add (PDField.IDENTIFIER_SCHEME.getAsField (aIdentifier.getScheme ()));
-          aSBAllFields.append (aIdentifier.getScheme ()).append (' ');
+      for (final PDIdentifier aIdentifier : aBusinessEntity.identifiers ())
+      {
+        aDoc.add (PDField.IDENTIFIER_SCHEME.getAsField (aIdentifier.getScheme ()));
+        aSBAllFields.append (aIdentifier.getScheme ()).append (' ');
 
-          aDoc.add (PDField.IDENTIFIER_VALUE.getAsField (aIdentifier.getValue ()));
-          aSBAllFields.append (aIdentifier.getValue ()).append (' ');
-        }
+        aDoc.add (PDField.IDENTIFIER_VALUE.getAsField (aIdentifier.getValue ()));
+        aSBAllFields.append (aIdentifier.getValue ()).append (' ');
+      }
 
-        for (final String sWebSite : aBusinessEntity.websiteURIs ())
-        {
-          aDoc.add (PDField.WEBSITE_URI.getAsField (sWebSite));
-          aSBAllFields.append (sWebSite).append (' ');
-        }
+      for (final String sWebSite : aBusinessEntity.websiteURIs ())
+      {
+        aDoc.add (PDField.WEBSITE_URI.getAsField (sWebSite));
+        aDoc.add (new TextField (CPDStorage.FIELD_WEBSITE_NGRAM, sWebSite, Store.NO));
+        aSBAllFields.append (sWebSite).append (' ');
+      }
 
-        for (final PDContact aContact : aBusinessEntity.contacts ())
-        {
-          final String sType = StringHelper.getNotNull (aContact.getType ());
-          aDoc.add (PDField.CONTACT_TYPE.getAsField (sType));
-          aSBAllFields.append (sType).append (' ');
+      for (final PDContact aContact : aBusinessEntity.contacts ())
+      {
+        final String sType = StringHelper.getNotNull (aContact.getType ());
+        aDoc.add (PDField.CONTACT_TYPE.getAsField (sType));
+        aSBAllFields.append (sType).append (' ');
 
-          final String sName = StringHelper.getNotNull (aContact.getName ());
-          aDoc.add (PDField.CONTACT_NAME.getAsField (sName));
-          aSBAllFields.append (sName).append (' ');
+        final String sName = StringHelper.getNotNull (aContact.getName ());
+        aDoc.add (PDField.CONTACT_NAME.getAsField (sName));
+        aSBAllFields.append (sName).append (' ');
 
-          final String sPhone = StringHelper.getNotNull (aContact.getPhoneNumber ());
-          aDoc.add (PDField.CONTACT_PHONE.getAsField (sPhone));
-          aSBAllFields.append (sPhone).append (' ');
+        final String sPhone = StringHelper.getNotNull (aContact.getPhoneNumber ());
+        aDoc.add (PDField.CONTACT_PHONE.getAsField (sPhone));
+        aSBAllFields.append (sPhone).append (' ');
 
-          final String sEmail = StringHelper.getNotNull (aContact.getEmail ());
-          aDoc.add (PDField.CONTACT_EMAIL.getAsField (sEmail));
-          aSBAllFields.append (sEmail).append (' ');
-        }
+        final String sEmail = StringHelper.getNotNull (aContact.getEmail ());
+        aDoc.add (PDField.CONTACT_EMAIL.getAsField (sEmail));
+        aSBAllFields.append (sEmail).append (' ');
 
-        if (aBusinessEntity.hasAdditionalInfo ())
-        {
-          aDoc.add (PDField.ADDITIONAL_INFO.getAsField (aBusinessEntity.getAdditionalInfo ()));
-          aSBAllFields.append (aBusinessEntity.getAdditionalInfo ()).append (' ');
-        }
+        // One n-gram shadow field for all contact fields
+        aDoc.add (new TextField (CPDStorage.FIELD_CONTACT_NGRAM, sType + ' ' + sName + ' ' + sPhone + ' ' + sEmail, Store.NO));
+      }
+
+      if (aBusinessEntity.hasAdditionalInfo ())
+      {
+        aDoc.add (PDField.ADDITIONAL_INFO.getAsField (aBusinessEntity.getAdditionalInfo ()));
+        aSBAllFields.append (aBusinessEntity.getAdditionalInfo ()).append (' ');
+      }
+
+      if (aBusinessEntity.hasRegistrationDate ())
+      {
+        final String sDate = PDTWebDateHelper.getAsStringXSD (aBusinessEntity.getRegistrationDate ());
+        aDoc.add (PDField.REGISTRATION_DATE.getAsField (sDate));
+        aSBAllFields.append (sDate).append (' ');
+      }
+
+      // Add the "all" field - no need to store
+      aDoc.add (new TextField (CPDStorage.FIELD_ALL_FIELDS, aSBAllFields.toString (), Store.NO));
+      aDoc.add (new TextField (CPDStorage.FIELD_ALL_FIELDS_NGRAM, aSBAllFields.toString (), Store.NO));
+
+      // Add meta data (not part of the "all field" field!)
+      // Lucene6: cannot yet use a LongPoint because it has no way to create a
+      // stored one
+      aDoc.add (PDField.METADATA_CREATIONDT.getAsField (aMetaData.getCreationDT ()));
+      aDoc.add (PDField.METADATA_OWNERID.getAsField (aMetaData.getOwnerID ()));
+      aDoc.add (PDField.METADATA_REQUESTING_HOST.getAsField (aMetaData.getRequestingHost ()));
+
+      aDocs.add (aDoc);
+    }
+
+    if (aDocs.isNotEmpty ())
+    {
+      // Add "group end" marker
+      final Document aLastDoc = CollectionHelper.getLastElement (aDocs);
+      aLastDoc.add (new Field (FIELD_GROUP_END, VALUE_GROUP_END, TYPE_GROUP_END));
+      // Content hash once per block - only needed for lookup
+      aLastDoc.add (new StringField (FIELD_CONTENT_HASH, sContentHash, Store.NO));
+    }
+    return aDocs;
+  }
+
+  /**
+   * Get the hash over everything that is indexed for a participant. Next to
+   * the business card and the document types this includes the owner ID and
+   * the requesting host of the meta data, so that a re-registration by another
+   * owner is not skipped. The creation date time is not part of the hash,
+   * because it differs for every registration. So for unchanged entries the
+   * creation date time of the first registration is kept.
+   *
+   * @param aExtBI
+   *        The extended business card to be indexed. May not be
+   *        <code>null</code>.
+   * @param aMetaData
+   *        The meta data to be indexed. May not be <code>null</code>.
+   * @return The hex encoded SHA-256 hash. Never <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  private static String _getContentHash (@Nonnull final PDExtendedBusinessCard aExtBI, @Nonnull final PDStoredMetaData aMetaData)
+  {
+    final String sData = aExtBI.getContentHash () + '\n' + aMetaData.getOwnerID () + '\n' + aMetaData.getRequestingHost ();
+    return MessageDigestValue.create (sData.getBytes (StandardCharsets.UTF_8), EMessageDigestAlgorithm.SHA_256)
+                             .getHexEncodedDigestString ();
+  }
+
+  /**
+   * Remember the sequence number of a write for the provided participant, so
+   * that the next unchanged check of the participant waits until it is
+   * visible.
+   *
+   * @param aParticipantID
+   *        The written participant ID. May not be <code>null</code>.
+   * @param nSeqNum
+   *        The sequence number of the write.
+   */
+  private void _onParticipantWritten (@Nonnull final IParticipantIdentifier aParticipantID, final long nSeqNum)
+  {
+    m_aUnseenWriteSeqNums.merge (aParticipantID.getURIEncoded (), Long.valueOf (nSeqNum), (a, b) -> a.longValue () >= b.longValue () ? a : b);
+    if (m_aUnseenWriteSeqNums.size () > MAX_UNSEEN_WRITES)
+    {
+      // Forget all writes that are already visible
+      final long nSearchingGen = m_aLucene.getSearchingGeneration ();
+      m_aUnseenWriteSeqNums.values ().removeIf (x -> x.longValue () <= nSearchingGen);
+    }
+  }
 
-        if (aBusinessEntity.hasRegistrationDate ())
+  /**
+   * Check if the index already contains the block of the provided participant
+   * with the provided content hash.
+   *
+   * @param aParticipantID
+   *        Participant identifier to check. May not be <code>null</code>.
+   * @param sContentHash
+   *        The content hash of the new business card and meta data. May not be
+   *        <code>null</code>.
+   * @return <code>true</code> if the stored block is unchanged,
+   *         <code>false</code> if it is different, missing or if this cannot
+   *         be determined reliably, because the last write of the participant
+   *         did not become visible in time.
+   * @throws IOException
+   *         On Lucene error
+   */
+  private boolean _isUnchanged (@Nonnull final IParticipantIdentifier aParticipantID,
+                                @Nonnull final String sContentHash) throws IOException
+  {
+    // Writes of other participants don't matter. The writes of one participant
+    // are serialized by the indexer workers, so only the last write of this
+    // participant must be visible to the searcher.
+    final String sKey = aParticipantID.getURIEncoded ();
+    final Long aSeqNum = m_aUnseenWriteSeqNums.get (sKey);
+    if (aSeqNum != null)
+    {
+      try
+      {
+        if (!m_aLucene.waitForGeneration (aSeqNum.longValue (), UNSEEN_WRITE_MAX_WAIT_MILLIS))
         {
-          final String sDate = PDTWebDateHelper.getAsStringXSD (aBusinessEntity.getRegistrationDate ());
-          aDoc.add (PDField.REGISTRATION_DATE.getAsField (sDate));
-          aSBAllFields.append (sDate).append (' ');
+          // Cannot decide reliably
+          return false;
         }
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+        return false;
+      }
+      m_aUnseenWriteSeqNums.remove (sKey, aSeqNum);
+    }
 
-        // Add the "all" field - no need to store
-        aDoc.add (new TextField (CPDStorage.FIELD_ALL_FIELDS, aSBAllFields.toString (), Store.NO));
+    final Query aQuery = new BooleanQuery.Builder ().add (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)),
+                                                          Occur.FILTER)
+                                                    .add (new TermQuery (new Term (FIELD_CONTENT_HASH, sContentHash)), Occur.FILTER)
+                                                    .build ();
+    final Boolean aResult = m_aLucene.callWithSearcher (aSearcher -> Boolean.valueOf (aSearcher.count (aQuery) > 0));
+    return aResult != null && aResult.booleanValue ();
+  }
 
-        // Add meta data (not part of the "all field" field!)
-        // Lucene6: cannot yet use a LongPoint because it has no way to create a
-        // stored one
-        aDoc.add (PDField.METADATA_CREATIONDT.getAsField (aMetaData.getCreationDT ()));
-        aDoc.add (PDField.METADATA_OWNERID.getAsField (aMetaData.getOwnerID ()));
-        aDoc.add (PDField.METADATA_REQUESTING_HOST.getAsField (aMetaData.getRequestingHost ()));
+  @Nonnull
+  public ESuccess createOrUpdateEntry (@Nonnull final IParticipantIdentifier aParticipantID,
+                                       @Nonnull final PDExtendedBusinessCard aExtBI,
+                                       @Nonnull final PDStoredMetaData aMetaData) throws IOException
+  {
+    ValueEnforcer.notNull (aParticipantID, "ParticipantID");
+    ValueEnforcer.notNull (aExtBI, "ExtBI");
+    ValueEnforcer.notNull (aMetaData, "MetaData");
 
-        aDocs.add (aDoc);
-      }
+    LOGGER.info ("Trying to create or update entry with participant ID '" +
+                 aParticipantID.getURIEncoded () +
+                 "' and " +
+                 aExtBI.getBusinessCard ().businessEntities ().size () +
+                 " entities");
 
-      if (aDocs.isNotEmpty ())
+    return m_aLucene.writeLockedAtomic ( () -> {
+      final String sContentHash = _getContentHash (aExtBI, aMetaData);
+      if (_isUnchanged (aParticipantID, sContentHash))
       {
-        // Add "group end" marker
-        CollectionHelper.getLastElement (aDocs).add (new Field (FIELD_GROUP_END, VALUE_GROUP_END, TYPE_GROUP_END));
+        // Avoid rewriting and merging the same block again
+        m_aUnchangedCount.incrementAndGet ();
+        s_aStatsUnchanged.increment ();
+        LOGGER.info ("Business card of participant ID '" + aParticipantID.getURIEncoded () + "' is unchanged - not updating the index");
+        return;
       }
 
+      final ICommonsList <Document> aDocs = _createDocuments (aParticipantID, aExtBI, aMetaData, sContentHash);
+
       // Delete all existing documents of the participant ID
       // and add the new ones to the index
-      m_aLucene.updateDocuments (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID), aDocs);
+      _onParticipantWritten (aParticipantID, m_aLucene.updateDocuments (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID), aDocs));
+      m_aChangedCount.incrementAndGet ();
+      s_aStatsChanged.increment ();
 
       LOGGER.info ("Added " + aDocs.size () + " Lucene documents");
       AuditHelper.onAuditExecuteSuccess ("pd-indexer-create", aParticipantID.getURIEncoded (), Integer.valueOf (aDocs.size ()), aMetaData);
     });
   }
 
+  /**
+   * Get the number of documents containing the provided term from the term
+   * statistics of the current searcher. This is much cheaper than a search,
+   * but the result may include documents that are already deleted but not yet
+   * merged away, and it may miss changes not yet visible to the searcher. So
+   * it should only be used for logging purposes.
+   *
+   * @param aTerm
+   *        The term to check. May not be <code>null</code>.
+   * @return The approximate number of documents or -1 if the index is
+   *         closing.
+   * @throws IOException
+   *         On Lucene error
+   */
+  @CheckForSigned
+  private int _getApproximateDocCount (@Nonnull final Term aTerm) throws IOException
+  {
+    final Integer aCount = m_aLucene.readLockedAtomic ( () -> m_aLucene.callWithSearcher (aSearcher -> Integer.valueOf (aSearcher.getIndexReader ()
+                                                                                                                                .docFreq (aTerm))));
+    return aCount == null ? -1 : aCount.intValue ();
+  }
+
   @Nonnull
   public ESuccess deleteEntry (@Nonnull final IParticipantIdentifier aParticipantID,
                                @Nullable final PDStoredMetaData aMetaData) throws IOException
@@ -319,20 +573,185 @@ public final class PDStorageManager implements IPDStorageManager
     LOGGER.info ("Trying to delete entry with participant ID '" + aParticipantID.getURIEncoded () + "'");
 
     final Term aTerm = PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID);
-    final int nCount = getCount (new TermQuery (aTerm));
+    final int nCount = _getApproximateDocCount (aTerm);
+    final MutableLong aSeqNum = new MutableLong (-1);
     if (m_aLucene.writeLockedAtomic ( () -> {
       // Delete
-      m_aLucene.deleteDocuments (aTerm);
+      aSeqNum.set (m_aLucene.deleteDocuments (aTerm));
+      _onParticipantWritten (aParticipantID, aSeqNum.longValue ());
     }).isFailure ())
     {
       return ESuccess.FAILURE;
     }
 
-    LOGGER.info ("Deleted " + nCount + " docs from the index using the term '" + aTerm + "'");
+    LOGGER.info ("Deleted approximately " + nCount + " docs from the index using the term '" + aTerm + "' with seq# " + aSeqNum.longValue ());
     AuditHelper.onAuditExecuteSuccess ("pd-indexer-delete", aParticipantID.getURIEncoded (), Integer.valueOf (nCount), aMetaData);
     return ESuccess.SUCCESS;
   }
 
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <ESuccess> createOrUpdateEntries (@Nonnull final Iterable <? extends PDStorageBulkItem> aItems) throws IOException
+  {
+    ValueEnforcer.notNull (aItems, "Items");
+    int nItemCount = 0;
+    for (final Iterator <? extends PDStorageBulkItem> it = aItems.iterator (); it.hasNext (); it.next ())
+      nItemCount++;
+
+    LOGGER.info ("Trying to create or update " + nItemCount + " entries in bulk");
+
+    final ICommonsList <ESuccess> ret = new CommonsArrayList <> (nItemCount);
+    final MutableInt aDocCount = new MutableInt (0);
+    final MutableInt aUnchangedCount = new MutableInt (0);
+    if (m_aLucene.writeLockedAtomic ( () -> {
+      // All items are compared with the index before writing, so that a
+      // participant contained more than once does not wait for its own write
+      // of this batch to become visible. Map from participant ID to the
+      // content hash known to be in the index.
+      final ICommonsList <String> aContentHashes = new CommonsArrayList <> (nItemCount);
+      final ICommonsMap <String, String> aCurrentHashes = new CommonsHashMap <> ();
+      for (final PDStorageBulkItem aItem : aItems)
+      {
+        final IParticipantIdentifier aParticipantID = aItem.getParticipantID ();
+        String sContentHash = null;
+        try
+        {
+          if (aItem.getExtendedBusinessCard () == null)
+            throw new IllegalArgumentException ("Item " + aItem + " is not a create or update item");
+          sContentHash = _getContentHash (aItem.getExtendedBusinessCard (), aItem.getMetaData ());
+          if (_isUnchanged (aParticipantID, sContentHash))
+            aCurrentHashes.put (aParticipantID.getURIEncoded (), sContentHash);
+        }
+        catch (final IOException | RuntimeException ex)
+        {
+          LOGGER.error ("Failed to check if entry with participant ID '" + aParticipantID.getURIEncoded () + "' is unchanged", ex);
+        }
+        aContentHashes.add (sContentHash);
+      }
+
+      int nIndex = 0;
+      for (final PDStorageBulkItem aItem : aItems)
+      {
+        final IParticipantIdentifier aParticipantID = aItem.getParticipantID ();
+        final String sContentHash = aContentHashes.get (nIndex++);
+        try
+        {
+          if (sContentHash == null)
+            throw new IllegalStateException ("Failed to determine the content hash");
+
+          final String sParticipantID = aParticipantID.getURIEncoded ();
+          if (sContentHash.equals (aCurrentHashes.get (sParticipantID)))
+          {
+            // Avoid rewriting and merging the same block again
+            m_aUnchangedCount.incrementAndGet ();
+            s_aStatsUnchanged.increment ();
+            aUnchangedCount.inc ();
+          }
+          else
+          {
+            final ICommonsList <Document> aDocs = _createDocuments (aParticipantID,
+                                                                    aItem.getExtendedBusinessCard (),
+                                                                    aItem.getMetaData (),
+                                                                    sContentHash);
+
+            // Delete all existing documents of the participant ID
+            // and add the new ones to the index
+            _onParticipantWritten (aParticipantID,
+                                   m_aLucene.updateDocuments (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID), aDocs));
+            // Later items of this batch are compared with this block
+            aCurrentHashes.put (sParticipantID, sContentHash);
+            m_aChangedCount.incrementAndGet ();
+            s_aStatsChanged.increment ();
+            aDocCount.inc (aDocs.size ());
+          }
+          ret.add (ESuccess.SUCCESS);
+        }
+        catch (final IOException | RuntimeException ex)
+        {
+          LOGGER.error ("Failed to create or update entry with participant ID '" + aParticipantID.getURIEncoded () + "' in bulk", ex);
+          ret.add (ESuccess.FAILURE);
+        }
+      }
+    }).isFailure ())
+    {
+      // Nothing was written
+      ret.clear ();
+      for (int i = 0; i < nItemCount; ++i)
+        ret.add (ESuccess.FAILURE);
+      return ret;
+    }
+
+    final int nSuccessCount = ret.getCount (ESuccess::isSuccess);
+    LOGGER.info ("Added " +
+                 aDocCount.intValue () +
+                 " Lucene documents for " +
+                 nSuccessCount +
+                 " of " +
+                 nItemCount +
+                 " entries in bulk; " +
+                 aUnchangedCount.intValue () +
+                 " entries were unchanged");
+    AuditHelper.onAuditExecuteSuccess ("pd-indexer-create-bulk",
+                                       Integer.valueOf (nItemCount),
+                                       Integer.valueOf (nSuccessCount),
+                                       Integer.valueOf (aUnchangedCount.intValue ()),
+                                       Integer.valueOf (aDocCount.intValue ()));
+    return ret;
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <ESuccess> deleteEntries (@Nonnull final Iterable <? extends PDStorageBulkItem> aItems) throws IOException
+  {
+    ValueEnforcer.notNull (aItems, "Items");
+
+    final ICommonsList <Term> aTerms = new CommonsArrayList <> ();
+    for (final PDStorageBulkItem aItem : aItems)
+      aTerms.add (PDField.PARTICIPANT_ID.getExactMatchTerm (aItem.getParticipantID ()));
+    final int nItemCount = aTerms.size ();
+
+    LOGGER.info ("Trying to delete " + nItemCount + " entries in bulk");
+
+    int nCount = 0;
+    ESuccess eSuccess = ESuccess.SUCCESS;
+    if (aTerms.isNotEmpty ())
+    {
+      for (final Term aTerm : aTerms)
+      {
+        final int nTermCount = _getApproximateDocCount (aTerm);
+        if (nTermCount > 0)
+          nCount += nTermCount;
+      }
+
+      try
+      {
+        // All deletes are applied atomically
+        eSuccess = m_aLucene.writeLockedAtomic ( () -> {
+          final long nSeqNum = m_aLucene.deleteDocuments (aTerms.toArray (new Term [nItemCount]));
+          for (final PDStorageBulkItem aItem : aItems)
+            _onParticipantWritten (aItem.getParticipantID (), nSeqNum);
+        });
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.error ("Failed to delete " + nItemCount + " entries in bulk", ex);
+        eSuccess = ESuccess.FAILURE;
+      }
+    }
+
+    // The deletes are applied atomically, so all items share the same status
+    final ICommonsList <ESuccess> ret = new CommonsArrayList <> (nItemCount);
+    for (int i = 0; i < nItemCount; ++i)
+      ret.add (eSuccess);
+
+    if (eSuccess.isSuccess () && nItemCount > 0)
+    {
+      LOGGER.info ("Deleted approximately " + nCount + " docs of " + nItemCount + " entries from the index in bulk");
+      AuditHelper.onAuditExecuteSuccess ("pd-indexer-delete-bulk", Integer.valueOf (nItemCount), Integer.valueOf (nCount));
+    }
+    return ret;
+  }
+
   /**
    * Search all documents matching the passed query and pass the result on to
    * the provided {@link Consumer}.
@@ -340,7 +759,9 @@ public final class PDStorageManager implements IPDStorageManager
    * @param aQuery
    *        Query to execute. May not be <code>null</code>-
    * @param aCollector
-   *        The Lucene collector to be used. May not be <code>null</code>.
+   *        The Lucene collector to be used. Note: a plain collector is always
+   *        searched serially, even if parallel segment search is configured.
+   *        May not be <code>null</code>.
    * @throws IOException
    *         On Lucene error
    * @see #getAllDocuments(Query,int)
@@ -350,22 +771,51 @@ public final class PDStorageManager implements IPDStorageManager
     ValueEnforcer.notNull (aQuery, "Query");
     ValueEnforcer.notNull (aCollector, "Collector");
 
-    m_aLucene.readLockedAtomic ( () -> {
-      final IndexSearcher aSearcher = m_aLucene.getSearcher ();
-      if (aSearcher != null)
-      {
-        if (LOGGER.isDebugEnabled ())
-          LOGGER.debug ("Searching Lucene: " + aQuery);
+    _searchAtomic (aQuery, aSearcher -> aSearcher.search (aQuery, aCollector));
+  }
 
-        // Search all documents, collect them
-        _timedSearch ( () -> aSearcher.search (aQuery, aCollector), aQuery);
-      }
-      else
-        LOGGER.error ("Failed to obtain IndexSearcher for " + aQuery);
+  /**
+   * Acquire a searcher, run the provided search action with it and release the
+   * searcher afterwards. All document IDs found must be resolved within the
+   * callback, because they are only valid for the provided searcher.
+   *
+   * @param aQuery
+   *        Query to execute. Only used for logging and statistics. May not be
+   *        <code>null</code>.
+   * @param aSearchAction
+   *        The action to be performed with the acquired searcher. May not be
+   *        <code>null</code>.
+   * @throws IOException
+   *         On Lucene error
+   */
+  private void _searchAtomic (@Nonnull final Query aQuery,
+                              @Nonnull final IThrowingConsumer <IndexSearcher, IOException> aSearchAction) throws IOException
+  {
+    m_aLucene.readLockedAtomic ( () -> m_aLucene.callWithSearcher (aSearcher -> {
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Searching Lucene: " + aQuery);
+
+      // Search all documents, collect them
+      _timedSearch ( () -> aSearchAction.accept (aSearcher), aQuery);
 
       // Return values does not matter
       return null;
-    });
+    }));
+  }
+
+  /**
+   * Get the version of the index reader of the passed searcher. The version
+   * changes with every refresh that contains changes.
+   *
+   * @param aSearcher
+   *        The searcher to use. May not be <code>null</code>.
+   * @return The reader version.
+   */
+  private static long _getReaderVersion (@Nonnull final IndexSearcher aSearcher)
+  {
+    final IndexReader aReader = aSearcher.getIndexReader ();
+    // Always the case with the SearcherManager
+    return aReader instanceof DirectoryReader ? ((DirectoryReader) aReader).getVersion () : -1;
   }
 
   @CheckForSigned
@@ -374,9 +824,22 @@ public final class PDStorageManager implements IPDStorageManager
     ValueEnforcer.notNull (aQuery, "Query");
     try
     {
-      final TotalHitCountCollector aCollector = new TotalHitCountCollector ();
-      searchAtomic (aQuery, aCollector);
-      return aCollector.getTotalHits ();
+      final Integer ret = m_aLucene.readLockedAtomic ( () -> m_aLucene.callWithSearcher (aSearcher -> {
+        final long nReaderVersion = _getReaderVersion (aSearcher);
+        Integer aCount = m_aResultCache.getCount (aQuery, nReaderVersion);
+        if (aCount == null)
+        {
+          if (LOGGER.isDebugEnabled ())
+            LOGGER.debug ("Counting Lucene: " + aQuery);
+
+          // Searches the segments in parallel if configured
+          aCount = _timedSearch ( () -> Integer.valueOf (aSearcher.count (aQuery)), aQuery);
+          m_aResultCache.putCount (aQuery, nReaderVersion, aCount.intValue ());
+        }
+        return aCount;
+      }));
+      // null if closing
+      return ret == null ? -1 : ret.intValue ();
     }
     catch (final IOException ex)
     {
@@ -407,17 +870,72 @@ public final class PDStorageManager implements IPDStorageManager
                              @CheckForSigned final int nMaxResultCount,
                              @Nonnull final Function <Document, T> aFromDocumentConverter,
                              @Nonnull final Consumer <? super T> aConsumer) throws IOException
+  {
+    searchAll (aQuery, nMaxResultCount, null, aFromDocumentConverter, aConsumer);
+  }
+
+  /**
+   * Search all documents matching the passed query and pass the result on to
+   * the provided {@link Consumer}. Only the provided stored fields are loaded.
+   *
+   * @param aQuery
+   *        Query to execute. May not be <code>null</code>.
+   * @param nMaxResultCount
+   *        Maximum number of results. Values &le; 0 mean all.
+   * @param aFieldsToLoad
+   *        The names of the stored fields required by the converter. May be
+   *        <code>null</code> to load all stored fields.
+   * @param aFromDocumentConverter
+   *        The function to extract data from the Lucene Document. May not be
+   *        <code>null</code>.
+   * @param aConsumer
+   *        The consumer of the mapped objects. May not be <code>null</code>.
+   * @throws IOException
+   *         On Lucene error
+   * @since 0.9.5
+   */
+  public <T> void searchAll (@Nonnull final Query aQuery,
+                             @CheckForSigned final int nMaxResultCount,
+                             @Nullable final Set <String> aFieldsToLoad,
+                             @Nonnull final Function <Document, T> aFromDocumentConverter,
+                             @Nonnull final Consumer <? super T> aConsumer) throws IOException
   {
     ValueEnforcer.notNull (aQuery, "Query");
     ValueEnforcer.notNull (aFromDocumentConverter, "FromDocumentConverter");
     ValueEnforcer.notNull (aConsumer, "Consumer");
 
-    searchAll (aQuery, nMaxResultCount, aDoc -> aConsumer.accept (aFromDocumentConverter.apply (aDoc)));
+    searchAll (aQuery, nMaxResultCount, aFieldsToLoad, aDoc -> aConsumer.accept (aFromDocumentConverter.apply (aDoc)));
   }
 
   public void searchAll (@Nonnull final Query aQuery,
                          @CheckForSigned final int nMaxResultCount,
                          @Nonnull final Consumer <Document> aConsumer) throws IOException
+  {
+    searchAll (aQuery, nMaxResultCount, (Set <String>) null, aConsumer);
+  }
+
+  /**
+   * Search all documents matching the passed query and pass the Lucene
+   * documents on to the provided {@link Consumer}. Only the provided stored
+   * fields are loaded.
+   *
+   * @param aQuery
+   *        Query to execute. May not be <code>null</code>.
+   * @param nMaxResultCount
+   *        Maximum number of results. Values &le; 0 mean all.
+   * @param aFieldsToLoad
+   *        The names of the stored fields required by the consumer. May be
+   *        <code>null</code> to load all stored fields.
+   * @param aConsumer
+   *        The consumer of the Lucene documents. May not be <code>null</code>.
+   * @throws IOException
+   *         On Lucene error
+   * @since 0.9.5
+   */
+  public void searchAll (@Nonnull final Query aQuery,
+                         @CheckForSigned final int nMaxResultCount,
+                         @Nullable final Set <String> aFieldsToLoad,
+                         @Nonnull final Consumer <Document> aConsumer) throws IOException
   {
     ValueEnforcer.notNull (aQuery, "Query");
     ValueEnforcer.notNull (aConsumer, "Consumer");
@@ -426,7 +944,7 @@ public final class PDStorageManager implements IPDStorageManager
     {
       // Search all
       final ObjIntConsumer <Document> aConverter = (aDoc, nDocID) -> aConsumer.accept (aDoc);
-      final Collector aCollector = new AllDocumentsCollector (m_aLucene, aConverter);
+      final Collector aCollector = new AllDocumentsCollector (aFieldsToLoad, aConverter);
       searchAtomic (aQuery, aCollector);
     }
     else
@@ -436,15 +954,18 @@ public final class PDStorageManager implements IPDStorageManager
       // final TopScoreDocCollector aCollector = TopScoreDocCollector.create
       // (nMaxResultCount, Integer.MAX_VALUE);
       final TopScoreDocCollector aCollector = TopScoreDocCollector.create (nMaxResultCount);
-      searchAtomic (aQuery, aCollector);
-      for (final ScoreDoc aScoreDoc : aCollector.topDocs ().scoreDocs)
-      {
-        final Document aDoc = m_aLucene.getDocument (aScoreDoc.doc);
-        if (aDoc == null)
-          throw new IllegalStateException ("Failed to resolve Lucene Document with ID " + aScoreDoc.doc);
-        // Pass to Consumer
-        aConsumer.accept (aDoc);
-      }
+      _searchAtomic (aQuery, aSearcher -> {
+        aSearcher.search (aQuery, aCollector);
+        // Resolve with the same searcher
+        for (final ScoreDoc aScoreDoc : aCollector.topDocs ().scoreDocs)
+        {
+          final Document aDoc = aFieldsToLoad == null ? aSearcher.doc (aScoreDoc.doc) : aSearcher.doc (aScoreDoc.doc, aFieldsToLoad);
+          if (aDoc == null)
+            throw new IllegalStateException ("Failed to resolve Lucene Document with ID " + aScoreDoc.doc);
+          // Pass to Consumer
+          aConsumer.accept (aDoc);
+        }
+      });
     }
   }
 
@@ -501,6 +1022,218 @@ public final class PDStorageManager implements IPDStorageManager
     return aTargetList;
   }
 
+  /**
+   * Get the top matching {@link PDStoredBusinessEntity} objects together with
+   * the exact total number of hits in a single search pass.
+   *
+   * @param aQuery
+   *        The query to be executed. May not be <code>null</code>.
+   * @param nMaxResultCount
+   *        Maximum number of documents to return. Must be &gt; 0.
+   * @return The search result. Never <code>null</code>.
+   * @see #searchTopDocuments(Query, int, int)
+   * @since 0.9.5
+   */
+  @Nonnull
+  public PDSearchResult searchTopDocuments (@Nonnull final Query aQuery, @Nonnegative final int nMaxResultCount)
+  {
+    return searchTopDocuments (aQuery, nMaxResultCount, -1);
+  }
+
+  /**
+   * Get the top matching {@link PDStoredBusinessEntity} objects together with
+   * the total number of hits in a single search pass. Optionally the search
+   * is terminated after a certain number of hits. In that case the total hit
+   * count is only a lower bound and the top documents are the best matches of
+   * the documents visited until then.
+   *
+   * @param aQuery
+   *        The query to be executed. May not be <code>null</code>.
+   * @param nMaxResultCount
+   *        Maximum number of documents to return. Must be &gt; 0.
+   * @param nTotalHitCountThreshold
+   *        The number of hits after which the search is terminated. Values
+   *        &le; 0 mean that all hits are counted exactly. Values lower than the
+   *        maximum result count are raised to it.
+   * @return The search result. Never <code>null</code>. In case of error the
+   *         total hit count is &lt; 0.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public PDSearchResult searchTopDocuments (@Nonnull final Query aQuery,
+                                            @Nonnegative final int nMaxResultCount,
+                                            @CheckForSigned final int nTotalHitCountThreshold)
+  {
+    ValueEnforcer.notNull (aQuery, "Query");
+    ValueEnforcer.isGT0 (nMaxResultCount, "MaxResultCount");
+
+    try
+    {
+      final PDSearchResult ret = m_aLucene.readLockedAtomic ( () -> m_aLucene.callWithSearcher (aSearcher -> {
+        final long nReaderVersion = _getReaderVersion (aSearcher);
+        PDSearchResult aResult = m_aResultCache.getSearchResult (aQuery, nReaderVersion, nMaxResultCount, nTotalHitCountThreshold);
+        if (aResult == null)
+        {
+          if (LOGGER.isDebugEnabled ())
+            LOGGER.debug ("Searching Lucene: " + aQuery);
+
+          aResult = _timedSearch ( () -> _searchTopDocuments (aSearcher, aQuery, nMaxResultCount, nTotalHitCountThreshold), aQuery);
+          m_aResultCache.putSearchResult (aQuery, nReaderVersion, nMaxResultCount, nTotalHitCountThreshold, aResult);
+        }
+        return aResult;
+      }));
+      if (ret != null)
+        return ret;
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("Error searching for documents with query " + aQuery, ex);
+    }
+    return new PDSearchResult (new CommonsArrayList <> (), -1, true);
+  }
+
+  @Nonnull
+  private static PDSearchResult _searchTopDocuments (@Nonnull final IndexSearcher aSearcher,
+                                                     @Nonnull final Query aQuery,
+                                                     @Nonnegative final int nMaxResultCount,
+                                                     @CheckForSigned final int nTotalHitCountThreshold) throws IOException
+  {
+    final TopDocs aTopDocs;
+    final int nTotalHits;
+    final boolean bExact;
+    if (nTotalHitCountThreshold <= 0)
+    {
+      // Counts exactly and searches the segments in parallel if configured
+      aTopDocs = aSearcher.search (aQuery, nMaxResultCount);
+      nTotalHits = aTopDocs.totalHits > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) aTopDocs.totalHits;
+      bExact = true;
+    }
+    else
+    {
+      // Lucene 8
+      // final TopScoreDocCollector aCollector = TopScoreDocCollector.create
+      // (nMaxResultCount, nTotalHitCountThreshold);
+      final TopScoreDocCollector aTopCollector = TopScoreDocCollector.create (nMaxResultCount);
+      final HitCountThresholdCollector aCollector = new HitCountThresholdCollector (aTopCollector,
+                                                                                    Math.max (nTotalHitCountThreshold, nMaxResultCount));
+      // Searched serially, because Lucene 7.7 does not use the executor for
+      // plain collectors
+      aSearcher.search (aQuery, aCollector);
+      aTopDocs = aTopCollector.topDocs ();
+      nTotalHits = aCollector.getHitCount ();
+      bExact = !aCollector.isTerminated ();
+    }
+
+    // Resolve with the same searcher
+    final ICommonsList <PDStoredBusinessEntity> aTargetList = new CommonsArrayList <> (aTopDocs.scoreDocs.length);
+    for (final ScoreDoc aScoreDoc : aTopDocs.scoreDocs)
+    {
+      final Document aDoc = aSearcher.doc (aScoreDoc.doc);
+      if (aDoc == null)
+        throw new IllegalStateException ("Failed to resolve Lucene Document with ID " + aScoreDoc.doc);
+      aTargetList.add (PDStoredBusinessEntity.create (aDoc));
+    }
+    return new PDSearchResult (aTargetList, nTotalHits, bExact);
+  }
+
+  /**
+   * Search the top participants with at least one entity matching the passed
+   * query. This uses the document blocks written by
+   * {@link #createOrUpdateEntry(IParticipantIdentifier, PDExtendedBusinessCard, PDStoredMetaData)}
+   * so that each participant is a single hit, ranked by its best matching
+   * entity.
+   *
+   * @param aQuery
+   *        The query to be executed on the entities. May not be
+   *        <code>null</code>.
+   * @param nParticipantOffset
+   *        The number of top participants to skip. Must be &ge; 0.
+   * @param nMaxParticipants
+   *        Maximum number of participants to return. Must be &gt; 0.
+   * @param nMaxEntitiesPerParticipant
+   *        Maximum number of matching entities to return per participant. Must
+   *        be &gt; 0.
+   * @return The search result. Never <code>null</code>. In case of error the
+   *         total counts are &lt; 0.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public PDParticipantSearchResult searchTopParticipants (@Nonnull final Query aQuery,
+                                                          @Nonnegative final int nParticipantOffset,
+                                                          @Nonnegative final int nMaxParticipants,
+                                                          @Nonnegative final int nMaxEntitiesPerParticipant)
+  {
+    ValueEnforcer.notNull (aQuery, "Query");
+    ValueEnforcer.isGE0 (nParticipantOffset, "ParticipantOffset");
+    ValueEnforcer.isGT0 (nMaxParticipants, "MaxParticipants");
+    ValueEnforcer.isGT0 (nMaxEntitiesPerParticipant, "MaxEntitiesPerParticipant");
+
+    final ICommonsOrderedMap <IParticipantIdentifier, ICommonsList <PDStoredBusinessEntity>> aParticipants = new CommonsLinkedHashMap <> ();
+    final MutableInt aTotalParticipants = new MutableInt (-1);
+    final MutableInt aTotalEntities = new MutableInt (-1);
+    try
+    {
+      _searchAtomic (aQuery, aSearcher -> {
+        // The last document of each block carries the group end marker
+        final Query aGroupEndQuery = new TermQuery (new Term (FIELD_GROUP_END, VALUE_GROUP_END));
+        // Lucene 8
+        // final Weight aGroupEndWeight = aSearcher.createWeight
+        // (aSearcher.rewrite (aGroupEndQuery), ScoreMode.COMPLETE_NO_SCORES,
+        // 1);
+        final Weight aGroupEndWeight = aSearcher.createWeight (aSearcher.rewrite (aGroupEndQuery), false, 1);
+
+        final BlockGroupingCollector aGroupingCollector = new BlockGroupingCollector (Sort.RELEVANCE,
+                                                                                      nParticipantOffset + nMaxParticipants,
+                                                                                      true,
+                                                                                      aGroupEndWeight);
+        final BlockGroupCountCollector aCountCollector = new BlockGroupCountCollector (aGroupEndWeight);
+        // Searched serially, because the grouping needs a single collector
+        aSearcher.search (aQuery, MultiCollector.wrap (aGroupingCollector, aCountCollector));
+        aTotalParticipants.set (aCountCollector.getGroupCount ());
+
+        // Entities in the order of the business card
+        // Lucene 8
+        // final TopGroups <?> aTopGroups = aGroupingCollector.getTopGroups
+        // (Sort.INDEXORDER, nParticipantOffset, 0, nMaxEntitiesPerParticipant);
+        final TopGroups <?> aTopGroups = aGroupingCollector.getTopGroups (Sort.INDEXORDER,
+                                                                          nParticipantOffset,
+                                                                          0,
+                                                                          nMaxEntitiesPerParticipant,
+                                                                          false);
+        if (aTopGroups == null)
+        {
+          // No hit at all
+          aTotalEntities.set (0);
+        }
+        else
+        {
+          aTotalEntities.set (aTopGroups.totalHitCount);
+          for (final GroupDocs <?> aGroupDocs : aTopGroups.groups)
+          {
+            // Resolve with the same searcher
+            final ICommonsList <PDStoredBusinessEntity> aEntities = new CommonsArrayList <> (aGroupDocs.scoreDocs.length);
+            for (final ScoreDoc aScoreDoc : aGroupDocs.scoreDocs)
+            {
+              final Document aDoc = aSearcher.doc (aScoreDoc.doc);
+              if (aDoc == null)
+                throw new IllegalStateException ("Failed to resolve Lucene Document with ID " + aScoreDoc.doc);
+              aEntities.add (PDStoredBusinessEntity.create (aDoc));
+            }
+            if (aEntities.isNotEmpty ())
+              aParticipants.put (aEntities.getFirst ().getParticipantID (), aEntities);
+          }
+        }
+      });
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("Error searching for participants with query " + aQuery, ex);
+      aTotalParticipants.set (-1);
+      aTotalEntities.set (-1);
+    }
+    return new PDParticipantSearchResult (aParticipants, aTotalParticipants.intValue (), aTotalEntities.intValue ());
+  }
+
   @Nonnull
   public ICommonsList <PDStoredBusinessEntity> getAllDocumentsOfParticipant (@Nonnull final IParticipantIdentifier aParticipantID)
   {
@@ -508,6 +1241,43 @@ public final class PDStorageManager implements IPDStorageManager
     return getAllDocuments (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)), -1);
   }
 
+  /**
+   * Search all documents matching the passed query and pass the participant
+   * ID of each matching document to the provided consumer. If all documents
+   * of the index contain the participant ID doc values, the stored fields are
+   * not loaded at all.
+   *
+   * @param aQuery
+   *        Query to execute. May not be <code>null</code>.
+   * @param aConsumer
+   *        The consumer of the participant IDs. Is called once per matching
+   *        document. May not be <code>null</code>.
+   * @throws IOException
+   *         On Lucene error
+   * @since 0.9.5
+   */
+  public void searchAllParticipantIDs (@Nonnull final Query aQuery,
+                                       @Nonnull final Consumer <? super IParticipantIdentifier> aConsumer) throws IOException
+  {
+    ValueEnforcer.notNull (aQuery, "Query");
+    ValueEnforcer.notNull (aConsumer, "Consumer");
+
+    if (m_aAllDocumentsMigrated.get ())
+    {
+      // Read from the column - consecutive documents of the same participant
+      // share the native value
+      final Collector aCollector = new SortedDocValuesCollector <IParticipantIdentifier> (PDField.PARTICIPANT_ID.getFieldName (),
+                                                                                         PDField.PARTICIPANT_ID::getAsNativeValue,
+                                                                                         aConsumer);
+      searchAtomic (aQuery, aCollector);
+    }
+    else
+    {
+      // Fallback for documents without doc values
+      searchAll (aQuery, -1, PDField.getFieldNames (PDField.PARTICIPANT_ID), PDField.PARTICIPANT_ID::getDocValue, aConsumer);
+    }
+  }
+
   @Nonnull
   @ReturnsMutableCopy
   public ICommonsSortedMap <IParticipantIdentifier, MutableInt> getAllContainedParticipantIDs (@Nonnull final EQueryMode eQueryMode)
@@ -517,12 +1287,7 @@ public final class PDStorageManager implements IPDStorageManager
     final Query aQuery = eQueryMode.getEffectiveQuery (new MatchAllDocsQuery ());
     try
     {
-      final ObjIntConsumer <Document> aConsumer = (aDoc, nDocID) -> {
-        final IParticipantIdentifier aResolvedParticipantID = PDField.PARTICIPANT_ID.getDocValue (aDoc);
-        aTargetSet.computeIfAbsent (aResolvedParticipantID, k -> new MutableInt (0)).inc ();
-      };
-      final Collector aCollector = new AllDocumentsCollector (m_aLucene, aConsumer);
-      searchAtomic (aQuery, aCollector);
+      searchAllParticipantIDs (aQuery, aParticipantID -> aTargetSet.computeIfAbsent (aParticipantID, k -> new MutableInt (0)).inc ());
     }
     catch (final IOException ex)
     {
@@ -538,6 +1303,130 @@ public final class PDStorageManager implements IPDStorageManager
     return getCount (aQuery);
   }
 
+  @Nonnull
+  private static Query _getMigrationQuery ()
+  {
+    // All documents without the n-gram shadow of the "all fields" field or
+    // without the participant ID doc values
+    final Query aUpToDateQuery = new BooleanQuery.Builder ().add (new NormsFieldExistsQuery (CPDStorage.FIELD_ALL_FIELDS_NGRAM),
+                                                                  Occur.FILTER)
+                                                             .add (new DocValuesFieldExistsQuery (PDField.PARTICIPANT_ID.getFieldName ()),
+                                                                   Occur.FILTER)
+                                                             .build ();
+    final Query aQuery = new BooleanQuery.Builder ().add (new MatchAllDocsQuery (), Occur.FILTER)
+                                                    .add (aUpToDateQuery, Occur.MUST_NOT)
+                                                    .build ();
+    return EQueryMode.NON_DELETED_ONLY.getEffectiveQuery (aQuery);
+  }
+
+  private void _updateMigrationState ()
+  {
+    final int nPending = getMigrationPendingCount ();
+    if (nPending > 0)
+      LOGGER.warn (nPending +
+                   " Lucene documents don't contain the n-gram fields and the participant ID doc values yet. The index must be migrated before they are used.");
+    final boolean bAllMigrated = nPending == 0;
+    m_aAllDocumentsMigrated.set (bAllMigrated);
+    m_aLucene.setNGramQueryEnabled (bAllMigrated);
+  }
+
+  /**
+   * @return The number of documents in the index that were created before the
+   *         n-gram shadow fields and the participant ID doc values were
+   *         introduced and therefore need to be migrated. May be &lt; 0 in
+   *         case of error.
+   * @see #migrateIndex()
+   * @since 0.9.5
+   */
+  @CheckForSigned
+  public int getMigrationPendingCount ()
+  {
+    return getCount (_getMigrationQuery ());
+  }
+
+  /**
+   * @return <code>true</code> if {@link #migrateIndex()} is currently
+   *         running.
+   * @since 0.9.5
+   */
+  public boolean isMigrationRunning ()
+  {
+    return m_aMigrationRunning.get ();
+  }
+
+  /**
+   * Re-create all documents that don't contain the n-gram shadow fields or the
+   * participant ID doc values from their stored fields. This requires no
+   * access to the SMPs. When all documents are migrated, the n-gram fields are
+   * used for "contains" queries and participant IDs are read from the doc
+   * values. If the migration is already running, nothing happens.
+   *
+   * @return The number of migrated participants. Always &ge; 0.
+   * @throws IOException
+   *         On Lucene error
+   * @since 0.9.5
+   */
+  @Nonnegative
+  public int migrateIndex () throws IOException
+  {
+    if (m_aMigrationRunning.getAndSet (true))
+    {
+      LOGGER.warn ("The index migration is already running");
+      return 0;
+    }
+
+    try
+    {
+      // Collect the participant IDs first, because all documents of a
+      // participant are re-written at once
+      final ICommonsOrderedSet <IParticipantIdentifier> aParticipantIDs = new CommonsLinkedHashSet <> ();
+      searchAll (_getMigrationQuery (),
+                 -1,
+                 PDField.getFieldNames (PDField.PARTICIPANT_ID),
+                 PDField.PARTICIPANT_ID::getDocValue,
+                 aParticipantIDs::add);
+      LOGGER.info ("Migrating " + aParticipantIDs.size () + " participants in the index");
+
+      int nMigrated = 0;
+      for (final IParticipantIdentifier aParticipantID : aParticipantIDs)
+      {
+        final Query aQuery = EQueryMode.NON_DELETED_ONLY.getEffectiveQuery (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)));
+        final ICommonsList <PDStoredBusinessEntity> aEntities = getAllDocuments (aQuery, -1);
+        if (aEntities.isNotEmpty ())
+        {
+          // All entities of a participant share the document types and the
+          // meta data
+          final PDStoredBusinessEntity aFirst = aEntities.getFirst ();
+          final PDBusinessCard aBI = new PDBusinessCard ();
+          aBI.setParticipantIdentifier (new PDIdentifier (aParticipantID.getScheme (), aParticipantID.getValue ()));
+          for (final PDStoredBusinessEntity aEntity : aEntities)
+            aBI.businessEntities ().add (aEntity.getAsBusinessEntity ());
+
+          if (createOrUpdateEntry (aParticipantID,
+                                   new PDExtendedBusinessCard (aBI, aFirst.documentTypeIDs ()),
+                                   aFirst.getMetaData ()).isSuccess ())
+            nMigrated++;
+        }
+      }
+
+      try
+      {
+        m_aLucene.waitUntilChangesAreSearchable ();
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+      }
+      LOGGER.info ("Finished migrating " + nMigrated + " participants in the index");
+      _updateMigrationState ();
+      return nMigrated;
+    }
+    finally
+    {
+      m_aMigrationRunning.set (false);
+    }
+  }
+
   /**
    * Group the passed document list by participant ID
    *
@@ -18,8 +18,14 @@ package com.helger.pd.indexer.storage.field;
 
 import java.time.LocalDateTime;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
 import org.apache.lucene.document.Field;
 
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsHashSet;
+import com.helger.commons.collection.impl.ICommonsSet;
 import com.helger.commons.datetime.PDTFactory;
 import com.helger.peppolid.IDocumentTypeIdentifier;
 import com.helger.peppolid.IParticipantIdentifier;
@@ -94,4 +100,24 @@ public final class PDField
 
   private PDField ()
   {}
+
+  /**
+   * Get the names of the passed fields, e.g. to load only these stored fields
+   * from a Lucene document.
+   *
+   * @param aFields
+   *        The fields to use. May be <code>null</code>.
+   * @return The set of field names. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static ICommonsSet <String> getFieldNames (@Nullable final AbstractPDField <?, ?>... aFields)
+  {
+    final ICommonsSet <String> ret = new CommonsHashSet <> ();
+    if (aFields != null)
+      for (final AbstractPDField <?, ?> aField : aFields)
+        ret.add (aField.getFieldName ());
+    return ret;
+  }
 }
@@ -22,8 +22,10 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.Nonempty;
@@ -61,6 +63,22 @@ public class PDStringField <NATIVE_TYPE> extends AbstractPDField <NATIVE_TYPE, S
     return m_eTokenize.createField (getFieldName (), sStringValue, getStore ());
   }
 
+  /**
+   * Create a sorted doc values field with the same name and the storage value
+   * of this field. This allows to read the value per segment without loading
+   * the stored fields and to sort the index by this field.
+   *
+   * @param aValue
+   *        The value to use. May not be <code>null</code>.
+   * @return The doc values field. Never <code>null</code>.
+   * @since 0.9.5
+   */
+  @Nonnull
+  public SortedDocValuesField getAsDocValuesField (@Nonnull final NATIVE_TYPE aValue)
+  {
+    return new SortedDocValuesField (getFieldName (), new BytesRef (getAsStorageValue (aValue)));
+  }
+
   private static final BitSet MASK_CHARS = new BitSet (256);
   static
   {
@@ -18,7 +18,13 @@ package com.helger.pd.indexer.businesscard;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import org.apache.http.client.HttpResponseException;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -29,12 +35,15 @@ import org.slf4j.LoggerFactory;
 import com.helger.commons.collection.impl.CommonsArrayList;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.functional.ISupplier;
+import com.helger.commons.http.CHttp;
 import com.helger.commons.url.URLHelper;
 import com.helger.httpclient.HttpClientSettings;
+import com.helger.pd.indexer.index.EIndexerFailureType;
 import com.helger.pd.indexer.settings.PDServerConfiguration;
 import com.helger.peppol.sml.ESML;
 import com.helger.peppolid.factory.PeppolIdentifierFactory;
 import com.helger.photon.app.mock.PhotonAppWebTestRule;
+import com.helger.smpclient.exception.SMPClientException;
 import com.helger.smpclient.peppol.SMPClientReadOnly;
 
 /**
@@ -50,6 +59,20 @@ public final class SMPBusinessCardProviderTest
   @Rule
   public final TestRule m_aRule = new PhotonAppWebTestRule ();
 
+  @Test
+  public void testGetFailureType ()
+  {
+    assertSame (EIndexerFailureType.NOT_FOUND, SMPBusinessCardProvider.getFailureType (new HttpResponseException (CHttp.HTTP_NOT_FOUND, "Not found")));
+    assertSame (EIndexerFailureType.NETWORK,
+                SMPBusinessCardProvider.getFailureType (new HttpResponseException (CHttp.HTTP_INTERNAL_SERVER_ERROR, "Error")));
+    assertSame (EIndexerFailureType.DNS, SMPBusinessCardProvider.getFailureType (new UnknownHostException ("smp.example.org")));
+    assertSame (EIndexerFailureType.TIMEOUT, SMPBusinessCardProvider.getFailureType (new SocketTimeoutException ("Read timed out")));
+    // Nested causes are considered
+    assertSame (EIndexerFailureType.TIMEOUT,
+                SMPBusinessCardProvider.getFailureType (new SMPClientException ("Failed", new SocketTimeoutException ("Read timed out"))));
+    assertSame (EIndexerFailureType.NETWORK, SMPBusinessCardProvider.getFailureType (new IOException ("Connection reset")));
+  }
+
   @Test
   public void testFetch ()
   {
@@ -83,7 +106,8 @@ public final class SMPBusinessCardProviderTest
                                                                                          SML_SUPPLIER);
     final PDExtendedBusinessCard aExtBI = aBI.getBusinessCardPeppolSMP (PeppolIdentifierFactory.INSTANCE.createParticipantIdentifierWithDefaultScheme ("9999:ghx"),
                                                                         new SMPClientReadOnly (URLHelper.getAsURI ("http://localhost:90")),
-                                                                        new HttpClientSettings ());
+                                                                        new HttpClientSettings (),
+                                                                        x -> {});
     assertNotNull (aExtBI);
     LOGGER.info (aExtBI.toString ());
   }
@@ -97,7 +121,8 @@ public final class SMPBusinessCardProviderTest
                                                                                          SML_SUPPLIER);
     final PDExtendedBusinessCard aExtBI = aBI.getBusinessCardPeppolSMP (PeppolIdentifierFactory.INSTANCE.createParticipantIdentifierWithDefaultScheme ("9956:0471349823"),
                                                                         new SMPClientReadOnly (URLHelper.getAsURI ("https://int.babelway.net/smp/")),
-                                                                        new HttpClientSettings ());
+                                                                        new HttpClientSettings (),
+                                                                        x -> {});
     assertNotNull (aExtBI);
     LOGGER.info (aExtBI.toString ());
   }
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.datetime.PDTFactory;
+import com.helger.commons.io.file.FileOperationManager;
+import com.helger.pd.indexer.PDIndexerTestRule;
+import com.helger.pd.indexer.mgr.PDMetaManager;
+
+/**
+ * Test class for class {@link IndexerWorkItemJournal}.
+ *
+ * @author Philip Helger
+ */
+public final class IndexerWorkItemJournalTest
+{
+  @Rule
+  public final TestRule m_aRule = new PDIndexerTestRule ();
+
+  @Nonnull
+  private static IIndexerWorkItem _createItem (final int nIndex)
+  {
+    return new IndexerWorkItem ("item" + nIndex,
+                                PDTFactory.getCurrentLocalDateTime (),
+                                PDMetaManager.getIdentifierFactory ().createParticipantIdentifier ("iso6523-actorid-upis", "9915:test" + nIndex),
+                                EIndexerWorkItemType.CREATE_UPDATE,
+                                "junit",
+                                "localhost");
+  }
+
+  @Test
+  public void testRecovery () throws IOException
+  {
+    final File aDir = new File ("target/junit-journal");
+    FileOperationManager.INSTANCE.deleteDirRecursiveIfExisting (aDir);
+
+    final ICommonsList <IIndexerWorkItem> aItems = new CommonsArrayList <> ();
+    for (int i = 0; i < 10; ++i)
+      aItems.add (_createItem (i));
+
+    // Small segments to enforce compaction
+    IndexerWorkItemJournal aJournal = new IndexerWorkItemJournal (aDir, 512);
+    try
+    {
+      assertTrue (aJournal.getAllRecoveredItems ().isEmpty ());
+      for (final IIndexerWorkItem aItem : aItems)
+        aJournal.onEnqueue (aItem);
+      aJournal.onComplete (aItems.get (0));
+      aJournal.onFail (aItems.get (1));
+      // Unknown items are ignored
+      aJournal.onComplete (_createItem (99));
+      assertEquals (8, aJournal.getPendingItemCount ());
+      assertTrue (aJournal.getSegmentNumber () > 1);
+    }
+    finally
+    {
+      aJournal.close ();
+    }
+
+    // Simulate restart
+    aJournal = new IndexerWorkItemJournal (aDir, 512);
+    try
+    {
+      final ICommonsList <IIndexerWorkItem> aRecovered = aJournal.getAllRecoveredItems ();
+      assertEquals (aItems.subList (2, 10), aRecovered);
+      aJournal.onComplete (aItems.get (2));
+    }
+    finally
+    {
+      aJournal.close ();
+    }
+
+    // And again
+    aJournal = new IndexerWorkItemJournal (aDir, 512);
+    try
+    {
+      assertEquals (aItems.subList (3, 10), aJournal.getAllRecoveredItems ());
+    }
+    finally
+    {
+      aJournal.close ();
+    }
+  }
+}
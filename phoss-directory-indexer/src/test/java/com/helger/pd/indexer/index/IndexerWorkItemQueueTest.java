@@ -0,0 +1,315 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.datetime.PDTFactory;
+import com.helger.peppolid.IParticipantIdentifier;
+import com.helger.peppolid.simple.participant.SimpleParticipantIdentifier;
+
+/**
+ * Test class for class {@link IndexerWorkItemQueue}.
+ *
+ * @author Philip Helger
+ */
+public final class IndexerWorkItemQueueTest
+{
+  @Test
+  public void testOrderPerParticipant () throws InterruptedException
+  {
+    final int nParticipants = 10;
+    final int nItemsPerParticipant = 20;
+    final ICommonsMap <IParticipantIdentifier, ICommonsList <String>> aHandled = new CommonsHashMap <> ();
+    final CountDownLatch aLatch = new CountDownLatch (nParticipants * nItemsPerParticipant);
+
+    final IndexerWorkItemQueue aQueue = new IndexerWorkItemQueue (3, aItem -> {
+      synchronized (aHandled)
+      {
+        aHandled.computeIfAbsent (aItem.getParticipantID (), k -> new CommonsArrayList <> ()).add (aItem.getID ());
+      }
+      aLatch.countDown ();
+    });
+    try
+    {
+      assertEquals (3, aQueue.getAllWorkers ().size ());
+
+      final ICommonsMap <IParticipantIdentifier, ICommonsList <String>> aQueued = new CommonsHashMap <> ();
+      for (int i = 0; i < nItemsPerParticipant; ++i)
+        for (int j = 0; j < nParticipants; ++j)
+        {
+          final IParticipantIdentifier aPI = new SimpleParticipantIdentifier ("iso6523-actorid-upis", "9915:test" + j);
+          // Always the same worker
+          assertSame (aQueue.getWorkerOfParticipant (aPI), aQueue.getWorkerOfParticipant (aPI));
+
+          final IIndexerWorkItem aItem = new IndexerWorkItem (j + "-" + i,
+                                                              PDTFactory.getCurrentLocalDateTime (),
+                                                              aPI,
+                                                              EIndexerWorkItemType.CREATE_UPDATE,
+                                                              "junit",
+                                                              "localhost");
+          aQueued.computeIfAbsent (aPI, k -> new CommonsArrayList <> ()).add (aItem.getID ());
+          // Superseded items are never handled
+          for (final IIndexerWorkItem aDropped : aQueue.queueObject (aItem))
+          {
+            assertNotSame (aItem, aDropped);
+            aLatch.countDown ();
+          }
+        }
+
+      assertTrue (aLatch.await (10, TimeUnit.SECONDS));
+
+      // Items of each participant were handled in the queued order and the
+      // last one always wins
+      synchronized (aHandled)
+      {
+        assertEquals (aQueued.keySet (), aHandled.keySet ());
+        for (final Map.Entry <IParticipantIdentifier, ICommonsList <String>> aEntry : aHandled.entrySet ())
+        {
+          final ICommonsList <String> aHandledIDs = aEntry.getValue ();
+          final ICommonsList <String> aQueuedIDs = aQueued.get (aEntry.getKey ());
+          int nLastIndex = -1;
+          for (final String sID : aHandledIDs)
+          {
+            final int nIndex = aQueuedIDs.indexOf (sID);
+            assertTrue (nIndex > nLastIndex);
+            nLastIndex = nIndex;
+          }
+          assertEquals (aQueuedIDs.getLast (), aHandledIDs.getLast ());
+        }
+      }
+
+      long nHandled = 0;
+      for (final IndexerWorker aWorker : aQueue.getAllWorkers ())
+        nHandled += aWorker.getHandledCount ();
+      assertEquals (nParticipants * nItemsPerParticipant, nHandled + aQueue.getCoalescedCount ());
+    }
+    finally
+    {
+      assertTrue (aQueue.stop ().isEmpty ());
+    }
+  }
+
+  @Test
+  public void testLaneWeights () throws InterruptedException
+  {
+    final CountDownLatch aStarted = new CountDownLatch (1);
+    final CountDownLatch aBlocker = new CountDownLatch (1);
+    final ICommonsList <String> aHandled = new CommonsArrayList <> ();
+    final CountDownLatch aLatch = new CountDownLatch (15);
+
+    // Single worker, so that the order is deterministic
+    final IndexerWorkItemQueue aQueue = new IndexerWorkItemQueue (1, eLane -> eLane == EIndexerWorkItemLane.REST ? 3 : 1, aItem -> {
+      if (aItem.getID ().equals ("blocker"))
+        try
+        {
+          aStarted.countDown ();
+          aBlocker.await ();
+        }
+        catch (final InterruptedException ex)
+        {
+          Thread.currentThread ().interrupt ();
+        }
+      synchronized (aHandled)
+      {
+        aHandled.add (aItem.getID ());
+      }
+      aLatch.countDown ();
+    });
+    try
+    {
+      assertEquals (3, aQueue.getLaneWeight (EIndexerWorkItemLane.REST));
+      assertEquals (1, aQueue.getLaneWeight (EIndexerWorkItemLane.SYNC));
+
+      aQueue.queueObject (new IndexerWorkItem ("blocker",
+                                               PDTFactory.getCurrentLocalDateTime (),
+                                               new SimpleParticipantIdentifier ("iso6523-actorid-upis", "9915:blocker"),
+                                               EIndexerWorkItemType.SYNC,
+                                               "junit",
+                                               "localhost"),
+                          EIndexerWorkItemLane.SYNC);
+      // Wait until the worker is busy
+      assertTrue (aStarted.await (10, TimeUnit.SECONDS));
+
+      for (int i = 0; i < 8; ++i)
+        aQueue.queueObject (new IndexerWorkItem ("s" + i,
+                                                 PDTFactory.getCurrentLocalDateTime (),
+                                                 new SimpleParticipantIdentifier ("iso6523-actorid-upis", "9915:s" + i),
+                                                 EIndexerWorkItemType.SYNC,
+                                                 "junit",
+                                                 "localhost"),
+                            EIndexerWorkItemLane.SYNC);
+      for (int i = 0; i < 6; ++i)
+        aQueue.queueObject (new IndexerWorkItem ("r" + i,
+                                                 PDTFactory.getCurrentLocalDateTime (),
+                                                 new SimpleParticipantIdentifier ("iso6523-actorid-upis", "9915:r" + i),
+                                                 EIndexerWorkItemType.CREATE_UPDATE,
+                                                 "junit",
+                                                 "localhost"),
+                            EIndexerWorkItemLane.REST);
+
+      assertEquals (8, aQueue.getQueueSize (EIndexerWorkItemLane.SYNC));
+      assertEquals (6, aQueue.getQueueSize (EIndexerWorkItemLane.REST));
+      assertEquals (0, aQueue.getQueueSize (EIndexerWorkItemLane.IMPORT));
+      assertEquals (-1, aQueue.getOldestWaitMillis (EIndexerWorkItemLane.IMPORT));
+      assertTrue (aQueue.getOldestWaitMillis (EIndexerWorkItemLane.REST) >= 0);
+
+      aBlocker.countDown ();
+      assertTrue (aLatch.await (10, TimeUnit.SECONDS));
+
+      // REST gets 3 out of 4 turns as long as both lanes are filled
+      synchronized (aHandled)
+      {
+        assertEquals (new CommonsArrayList <> ("blocker",
+                                               "r0",
+                                               "r1",
+                                               "s0",
+                                               "r2",
+                                               "r3",
+                                               "r4",
+                                               "s1",
+                                               "r5",
+                                               "s2",
+                                               "s3",
+                                               "s4",
+                                               "s5",
+                                               "s6",
+                                               "s7"),
+                      aHandled);
+      }
+      assertEquals (0, aQueue.getQueueSize ());
+      assertTrue (aQueue.getAverageWaitMillis (EIndexerWorkItemLane.REST) >= 0);
+      assertEquals (-1, aQueue.getAverageWaitMillis (EIndexerWorkItemLane.IMPORT));
+    }
+    finally
+    {
+      assertTrue (aQueue.stop ().isEmpty ());
+    }
+  }
+
+  @Nonnull
+  private static IIndexerWorkItem _createItem (@Nonnull final String sID,
+                                               @Nonnull final String sParticipantID,
+                                               @Nonnull final EIndexerWorkItemType eType)
+  {
+    return new IndexerWorkItem (sID,
+                                PDTFactory.getCurrentLocalDateTime (),
+                                new SimpleParticipantIdentifier ("iso6523-actorid-upis", sParticipantID),
+                                eType,
+                                "junit",
+                                "localhost");
+  }
+
+  @Test
+  public void testCoalescing () throws InterruptedException
+  {
+    final CountDownLatch aStarted = new CountDownLatch (1);
+    final CountDownLatch aBlocker = new CountDownLatch (1);
+    final ICommonsList <String> aHandled = new CommonsArrayList <> ();
+    final CountDownLatch aLatch = new CountDownLatch (3);
+
+    final IndexerWorkItemQueue aQueue = new IndexerWorkItemQueue (1, aItem -> {
+      if (aItem.getID ().equals ("blocker"))
+        try
+        {
+          aStarted.countDown ();
+          aBlocker.await ();
+        }
+        catch (final InterruptedException ex)
+        {
+          Thread.currentThread ().interrupt ();
+        }
+      synchronized (aHandled)
+      {
+        aHandled.add (aItem.getID ());
+      }
+      aLatch.countDown ();
+    });
+    try
+    {
+      assertTrue (aQueue.queueObject (_createItem ("blocker", "9915:blocker", EIndexerWorkItemType.CREATE_UPDATE)).isEmpty ());
+      assertTrue (aStarted.await (10, TimeUnit.SECONDS));
+
+      // The item currently handled is not pending
+      assertTrue (aQueue.queueObject (_createItem ("b1", "9915:blocker", EIndexerWorkItemType.SYNC)).isEmpty ());
+
+      final IIndexerWorkItem aCreate1 = _createItem ("c1", "9915:test", EIndexerWorkItemType.CREATE_UPDATE);
+      assertTrue (aQueue.queueObject (aCreate1).isEmpty ());
+
+      // Last writer wins
+      final IIndexerWorkItem aCreate2 = _createItem ("c2", "9915:test", EIndexerWorkItemType.CREATE_UPDATE);
+      ICommonsList <IIndexerWorkItem> aDropped = aQueue.queueObject (aCreate2, EIndexerWorkItemLane.IMPORT);
+      assertEquals (1, aDropped.size ());
+      assertSame (aCreate1, aDropped.getFirst ());
+      assertEquals (0, aQueue.getQueueSize (EIndexerWorkItemLane.REST));
+      assertEquals (1, aQueue.getQueueSize (EIndexerWorkItemLane.IMPORT));
+
+      // Sync is merged into the pending item
+      final IIndexerWorkItem aSync = _createItem ("s1", "9915:test", EIndexerWorkItemType.SYNC);
+      aDropped = aQueue.queueObject (aSync);
+      assertEquals (1, aDropped.size ());
+      assertSame (aSync, aDropped.getFirst ());
+
+      // A retry never supersedes a pending item
+      final IIndexerWorkItem aRetry = _createItem ("r1", "9915:test", EIndexerWorkItemType.CREATE_UPDATE);
+      aDropped = aQueue.queueObjectIfNonePending (aRetry, EIndexerWorkItemLane.REINDEX);
+      assertEquals (1, aDropped.size ());
+      assertSame (aRetry, aDropped.getFirst ());
+      assertEquals (1, aQueue.getQueueSize (EIndexerWorkItemLane.IMPORT));
+      assertEquals (0, aQueue.getQueueSize (EIndexerWorkItemLane.REINDEX));
+
+      // Delete cancels the pending create
+      aDropped = aQueue.queueObject (_createItem ("d1", "9915:test", EIndexerWorkItemType.DELETE));
+      assertEquals (1, aDropped.size ());
+      assertSame (aCreate2, aDropped.getFirst ());
+      assertEquals (0, aQueue.getQueueSize (EIndexerWorkItemLane.IMPORT));
+      assertEquals (2, aQueue.getQueueSize ());
+      assertEquals (2, aQueue.getAllQueuedItems ().size ());
+      assertEquals (4, aQueue.getCoalescedCount ());
+
+      aBlocker.countDown ();
+      assertTrue (aLatch.await (10, TimeUnit.SECONDS));
+
+      // The REST lane is served before the SYNC lane
+      synchronized (aHandled)
+      {
+        assertEquals (new CommonsArrayList <> ("blocker", "d1", "b1"), aHandled);
+      }
+      assertEquals (0, aQueue.getQueueSize ());
+      assertEquals (-1, aQueue.getOldestWaitMillis (EIndexerWorkItemLane.IMPORT));
+    }
+    finally
+    {
+      assertTrue (aQueue.stop ().isEmpty ());
+    }
+  }
+}
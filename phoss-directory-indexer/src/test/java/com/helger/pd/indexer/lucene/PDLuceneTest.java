@@ -129,26 +129,28 @@ public final class PDLuceneTest
   {
     try (final PDLucene aLucene = new PDLucene ())
     {
-      // Find top 5 hits
-      final TopDocs results = aLucene.getSearcher ().search (aQuery, 5);
-
-      // Get results
-      final ScoreDoc [] aHits = results.scoreDocs;
-      if (aHits.length == 0)
-        return null;
-
-      // Lucene 8
-      // final long numTotalHits = results.totalHits.value;
-      final long numTotalHits = results.totalHits;
-      assertEquals (1, numTotalHits);
-
-      /*
-       * Matching score for the first document
-       */
-      assertTrue (aHits[0].score > 0);
-
-      final Document doc = aLucene.getDocument (aHits[0].doc);
-      return doc;
+      return aLucene.callWithSearcher (aSearcher -> {
+        // Find top 5 hits
+        final TopDocs results = aSearcher.search (aQuery, 5);
+
+        // Get results
+        final ScoreDoc [] aHits = results.scoreDocs;
+        if (aHits.length == 0)
+          return null;
+
+        // Lucene 8
+        // final long numTotalHits = results.totalHits.value;
+        final long numTotalHits = results.totalHits;
+        assertEquals (1, numTotalHits);
+
+        /*
+         * Matching score for the first document
+         */
+        assertTrue (aHits[0].score > 0);
+
+        final Document doc = aSearcher.doc (aHits[0].doc);
+        return doc;
+      });
     }
   }
 
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.lucene;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Test;
+
+import com.helger.pd.indexer.storage.CPDStorage;
+import com.helger.pd.indexer.storage.PDQueryManager;
+import com.helger.pd.indexer.storage.field.PDField;
+
+/**
+ * Test class for class {@link PDQueryCachingPolicy}.
+ *
+ * @author Philip Helger
+ */
+public final class PDQueryCachingPolicyTest
+{
+  @Test
+  public void testIsAlwaysCached ()
+  {
+    assertTrue (PDQueryCachingPolicy.isAlwaysCached (PDQueryManager.getDeletedQuery ()));
+    // Equal but not identical
+    assertTrue (PDQueryCachingPolicy.isAlwaysCached (IntPoint.newExactQuery (CPDStorage.FIELD_DELETED, 1)));
+    assertTrue (PDQueryCachingPolicy.isAlwaysCached (new TermQuery (PDField.COUNTRY_CODE.getExactMatchTerm ("AT"))));
+    assertTrue (PDQueryCachingPolicy.isAlwaysCached (new TermQuery (new Term (PDField.DOCTYPE_ID.getFieldName (), "x"))));
+
+    assertFalse (PDQueryCachingPolicy.isAlwaysCached (IntPoint.newExactQuery (CPDStorage.FIELD_DELETED, 0)));
+    assertFalse (PDQueryCachingPolicy.isAlwaysCached (new TermQuery (PDField.NAME.getExactMatchTerm ("AT"))));
+  }
+}
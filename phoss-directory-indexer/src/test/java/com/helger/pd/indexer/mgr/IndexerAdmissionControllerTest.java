@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.mgr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import com.helger.pd.indexer.PDIndexerTestRule;
+import com.helger.pd.indexer.index.EIndexerWorkItemType;
+import com.helger.pd.indexer.index.IIndexerWorkItem;
+import com.helger.pd.indexer.index.IndexerWorkItem;
+import com.helger.peppolid.simple.participant.SimpleParticipantIdentifier;
+
+/**
+ * Test class for class {@link IndexerAdmissionController}.
+ *
+ * @author Philip Helger
+ */
+public final class IndexerAdmissionControllerTest
+{
+  @Rule
+  public final TestRule m_aRule = new PDIndexerTestRule ();
+
+  @Test
+  public void testWatermarks ()
+  {
+    final IndexerAdmissionController aAC = new IndexerAdmissionController (10, 5, 100);
+    assertFalse (aAC.isSaturated ());
+    assertEquals (EIndexerAdmission.ADMITTED, aAC.getAdmission ("client", 0));
+    assertEquals (EIndexerAdmission.ADMITTED, aAC.getAdmission ("client", 9));
+    assertEquals (0, aAC.getRejectedSaturatedCount ());
+
+    // Reaching the high watermark
+    assertEquals (EIndexerAdmission.SATURATED, aAC.getAdmission ("client", 10));
+    assertTrue (aAC.isSaturated ());
+
+    // Stays saturated until the low watermark is reached
+    assertEquals (EIndexerAdmission.SATURATED, aAC.getAdmission ("client", 9));
+    assertEquals (EIndexerAdmission.SATURATED, aAC.getAdmission ("other", 6));
+    assertEquals (3, aAC.getRejectedSaturatedCount ());
+    assertEquals (EIndexerAdmission.ADMITTED, aAC.getAdmission ("client", 5));
+    assertFalse (aAC.isSaturated ());
+    assertEquals (EIndexerAdmission.ADMITTED, aAC.getAdmission ("client", 9));
+    assertEquals (0, aAC.getRejectedQuotaCount ());
+  }
+
+  @Test
+  public void testQuotaPerClient ()
+  {
+    final IndexerAdmissionController aAC = new IndexerAdmissionController (100, 50, 2);
+
+    final IIndexerWorkItem aItem1 = new IndexerWorkItem (new SimpleParticipantIdentifier ("iso6523-actorid-upis", "9915:test1"),
+                                                         EIndexerWorkItemType.CREATE_UPDATE,
+                                                         "client",
+                                                         "localhost");
+    final IIndexerWorkItem aItem2 = new IndexerWorkItem (new SimpleParticipantIdentifier ("iso6523-actorid-upis", "9915:test2"),
+                                                         EIndexerWorkItemType.DELETE,
+                                                         "client",
+                                                         "localhost");
+    aAC.onQueued (aItem1);
+    assertEquals (1, aAC.getPendingCount ("client"));
+    assertEquals (EIndexerAdmission.ADMITTED, aAC.getAdmission ("client", 1));
+
+    aAC.onQueued (aItem2);
+    assertEquals (2, aAC.getPendingCount ("client"));
+    assertEquals (EIndexerAdmission.QUOTA_EXCEEDED, aAC.getAdmission ("client", 2));
+    assertEquals (1, aAC.getRejectedQuotaCount ());
+
+    // Other clients are not affected
+    assertEquals (0, aAC.getPendingCount ("other"));
+    assertEquals (EIndexerAdmission.ADMITTED, aAC.getAdmission ("other", 2));
+
+    aAC.onDone (aItem1);
+    assertEquals (1, aAC.getPendingCount ("client"));
+    assertEquals (EIndexerAdmission.ADMITTED, aAC.getAdmission ("client", 1));
+
+    aAC.onDone (aItem2);
+    assertEquals (0, aAC.getPendingCount ("client"));
+    assertEquals (0, aAC.getRejectedSaturatedCount ());
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.mgr;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.state.ESuccess;
+import com.helger.pd.businesscard.generic.PDBusinessCard;
+import com.helger.pd.indexer.PDIndexerTestRule;
+import com.helger.pd.indexer.businesscard.PDExtendedBusinessCard;
+import com.helger.pd.indexer.index.EIndexerFailureType;
+import com.helger.pd.indexer.index.EIndexerWorkItemType;
+import com.helger.pd.indexer.reindex.ReIndexRetryPolicyFixed;
+import com.helger.pd.indexer.storage.PDStorageBulkItem;
+import com.helger.pd.indexer.storage.PDStoredMetaData;
+import com.helger.peppolid.IParticipantIdentifier;
+import com.helger.peppolid.simple.participant.SimpleParticipantIdentifier;
+
+/**
+ * Test class for class {@link PDIndexerManager}.
+ *
+ * @author Philip Helger
+ */
+public final class PDIndexerManagerTest
+{
+  @Rule
+  public final TestRule m_aRule = new PDIndexerTestRule ();
+
+  /**
+   * Storage manager that either fails or succeeds for all items.
+   */
+  private static final class MockStorageManager implements IPDStorageManager
+  {
+    private final AtomicBoolean m_aFail;
+    private final AtomicInteger m_aSuccessCount = new AtomicInteger (0);
+
+    MockStorageManager (final boolean bFail)
+    {
+      m_aFail = new AtomicBoolean (bFail);
+    }
+
+    @Nonnull
+    private ESuccess _handle ()
+    {
+      if (m_aFail.get ())
+        return ESuccess.FAILURE;
+      m_aSuccessCount.incrementAndGet ();
+      return ESuccess.SUCCESS;
+    }
+
+    @Nonnull
+    public ESuccess createOrUpdateEntry (@Nonnull final IParticipantIdentifier aParticipantID,
+                                         @Nonnull final PDExtendedBusinessCard aExtBI,
+                                         @Nonnull final PDStoredMetaData aMetaData)
+    {
+      return _handle ();
+    }
+
+    @Nonnull
+    public ESuccess deleteEntry (@Nonnull final IParticipantIdentifier aParticipantID, @Nullable final PDStoredMetaData aMetaData)
+    {
+      return _handle ();
+    }
+
+    @Nonnull
+    public ICommonsList <ESuccess> createOrUpdateEntries (@Nonnull final Iterable <? extends PDStorageBulkItem> aItems)
+    {
+      final ICommonsList <ESuccess> ret = new CommonsArrayList <> ();
+      for (final PDStorageBulkItem aItem : aItems)
+        ret.add (_handle ());
+      return ret;
+    }
+
+    @Nonnull
+    public ICommonsList <ESuccess> deleteEntries (@Nonnull final Iterable <? extends PDStorageBulkItem> aItems)
+    {
+      return createOrUpdateEntries (aItems);
+    }
+
+    public void close ()
+    {}
+  }
+
+  private static void _waitFor (@Nonnull final BooleanSupplier aCondition) throws InterruptedException
+  {
+    final long nEnd = System.currentTimeMillis () + 10_000;
+    while (!aCondition.getAsBoolean ())
+    {
+      assertTrue ("Timeout", System.currentTimeMillis () < nEnd);
+      Thread.sleep (10);
+    }
+  }
+
+  @Test
+  public void testRetryAfterRestart () throws Exception
+  {
+    PDMetaManager.setBusinessCardProvider (aParticipantID -> new PDExtendedBusinessCard (new PDBusinessCard (), null));
+    final IParticipantIdentifier aParticipantID = new SimpleParticipantIdentifier ("iso6523-actorid-upis", "9915:restart");
+
+    // Fails and is added to the re-index list
+    final PDIndexerManager aMgr1 = new PDIndexerManager (new MockStorageManager (true));
+    try
+    {
+      aMgr1.setRetryPolicy (EIndexerFailureType.STORAGE, new ReIndexRetryPolicyFixed (Duration.ZERO));
+      assertTrue (aMgr1.queueWorkItem (aParticipantID, EIndexerWorkItemType.CREATE_UPDATE, "junit", "localhost").isChanged ());
+      _waitFor ( () -> aMgr1.getReIndexList ().containsAnyItemOfParticipant (aParticipantID));
+    }
+    finally
+    {
+      aMgr1.close ();
+    }
+
+    // The persisted item must be retried after the restart
+    final MockStorageManager aStorageMgr2 = new MockStorageManager (false);
+    final PDIndexerManager aMgr2 = new PDIndexerManager (aStorageMgr2);
+    try
+    {
+      assertTrue (aMgr2.getReIndexList ().containsAnyItemOfParticipant (aParticipantID));
+      aMgr2.reIndexParticipantData ();
+      _waitFor ( () -> aStorageMgr2.m_aSuccessCount.get () == 1);
+      assertFalse (aMgr2.getReIndexList ().containsAnyItemOfParticipant (aParticipantID));
+      assertFalse (aMgr2.getDeadList ().containsAnyItemOfParticipant (aParticipantID));
+    }
+    finally
+    {
+      aMgr2.close ();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.reindex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+import com.helger.commons.datetime.PDTFactory;
+
+/**
+ * Test class for class {@link ReIndexRetryPolicyExponentialBackoff}.
+ *
+ * @author Philip Helger
+ */
+public final class ReIndexRetryPolicyExponentialBackoffTest
+{
+  @Test
+  public void testInterval ()
+  {
+    final ReIndexRetryPolicyExponentialBackoff aPolicy = new ReIndexRetryPolicyExponentialBackoff (Duration.ofMinutes (5),
+                                                                                                   Duration.ofMinutes (60),
+                                                                                                   0);
+    assertEquals (Duration.ofMinutes (5), aPolicy.getInterval (0));
+    assertEquals (Duration.ofMinutes (10), aPolicy.getInterval (1));
+    assertEquals (Duration.ofMinutes (20), aPolicy.getInterval (2));
+    assertEquals (Duration.ofMinutes (40), aPolicy.getInterval (3));
+    assertEquals (Duration.ofMinutes (60), aPolicy.getInterval (4));
+    assertEquals (Duration.ofMinutes (60), aPolicy.getInterval (100));
+    assertEquals (Duration.ofMinutes (60), aPolicy.getInterval (Integer.MAX_VALUE));
+
+    // No jitter
+    final LocalDateTime aNow = PDTFactory.getCurrentLocalDateTime ();
+    assertEquals (aNow.plusMinutes (20), aPolicy.getNextRetryDT (2, aNow));
+  }
+
+  @Test
+  public void testJitter ()
+  {
+    final ReIndexRetryPolicyExponentialBackoff aPolicy = new ReIndexRetryPolicyExponentialBackoff (Duration.ofMinutes (10),
+                                                                                                   Duration.ofMinutes (60),
+                                                                                                   0.5);
+    final LocalDateTime aNow = PDTFactory.getCurrentLocalDateTime ();
+    for (int i = 0; i < 100; ++i)
+    {
+      final LocalDateTime aNext = aPolicy.getNextRetryDT (1, aNow);
+      // 20 minutes +/- 50%
+      assertTrue (!aNext.isBefore (aNow.plusMinutes (10)));
+      assertTrue (!aNext.isAfter (aNow.plusMinutes (30)));
+    }
+  }
+
+  @Test
+  public void testDeadList ()
+  {
+    assertNull (ReIndexRetryPolicyDeadList.INSTANCE.getNextRetryDT (0, PDTFactory.getCurrentLocalDateTime ()));
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.reindex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.datetime.PDTFactory;
+import com.helger.dao.DAOException;
+import com.helger.pd.indexer.PDIndexerTestRule;
+import com.helger.pd.indexer.index.EIndexerWorkItemType;
+import com.helger.pd.indexer.index.IndexerWorkItem;
+import com.helger.peppolid.IParticipantIdentifier;
+import com.helger.peppolid.simple.participant.SimpleParticipantIdentifier;
+
+/**
+ * Test class for class {@link ReIndexWorkItemList}.
+ *
+ * @author Philip Helger
+ */
+public final class ReIndexWorkItemListTest
+{
+  @Rule
+  public final TestRule m_aTestRule = new PDIndexerTestRule ();
+
+  @Nonnull
+  private static IParticipantIdentifier _createPI (@Nonnull final String sParticipant)
+  {
+    return new SimpleParticipantIdentifier ("iso6523-actorid-upis", sParticipant);
+  }
+
+  @Nonnull
+  private static ReIndexWorkItem _createItem (@Nonnull final String sParticipant,
+                                              @Nonnull final EIndexerWorkItemType eType,
+                                              @Nonnull final LocalDateTime aMaxRetryDT,
+                                              @Nonnull final LocalDateTime aNextRetryDT)
+  {
+    return new ReIndexWorkItem (new IndexerWorkItem (_createPI (sParticipant), eType, "junit", "localhost"),
+                                aMaxRetryDT,
+                                0,
+                                null,
+                                aNextRetryDT);
+  }
+
+  @Nonnull
+  private static ReIndexWorkItem _createItem (@Nonnull final String sParticipant,
+                                              @Nonnull final LocalDateTime aMaxRetryDT,
+                                              @Nonnull final LocalDateTime aNextRetryDT)
+  {
+    return _createItem (sParticipant, EIndexerWorkItemType.CREATE_UPDATE, aMaxRetryDT, aNextRetryDT);
+  }
+
+  @Test
+  public void testDueAndExpiredEntries () throws DAOException
+  {
+    final LocalDateTime aNow = PDTFactory.getCurrentLocalDateTime ();
+    final ReIndexWorkItemList aList = new ReIndexWorkItemList (null);
+
+    final ReIndexWorkItem a = _createItem ("9915:a", aNow.plusHours (1), aNow.plusMinutes (3));
+    final ReIndexWorkItem b = _createItem ("9915:b", aNow.minusMinutes (1), aNow.minusMinutes (2));
+    final ReIndexWorkItem c = _createItem ("9915:c", aNow.plusHours (2), aNow.minusMinutes (5));
+    final ReIndexWorkItem d = _createItem ("9915:d", aNow.plusHours (3), aNow.minusMinutes (5));
+    aList.addItem (a);
+    aList.addItem (b);
+    aList.addItem (c);
+    aList.addItem (d);
+    assertEquals (4, aList.getItemCount ());
+
+    // Only b is expired
+    ICommonsList <IReIndexWorkItem> aItems = aList.getAndRemoveAllExpiredEntries (aNow);
+    assertEquals (1, aItems.size ());
+    assertTrue (aItems.contains (b));
+    assertEquals (3, aList.getItemCount ());
+    assertNull (aList.getItemOfID (b.getID ()));
+
+    // c and d are due, ordered by the next retry
+    aItems = aList.getAndRemoveAllDueEntries (aNow);
+    assertEquals (2, aItems.size ());
+    assertTrue (aItems.contains (c));
+    assertTrue (aItems.contains (d));
+    assertEquals (1, aList.getItemCount ());
+    assertTrue (aList.getAndRemoveAllDueEntries (aNow).isEmpty ());
+
+    // Re-add with the next retry in the future
+    aList.incRetryCountAndAddItem (c, aNow.plusMinutes (5));
+    assertEquals (2, aList.getItemCount ());
+    assertTrue (aList.getAndRemoveAllDueEntries (aNow).isEmpty ());
+    assertEquals (2, aList.getAndRemoveAllDueEntries (aNow.plusDays (1)).size ());
+    assertEquals (0, aList.getItemCount ());
+
+    // Removal by predicate also updates the due-time index
+    aList.addItem (d);
+    assertNotNull (aList.getAndRemoveEntry (x -> x.getID ().equals (d.getID ())));
+    assertTrue (aList.getAndRemoveAllDueEntries (aNow.plusDays (1)).isEmpty ());
+  }
+
+  @Test
+  public void testParticipantIndex () throws DAOException
+  {
+    final LocalDateTime aNow = PDTFactory.getCurrentLocalDateTime ();
+    final ReIndexWorkItemList aList = new ReIndexWorkItemList (null);
+
+    final ReIndexWorkItem a1 = _createItem ("9915:a", EIndexerWorkItemType.CREATE_UPDATE, aNow.plusHours (1), aNow.plusMinutes (5));
+    final ReIndexWorkItem a2 = _createItem ("9915:a", EIndexerWorkItemType.DELETE, aNow.plusHours (1), aNow.plusMinutes (5));
+    final ReIndexWorkItem b = _createItem ("9915:b", EIndexerWorkItemType.CREATE_UPDATE, aNow.plusHours (1), aNow.plusMinutes (5));
+    aList.addItem (a1);
+    aList.addItem (a2);
+    aList.addItem (b);
+
+    assertEquals (a1, aList.getItemOfParticipant (_createPI ("9915:a"), EIndexerWorkItemType.CREATE_UPDATE));
+    assertEquals (a2, aList.getItemOfParticipant (_createPI ("9915:a"), EIndexerWorkItemType.DELETE));
+    assertNull (aList.getItemOfParticipant (_createPI ("9915:a"), EIndexerWorkItemType.SYNC));
+    assertNull (aList.getItemOfParticipant (_createPI ("9915:c"), EIndexerWorkItemType.CREATE_UPDATE));
+    assertEquals (2, aList.getAllItemsOfParticipant (_createPI ("9915:a")).size ());
+    assertTrue (aList.containsAnyItemOfParticipant (_createPI ("9915:b")));
+    assertFalse (aList.containsAnyItemOfParticipant (_createPI ("9915:c")));
+
+    // Remove by participant and type
+    assertEquals (a2, aList.getAndRemoveItemOfParticipant (_createPI ("9915:a"), EIndexerWorkItemType.DELETE));
+    assertNull (aList.getAndRemoveItemOfParticipant (_createPI ("9915:a"), EIndexerWorkItemType.DELETE));
+    assertNull (aList.getItemOfID (a2.getID ()));
+    assertEquals (2, aList.getItemCount ());
+
+    // Remove by ID also updates the participant index
+    assertTrue (aList.deleteItem (b.getID ()).isChanged ());
+    assertFalse (aList.containsAnyItemOfParticipant (_createPI ("9915:b")));
+
+    // Remove all of a participant
+    assertEquals (1, aList.getAndRemoveAllItemsOfParticipant (_createPI ("9915:a")).size ());
+    assertFalse (aList.containsAnyItemOfParticipant (_createPI ("9915:a")));
+    assertEquals (0, aList.getItemCount ());
+    assertTrue (aList.getAndRemoveAllDueEntries (aNow.plusDays (1)).isEmpty ());
+  }
+}
@@ -38,6 +38,7 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.client.ClientProperties;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -47,8 +48,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.concurrent.ThreadHelper;
 import com.helger.commons.mock.CommonsTestHelper;
+import com.helger.commons.string.StringHelper;
 import com.helger.commons.ws.HostnameVerifierVerifyAll;
 import com.helger.commons.ws.TrustManagerTrustAll;
 import com.helger.pd.businesscard.generic.PDBusinessCard;
@@ -217,4 +220,60 @@ public final class IndexerResourceTest
       }
     }
   }
+
+  @Test
+  public void testBulkCreateAndDeleteParticipants ()
+  {
+    final PeppolIdentifierFactory aIF = PeppolIdentifierFactory.INSTANCE;
+    final int nCount = 5;
+
+    // Create
+    final StringBuilder aSB = new StringBuilder ();
+    for (int i = 0; i < nCount; ++i)
+      aSB.append (aIF.createParticipantIdentifierWithDefaultScheme ("9915:bulk" + i).getURIEncoded ()).append ('\n');
+    // Invalid ID
+    aSB.append ("no-scheme-separator\n");
+    String sResponseMsg = m_aTarget.path ("1.0")
+                                   .path (IndexerResource.PATH_BULK)
+                                   .request ()
+                                   .put (Entity.text (aSB.toString ()), String.class);
+    ICommonsList <String> aLines = StringHelper.getExploded ('\n', sResponseMsg.trim ());
+    assertEquals (nCount + 1, aLines.size ());
+    for (int i = 0; i < nCount; ++i)
+      assertEquals (EIndexerBulkItemStatus.QUEUED.getID () +
+                    "\t" +
+                    aIF.createParticipantIdentifierWithDefaultScheme ("9915:bulk" + i).getURIEncoded (),
+                    aLines.get (i));
+    assertEquals (EIndexerBulkItemStatus.INVALID.getID () + "\tno-scheme-separator", aLines.getLast ());
+
+    LOGGER.info ("waiting");
+    ThreadHelper.sleep (2000);
+    for (int i = 0; i < nCount; ++i)
+    {
+      final IParticipantIdentifier aPI = aIF.createParticipantIdentifierWithDefaultScheme ("9915:bulk" + i);
+      assertTrue (PDMetaManager.getStorageMgr ().containsEntry (aPI, EQueryMode.NON_DELETED_ONLY));
+    }
+
+    // Delete
+    aSB.setLength (0);
+    for (int i = 0; i < nCount; ++i)
+      aSB.append (aIF.createParticipantIdentifierWithDefaultScheme ("9915:bulk" + i).getURIEncoded ()).append ('\n');
+    sResponseMsg = m_aTarget.path ("1.0")
+                            .path (IndexerResource.PATH_BULK)
+                            .request ()
+                            .property (ClientProperties.SUPPRESS_HTTP_COMPLIANCE_VALIDATION, Boolean.TRUE)
+                            .method ("DELETE", Entity.text (aSB.toString ()), String.class);
+    aLines = StringHelper.getExploded ('\n', sResponseMsg.trim ());
+    assertEquals (nCount, aLines.size ());
+    for (final String sLine : aLines)
+      assertTrue (sLine, sLine.startsWith (EIndexerBulkItemStatus.QUEUED.getID () + "\t"));
+
+    LOGGER.info ("waiting");
+    ThreadHelper.sleep (2000);
+    for (int i = 0; i < nCount; ++i)
+    {
+      final IParticipantIdentifier aPI = aIF.createParticipantIdentifierWithDefaultScheme ("9915:bulk" + i);
+      assertFalse (PDMetaManager.getStorageMgr ().containsEntry (aPI, EQueryMode.NON_DELETED_ONLY));
+    }
+  }
 }
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.indexer.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Test;
+
+/**
+ * Test class for class {@link PDSearchResultCache}.
+ *
+ * @author Philip Helger
+ */
+public final class PDSearchResultCacheTest
+{
+  @Test
+  public void testBasic ()
+  {
+    final PDSearchResultCache aCache = new PDSearchResultCache (2, 1024 * 1024);
+    final Query aQuery1 = new TermQuery (new Term ("f", "a"));
+    final Query aQuery2 = new TermQuery (new Term ("f", "b"));
+    final Query aQuery3 = new TermQuery (new Term ("f", "c"));
+
+    assertNull (aCache.getCount (aQuery1, 1));
+    aCache.putCount (aQuery1, 1, 5);
+    // Equal but not identical query
+    assertEquals (Integer.valueOf (5), aCache.getCount (new TermQuery (new Term ("f", "a")), 1));
+    assertEquals (1, aCache.getHitCount ());
+    assertEquals (1, aCache.getMissCount ());
+
+    // Least recently used entry is evicted
+    aCache.putCount (aQuery2, 1, 6);
+    aCache.getCount (aQuery1, 1);
+    aCache.putCount (aQuery3, 1, 7);
+    assertEquals (2, aCache.getEntryCount ());
+    assertNull (aCache.getCount (aQuery2, 1));
+    assertEquals (Integer.valueOf (5), aCache.getCount (aQuery1, 1));
+
+    // A new reader version invalidates all entries
+    aCache.putCount (aQuery1, 2, 8);
+    assertEquals (1, aCache.getEntryCount ());
+    assertNull (aCache.getCount (aQuery3, 1));
+    assertEquals (Integer.valueOf (8), aCache.getCount (aQuery1, 2));
+
+    assertEquals (1, aCache.clear ());
+    assertEquals (0, aCache.getEntryCount ());
+    assertEquals (0, aCache.getEstimatedBytes ());
+  }
+
+  @Test
+  public void testDisabled ()
+  {
+    final PDSearchResultCache aCache = new PDSearchResultCache (0, 1024 * 1024);
+    assertFalse (aCache.isEnabled ());
+    final Query aQuery = new TermQuery (new Term ("f", "a"));
+    aCache.putCount (aQuery, 1, 5);
+    assertNull (aCache.getCount (aQuery, 1));
+    assertEquals (0, aCache.getEntryCount ());
+  }
+}
@@ -20,13 +20,21 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.time.Month;
 
 import javax.annotation.Nonnull;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestRule;
@@ -34,6 +42,7 @@ import org.junit.rules.TestRule;
 import com.helger.commons.collection.impl.CommonsArrayList;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.datetime.PDTFactory;
+import com.helger.commons.state.ESuccess;
 import com.helger.pd.businesscard.generic.PDBusinessCard;
 import com.helger.pd.businesscard.generic.PDBusinessEntity;
 import com.helger.pd.businesscard.generic.PDContact;
@@ -97,16 +106,17 @@ public final class PDStorageManagerTest
   }
 
   @Test
-  public void testGetAllDocumentsOfParticipant () throws IOException
+  public void testGetAllDocumentsOfParticipant () throws IOException, InterruptedException
   {
     final IParticipantIdentifier aParticipantID = PDMetaManager.getIdentifierFactory ()
                                                                .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test");
     assertNotNull (aParticipantID);
 
-    try (PDStorageManager aMgr = new PDStorageManager (new PDLucene ()))
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
     {
       final PDStoredMetaData aMetaData = _createMockMetaData ();
       aMgr.createOrUpdateEntry (aParticipantID, _createMockBI (aParticipantID), aMetaData);
+      aLucene.waitUntilChangesAreSearchable ();
       try
       {
         final ICommonsList <PDStoredBusinessEntity> aDocs = aMgr.getAllDocumentsOfParticipant (aParticipantID);
@@ -173,16 +183,17 @@ public final class PDStorageManagerTest
   }
 
   @Test
-  public void testGetAllDocumentsOfCountryCode () throws IOException
+  public void testGetAllDocumentsOfCountryCode () throws IOException, InterruptedException
   {
     final IParticipantIdentifier aParticipantID = PDMetaManager.getIdentifierFactory ()
                                                                .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test");
     assertNotNull (aParticipantID);
 
-    try (PDStorageManager aMgr = new PDStorageManager (new PDLucene ()))
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
     {
       final PDStoredMetaData aMetaData = _createMockMetaData ();
       aMgr.createOrUpdateEntry (aParticipantID, _createMockBI (aParticipantID), aMetaData);
+      aLucene.waitUntilChangesAreSearchable ();
       try
       {
         // No country - no docs
@@ -206,4 +217,345 @@ public final class PDStorageManagerTest
       }
     }
   }
+
+  private static int _countOfParticipant (@Nonnull final PDStorageManager aMgr,
+                                          @Nonnull final IParticipantIdentifier aParticipantID,
+                                          @Nonnull final Query aQuery)
+  {
+    return aMgr.getCount (new BooleanQuery.Builder ().add (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)),
+                                                           Occur.FILTER)
+                                                      .add (aQuery, Occur.FILTER)
+                                                      .build ());
+  }
+
+  @Test
+  public void testNGramContainsQueries () throws IOException, InterruptedException
+  {
+    final IParticipantIdentifier aParticipantID = PDMetaManager.getIdentifierFactory ()
+                                                               .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test");
+    assertNotNull (aParticipantID);
+
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
+    {
+      final PDStoredMetaData aMetaData = _createMockMetaData ();
+      aMgr.createOrUpdateEntry (aParticipantID, _createMockBI (aParticipantID), aMetaData);
+      aLucene.waitUntilChangesAreSearchable ();
+      final boolean bOldEnabled = aLucene.isNGramQueryEnabled ();
+      aLucene.setNGramQueryEnabled (true);
+      try
+      {
+        Query aQuery = PDQueryManager.convertQueryStringToLuceneQuery (aLucene, CPDStorage.FIELD_ALL_FIELDS, "ppol");
+        assertTrue (aQuery instanceof PhraseQuery);
+        assertEquals (1, _countOfParticipant (aMgr, aParticipantID, aQuery));
+
+        // The n-grams must be part of the same token
+        aQuery = PDQueryManager.convertQueryStringToLuceneQuery (aLucene, CPDStorage.FIELD_ALL_FIELDS, "ockpep");
+        assertEquals (0, _countOfParticipant (aMgr, aParticipantID, aQuery));
+
+        // Too short for n-grams
+        aQuery = PDQueryManager.convertQueryStringToLuceneQuery (aLucene, CPDStorage.FIELD_ALL_FIELDS, "mo");
+        assertTrue (aQuery instanceof WildcardQuery);
+        assertEquals (2, _countOfParticipant (aMgr, aParticipantID, aQuery));
+
+        aQuery = PDQueryManager.getNameLuceneQuery (aLucene, "mock peppol");
+        assertEquals (1, _countOfParticipant (aMgr, aParticipantID, aQuery));
+
+        aQuery = PDQueryManager.getWebsiteLuceneQuery (aLucene, "peppol.eu");
+        assertEquals (1, _countOfParticipant (aMgr, aParticipantID, aQuery));
+
+        aQuery = PDQueryManager.getContactLuceneQuery (aLucene, "example");
+        assertEquals (1, _countOfParticipant (aMgr, aParticipantID, aQuery));
+
+        // Separators are handled like in the index
+        aQuery = PDQueryManager.getContactLuceneQuery (aLucene, "test@example");
+        assertEquals (1, _countOfParticipant (aMgr, aParticipantID, aQuery));
+      }
+      finally
+      {
+        aLucene.setNGramQueryEnabled (bOldEnabled);
+        // Finally delete the entry again
+        aMgr.deleteEntry (aParticipantID, aMetaData);
+      }
+    }
+  }
+
+  @Test
+  public void testSearchAllParticipantIDs () throws IOException, InterruptedException
+  {
+    final IParticipantIdentifier aParticipantID = PDMetaManager.getIdentifierFactory ()
+                                                               .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test");
+    assertNotNull (aParticipantID);
+
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
+    {
+      final PDStoredMetaData aMetaData = _createMockMetaData ();
+      aMgr.createOrUpdateEntry (aParticipantID, _createMockBI (aParticipantID), aMetaData);
+      aLucene.waitUntilChangesAreSearchable ();
+      try
+      {
+        final Query aQuery = EQueryMode.NON_DELETED_ONLY.getEffectiveQuery (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)));
+        final ICommonsList <IParticipantIdentifier> aParticipantIDs = new CommonsArrayList <> ();
+        aMgr.searchAllParticipantIDs (aQuery, aParticipantIDs::add);
+
+        // One ID per business entity
+        assertEquals (_countOfParticipant (aMgr, aParticipantID, new MatchAllDocsQuery ()), aParticipantIDs.size ());
+        for (final IParticipantIdentifier aFoundID : aParticipantIDs)
+          assertTrue (aFoundID.hasSameContent (aParticipantID));
+
+        // Entry must be part of the contained participants
+        assertTrue (aMgr.getAllContainedParticipantIDs (EQueryMode.NON_DELETED_ONLY).containsKey (aParticipantID));
+
+        // Only the requested stored fields are loaded
+        final ICommonsList <Document> aDocs = new CommonsArrayList <> ();
+        aMgr.searchAll (aQuery, -1, PDField.getFieldNames (PDField.PARTICIPANT_ID), aDocs::add);
+        assertEquals (aParticipantIDs.size (), aDocs.size ());
+        for (final Document aDoc : aDocs)
+        {
+          assertNotNull (PDField.PARTICIPANT_ID.getDocField (aDoc));
+          assertNull (PDField.COUNTRY_CODE.getDocField (aDoc));
+        }
+      }
+      finally
+      {
+        // Finally delete the entry again
+        aMgr.deleteEntry (aParticipantID, aMetaData);
+      }
+    }
+  }
+
+  @Test
+  public void testSearchTopDocuments () throws IOException, InterruptedException
+  {
+    final IParticipantIdentifier aParticipantID = PDMetaManager.getIdentifierFactory ()
+                                                               .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test");
+    assertNotNull (aParticipantID);
+
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
+    {
+      final PDStoredMetaData aMetaData = _createMockMetaData ();
+      aMgr.createOrUpdateEntry (aParticipantID, _createMockBI (aParticipantID), aMetaData);
+      aLucene.waitUntilChangesAreSearchable ();
+      try
+      {
+        final Query aQuery = EQueryMode.NON_DELETED_ONLY.getEffectiveQuery (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)));
+
+        // Exact count
+        PDSearchResult aResult = aMgr.searchTopDocuments (aQuery, 1);
+        assertEquals (1, aResult.getTopDocuments ().size ());
+        assertEquals (2, aResult.getTotalHitCount ());
+        assertTrue (aResult.isTotalHitCountExact ());
+
+        // Threshold is raised to the maximum result count
+        aResult = aMgr.searchTopDocuments (aQuery, 1, 1);
+        assertEquals (1, aResult.getTopDocuments ().size ());
+        assertEquals (1, aResult.getTotalHitCount ());
+        assertFalse (aResult.isTotalHitCountExact ());
+
+        // Threshold not reached
+        aResult = aMgr.searchTopDocuments (aQuery, 5, 10);
+        assertEquals (2, aResult.getTopDocuments ().size ());
+        assertEquals (2, aResult.getTotalHitCount ());
+        assertTrue (aResult.isTotalHitCountExact ());
+      }
+      finally
+      {
+        // Finally delete the entry again
+        aMgr.deleteEntry (aParticipantID, aMetaData);
+      }
+    }
+  }
+
+  @Test
+  public void testSearchTopParticipants () throws IOException, InterruptedException
+  {
+    final IParticipantIdentifier aParticipantID = PDMetaManager.getIdentifierFactory ()
+                                                               .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test");
+    assertNotNull (aParticipantID);
+
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
+    {
+      final PDStoredMetaData aMetaData = _createMockMetaData ();
+      aMgr.createOrUpdateEntry (aParticipantID, _createMockBI (aParticipantID), aMetaData);
+      aLucene.waitUntilChangesAreSearchable ();
+      try
+      {
+        final Query aQuery = EQueryMode.NON_DELETED_ONLY.getEffectiveQuery (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID)));
+
+        // Both entities are grouped into one participant
+        PDParticipantSearchResult aResult = aMgr.searchTopParticipants (aQuery, 0, 10, 10);
+        assertEquals (1, aResult.getParticipants ().size ());
+        assertEquals (2, aResult.getParticipants ().get (aParticipantID).size ());
+        assertEquals (1, aResult.getTotalParticipantCount ());
+        assertEquals (2, aResult.getTotalEntityCount ());
+
+        // Limit the entities per participant
+        aResult = aMgr.searchTopParticipants (aQuery, 0, 10, 1);
+        assertEquals (1, aResult.getParticipants ().get (aParticipantID).size ());
+        assertEquals (1, aResult.getTotalParticipantCount ());
+
+        // Offset behind the last participant
+        aResult = aMgr.searchTopParticipants (aQuery, 1, 10, 10);
+        assertTrue (aResult.getParticipants ().isEmpty ());
+        assertEquals (1, aResult.getTotalParticipantCount ());
+      }
+      finally
+      {
+        // Finally delete the entry again
+        aMgr.deleteEntry (aParticipantID, aMetaData);
+      }
+    }
+  }
+
+  @Test
+  public void testBulkEntries () throws IOException, InterruptedException
+  {
+    final IParticipantIdentifier aParticipantID1 = PDMetaManager.getIdentifierFactory ()
+                                                                .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test1");
+    final IParticipantIdentifier aParticipantID2 = PDMetaManager.getIdentifierFactory ()
+                                                                .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test2");
+    assertNotNull (aParticipantID1);
+    assertNotNull (aParticipantID2);
+
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
+    {
+      final PDStoredMetaData aMetaData = _createMockMetaData ();
+      ICommonsList <ESuccess> aResults = aMgr.createOrUpdateEntries (new CommonsArrayList <> (PDStorageBulkItem.createForUpdate (aParticipantID1,
+                                                                                                                                _createMockBI (aParticipantID1),
+                                                                                                                                aMetaData),
+                                                                                               PDStorageBulkItem.createForUpdate (aParticipantID2,
+                                                                                                                                _createMockBI (aParticipantID2),
+                                                                                                                                aMetaData)));
+      assertEquals (2, aResults.size ());
+      assertTrue (aResults.containsOnly (ESuccess::isSuccess));
+      aLucene.waitUntilChangesAreSearchable ();
+
+      assertTrue (aMgr.containsEntry (aParticipantID1, EQueryMode.NON_DELETED_ONLY));
+      assertTrue (aMgr.containsEntry (aParticipantID2, EQueryMode.NON_DELETED_ONLY));
+
+      // An item without business card only fails itself
+      aResults = aMgr.createOrUpdateEntries (new CommonsArrayList <> (PDStorageBulkItem.createForDelete (aParticipantID1, aMetaData),
+                                                                      PDStorageBulkItem.createForUpdate (aParticipantID2,
+                                                                                                         _createMockBI (aParticipantID2),
+                                                                                                         aMetaData)));
+      assertEquals (new CommonsArrayList <> (ESuccess.FAILURE, ESuccess.SUCCESS), aResults);
+
+      aResults = aMgr.deleteEntries (new CommonsArrayList <> (PDStorageBulkItem.createForDelete (aParticipantID1, aMetaData),
+                                                              PDStorageBulkItem.createForDelete (aParticipantID2, null)));
+      assertEquals (2, aResults.size ());
+      assertTrue (aResults.containsOnly (ESuccess::isSuccess));
+      aLucene.waitUntilChangesAreSearchable ();
+
+      assertFalse (aMgr.containsEntry (aParticipantID1, EQueryMode.ALL));
+      assertFalse (aMgr.containsEntry (aParticipantID2, EQueryMode.ALL));
+
+      // Empty bulk
+      assertTrue (aMgr.deleteEntries (new CommonsArrayList <> ()).isEmpty ());
+    }
+  }
+
+  @Test
+  public void testSkipUnchangedEntryWithOtherWrites () throws IOException
+  {
+    final IParticipantIdentifier aParticipantID1 = PDMetaManager.getIdentifierFactory ()
+                                                                .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test1");
+    final IParticipantIdentifier aParticipantID2 = PDMetaManager.getIdentifierFactory ()
+                                                                .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test2");
+    assertNotNull (aParticipantID1);
+    assertNotNull (aParticipantID2);
+
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
+    {
+      final PDStoredMetaData aMetaData = _createMockMetaData ();
+      try
+      {
+        // No waiting for the searcher in between
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID1, _createMockBI (aParticipantID1), aMetaData).isSuccess ());
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID2, _createMockBI (aParticipantID2), aMetaData).isSuccess ());
+        assertEquals (2, aMgr.getChangedEntryCount ());
+
+        // The write of another participant does not prevent the check
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID1, _createMockBI (aParticipantID1), aMetaData).isSuccess ());
+        assertEquals (2, aMgr.getChangedEntryCount ());
+        assertEquals (1, aMgr.getUnchangedEntryCount ());
+
+        // Modify and revert without waiting
+        final PDExtendedBusinessCard aExtBI = _createMockBI (aParticipantID2);
+        aExtBI.getBusinessCard ().businessEntities ().getFirst ().setGeoInfo ("Graz");
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID2, aExtBI, aMetaData).isSuccess ());
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID1, _createMockBI (aParticipantID1), aMetaData).isSuccess ());
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID2, _createMockBI (aParticipantID2), aMetaData).isSuccess ());
+        assertEquals (4, aMgr.getChangedEntryCount ());
+        assertEquals (2, aMgr.getUnchangedEntryCount ());
+      }
+      finally
+      {
+        aMgr.deleteEntry (aParticipantID1, aMetaData);
+        aMgr.deleteEntry (aParticipantID2, aMetaData);
+      }
+    }
+  }
+
+  @Test
+  public void testSkipUnchangedEntry () throws IOException, InterruptedException
+  {
+    final IParticipantIdentifier aParticipantID = PDMetaManager.getIdentifierFactory ()
+                                                               .createParticipantIdentifier ("myscheme-actorid-upis", "0088:test");
+    assertNotNull (aParticipantID);
+
+    try (final PDLucene aLucene = new PDLucene (); final PDStorageManager aMgr = new PDStorageManager (aLucene))
+    {
+      final PDStoredMetaData aMetaData = _createMockMetaData ();
+      aMgr.createOrUpdateEntry (aParticipantID, _createMockBI (aParticipantID), aMetaData);
+      aLucene.waitUntilChangesAreSearchable ();
+      try
+      {
+        assertEquals (1, aMgr.getChangedEntryCount ());
+        assertEquals (0, aMgr.getUnchangedEntryCount ());
+
+        // Same content again
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID, _createMockBI (aParticipantID), aMetaData).isSuccess ());
+        assertEquals (1, aMgr.getChangedEntryCount ());
+        assertEquals (1, aMgr.getUnchangedEntryCount ());
+
+        // Modified content
+        final PDExtendedBusinessCard aExtBI = _createMockBI (aParticipantID);
+        aExtBI.getBusinessCard ().businessEntities ().getFirst ().setGeoInfo ("Graz");
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID, aExtBI, aMetaData).isSuccess ());
+        aLucene.waitUntilChangesAreSearchable ();
+        assertEquals (2, aMgr.getChangedEntryCount ());
+        assertEquals (1, aMgr.getUnchangedEntryCount ());
+        assertEquals (2, aMgr.getCount (new TermQuery (PDField.PARTICIPANT_ID.getExactMatchTerm (aParticipantID))));
+
+        // Same content but different owner
+        assertTrue (aMgr.createOrUpdateEntry (aParticipantID,
+                                              aExtBI,
+                                              new PDStoredMetaData (PDTFactory.getCurrentLocalDateTime (), "otherowner", "localhost"))
+                        .isSuccess ());
+        aLucene.waitUntilChangesAreSearchable ();
+        assertEquals (3, aMgr.getChangedEntryCount ());
+        assertEquals (1, aMgr.getUnchangedEntryCount ());
+
+        // Bulk: unchanged, changed and the original content again
+        final ICommonsList <ESuccess> aResults = aMgr.createOrUpdateEntries (new CommonsArrayList <> (PDStorageBulkItem.createForUpdate (aParticipantID,
+                                                                                                                                        aExtBI,
+                                                                                                                                        new PDStoredMetaData (PDTFactory.getCurrentLocalDateTime (),
+                                                                                                                                                              "otherowner",
+                                                                                                                                                              "localhost")),
+                                                                                                       PDStorageBulkItem.createForUpdate (aParticipantID,
+                                                                                                                                        _createMockBI (aParticipantID),
+                                                                                                                                        aMetaData),
+                                                                                                       PDStorageBulkItem.createForUpdate (aParticipantID,
+                                                                                                                                        _createMockBI (aParticipantID),
+                                                                                                                                        aMetaData)));
+        assertTrue (aResults.containsOnly (ESuccess::isSuccess));
+        assertEquals (4, aMgr.getChangedEntryCount ());
+        assertEquals (3, aMgr.getUnchangedEntryCount ());
+      }
+      finally
+      {
+        // Finally delete the entry again
+        aMgr.deleteEntry (aParticipantID, aMetaData);
+      }
+    }
+  }
 }
@@ -45,8 +45,10 @@ import com.helger.html.hc.html.grouping.HCUL;
 import com.helger.html.hc.html.tabular.HCCol;
 import com.helger.html.hc.impl.HCNodeList;
 import com.helger.pd.indexer.mgr.PDMetaManager;
+import com.helger.pd.indexer.settings.PDServerConfiguration;
 import com.helger.pd.indexer.storage.CPDStorage;
 import com.helger.pd.indexer.storage.EQueryMode;
+import com.helger.pd.indexer.storage.PDParticipantSearchResult;
 import com.helger.pd.indexer.storage.PDQueryManager;
 import com.helger.pd.indexer.storage.PDStorageManager;
 import com.helger.pd.indexer.storage.PDStoredBusinessEntity;
@@ -173,24 +175,26 @@ public final class PagePublicSearchSimple extends AbstractPagePublicSearch
       LOGGER.debug ("Created query for '" + sQuery + "' is <" + aLuceneQuery + ">");
 
     PDSessionSingleton.getInstance ().setLastQuery (aLuceneQuery);
-
-    // Search all documents
-    final ICommonsList <PDStoredBusinessEntity> aResultBEs = aStorageMgr.getAllDocuments (aLuceneQuery, nMaxResults);
-    // Also get the total hit count for UI display. May be < 0 in case of
-    // error
-    final int nTotalBEs = aStorageMgr.getCount (aLuceneQuery);
+    PDMetaManager.getWarmUp ().recordQuery (sQuery);
+
+    // Search one block per participant
+    final PDParticipantSearchResult aSearchResult = aStorageMgr.searchTopParticipants (aLuceneQuery,
+                                                                                       0,
+                                                                                       nMaxResults,
+                                                                                       PDServerConfiguration.getLuceneSearchMaxEntitiesPerParticipant ());
+    final ICommonsMap <IParticipantIdentifier, ICommonsList <PDStoredBusinessEntity>> aGroupedBEs = aSearchResult.getParticipants ();
+    // Also get the total participant count for UI display. May be < 0 in case
+    // of error
+    final int nTotalParticipants = aSearchResult.getTotalParticipantCount ();
     if (LOGGER.isInfoEnabled ())
       LOGGER.info ("  Result for <" +
                    aLuceneQuery +
                    "> (max=" +
                    nMaxResults +
                    ") " +
-                   (aResultBEs.size () == 1 ? "is 1 document" : "are " + aResultBEs.size () + " documents") +
+                   (aGroupedBEs.size () == 1 ? "is 1 participant" : "are " + aGroupedBEs.size () + " participants") +
                    "." +
-                   (nTotalBEs >= 0 ? " " + nTotalBEs + " total hits are available." : ""));
-
-    // Group by participant ID
-    final ICommonsMap <IParticipantIdentifier, ICommonsList <PDStoredBusinessEntity>> aGroupedBEs = PDStorageManager.getGroupedByParticipantID (aResultBEs);
+                   (nTotalParticipants >= 0 ? " " + nTotalParticipants + " total participants are available." : ""));
 
     // Display results
     if (aGroupedBEs.isEmpty ())
@@ -200,15 +204,15 @@ public final class PagePublicSearchSimple extends AbstractPagePublicSearch
     else
     {
       aNodeList.addChild (div (badgeSuccess ("Found " +
-                                             (aGroupedBEs.size () == 1 ? "1 entity" : aGroupedBEs.size () + " entities") +
+                                             (aGroupedBEs.size () == 1 ? "1 participant" : aGroupedBEs.size () + " participants") +
                                              " matching '" +
                                              sQuery +
                                              "'")));
-      if (nTotalBEs > nMaxResults)
+      if (nTotalParticipants > nMaxResults)
       {
-        aNodeList.addChild (div (badgeWarn ("Found more entities than displayed (" +
-                                            nTotalBEs +
-                                            " entries exist). Try to be more specific.")));
+        aNodeList.addChild (div (badgeWarn ("Found more participants than displayed (" +
+                                            nTotalParticipants +
+                                            " participants exist). Try to be more specific.")));
       }
 
       // Show basic information
@@ -384,7 +388,13 @@ public final class PagePublicSearchSimple extends AbstractPagePublicSearch
         aLogo.addChild (_createInitialSearchForm (aWPEC));
 
         // After Logo
-        _showResultList (aWPEC, sQuery, nMaxResults);
+        if (PDMetaManager.isReady ())
+          _showResultList (aWPEC, sQuery, nMaxResults);
+        else
+        {
+          // Index is still warming up
+          aNodeList.addChild (info ("The search index is still warming up. Please try again in a few moments."));
+        }
       }
       else
       {
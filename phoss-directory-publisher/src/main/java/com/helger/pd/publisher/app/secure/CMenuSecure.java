@@ -36,6 +36,7 @@ public final class CMenuSecure
   public static final String MENU_ADMIN_CHANGE_PASSWORD = "change_password";
   public static final String MENU_ADMIN_SML_CONFIGURATION = "sml_configuration";
   public static final String MENU_ADMIN_LUCENE_INFO = "lucene_info";
+  public static final String MENU_ADMIN_SEARCH_RESULT_CACHE = "search_result_cache";
 
   private CMenuSecure ()
   {}
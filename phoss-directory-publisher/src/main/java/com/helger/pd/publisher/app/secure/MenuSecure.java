@@ -65,6 +65,7 @@ public final class MenuSecure
       aMenuTree.createItem (aAdmin, new BasePageSecurityChangePassword <> (CMenuSecure.MENU_ADMIN_CHANGE_PASSWORD));
       aMenuTree.createItem (aAdmin, new PageSecureAdminSMLConfiguration (CMenuSecure.MENU_ADMIN_SML_CONFIGURATION));
       aMenuTree.createItem (aAdmin, new PageSecureAdminLuceneInformation (CMenuSecure.MENU_ADMIN_LUCENE_INFO));
+      aMenuTree.createItem (aAdmin, new PageSecureAdminSearchResultCache (CMenuSecure.MENU_ADMIN_SEARCH_RESULT_CACHE));
       BootstrapPagesMenuConfigurator.addAllItems (aMenuTree, aAdmin, aFilterAdministrators, AppCommonUI.DEFAULT_LOCALE);
     }
 
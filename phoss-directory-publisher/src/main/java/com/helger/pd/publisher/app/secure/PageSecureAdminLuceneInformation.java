@@ -20,14 +20,26 @@ import java.io.IOException;
 
 import javax.annotation.Nonnull;
 
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.LiveIndexWriterConfig;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 
 import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.lang.StackTraceHelper;
 import com.helger.html.hc.ext.HCExtHelper;
+import com.helger.html.hc.html.tabular.HCCol;
 import com.helger.html.hc.impl.HCNodeList;
 import com.helger.pd.indexer.lucene.PDLucene;
+import com.helger.pd.indexer.lucene.PDLuceneCommitScheduler;
+import com.helger.pd.indexer.lucene.PDLuceneSearchExecutor;
 import com.helger.pd.indexer.mgr.PDMetaManager;
+import com.helger.pd.indexer.storage.PDIndexWarmUp;
+import com.helger.pd.indexer.storage.PDStorageManager;
 import com.helger.pd.publisher.ui.AbstractAppWebPage;
 import com.helger.photon.bootstrap4.table.BootstrapTable;
 import com.helger.photon.uicore.page.WebPageExecutionContext;
@@ -53,11 +65,110 @@ public final class PageSecureAdminLuceneInformation extends AbstractAppWebPage
 
     final BootstrapTable aTable = new BootstrapTable ();
     aTable.addBodyRow ().addCells ("Lucene index directory", PDLucene.getLuceneIndexDir ().getAbsolutePath ());
+    aTable.addBodyRow ().addCells ("Directory type", aLucene.getDirectoryType ().getDisplayName () + " (" + aLucene.getDirectoryType ().getID () + ")");
+    {
+      final LiveIndexWriterConfig aWriterConfig = aLucene.getWriterConfig ();
+      aTable.addBodyRow ().addCells ("RAM buffer size", aWriterConfig.getRAMBufferSizeMB () + "MB");
+      aTable.addBodyRow ().addCells ("Use compound files", Boolean.toString (aWriterConfig.getUseCompoundFile ()));
+      aTable.addBodyRow ().addCells ("Index sort", aWriterConfig.getIndexSort () != null ? aWriterConfig.getIndexSort ().toString () : "none");
+      aTable.addBodyRow ().addCells ("Merge policy", aWriterConfig.getMergePolicy ().toString ());
+      aTable.addBodyRow ().addCells ("Merge scheduler", aWriterConfig.getMergeScheduler ().toString ());
+    }
+    {
+      final PDLuceneSearchExecutor aSearchExecutor = aLucene.getSearchExecutor ();
+      if (aSearchExecutor == null)
+        aTable.addBodyRow ().addCells ("Parallel segment search", "disabled");
+      else
+      {
+        aTable.addBodyRow ().addCells ("Parallel segment search", aSearchExecutor.getThreadCount () + " threads");
+        aTable.addBodyRow ().addCells ("Active search threads", Integer.toString (aSearchExecutor.getActiveCount ()));
+        aTable.addBodyRow ().addCells ("Queued segment searches", Integer.toString (aSearchExecutor.getQueueSize ()));
+        aTable.addBodyRow ().addCells ("Completed segment searches", Long.toString (aSearchExecutor.getCompletedTaskCount ()));
+        aTable.addBodyRow ().addCells ("Segment searches in calling thread", Long.toString (aSearchExecutor.getCallerRunsCount ()));
+      }
+    }
+    {
+      final LRUQueryCache aQueryCache = aLucene.getQueryCache ();
+      aTable.addBodyRow ().addCells ("Query cache policy", aLucene.getQueryCachingPolicy ().toString ());
+      aTable.addBodyRow ().addCells ("Cached filters", aQueryCache.getCacheSize () + " (" + aQueryCache.ramBytesUsed () + " bytes)");
+      aTable.addBodyRow ()
+            .addCells ("Query cache hits/misses",
+                       aQueryCache.getHitCount () + " / " + aQueryCache.getMissCount () + " (" + aQueryCache.getEvictionCount () + " evicted)");
+    }
+    {
+      final PDLuceneCommitScheduler aCommitScheduler = aLucene.getCommitScheduler ();
+      aTable.addBodyRow ()
+            .addCells ("Commit policy",
+                       "After " + aCommitScheduler.getMaxPendingChanges () + " changes or " + aCommitScheduler.getMaxPendingMillis () + "ms");
+      aTable.addBodyRow ().addCells ("Pending changes", Integer.toString (aCommitScheduler.getPendingChangeCount ()));
+      aTable.addBodyRow ().addCells ("Commits so far", Long.toString (aCommitScheduler.getCommitCount ()));
+      final long nLastCommitMillis = aCommitScheduler.getLastCommitMillis ();
+      aTable.addBodyRow ().addCells ("Last commit duration", nLastCommitMillis < 0 ? "n/a" : nLastCommitMillis + "ms");
+    }
+    {
+      final PDStorageManager aStorageMgr = PDMetaManager.getStorageMgr ();
+      aTable.addBodyRow ()
+            .addCells ("Business cards changed/unchanged",
+                       aStorageMgr.getChangedEntryCount () + " / " + aStorageMgr.getUnchangedEntryCount () + " (unchanged ones are not written)");
+    }
+    {
+      final PDIndexWarmUp aWarmUp = PDMetaManager.getWarmUp ();
+      aTable.addBodyRow ()
+            .addCells ("Warm-up",
+                       aWarmUp.isReady () ? aWarmUp.getWarmUpMillis () < 0 ? "skipped"
+                                                                          : aWarmUp.getWarmUpQueryCount () +
+                                                                            " queries in " +
+                                                                            aWarmUp.getWarmUpMillis () +
+                                                                            "ms"
+                                          : "in progress");
+    }
+    final BootstrapTable aSegmentTable = new BootstrapTable (HCCol.star (),
+                                                            HCCol.star (),
+                                                            HCCol.star (),
+                                                            HCCol.star (),
+                                                            HCCol.star (),
+                                                            HCCol.star ());
+    aSegmentTable.addHeaderRow ().addCells ("Segment", "Max documents", "Live documents", "Deleted documents", "Size", "Compound file");
     try
     {
-      final DirectoryReader aReader = aLucene.getReader ();
-      if (aReader != null)
+      final IndexSearcher aSearcher = aLucene.acquireSearcher ();
+      try
+      {
+        final IndexReader aReader = aSearcher.getIndexReader ();
         aTable.addBodyRow ().addCells ("Directory information", aReader.toString ());
+        aTable.addBodyRow ().addCells ("Segment count", Integer.toString (aReader.leaves ().size ()));
+
+        for (final LeafReaderContext aLeaf : aReader.leaves ())
+        {
+          final LeafReader aLeafReader = aLeaf.reader ();
+          if (aLeafReader instanceof SegmentReader)
+          {
+            final SegmentReader aSegmentReader = (SegmentReader) aLeafReader;
+            final SegmentCommitInfo aSegmentInfo = aSegmentReader.getSegmentInfo ();
+            aSegmentTable.addBodyRow ()
+                         .addCells (aSegmentReader.getSegmentName (),
+                                    Integer.toString (aLeafReader.maxDoc ()),
+                                    Integer.toString (aLeafReader.numDocs ()),
+                                    Integer.toString (aLeafReader.numDeletedDocs ()),
+                                    Long.toString (aSegmentInfo.sizeInBytes ()) + " bytes",
+                                    Boolean.toString (aSegmentInfo.info.getUseCompoundFile ()));
+          }
+          else
+          {
+            aSegmentTable.addBodyRow ()
+                         .addCells (aLeafReader.toString (),
+                                    Integer.toString (aLeafReader.maxDoc ()),
+                                    Integer.toString (aLeafReader.numDocs ()),
+                                    Integer.toString (aLeafReader.numDeletedDocs ()),
+                                    "n/a",
+                                    "n/a");
+          }
+        }
+      }
+      finally
+      {
+        aLucene.releaseSearcher (aSearcher);
+      }
     }
     catch (final IOException ex)
     {
@@ -66,5 +177,7 @@ public final class PageSecureAdminLuceneInformation extends AbstractAppWebPage
             .addCell (HCExtHelper.nl2divList (ex.getClass ().getName () + "\n" + StackTraceHelper.getStackAsString (ex)));
     }
     aNodeList.addChild (aTable);
+    aNodeList.addChild (h3 ("Segments"));
+    aNodeList.addChild (aSegmentTable);
   }
 }
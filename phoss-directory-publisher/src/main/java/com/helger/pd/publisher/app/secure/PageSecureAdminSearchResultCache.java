@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2015-2021 Philip Helger (www.helger.com)
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.pd.publisher.app.secure;
+
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.CGlobal;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.html.hc.html.tabular.HCCol;
+import com.helger.html.hc.impl.HCNodeList;
+import com.helger.pd.indexer.mgr.PDMetaManager;
+import com.helger.pd.indexer.storage.PDSearchResultCache;
+import com.helger.pd.publisher.ui.AbstractAppWebPage;
+import com.helger.photon.bootstrap4.button.BootstrapButton;
+import com.helger.photon.bootstrap4.button.EBootstrapButtonType;
+import com.helger.photon.bootstrap4.buttongroup.BootstrapButtonToolbar;
+import com.helger.photon.bootstrap4.table.BootstrapTable;
+import com.helger.photon.uicore.css.CPageParam;
+import com.helger.photon.uicore.icon.EDefaultIcon;
+import com.helger.photon.uicore.page.WebPageExecutionContext;
+
+/**
+ * Information on the search result cache.
+ *
+ * @author Philip Helger
+ * @since 0.9.5
+ */
+public final class PageSecureAdminSearchResultCache extends AbstractAppWebPage
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (PageSecureAdminSearchResultCache.class);
+  private static final String ACTION_FLUSH = "flush";
+
+  public PageSecureAdminSearchResultCache (@Nonnull @Nonempty final String sID)
+  {
+    super (sID, "Search result cache");
+  }
+
+  @Override
+  protected void fillContent (final WebPageExecutionContext aWPEC)
+  {
+    final HCNodeList aNodeList = aWPEC.getNodeList ();
+    final PDSearchResultCache aCache = PDMetaManager.getStorageMgr ().getResultCache ();
+
+    if (aWPEC.hasAction (ACTION_FLUSH))
+    {
+      final int nRemoved = aCache.clear ();
+      LOGGER.info ("Manually flushed " + nRemoved + " entries from the search result cache");
+      aWPEC.postRedirectGetInternal (success ("Successfully removed " + nRemoved + " entries from the search result cache."));
+    }
+
+    {
+      final BootstrapButtonToolbar aToolbar = new BootstrapButtonToolbar (aWPEC);
+      aToolbar.addButton ("Refresh", aWPEC.getSelfHref (), EDefaultIcon.MAGNIFIER);
+      aToolbar.addChild (new BootstrapButton (EBootstrapButtonType.DANGER).addChild ("Flush cache")
+                                                                          .setOnClick (aWPEC.getSelfHref ()
+                                                                                            .add (CPageParam.PARAM_ACTION, ACTION_FLUSH))
+                                                                          .setIcon (EDefaultIcon.DELETE));
+      aNodeList.addChild (aToolbar);
+    }
+
+    final BootstrapTable aTable = new BootstrapTable ();
+    aTable.addBodyRow ().addCells ("Enabled", Boolean.toString (aCache.isEnabled ()));
+    aTable.addBodyRow ().addCells ("Maximum entries", Integer.toString (aCache.getMaxEntries ()));
+    aTable.addBodyRow ().addCells ("Maximum memory", aCache.getMaxBytes () / CGlobal.BYTES_PER_MEGABYTE + "MB");
+    aTable.addBodyRow ().addCells ("Current entries", Integer.toString (aCache.getEntryCount ()));
+    aTable.addBodyRow ().addCells ("Estimated memory", aCache.getEstimatedBytes () + " bytes");
+    aTable.addBodyRow ().addCells ("Hits", Long.toString (aCache.getHitCount ()));
+    aTable.addBodyRow ().addCells ("Misses", Long.toString (aCache.getMissCount ()));
+    aTable.addBodyRow ().addCells ("Hit rate", String.format (Locale.US, "%.1f%%", Double.valueOf (aCache.getHitRate () * 100)));
+    aTable.addBodyRow ().addCells ("Evicted entries", Long.toString (aCache.getEvictionCount ()));
+    aNodeList.addChild (aTable);
+
+    final ICommonsList <PDSearchResultCache.EntryInfo> aEntries = aCache.getAllEntryInfos ();
+    aNodeList.addChild (h3 ("Cached entries"));
+    if (aEntries.isEmpty ())
+      aNodeList.addChild (info ("The cache is empty."));
+    else
+    {
+      final BootstrapTable aEntryTable = new BootstrapTable (HCCol.star (), HCCol.star (), HCCol.star (), HCCol.star ());
+      aEntryTable.addHeaderRow ().addCells ("Query", "Reader version", "Maximum results", "Estimated size");
+      // Most recently used first
+      for (int i = aEntries.size () - 1; i >= 0; --i)
+      {
+        final PDSearchResultCache.EntryInfo aEntry = aEntries.get (i);
+        aEntryTable.addBodyRow ()
+                   .addCells (aEntry.getQuery (),
+                              Long.toString (aEntry.getReaderVersion ()),
+                              aEntry.getMaxResultCount () == 0 ? "count only" : Integer.toString (aEntry.getMaxResultCount ()),
+                              aEntry.getEstimatedBytes () + " bytes");
+      }
+      aNodeList.addChild (aEntryTable);
+    }
+  }
+}
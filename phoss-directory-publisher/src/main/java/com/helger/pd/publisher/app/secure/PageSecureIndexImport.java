@@ -36,6 +36,7 @@ import com.helger.html.hc.html.grouping.HCUL;
 import com.helger.html.hc.impl.HCNodeList;
 import com.helger.pd.indexer.businesscard.IPDBusinessCardProvider;
 import com.helger.pd.indexer.businesscard.SMPBusinessCardProvider;
+import com.helger.pd.indexer.index.EIndexerWorkItemLane;
 import com.helger.pd.indexer.index.EIndexerWorkItemType;
 import com.helger.pd.indexer.mgr.PDIndexerManager;
 import com.helger.pd.indexer.mgr.PDMetaManager;
@@ -131,7 +132,8 @@ public final class PageSecureIndexImport extends AbstractAppWebPage
                                  .queueWorkItem (aParticipantID,
                                                  EIndexerWorkItemType.CREATE_UPDATE,
                                                  "import-triggered",
-                                                 PDIndexerManager.HOST_LOCALHOST)
+                                                 PDIndexerManager.HOST_LOCALHOST,
+                                                 EIndexerWorkItemLane.IMPORT)
                                  .isChanged ())
                 {
                   aQueued.add (aParticipantID);
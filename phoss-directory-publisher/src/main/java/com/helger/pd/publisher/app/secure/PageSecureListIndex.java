@@ -17,17 +17,22 @@
 package com.helger.pd.publisher.app.secure;
 
 import java.util.Locale;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.annotation.Nonnull;
 
 import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.compare.ESortOrder;
 import com.helger.commons.datetime.PDTFactory;
 import com.helger.commons.datetime.PDTToString;
+import com.helger.html.hc.html.tabular.HCCol;
 import com.helger.html.hc.html.tabular.HCRow;
 import com.helger.html.hc.impl.HCNodeList;
+import com.helger.pd.indexer.index.EIndexerWorkItemLane;
 import com.helger.pd.indexer.index.IIndexerWorkItem;
+import com.helger.pd.indexer.index.IndexerWorkItemQueue;
+import com.helger.pd.indexer.index.IndexerWorker;
+import com.helger.pd.indexer.mgr.IndexerAdmissionController;
 import com.helger.pd.indexer.mgr.PDMetaManager;
 import com.helger.pd.publisher.ui.AbstractAppWebPage;
 import com.helger.pd.publisher.ui.PDCommonUI;
@@ -62,8 +67,69 @@ public final class PageSecureListIndex extends AbstractAppWebPage
                                                                                                            .addClass (PDCommonUI.CSS_CLASS_VERTICAL_PADDED_TEXT));
     }
 
-    final LinkedBlockingQueue <Object> aQueue = PDMetaManager.getIndexerMgr ().getIndexerWorkQueue ().getQueue ();
-    final int nLength = aQueue.size ();
+    final IndexerWorkItemQueue aWorkQueue = PDMetaManager.getIndexerMgr ().getIndexerWorkQueue ();
+
+    // Show the workers
+    {
+      final BootstrapTable aWorkerTable = new BootstrapTable (HCCol.star (),
+                                                              HCCol.star (),
+                                                              HCCol.star (),
+                                                              HCCol.star (),
+                                                              HCCol.star (),
+                                                              HCCol.star ());
+      aWorkerTable.addHeaderRow ().addCells ("Worker", "Queue depth", "Handled items", "Coalesced items", "Average duration", "Throughput");
+      for (final IndexerWorker aWorker : aWorkQueue.getAllWorkers ())
+      {
+        final long nAvgMillis = aWorker.getAverageHandleMillis ();
+        aWorkerTable.addBodyRow ()
+                    .addCells (Integer.toString (aWorker.getIndex ()),
+                               Integer.toString (aWorker.getQueueSize ()),
+                               Long.toString (aWorker.getHandledCount ()),
+                               Long.toString (aWorker.getCoalescedCount ()),
+                               nAvgMillis < 0 ? "n/a" : nAvgMillis + "ms",
+                               String.format (Locale.US, "%.1f", Double.valueOf (aWorker.getThroughputPerMinute ())) + " items/min");
+      }
+      aNodeList.addChild (aWorkerTable);
+    }
+
+    // Show the lanes
+    {
+      final BootstrapTable aLaneTable = new BootstrapTable (HCCol.star (), HCCol.star (), HCCol.star (), HCCol.star (), HCCol.star ());
+      aLaneTable.addHeaderRow ().addCells ("Lane", "Weight", "Queue depth", "Average wait", "Oldest wait");
+      for (final EIndexerWorkItemLane eLane : EIndexerWorkItemLane.values ())
+      {
+        final long nAvgMillis = aWorkQueue.getAverageWaitMillis (eLane);
+        final long nOldestMillis = aWorkQueue.getOldestWaitMillis (eLane);
+        aLaneTable.addBodyRow ()
+                  .addCells (eLane.getDisplayName (),
+                             Integer.toString (aWorkQueue.getLaneWeight (eLane)),
+                             Integer.toString (aWorkQueue.getQueueSize (eLane)),
+                             nAvgMillis < 0 ? "n/a" : nAvgMillis + "ms",
+                             nOldestMillis < 0 ? "n/a" : nOldestMillis + "ms");
+      }
+      aNodeList.addChild (aLaneTable);
+    }
+
+    // Show the admission control of the REST interface
+    {
+      final IndexerAdmissionController aAdmission = PDMetaManager.getIndexerMgr ().getAdmissionController ();
+      if (aAdmission.isSaturated ())
+        aNodeList.addChild (warn ("The Index Queue is saturated. New requests via REST are rejected until the queue contains at most " +
+                                  aAdmission.getLowWatermark () +
+                                  " entries."));
+      aNodeList.addChild (info ("Rejected requests via REST: " +
+                                aAdmission.getRejectedSaturatedCount () +
+                                " because the queue contained at least " +
+                                aAdmission.getHighWatermark () +
+                                " entries, " +
+                                aAdmission.getRejectedQuotaCount () +
+                                " because a client had at least " +
+                                aAdmission.getMaxPendingPerClient () +
+                                " pending entries"));
+    }
+
+    final ICommonsList <IIndexerWorkItem> aQueuedItems = aWorkQueue.getAllQueuedItems ();
+    final int nLength = aQueuedItems.size ();
     if (nLength == 0)
     {
       aNodeList.addChild (success ("The Index Queue is currently empty"));
@@ -78,17 +144,15 @@ public final class PageSecureListIndex extends AbstractAppWebPage
                                                         new DTCol ("Action"),
                                                         new DTCol ("Owner"),
                                                         new DTCol ("Requestor")).setID ("indexqueue");
-      for (final Object o : aQueue)
-        if (o instanceof IIndexerWorkItem)
-        {
-          final IIndexerWorkItem aObj = (IIndexerWorkItem) o;
-          final HCRow aRow = aTable.addBodyRow ();
-          aRow.addCell (PDTToString.getAsString (aObj.getCreationDateTime (), aDisplayLocale));
-          aRow.addCell (aObj.getParticipantID ().getURIEncoded ());
-          aRow.addCell (aObj.getType ().getDisplayName ());
-          aRow.addCell (aObj.getOwnerID ());
-          aRow.addCell (aObj.getRequestingHost ());
-        }
+      for (final IIndexerWorkItem aObj : aQueuedItems)
+      {
+        final HCRow aRow = aTable.addBodyRow ();
+        aRow.addCell (PDTToString.getAsString (aObj.getCreationDateTime (), aDisplayLocale));
+        aRow.addCell (aObj.getParticipantID ().getURIEncoded ());
+        aRow.addCell (aObj.getType ().getDisplayName ());
+        aRow.addCell (aObj.getOwnerID ());
+        aRow.addCell (aObj.getRequestingHost ());
+      }
       aNodeList.addChild (aTable).addChild (BootstrapDataTables.createDefaultDataTables (aWPEC, aTable));
     }
   }
@@ -46,7 +46,11 @@ public final class PageSecureListReIndex extends AbstractPageSecureReIndex
   {
     final HCNodeList aNodeList = aWPEC.getNodeList ();
     aNodeList.addChild (info ().addChild (div ("This page contains all entries where indexing failed initially but is re-tried."))
-                               .addChild (div ("Re-index happens every " + PDServerConfiguration.getReIndexRetryMinutes () + " minute(s)"))
+                               .addChild (div ("The first re-index happens after " +
+                                               PDServerConfiguration.getReIndexRetryMinutes () +
+                                               " minute(s). Depending on the error, the interval grows up to " +
+                                               PDServerConfiguration.getReIndexBackoffMaxMinutes () +
+                                               " minute(s) or the entry is moved to the dead list directly."))
                                .addChild (div ("Re-indexing stops after " +
                                                PDServerConfiguration.getReIndexMaxRetryHours () +
                                                " hour(s)")));
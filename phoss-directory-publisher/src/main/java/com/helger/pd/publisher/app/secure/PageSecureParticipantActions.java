@@ -47,10 +47,12 @@ import com.helger.html.hc.html.grouping.HCDiv;
 import com.helger.html.hc.html.grouping.HCOL;
 import com.helger.html.hc.html.grouping.IHCLI;
 import com.helger.html.hc.impl.HCNodeList;
+import com.helger.pd.indexer.index.EIndexerWorkItemLane;
 import com.helger.pd.indexer.index.EIndexerWorkItemType;
 import com.helger.pd.indexer.mgr.PDIndexerManager;
 import com.helger.pd.indexer.mgr.PDMetaManager;
 import com.helger.pd.indexer.storage.EQueryMode;
+import com.helger.pd.indexer.storage.PDStorageManager;
 import com.helger.pd.indexer.storage.field.PDField;
 import com.helger.pd.publisher.CPDPublisher;
 import com.helger.pd.publisher.exportall.ExportAllDataJob;
@@ -63,6 +65,7 @@ import com.helger.peppolid.IParticipantIdentifier;
 import com.helger.peppolid.factory.IIdentifierFactory;
 import com.helger.peppolid.factory.SimpleIdentifierFactory;
 import com.helger.photon.ajax.decl.AjaxFunctionDeclaration;
+import com.helger.photon.app.PhotonWorkerPool;
 import com.helger.photon.app.url.LinkHelper;
 import com.helger.photon.bootstrap4.CBootstrapCSS;
 import com.helger.photon.bootstrap4.button.BootstrapButton;
@@ -88,6 +91,7 @@ public final class PageSecureParticipantActions extends AbstractAppWebPage
   private static final String ACTION_SYNC_BCS_FORCED = "sync-bcs-forced";
   private static final String ACTION_SHOW_DUPLICATES = "show-duplicates";
   private static final String ACTION_DELETE_DUPLICATES = "delete-duplicates";
+  private static final String ACTION_MIGRATE_INDEX = "migrate-index";
 
   private static final AjaxFunctionDeclaration s_aDownloadAllIDsXML;
   private static final AjaxFunctionDeclaration s_aDownloadAllBCsXMLFull;
@@ -161,7 +165,8 @@ public final class PageSecureParticipantActions extends AbstractAppWebPage
         final String sParticipantID = PDField.PARTICIPANT_ID.getDocField (aDoc).stringValue ();
         aMap.computeIfAbsent (aResolvedParticipantID, k -> new CommonsTreeSet <> ()).add (sParticipantID);
       };
-      PDMetaManager.getStorageMgr ().searchAll (aQuery, -1, aConsumer);
+      // Only the participant ID is needed
+      PDMetaManager.getStorageMgr ().searchAll (aQuery, -1, PDField.getFieldNames (PDField.PARTICIPANT_ID), aConsumer);
     }
     catch (final IOException ex)
     {
@@ -261,7 +266,8 @@ public final class PageSecureParticipantActions extends AbstractAppWebPage
         aIndexerMgr.queueWorkItem (aIF.parseParticipantIdentifier (s),
                                    EIndexerWorkItemType.DELETE,
                                    "duplicate-elimination",
-                                   PDIndexerManager.HOST_LOCALHOST);
+                                   PDIndexerManager.HOST_LOCALHOST,
+                                   EIndexerWorkItemLane.IMPORT);
       }
 
       if (aPIsToAdd.isNotEmpty ())
@@ -276,7 +282,8 @@ public final class PageSecureParticipantActions extends AbstractAppWebPage
           aIndexerMgr.queueWorkItem (aIF.parseParticipantIdentifier (s),
                                      EIndexerWorkItemType.CREATE_UPDATE,
                                      "duplicate-elimination",
-                                     PDIndexerManager.HOST_LOCALHOST);
+                                     PDIndexerManager.HOST_LOCALHOST,
+                                     EIndexerWorkItemLane.IMPORT);
         }
       }
 
@@ -333,6 +340,14 @@ public final class PageSecureParticipantActions extends AbstractAppWebPage
             {
               _deleteDuplicateIDs (aWPEC);
             }
+            else
+              if (aWPEC.hasAction (ACTION_MIGRATE_INDEX))
+              {
+                LOGGER.info ("Manually migrating the index");
+                // run in the background
+                PhotonWorkerPool.getInstance ().runThrowing ("MigrateIndex", () -> PDMetaManager.getStorageMgr ().migrateIndex ());
+                aWPEC.postRedirectGetInternal (success ("The migration was started successfully and is now running in the background."));
+              }
 
     {
       final BootstrapButtonToolbar aToolbar = new BootstrapButtonToolbar (aWPEC);
@@ -439,6 +454,25 @@ public final class PageSecureParticipantActions extends AbstractAppWebPage
                                                                                              ACTION_SYNC_BCS_FORCED))
                                                                      .setIcon (EDefaultIcon.REFRESH));
 
+    aCard.createAndAddHeader ().addChild ("Index migration");
+    aBody = aCard.createAndAddBody ();
+    {
+      final PDStorageManager aStorageMgr = PDMetaManager.getStorageMgr ();
+      final boolean bMigrationRunning = aStorageMgr.isMigrationRunning ();
+      if (bMigrationRunning)
+        aBody.addChild (info ("The index migration is currently running."));
+      else
+        if (PDMetaManager.getLucene ().isNGramQueryEnabled ())
+          aBody.addChild (info ("All documents contain the n-gram fields and the participant ID doc values, so both are used."));
+        else
+          aBody.addChild (warn (aStorageMgr.getMigrationPendingCount () +
+                                " documents don't contain the n-gram fields and the participant ID doc values yet. Wildcard queries and stored fields are used until the migration is finished."));
+      aBody.addChild (new BootstrapButton ().addChild ("Migrate index (in background)")
+                                            .setOnClick (aWPEC.getSelfHref ().add (CPageParam.PARAM_ACTION, ACTION_MIGRATE_INDEX))
+                                            .setIcon (EDefaultIcon.REFRESH)
+                                            .setDisabled (bMigrationRunning));
+    }
+
     aCard.createAndAddHeader ().addChild ("Duplication handling");
     aBody = aCard.createAndAddBody ();
     if (PDMetaManager.getIdentifierFactory () instanceof SimpleIdentifierFactory)
@@ -69,7 +69,7 @@ public final class PageSecureParticipantCount extends AbstractAppWebPage
     if (false)
       try
       {
-        final Collector aCollector = new AllDocumentsCollector (PDMetaManager.getLucene (), (aDoc, nIdx) -> {
+        final Collector aCollector = new AllDocumentsCollector ((aDoc, nIdx) -> {
           final BootstrapTable aTable = new BootstrapTable ();
           for (final IndexableField f : aDoc.getFields ())
             aTable.addBodyRow ().addCells (f.name (), f.fieldType ().toString (), f.stringValue ());
@@ -55,7 +55,6 @@ import com.helger.pd.indexer.storage.PDStoredBusinessEntity;
 import com.helger.pd.indexer.storage.PDStoredContact;
 import com.helger.pd.indexer.storage.PDStoredIdentifier;
 import com.helger.pd.indexer.storage.PDStoredMLName;
-import com.helger.pd.indexer.storage.field.PDField;
 import com.helger.peppolid.IDocumentTypeIdentifier;
 import com.helger.peppolid.IParticipantIdentifier;
 import com.helger.photon.app.io.WebFileIO;
@@ -468,7 +467,7 @@ public final class ExportAllManager
 
     // Query all and group by participant ID
     final ICommonsSortedSet <IParticipantIdentifier> aSet = new CommonsTreeSet <> (Comparator.comparing (IParticipantIdentifier::getURIEncoded));
-    PDMetaManager.getStorageMgr ().searchAll (aQuery, -1, PDField.PARTICIPANT_ID::getDocValue, aSet::add);
+    PDMetaManager.getStorageMgr ().searchAllParticipantIDs (aQuery, aSet::add);
 
     // XML root
     final IMicroDocument aDoc = new MicroDocument ();
@@ -552,7 +551,7 @@ public final class ExportAllManager
 
     // Query all and group by participant ID
     final ICommonsSortedSet <IParticipantIdentifier> aSet = new CommonsTreeSet <> (Comparator.comparing (IParticipantIdentifier::getURIEncoded));
-    PDMetaManager.getStorageMgr ().searchAll (aQuery, -1, PDField.PARTICIPANT_ID::getDocValue, aSet::add);
+    PDMetaManager.getStorageMgr ().searchAllParticipantIDs (aQuery, aSet::add);
 
     // XML root
     final IJsonObject aObj = new JsonObject ();
@@ -636,7 +635,7 @@ public final class ExportAllManager
     final Consumer <? super IParticipantIdentifier> aConsumer = aEntity -> {
       aCSVWriter.writeNext (aEntity.getURIEncoded ());
     };
-    PDMetaManager.getStorageMgr ().searchAll (aQuery, -1, PDField.PARTICIPANT_ID::getDocValue, aConsumer);
+    PDMetaManager.getStorageMgr ().searchAllParticipantIDs (aQuery, aConsumer);
     aCSVWriter.flush ();
   }
 
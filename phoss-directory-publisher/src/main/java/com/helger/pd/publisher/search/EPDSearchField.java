@@ -83,12 +83,12 @@ public enum EPDSearchField implements IHasID <String>, IHasDisplayText
            EPDSearchFieldName.WEBSITE,
            ESearchDataType.STRING_CI,
            String.class,
-           sQuery -> PDQueryManager.getWebsiteLuceneQuery (sQuery)),
+           sQuery -> PDQueryManager.getWebsiteLuceneQuery (PDMetaManager.getLucene (), sQuery)),
   CONTACT ("contact",
            EPDSearchFieldName.CONTACT,
            ESearchDataType.STRING_CI,
            String.class,
-           sQuery -> PDQueryManager.getContactLuceneQuery (sQuery)),
+           sQuery -> PDQueryManager.getContactLuceneQuery (PDMetaManager.getLucene (), sQuery)),
   ADDITIONAL_INFORMATION ("addinfo",
                           EPDSearchFieldName.ADDITIONAL_INFORMATION,
                           ESearchDataType.STRING_CI,
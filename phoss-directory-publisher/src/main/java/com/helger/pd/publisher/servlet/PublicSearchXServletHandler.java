@@ -18,6 +18,7 @@ package com.helger.pd.publisher.servlet;
 
 import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +43,7 @@ import com.helger.commons.datetime.PDTFactory;
 import com.helger.commons.datetime.PDTWebDateHelper;
 import com.helger.commons.error.IError;
 import com.helger.commons.http.CHttp;
+import com.helger.commons.http.CHttpHeader;
 import com.helger.commons.io.resource.ClassPathResource;
 import com.helger.commons.string.StringHelper;
 import com.helger.json.IJsonArray;
@@ -50,14 +52,16 @@ import com.helger.json.JsonArray;
 import com.helger.json.JsonObject;
 import com.helger.json.serialize.JsonWriterSettings;
 import com.helger.pd.indexer.mgr.PDMetaManager;
+import com.helger.pd.indexer.settings.PDServerConfiguration;
+import com.helger.pd.indexer.storage.PDParticipantSearchResult;
 import com.helger.pd.indexer.storage.PDQueryManager;
+import com.helger.pd.indexer.storage.PDSearchResult;
 import com.helger.pd.indexer.storage.PDStorageManager;
 import com.helger.pd.indexer.storage.PDStoredBusinessEntity;
 import com.helger.pd.publisher.app.AppCommonUI;
 import com.helger.pd.publisher.search.EPDOutputFormat;
 import com.helger.pd.publisher.search.EPDSearchField;
 import com.helger.pd.publisher.search.SearchRateLimit;
-import com.helger.peppolid.IParticipantIdentifier;
 import com.helger.servlet.response.UnifiedResponse;
 import com.helger.web.scope.IRequestParamContainer;
 import com.helger.web.scope.IRequestWebScopeWithoutResponse;
@@ -82,9 +86,16 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
   public static final String PARAM_RESULT_PAGE_INDEX = "resultPageIndex";
   public static final String PARAM_RESULT_PAGE_COUNT = "resultPageCount";
   public static final String PARAM_BEAUTIFY = "beautify";
+  /**
+   * If <code>true</code> the result page index and count as well as the
+   * total result count refer to participants instead of entities
+   */
+  public static final String PARAM_PER_PARTICIPANT = "perParticipant";
   public static final int DEFAULT_RESULT_PAGE_INDEX = 0;
   public static final int DEFAULT_RESULT_PAGE_COUNT = 20;
   public static final int MAX_RESULTS = 1_000;
+  /** The "Retry-After" seconds while the index is warming up */
+  public static final int RETRY_AFTER_NOT_READY_SECONDS = 10;
 
   private static final String RESPONSE_VERSION = "version";
   private static final String RESPONSE_TOTAL_RESULT_COUNT = "total-result-count";
@@ -153,6 +164,17 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
       }
     }
 
+    if (!PDMetaManager.isReady ())
+    {
+      // Index is still warming up
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("REST search is not ready yet");
+
+      aUnifiedResponse.setStatus (CHttp.HTTP_SERVICE_UNAVAILABLE);
+      aUnifiedResponse.addCustomResponseHeader (CHttpHeader.RETRY_AFTER, Integer.toString (RETRY_AFTER_NOT_READY_SECONDS));
+      return;
+    }
+
     final IRequestParamContainer aParams = aRequestScope.params ();
 
     // http://127.0.0.1:8080/search -> null
@@ -211,6 +233,9 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
       // Format output?
       final boolean bBeautify = aParams.getAsBoolean (PARAM_BEAUTIFY, false);
 
+      // Results per participant or per entity?
+      final boolean bPerParticipant = aParams.getAsBoolean (PARAM_PER_PARTICIPANT, false);
+
       // Determine query terms
       final StringBuilder aSBQueryString = new StringBuilder ();
       final ICommonsMap <EPDSearchField, ICommonsList <String>> aQueryValues = new CommonsHashMap <> ();
@@ -246,6 +271,9 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
         final EPDSearchField eField = aEntry.getKey ();
         for (final String sQuery : aEntry.getValue ())
         {
+          if (eField == EPDSearchField.GENERIC)
+            PDMetaManager.getWarmUp ().recordQuery (sQuery);
+
           final Query aQuery = eField.getQuery (sQuery);
           if (aQuery != null)
             aQueries.add (aQuery);
@@ -278,34 +306,65 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
       // Only-non deleted
       aLuceneQuery = PDQueryManager.andNotDeleted (aLuceneQuery);
 
-      // How many results to deliver at most
-      final int nMaxResults = nLastResultIndex + 1;
-
-      // Search all documents
       final PDStorageManager aStorageMgr = PDMetaManager.getStorageMgr ();
-      final ICommonsList <PDStoredBusinessEntity> aResultDocs = aStorageMgr.getAllDocuments (aLuceneQuery, nMaxResults);
+      final int nTotalResults;
+      final int nEffectiveLastIndex;
+      final Collection <ICommonsList <PDStoredBusinessEntity>> aResultGroups;
+      if (bPerParticipant)
+      {
+        // One hit per participant directly from Lucene
+        final PDParticipantSearchResult aSearchResult = aStorageMgr.searchTopParticipants (aLuceneQuery,
+                                                                                          nFirstResultIndex,
+                                                                                          nResultPageCount,
+                                                                                          PDServerConfiguration.getLuceneSearchMaxEntitiesPerParticipant ());
+        aResultGroups = aSearchResult.getParticipants ().values ();
 
-      // Also get the total hit count for UI display. May be < 0 in case of
-      // error
-      final int nTotalBEs = aStorageMgr.getCount (aLuceneQuery);
+        // Total participant count. May be < 0 in case of error
+        nTotalResults = aSearchResult.getTotalParticipantCount ();
+        nEffectiveLastIndex = nFirstResultIndex + aResultGroups.size () - 1;
 
-      if (LOGGER.isDebugEnabled ())
-        LOGGER.debug ("  Result for <" +
-                      aLuceneQuery +
-                      "> (max=" +
-                      nMaxResults +
-                      ") " +
-                      (nTotalBEs == 1 ? "is 1 document" : "are " + nTotalBEs + " documents"));
-
-      // Filter by index/count
-      final int nEffectiveLastIndex = Math.min (nLastResultIndex, aResultDocs.size () - 1);
-      final List <PDStoredBusinessEntity> aResultView = nFirstResultIndex >= aResultDocs.size () ? Collections.emptyList ()
-                                                                                                 : aResultDocs.subList (nFirstResultIndex,
-                                                                                                                        nEffectiveLastIndex +
-                                                                                                                                           1);
-
-      // Group results by participant ID
-      final ICommonsMap <IParticipantIdentifier, ICommonsList <PDStoredBusinessEntity>> aGroupedDocs = PDStorageManager.getGroupedByParticipantID (aResultView);
+        if (LOGGER.isDebugEnabled ())
+          LOGGER.debug ("  Result for <" +
+                        aLuceneQuery +
+                        "> (offset=" +
+                        nFirstResultIndex +
+                        ", max=" +
+                        nResultPageCount +
+                        ") " +
+                        (nTotalResults == 1 ? "is 1 participant" : "are " + nTotalResults + " participants"));
+      }
+      else
+      {
+        // How many results to deliver at most
+        final int nMaxResults = nLastResultIndex + 1;
+
+        // Search all documents
+        final PDSearchResult aSearchResult = aStorageMgr.searchTopDocuments (aLuceneQuery, nMaxResults);
+        final ICommonsList <PDStoredBusinessEntity> aResultDocs = aSearchResult.getTopDocuments ();
+
+        // Also get the total hit count for UI display. May be < 0 in case of
+        // error
+        nTotalResults = aSearchResult.getTotalHitCount ();
+
+        if (LOGGER.isDebugEnabled ())
+          LOGGER.debug ("  Result for <" +
+                        aLuceneQuery +
+                        "> (max=" +
+                        nMaxResults +
+                        ") " +
+                        (nTotalResults == 1 ? "is 1 document" : "are " + nTotalResults + " documents"));
+
+        // Filter by index/count
+        nEffectiveLastIndex = Math.min (nLastResultIndex, aResultDocs.size () - 1);
+        final List <PDStoredBusinessEntity> aResultView = nFirstResultIndex >= aResultDocs.size () ? Collections.emptyList ()
+                                                                                                   : aResultDocs.subList (nFirstResultIndex,
+                                                                                                                          nEffectiveLastIndex +
+                                                                                                                                             1);
+
+        // Group results by participant ID
+        aResultGroups = PDStorageManager.getGroupedByParticipantID (aResultView).values ();
+      }
+      final int nUsedResults = bPerParticipant ? aResultGroups.size () : Math.max (nEffectiveLastIndex - nFirstResultIndex + 1, 0);
       final ZonedDateTime aNow = PDTFactory.getCurrentZonedDateTimeUTC ();
 
       // build result
@@ -318,8 +377,8 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
           final IMicroDocument aDoc = new MicroDocument ();
           final IMicroElement eRoot = aDoc.appendElement ("resultlist");
           eRoot.setAttribute (RESPONSE_VERSION, eSearchVersion.getVersion ());
-          eRoot.setAttribute (RESPONSE_TOTAL_RESULT_COUNT, nTotalBEs);
-          eRoot.setAttribute (RESPONSE_USED_RESULT_COUNT, aResultView.size ());
+          eRoot.setAttribute (RESPONSE_TOTAL_RESULT_COUNT, nTotalResults);
+          eRoot.setAttribute (RESPONSE_USED_RESULT_COUNT, nUsedResults);
           eRoot.setAttribute (RESPONSE_RESULT_PAGE_INDEX, nResultPageIndex);
           eRoot.setAttribute (RESPONSE_RESULT_PAGE_COUNT, nResultPageCount);
           eRoot.setAttribute (RESPONSE_FIRST_RESULT_INDEX, nFirstResultIndex);
@@ -327,7 +386,7 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
           eRoot.setAttribute (RESPONSE_QUERY_TERMS, aSBQueryString.toString ());
           eRoot.setAttribute (RESPONSE_CREATION_DT, PDTWebDateHelper.getAsStringXSD (aNow));
 
-          for (final ICommonsList <PDStoredBusinessEntity> aPerParticipant : aGroupedDocs.values ())
+          for (final ICommonsList <PDStoredBusinessEntity> aPerParticipant : aResultGroups)
           {
             final IMicroElement eItem = PDStoredBusinessEntity.getAsSearchResultMicroElement (aPerParticipant);
             eRoot.appendChild (eItem);
@@ -352,8 +411,8 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
           final JsonWriterSettings aJWS = new JsonWriterSettings ().setIndentEnabled (bBeautify);
           final IJsonObject aDoc = new JsonObject ();
           aDoc.add (RESPONSE_VERSION, eSearchVersion.getVersion ());
-          aDoc.add (RESPONSE_TOTAL_RESULT_COUNT, nTotalBEs);
-          aDoc.add (RESPONSE_USED_RESULT_COUNT, aResultView.size ());
+          aDoc.add (RESPONSE_TOTAL_RESULT_COUNT, nTotalResults);
+          aDoc.add (RESPONSE_USED_RESULT_COUNT, nUsedResults);
           aDoc.add (RESPONSE_RESULT_PAGE_INDEX, nResultPageIndex);
           aDoc.add (RESPONSE_RESULT_PAGE_COUNT, nResultPageCount);
           aDoc.add (RESPONSE_FIRST_RESULT_INDEX, nFirstResultIndex);
@@ -362,7 +421,7 @@ public final class PublicSearchXServletHandler implements IXServletSimpleHandler
           aDoc.add (RESPONSE_CREATION_DT, PDTWebDateHelper.getAsStringXSD (aNow));
 
           final IJsonArray aMatches = new JsonArray ();
-          for (final ICommonsList <PDStoredBusinessEntity> aPerParticipant : aGroupedDocs.values ())
+          for (final ICommonsList <PDStoredBusinessEntity> aPerParticipant : aResultGroups)
           {
             final IJsonObject aItem = PDStoredBusinessEntity.getAsSearchResultJsonObject (aPerParticipant);
             aMatches.add (aItem);